@@ -699,6 +699,7 @@ typedef struct
 #define CMD_RS_RENDER_RESULT              0x1104
 #define CMD_RS_DELETE_RESULT              0x1105
 #define CMD_RS_NOTIFY                     0x1106
+#define CMD_RS_GET_JOB_STATUS             0x1107
 
 /**
  * Variable identifiers
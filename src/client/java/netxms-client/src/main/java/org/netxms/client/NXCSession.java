@@ -24,12 +24,13 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Writer;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -52,10 +53,17 @@
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.netxms.base.EncryptionContext;
@@ -64,9 +72,11 @@
 import org.netxms.base.MacAddress;
 import org.netxms.base.NXCPCodes;
 import org.netxms.base.NXCPDataInputStream;
+import org.netxms.base.NXCPEventLoop;
 import org.netxms.base.NXCPException;
 import org.netxms.base.NXCPMessage;
 import org.netxms.base.NXCPMessageReceiver;
+import org.netxms.base.NXCPMessageWriter;
 import org.netxms.base.NXCPMsgWaitQueue;
 import org.netxms.base.VersionInfo;
 import org.netxms.client.agent.config.AgentConfiguration;
@@ -83,6 +93,7 @@
 import org.netxms.client.constants.RCC;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.ColumnarDciData;
 import org.netxms.client.datacollection.ConditionDciInfo;
 import org.netxms.client.datacollection.DCOStatusHolder;
 import org.netxms.client.datacollection.DataCollectionConfiguration;
@@ -90,6 +101,7 @@
 import org.netxms.client.datacollection.DataCollectionObject;
 import org.netxms.client.datacollection.DataCollectionTable;
 import org.netxms.client.datacollection.DciData;
+import org.netxms.client.datacollection.DciDataPageHandler;
 import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.MeasurementUnit;
 import org.netxms.client.datacollection.DciLastValue;
@@ -179,10 +191,13 @@
 import org.netxms.client.packages.PackageDeploymentListener;
 import org.netxms.client.packages.PackageInfo;
 import org.netxms.client.reporting.ReportDefinition;
+import org.netxms.client.reporting.ReportJobStatus;
 import org.netxms.client.reporting.ReportRenderFormat;
 import org.netxms.client.reporting.ReportResult;
 import org.netxms.client.reporting.ReportingJob;
 import org.netxms.client.reporting.ReportingJobConfiguration;
+import org.netxms.client.search.ObjectSearchIndex;
+import org.netxms.client.search.SearchQuery;
 import org.netxms.client.server.AgentFile;
 import org.netxms.client.server.ServerConsoleListener;
 import org.netxms.client.server.ServerFile;
@@ -269,6 +284,7 @@
    private static final int CLIENT_CHALLENGE_SIZE = 256;
    private static final int MAX_DCI_DATA_ROWS = 200000;
    private static final int MAX_DCI_STRING_VALUE_LENGTH = 256;
+   private static final int MIN_PARALLEL_DATA_RANGE = 3600;
    private static final int RECEIVED_FILE_TTL = 300000; // 300 seconds
    private static final int FILE_BUFFER_SIZE = 32768; // 32KB
 
@@ -301,7 +317,16 @@
    // Internal communication data
    private Socket socket = null;
    private NXCPMsgWaitQueue msgWaitQueue = null;
+   private NXCPMessageWriter msgWriter = null;
+   private volatile NXCPMessageReceiver msgReceiver = null;
    private ReceiverThread recvThread = null;
+   private final MessageProcessor messageProcessor = new MessageProcessor();
+   private NXCPEventLoop eventLoop = null;
+   private NXCPEventLoop.Connection loopConnection = null;
+   private ScheduledFuture<?> housekeeperTask = null;
+   private final AtomicBoolean housekeeperRunning = new AtomicBoolean(false);
+   private final NotificationProcessor notificationProcessor = new NotificationProcessor();
+   private final AtomicBoolean userSyncScheduled = new AtomicBoolean(false);
    private HousekeeperThread housekeeperThread = null;
    private AtomicLong requestId = new AtomicLong(1);
    private boolean connected = false;
@@ -309,7 +334,7 @@
    private boolean serverConsoleConnected = false;
    private boolean allowCompression = false;
    private EncryptionContext encryptionContext = null;
-   private Throwable receiverStopCause = null;
+   private volatile Throwable receiverStopCause = null;
 
    // Communication parameters
    private int defaultRecvBufferSize = 4194304; // Default is 4MB
@@ -317,6 +342,7 @@
    private int connectTimeout = 10000; // Default is 10 seconds  
    private int commandTimeout = 30000; // Default is 30 seconds
    private int serverCommandOutputTimeout = 60000;
+   private int sendQueueSize = 4096;
 
    // Notification listeners and queue
    private LinkedBlockingQueue<SessionNotification> notificationQueue = new LinkedBlockingQueue<SessionNotification>(8192);
@@ -360,9 +386,7 @@
    private Map<String, String> clientConfigurationHints = new HashMap<String, String>();
 
    // Objects
-   private Map<Long, AbstractObject> objectList = new HashMap<Long, AbstractObject>();
-   private Map<UUID, AbstractObject> objectListGUID = new HashMap<UUID, AbstractObject>();
-   private Map<Integer, Zone> zoneList = new HashMap<Integer, Zone>();
+   private ObjectCache objectCache = new ObjectCache();
    private Map<Integer, ObjectCategory> objectCategories = new HashMap<Integer, ObjectCategory>();
    private boolean objectsSynchronized = false;
    private Set<String> responsibleUserTags = new HashSet<String>();
@@ -469,6 +493,8 @@ private class ReceiverThread extends Thread
       public void run()
       {
          final NXCPMessageReceiver receiver = new NXCPMessageReceiver(defaultRecvBufferSize, maxRecvBufferSize);
+         receiver.setLazyDecoding(true);
+         msgReceiver = receiver;
          InputStream in;
 
          try
@@ -477,6 +503,7 @@ public void run()
          }
          catch(IOException e)
          {
+            receiver.release();
             return; // Stop receiver thread if input stream cannot be obtained
          }
 
@@ -487,254 +514,7 @@ public void run()
             {
                NXCPMessage msg = receiver.receiveMessage(in, encryptionContext);
                errorCount = 0;
-               switch(msg.getMessageCode())
-               {
-                  case NXCPCodes.CMD_REQUEST_SESSION_KEY:
-                     setupEncryption(msg);
-                     break;
-                  case NXCPCodes.CMD_KEEPALIVE:
-                     serverTime = msg.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000;
-                     serverTimeRecvTime = System.currentTimeMillis();
-                     break;
-                  case NXCPCodes.CMD_OBJECT:
-                  case NXCPCodes.CMD_OBJECT_UPDATE:
-                     if (!msg.getFieldAsBoolean(NXCPCodes.VID_IS_DELETED))
-                     {
-                        final AbstractObject obj = createObjectFromMessage(msg);
-                        synchronized(objectList)
-                        {
-                           objectList.put(obj.getObjectId(), obj);
-                           objectListGUID.put(obj.getGuid(), obj);
-                           if (obj instanceof Zone)
-                              zoneList.put(((Zone)obj).getUIN(), (Zone)obj);
-                        }
-                        if (msg.getMessageCode() == NXCPCodes.CMD_OBJECT_UPDATE)
-                        {
-                           sendNotification(new SessionNotification(SessionNotification.OBJECT_CHANGED, obj.getObjectId(), obj));
-                        }
-                     }
-                     else
-                     {
-                        long objectId = msg.getFieldAsInt32(NXCPCodes.VID_OBJECT_ID);
-                        synchronized(objectList)
-                        {
-                           AbstractObject object = objectList.get(objectId);
-                           if (object != null)
-                           {
-                              objectListGUID.remove(object.getGuid());
-                              objectList.remove(objectId);
-                              if (object instanceof Zone)
-                                 zoneList.remove(((Zone)object).getUIN());
-                           }
-                        }
-                        sendNotification(new SessionNotification(SessionNotification.OBJECT_DELETED, objectId));
-                     }
-                     break;
-                  case NXCPCodes.CMD_OBJECT_LIST_END:
-                     completeSync(syncObjects);
-                     break;
-                  case NXCPCodes.CMD_OBJECT_CATEGORY_UPDATE:
-                     processObjectCategoryUpdate(msg);
-                     break;
-                  case NXCPCodes.CMD_GEO_AREA_UPDATE:
-                     processGeoAreaUpdate(msg);
-                     break;
-                  case NXCPCodes.CMD_USER_DATA:
-                     final User user = new User(msg);
-                     synchronized(userDatabase)
-                     {
-                        if (user.isDeleted())
-                        {
-                           AbstractUserObject o = userDatabase.remove(user.getId());
-                           if (o != null)
-                              userDatabaseGUID.remove(o.getGuid());
-                           missingUsers.add(user.getId());
-                        }
-                        else
-                        {
-                           userDatabase.put(user.getId(), user);
-                           userDatabaseGUID.put(user.getGuid(), user);
-                           missingUsers.remove(user.getId());
-                        }
-                     }
-                     break;
-                  case NXCPCodes.CMD_GROUP_DATA:
-                     final UserGroup group = new UserGroup(msg);
-                     synchronized(userDatabase)
-                     {
-                        if (group.isDeleted())
-                        {
-                           AbstractUserObject o = userDatabase.remove(group.getId());
-                           if (o != null)
-                              userDatabaseGUID.remove(o.getGuid());
-                           missingUsers.add(group.getId());
-                        }
-                        else
-                        {
-                           userDatabase.put(group.getId(), group);
-                           userDatabaseGUID.put(group.getGuid(), group);
-                           missingUsers.add(group.getId());
-                        }
-                     }
-                     break;
-                  case NXCPCodes.CMD_USER_DB_EOF:
-                     completeSync(syncUserDB);
-                     break;
-                  case NXCPCodes.CMD_USER_DB_UPDATE:
-                     processUserDBUpdate(msg);
-                     break;
-                  case NXCPCodes.CMD_ALARM_UPDATE:
-                     sendNotification(new SessionNotification(
-                           msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE, new Alarm(msg)));
-                     break;
-                  case NXCPCodes.CMD_BULK_ALARM_STATE_CHANGE:
-                     processBulkAlarmStateChange(msg);
-                     break;
-                  case NXCPCodes.CMD_JOB_CHANGE_NOTIFICATION:
-                     sendNotification(new SessionNotification(SessionNotification.JOB_CHANGE, new ServerJob(msg)));
-                     break;
-                  case NXCPCodes.CMD_FILE_DATA:
-                     processFileData(msg);
-                     break;
-                  case NXCPCodes.CMD_FILE_MONITORING:
-                     processFileTail(msg);
-                     break;
-                  case NXCPCodes.CMD_ABORT_FILE_TRANSFER:
-                     processFileTransferError(msg);
-                     break;
-                  case NXCPCodes.CMD_NOTIFY:
-                     processNotificationMessage(msg, true);
-                     break;
-                  case NXCPCodes.CMD_RS_NOTIFY:
-                     processNotificationMessage(msg, false);
-                     break;
-                  case NXCPCodes.CMD_EVENTLOG_RECORDS:
-                     processNewEvents(msg);
-                     break;
-                  case NXCPCodes.CMD_TRAP_LOG_RECORDS:
-                     processNewTraps(msg);
-                     break;
-                  case NXCPCodes.CMD_SYSLOG_RECORDS:
-                     processSyslogRecords(msg);
-                     break;
-                  case NXCPCodes.CMD_ACTION_DB_UPDATE:
-                     processActionConfigChange(msg);
-                     break;
-                  case NXCPCodes.CMD_EVENT_DB_UPDATE:
-                     processEventConfigChange(msg);
-                     break;
-                  case NXCPCodes.CMD_TRAP_CFG_UPDATE:
-                     processTrapConfigChange(msg);
-                     break;
-                  case NXCPCodes.CMD_ADM_MESSAGE:
-                     processConsoleOutput(msg);
-                     break;
-                  case NXCPCodes.CMD_IMAGE_LIBRARY_UPDATE:
-                     processImageLibraryUpdate(msg);
-                     break;
-                  case NXCPCodes.CMD_GRAPH_UPDATE:
-                     GraphDefinition graph = GraphDefinition.createGraphSettings(msg, NXCPCodes.VID_GRAPH_LIST_BASE);
-                     sendNotification(new SessionNotification(SessionNotification.PREDEFINED_GRAPHS_CHANGED, graph.getId(), graph));
-                     break;
-                  case NXCPCodes.CMD_ALARM_CATEGORY_UPDATE:
-                     processAlarmCategoryConfigChange(msg);
-                     break;
-                  case NXCPCodes.CMD_THRESHOLD_UPDATE:
-                     processThresholdChange(msg);
-                     break;
-                  case NXCPCodes.CMD_TCP_PROXY_DATA:
-                     processTcpProxyData((int)msg.getMessageId(), msg.getBinaryData());
-                     break;
-                  case NXCPCodes.CMD_CLOSE_TCP_PROXY:
-                     processTcpProxyClosure(msg.getFieldAsInt32(NXCPCodes.VID_CHANNEL_ID), msg.getFieldAsInt32(NXCPCodes.VID_RCC));
-                     break;
-                  case NXCPCodes.CMD_MODIFY_NODE_DCI:
-                     DataCollectionObject dco;
-                     int type = msg.getFieldAsInt32(NXCPCodes.VID_DCOBJECT_TYPE);
-                     switch(type)
-                     {
-                        case DataCollectionObject.DCO_TYPE_ITEM:
-                           dco = new DataCollectionItem(null, msg);
-                           break;
-                        case DataCollectionObject.DCO_TYPE_TABLE:
-                           dco = new DataCollectionTable(null, msg);
-                           break;
-                        default:
-                           dco = null;
-                           break;
-                     }
-                     sendNotification(
-                           new SessionNotification(SessionNotification.DCI_UPDATE, msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
-                                 dco));
-                     break;
-                  case NXCPCodes.CMD_DELETE_NODE_DCI:
-                     sendNotification(
-                           new SessionNotification(SessionNotification.DCI_DELETE, msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
-                                 (Long)msg.getFieldAsInt64(NXCPCodes.VID_DCI_ID)));
-                     break;
-                  case NXCPCodes.CMD_SET_DCI_STATUS:
-                     int itemCount = msg.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
-                     final long[] itemList = new long[itemCount];
-                     int pos = 0;
-                     for(int i = 0; i < itemCount; i++)
-                     {
-                        itemList[pos++] = msg.getFieldAsInt32(NXCPCodes.VID_ITEM_LIST + i);
-                     }
-                     sendNotification(new SessionNotification(SessionNotification.DCI_STATE_CHANGE,
-                           msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
-                           new DCOStatusHolder(itemList, msg.getFieldAsInt32(NXCPCodes.VID_DCI_STATUS))));
-                     break;
-                  case NXCPCodes.CMD_UPDATE_AGENT_POLICY:
-                     sendNotification(new SessionNotification(SessionNotification.POLICY_MODIFIED,
-                           msg.getFieldAsInt64(NXCPCodes.VID_TEMPLATE_ID), new AgentPolicy(msg)));
-                     break;
-                  case NXCPCodes.CMD_DELETE_AGENT_POLICY:
-                     sendNotification(new SessionNotification(SessionNotification.POLICY_DELETED,
-                           msg.getFieldAsInt64(NXCPCodes.VID_TEMPLATE_ID), msg.getFieldAsUUID(NXCPCodes.VID_GUID)));
-                     break;
-                  case NXCPCodes.CMD_UPDATE_SYSTEM_ACCESS_RIGHTS:
-                     userSystemRights = msg.getFieldAsInt64(NXCPCodes.VID_USER_SYS_RIGHTS);
-                     sendNotification(new SessionNotification(SessionNotification.SYSTEM_ACCESS_CHANGED, userSystemRights));
-                     break;
-                  case NXCPCodes.CMD_UPDATE_BIZSVC_CHECK:
-                     sendNotification(
-                           new SessionNotification(SessionNotification.BIZSVC_CHECK_MODIFIED, msg.getFieldAsInt64(NXCPCodes.VID_CHECK_LIST_BASE),
-                                 new BusinessServiceCheck(msg, NXCPCodes.VID_CHECK_LIST_BASE)));
-                     break;
-                  case NXCPCodes.CMD_DELETE_BIZSVC_CHECK:
-                     sendNotification(new SessionNotification(SessionNotification.BIZSVC_CHECK_DELETED, msg.getFieldAsInt64(NXCPCodes.VID_CHECK_ID)));
-                     break;
-                  case NXCPCodes.CMD_AGENT_TUNNEL_UPDATE:
-                     sendNotification(
-                           new SessionNotification(msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE, new AgentTunnel(msg, NXCPCodes.VID_ELEMENT_LIST_BASE)));
-                     break;
-                  default:
-                     // Check subscriptions
-                     synchronized(messageSubscriptions)
-                     {
-                        MessageSubscription s = new MessageSubscription(msg.getMessageCode(), msg.getMessageId());
-                        MessageHandler handler = messageSubscriptions.get(s);
-                        if (handler != null)
-                        {
-                           if (handler.processMessage(msg))
-                              msg = null;
-                           if (handler.isComplete())
-                              messageSubscriptions.remove(s);
-                           else
-                              handler.setLastMessageTimestamp(System.currentTimeMillis());
-                        }
-                     }
-                     if (msg != null)
-                     {
-                        if (msg.getMessageCode() >= 0x1000)
-                        {
-                           // Custom message
-                           sendNotification(new SessionNotification(SessionNotification.CUSTOM_MESSAGE, msg));
-                        }
-                        msgWaitQueue.putMessage(msg);
-                     }
-                     break;
-               }
+               messageProcessor.processMessage(msg);
             }
             catch(IOException e)
             {
@@ -769,15 +549,306 @@ public void run()
             }
          }
 
-         synchronized(tcpProxies)
+         logger.info("Network receiver thread stopped: " + receiver);
+         receiverStopped();
+         receiver.release();
+      }
+   }
+
+   /**
+    * Connection handler for shared event loop mode
+    */
+   private class EventLoopHandler implements NXCPEventLoop.Handler
+   {
+      /**
+       * @see org.netxms.base.NXCPEventLoop.Handler#getEncryptionContext()
+       */
+      @Override
+      public EncryptionContext getEncryptionContext()
+      {
+         return encryptionContext;
+      }
+
+      /**
+       * @see org.netxms.base.NXCPEventLoop.Handler#onMessage(org.netxms.base.NXCPMessage)
+       */
+      @Override
+      public void onMessage(NXCPMessage msg) throws Exception
+      {
+         try
+         {
+            messageProcessor.processMessage(msg);
+         }
+         catch(NXCException e)
          {
-            Throwable cause = (receiverStopCause != null) ? receiverStopCause : new NXCPException(NXCPException.SESSION_CLOSED);
-            for(TcpProxy p : tcpProxies.values())
-               p.abort(cause);
+            if (e.getErrorCode() != RCC.ENCRYPTION_ERROR)
+               throw e;
+            logger.debug("Receiver error", e);
+            NXCPEventLoop.Connection c = loopConnection;
+            if (c != null)
+               c.close(e);
          }
+      }
 
-         logger.info("Network receiver thread stopped");
-         msgWaitQueue.shutdown();
+      /**
+       * @see org.netxms.base.NXCPEventLoop.Handler#onClose(java.lang.Throwable)
+       */
+      @Override
+      public void onClose(Throwable cause)
+      {
+         if (cause != null)
+            receiverStopCause = cause;
+         logger.info("Network connection closed: " + msgReceiver);
+         receiverStopped();
+      }
+   }
+
+   /**
+    * Processor for messages received from server
+    */
+   private class MessageProcessor
+   {
+      /**
+       * Process message received from server.
+       *
+       * @param msg received message
+       * @throws IOException if socket I/O error occurs
+       * @throws NXCException if message cannot be processed
+       */
+      void processMessage(NXCPMessage msg) throws IOException, NXCException
+      {
+         switch(msg.getMessageCode())
+         {
+            case NXCPCodes.CMD_REQUEST_SESSION_KEY:
+               setupEncryption(msg);
+               break;
+            case NXCPCodes.CMD_KEEPALIVE:
+               serverTime = msg.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000;
+               serverTimeRecvTime = System.currentTimeMillis();
+               break;
+            case NXCPCodes.CMD_OBJECT:
+            case NXCPCodes.CMD_OBJECT_UPDATE:
+               if (!msg.getFieldAsBoolean(NXCPCodes.VID_IS_DELETED))
+               {
+                  final AbstractObject obj = createObjectFromMessage(msg);
+                  objectCache.put(obj);
+                  if (msg.getMessageCode() == NXCPCodes.CMD_OBJECT_UPDATE)
+                  {
+                     sendNotification(new SessionNotification(SessionNotification.OBJECT_CHANGED, obj.getObjectId(), obj));
+                  }
+               }
+               else
+               {
+                  long objectId = msg.getFieldAsInt32(NXCPCodes.VID_OBJECT_ID);
+                  objectCache.remove(objectId);
+                  sendNotification(new SessionNotification(SessionNotification.OBJECT_DELETED, objectId));
+               }
+               break;
+            case NXCPCodes.CMD_OBJECT_LIST_END:
+               completeSync(syncObjects);
+               break;
+            case NXCPCodes.CMD_OBJECT_CATEGORY_UPDATE:
+               processObjectCategoryUpdate(msg);
+               break;
+            case NXCPCodes.CMD_GEO_AREA_UPDATE:
+               processGeoAreaUpdate(msg);
+               break;
+            case NXCPCodes.CMD_USER_DATA:
+               final User user = new User(msg);
+               synchronized(userDatabase)
+               {
+                  if (user.isDeleted())
+                  {
+                     AbstractUserObject o = userDatabase.remove(user.getId());
+                     if (o != null)
+                        userDatabaseGUID.remove(o.getGuid());
+                     missingUsers.add(user.getId());
+                  }
+                  else
+                  {
+                     userDatabase.put(user.getId(), user);
+                     userDatabaseGUID.put(user.getGuid(), user);
+                     missingUsers.remove(user.getId());
+                  }
+               }
+               break;
+            case NXCPCodes.CMD_GROUP_DATA:
+               final UserGroup group = new UserGroup(msg);
+               synchronized(userDatabase)
+               {
+                  if (group.isDeleted())
+                  {
+                     AbstractUserObject o = userDatabase.remove(group.getId());
+                     if (o != null)
+                        userDatabaseGUID.remove(o.getGuid());
+                     missingUsers.add(group.getId());
+                  }
+                  else
+                  {
+                     userDatabase.put(group.getId(), group);
+                     userDatabaseGUID.put(group.getGuid(), group);
+                     missingUsers.add(group.getId());
+                  }
+               }
+               break;
+            case NXCPCodes.CMD_USER_DB_EOF:
+               completeSync(syncUserDB);
+               break;
+            case NXCPCodes.CMD_USER_DB_UPDATE:
+               processUserDBUpdate(msg);
+               break;
+            case NXCPCodes.CMD_ALARM_UPDATE:
+               sendNotification(new SessionNotification(
+                     msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE, new Alarm(msg)));
+               break;
+            case NXCPCodes.CMD_BULK_ALARM_STATE_CHANGE:
+               processBulkAlarmStateChange(msg);
+               break;
+            case NXCPCodes.CMD_JOB_CHANGE_NOTIFICATION:
+               sendNotification(new SessionNotification(SessionNotification.JOB_CHANGE, new ServerJob(msg)));
+               break;
+            case NXCPCodes.CMD_FILE_DATA:
+               processFileData(msg);
+               break;
+            case NXCPCodes.CMD_FILE_MONITORING:
+               processFileTail(msg);
+               break;
+            case NXCPCodes.CMD_ABORT_FILE_TRANSFER:
+               processFileTransferError(msg);
+               break;
+            case NXCPCodes.CMD_NOTIFY:
+               processNotificationMessage(msg, true);
+               break;
+            case NXCPCodes.CMD_RS_NOTIFY:
+               processNotificationMessage(msg, false);
+               break;
+            case NXCPCodes.CMD_EVENTLOG_RECORDS:
+               processNewEvents(msg);
+               break;
+            case NXCPCodes.CMD_TRAP_LOG_RECORDS:
+               processNewTraps(msg);
+               break;
+            case NXCPCodes.CMD_SYSLOG_RECORDS:
+               processSyslogRecords(msg);
+               break;
+            case NXCPCodes.CMD_ACTION_DB_UPDATE:
+               processActionConfigChange(msg);
+               break;
+            case NXCPCodes.CMD_EVENT_DB_UPDATE:
+               processEventConfigChange(msg);
+               break;
+            case NXCPCodes.CMD_TRAP_CFG_UPDATE:
+               processTrapConfigChange(msg);
+               break;
+            case NXCPCodes.CMD_ADM_MESSAGE:
+               processConsoleOutput(msg);
+               break;
+            case NXCPCodes.CMD_IMAGE_LIBRARY_UPDATE:
+               processImageLibraryUpdate(msg);
+               break;
+            case NXCPCodes.CMD_GRAPH_UPDATE:
+               GraphDefinition graph = GraphDefinition.createGraphSettings(msg, NXCPCodes.VID_GRAPH_LIST_BASE);
+               sendNotification(new SessionNotification(SessionNotification.PREDEFINED_GRAPHS_CHANGED, graph.getId(), graph));
+               break;
+            case NXCPCodes.CMD_ALARM_CATEGORY_UPDATE:
+               processAlarmCategoryConfigChange(msg);
+               break;
+            case NXCPCodes.CMD_THRESHOLD_UPDATE:
+               processThresholdChange(msg);
+               break;
+            case NXCPCodes.CMD_TCP_PROXY_DATA:
+               processTcpProxyData((int)msg.getMessageId(), msg.getBinaryData());
+               break;
+            case NXCPCodes.CMD_CLOSE_TCP_PROXY:
+               processTcpProxyClosure(msg.getFieldAsInt32(NXCPCodes.VID_CHANNEL_ID), msg.getFieldAsInt32(NXCPCodes.VID_RCC));
+               break;
+            case NXCPCodes.CMD_MODIFY_NODE_DCI:
+               DataCollectionObject dco;
+               int type = msg.getFieldAsInt32(NXCPCodes.VID_DCOBJECT_TYPE);
+               switch(type)
+               {
+                  case DataCollectionObject.DCO_TYPE_ITEM:
+                     dco = new DataCollectionItem(null, msg);
+                     break;
+                  case DataCollectionObject.DCO_TYPE_TABLE:
+                     dco = new DataCollectionTable(null, msg);
+                     break;
+                  default:
+                     dco = null;
+                     break;
+               }
+               sendNotification(
+                     new SessionNotification(SessionNotification.DCI_UPDATE, msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
+                           dco));
+               break;
+            case NXCPCodes.CMD_DELETE_NODE_DCI:
+               sendNotification(
+                     new SessionNotification(SessionNotification.DCI_DELETE, msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
+                           (Long)msg.getFieldAsInt64(NXCPCodes.VID_DCI_ID)));
+               break;
+            case NXCPCodes.CMD_SET_DCI_STATUS:
+               int itemCount = msg.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
+               final long[] itemList = new long[itemCount];
+               int pos = 0;
+               for(int i = 0; i < itemCount; i++)
+               {
+                  itemList[pos++] = msg.getFieldAsInt32(NXCPCodes.VID_ITEM_LIST + i);
+               }
+               sendNotification(new SessionNotification(SessionNotification.DCI_STATE_CHANGE,
+                     msg.getFieldAsInt64(NXCPCodes.VID_OBJECT_ID),
+                     new DCOStatusHolder(itemList, msg.getFieldAsInt32(NXCPCodes.VID_DCI_STATUS))));
+               break;
+            case NXCPCodes.CMD_UPDATE_AGENT_POLICY:
+               sendNotification(new SessionNotification(SessionNotification.POLICY_MODIFIED,
+                     msg.getFieldAsInt64(NXCPCodes.VID_TEMPLATE_ID), new AgentPolicy(msg)));
+               break;
+            case NXCPCodes.CMD_DELETE_AGENT_POLICY:
+               sendNotification(new SessionNotification(SessionNotification.POLICY_DELETED,
+                     msg.getFieldAsInt64(NXCPCodes.VID_TEMPLATE_ID), msg.getFieldAsUUID(NXCPCodes.VID_GUID)));
+               break;
+            case NXCPCodes.CMD_UPDATE_SYSTEM_ACCESS_RIGHTS:
+               userSystemRights = msg.getFieldAsInt64(NXCPCodes.VID_USER_SYS_RIGHTS);
+               sendNotification(new SessionNotification(SessionNotification.SYSTEM_ACCESS_CHANGED, userSystemRights));
+               break;
+            case NXCPCodes.CMD_UPDATE_BIZSVC_CHECK:
+               sendNotification(
+                     new SessionNotification(SessionNotification.BIZSVC_CHECK_MODIFIED, msg.getFieldAsInt64(NXCPCodes.VID_CHECK_LIST_BASE),
+                           new BusinessServiceCheck(msg, NXCPCodes.VID_CHECK_LIST_BASE)));
+               break;
+            case NXCPCodes.CMD_DELETE_BIZSVC_CHECK:
+               sendNotification(new SessionNotification(SessionNotification.BIZSVC_CHECK_DELETED, msg.getFieldAsInt64(NXCPCodes.VID_CHECK_ID)));
+               break;
+            case NXCPCodes.CMD_AGENT_TUNNEL_UPDATE:
+               sendNotification(
+                     new SessionNotification(msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE, new AgentTunnel(msg, NXCPCodes.VID_ELEMENT_LIST_BASE)));
+               break;
+            default:
+               // Check subscriptions
+               synchronized(messageSubscriptions)
+               {
+                  MessageSubscription s = new MessageSubscription(msg.getMessageCode(), msg.getMessageId());
+                  MessageHandler handler = messageSubscriptions.get(s);
+                  if (handler != null)
+                  {
+                     if (handler.processMessage(msg))
+                        msg = null;
+                     if (handler.isComplete())
+                        messageSubscriptions.remove(s);
+                     else
+                        handler.setLastMessageTimestamp(System.currentTimeMillis());
+                  }
+               }
+               if (msg != null)
+               {
+                  if (msg.getMessageCode() >= 0x1000)
+                  {
+                     // Custom message
+                     sendNotification(new SessionNotification(SessionNotification.CUSTOM_MESSAGE, msg));
+                  }
+                  msgWaitQueue.putMessage(msg);
+               }
+               break;
+         }
       }
 
       /**
@@ -1184,6 +1255,107 @@ private void processTcpProxyClosure(int channelId, int rcc)
       }
    }
 
+   /**
+    * Handle receiver stop - abort TCP proxies and release threads waiting for messages.
+    */
+   private void receiverStopped()
+   {
+      synchronized(tcpProxies)
+      {
+         Throwable cause = (receiverStopCause != null) ? receiverStopCause : new NXCPException(NXCPException.SESSION_CLOSED);
+         for(TcpProxy p : tcpProxies.values())
+            p.abort(cause);
+      }
+
+      NXCPMsgWaitQueue queue = msgWaitQueue;
+      if (queue != null)
+         queue.shutdown();
+   }
+
+   /**
+    * Handle write error reported by message writer. Connection cannot be used after failed write, so all threads waiting
+    * for replies are released immediately with communication failure and connection is closed, which also stops receiver.
+    *
+    * @param e write error
+    */
+   private void writerFailed(IOException e)
+   {
+      logger.debug("Sender error", e);
+      if (receiverStopCause == null)
+         receiverStopCause = e;
+
+      NXCPMsgWaitQueue queue = msgWaitQueue;
+      if (queue != null)
+         queue.shutdown();
+
+      NXCPEventLoop.Connection c = loopConnection;
+      if (c != null)
+      {
+         c.close(e);
+      }
+      else
+      {
+         Socket s = socket;
+         if (s != null)
+         {
+            try
+            {
+               s.close();
+            }
+            catch(IOException ce)
+            {
+            }
+         }
+      }
+   }
+
+   /**
+    * Run housekeeping tasks - clean received files and check timeouts on message subscriptions.
+    */
+   private void runHousekeeper()
+   {
+      long currTime = System.currentTimeMillis();
+
+      // Check for old entries in received files (files are deleted outside lock)
+      List<NXCReceivedFile> expiredFiles = null;
+      synchronized(receivedFiles)
+      {
+         Iterator<NXCReceivedFile> it = receivedFiles.values().iterator();
+         while(it.hasNext())
+         {
+            NXCReceivedFile file = it.next();
+            if (file.getTimestamp() + RECEIVED_FILE_TTL < currTime)
+            {
+               if (expiredFiles == null)
+                  expiredFiles = new ArrayList<NXCReceivedFile>();
+               expiredFiles.add(file);
+               it.remove();
+            }
+         }
+      }
+      if (expiredFiles != null)
+      {
+         for(NXCReceivedFile file : expiredFiles)
+            file.getFile().delete();
+      }
+
+      // Check timeouts on message subscriptions
+      synchronized(messageSubscriptions)
+      {
+         Iterator<Entry<MessageSubscription, MessageHandler>> it = messageSubscriptions.entrySet().iterator();
+         while(it.hasNext())
+         {
+            Entry<MessageSubscription, MessageHandler> e = it.next();
+            MessageHandler h = e.getValue();
+            if (currTime - h.getLastMessageTimestamp() > h.getMessageWaitTimeout())
+            {
+               h.setExpired();
+               it.remove();
+            }
+         }
+      }
+   }
+
    /**
     * Housekeeper thread - cleans received files, etc.
     *
@@ -1214,39 +1386,7 @@ public void run()
             catch(InterruptedException e)
             {
             }
-
-            long currTime = System.currentTimeMillis();
-
-            // Check for old entries in received files
-            synchronized(receivedFiles)
-            {
-               Iterator<NXCReceivedFile> it = receivedFiles.values().iterator();
-               while(it.hasNext())
-               {
-                  NXCReceivedFile file = it.next();
-                  if (file.getTimestamp() + RECEIVED_FILE_TTL < currTime)
-                  {
-                     file.getFile().delete();
-                     it.remove();
-                  }
-               }
-            }
-
-            // Check timeouts on message subscriptions
-            synchronized(messageSubscriptions)
-            {
-               Iterator<Entry<MessageSubscription, MessageHandler>> it = messageSubscriptions.entrySet().iterator();
-               while(it.hasNext())
-               {
-                  Entry<MessageSubscription, MessageHandler> e = it.next();
-                  MessageHandler h = e.getValue();
-                  if (currTime - h.getLastMessageTimestamp() > h.getMessageWaitTimeout())
-                  {
-                     h.setExpired();
-                     it.remove();
-                  }
-               }
-            }
+            runHousekeeper();
          }
       }
 
@@ -1260,24 +1400,29 @@ public void setStopFlag(boolean stopFlag)
    }
 
    /**
-    * Notification processor
+    * Notification processor. Notifications are processed either by dedicated thread or, when session uses shared event
+    * loop, by drain task submitted to event loop's task executor (listeners may block, so worker pool is not used).
     */
-   private class NotificationProcessor extends Thread
+   private class NotificationProcessor
    {
       private SessionListener[] cachedListenerList = new SessionListener[0];
+      private AtomicBoolean drainScheduled = new AtomicBoolean(false);
+      private volatile boolean stopped = false;
 
-      NotificationProcessor()
+      /**
+       * Start dedicated processing thread.
+       */
+      void startThread()
       {
-         setName("Session Notification Processor");
-         setDaemon(true);
-         start();
+         Thread thread = new Thread(() -> run(), "Session Notification Processor");
+         thread.setDaemon(true);
+         thread.start();
       }
 
       /**
-       * @see java.lang.Thread#run()
+       * Processing thread main loop
        */
-      @Override
-      public void run()
+      private void run()
       {
          while(true)
          {
@@ -1291,35 +1436,81 @@ public void run()
                continue;
             }
 
-            if (n.getCode() == SessionNotification.STOP_PROCESSING_THREAD)
+            if (!processNotification(n))
                break;
+         }
+         cachedListenerList = null;
+      }
+
+      /**
+       * Schedule drain task on event loop task executor if it is not scheduled already (shared event loop mode).
+       */
+      void scheduleDrain()
+      {
+         if (!stopped && drainScheduled.compareAndSet(false, true))
+            eventLoop.getTaskExecutor().execute(() -> drain());
+      }
 
-            if (n.getCode() == SessionNotification.UPDATE_LISTENER_LIST)
+      /**
+       * Process all queued notifications (shared event loop mode).
+       */
+      private void drain()
+      {
+         while(true)
+         {
+            SessionNotification n = notificationQueue.poll();
+            if (n == null)
             {
-               synchronized(listeners)
-               {
-                  cachedListenerList = listeners.toArray(new SessionListener[listeners.size()]);
-               }
+               drainScheduled.set(false);
+               if (notificationQueue.isEmpty() || !drainScheduled.compareAndSet(false, true))
+                  return;
                continue;
             }
+            if (!processNotification(n))
+            {
+               stopped = true;
+               cachedListenerList = null;
+               return;
+            }
+         }
+      }
+
+      /**
+       * Process single notification.
+       *
+       * @param n notification
+       * @return false if processing should stop
+       */
+      private boolean processNotification(SessionNotification n)
+      {
+         if (n.getCode() == SessionNotification.STOP_PROCESSING_THREAD)
+            return false;
 
-            // loop must be on listeners set copy to prevent 
-            // possible deadlock when one of the listeners calls 
-            // syncExec on UI thread while UI thread trying to add
-            // new listener and stays locked inside addListener
-            for(SessionListener l : cachedListenerList)
+         if (n.getCode() == SessionNotification.UPDATE_LISTENER_LIST)
+         {
+            synchronized(listeners)
             {
-               try
-               {
-                  l.notificationHandler(n);
-               }
-               catch(Exception e)
-               {
-                  logger.error("Unhandled exception in notification handler", e);
-               }
+               cachedListenerList = listeners.toArray(new SessionListener[listeners.size()]);
             }
+            return true;
          }
-         cachedListenerList = null;
+
+         // loop must be on listeners set copy to prevent 
+         // possible deadlock when one of the listeners calls 
+         // syncExec on UI thread while UI thread trying to add
+         // new listener and stays locked inside addListener
+         for(SessionListener l : cachedListenerList)
+         {
+            try
+            {
+               l.notificationHandler(n);
+            }
+            catch(Exception e)
+            {
+               logger.error("Unhandled exception in notification handler", e);
+            }
+         }
+         return true;
       }
    }
    
@@ -1367,30 +1558,39 @@ public void run()
             {
             }
 
-            Set<Long> userSyncListCopy;
-            List<Runnable> callbackListCopy;
-            synchronized(userSyncList)
-            {
-               userSyncListCopy = userSyncList;
-               userSyncList = new HashSet<Long>();
-               callbackListCopy = callbackList;
-               callbackList = new ArrayList<Runnable>();
-            }
-
-            try
-            {
-               syncMissingUsers(userSyncListCopy);
-               for(Runnable cb : callbackListCopy)
-                  cb.run();
-            }
-            catch(Exception e)
-            {
-               logger.error("Exception while synchronizing user database objects", e);
-            }
+            syncPendingUsers();
          }         
       }
    }
 
+   /**
+    * Synchronize users requested for background synchronization and call registered callbacks.
+    */
+   private void syncPendingUsers()
+   {
+      Set<Long> userSyncListCopy;
+      List<Runnable> callbackListCopy;
+      synchronized(userSyncList)
+      {
+         userSyncScheduled.set(false);
+         userSyncListCopy = userSyncList;
+         userSyncList = new HashSet<Long>();
+         callbackListCopy = callbackList;
+         callbackList = new ArrayList<Runnable>();
+      }
+
+      try
+      {
+         syncMissingUsers(userSyncListCopy);
+         for(Runnable cb : callbackListCopy)
+            cb.run();
+      }
+      catch(Exception e)
+      {
+         logger.error("Exception while synchronizing user database objects", e);
+      }
+   }
+
    /**
     * Create session object that will connect to given address on default port (4701) without encryption.
     * 
@@ -1427,6 +1627,22 @@ public NXCSession(String connAddress, int connPort, boolean connUseEncryption)
       ouiCache = new OUICache(this);
    }
 
+   /**
+    * Create session object that will connect to given address on given port and use shared event loop for network I/O,
+    * notification processing and housekeeping instead of dedicated threads. This allows many sessions within one process
+    * to be served by fixed number of threads.
+    * 
+    * @param connAddress server host name or IP address
+    * @param connPort TCP port
+    * @param connUseEncryption setup encrypted session if true
+    * @param eventLoop shared event loop to use (if null, session will use dedicated threads)
+    */
+   public NXCSession(String connAddress, int connPort, boolean connUseEncryption, NXCPEventLoop eventLoop)
+   {
+      this(connAddress, connPort, connUseEncryption);
+      this.eventLoop = eventLoop;
+   }
+
    /**
     * Create custom object from NXCP message. May be overridden by derived classes to create custom
     * NetXMS objects. This method called before standard object creation, so it can be used for
@@ -1642,7 +1858,7 @@ public void addListener(SessionListener listener)
          changed = listeners.add(listener);
       }
       if (changed)
-         notificationQueue.offer(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
+         queueNotification(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
    }
 
    /**
@@ -1658,7 +1874,7 @@ public void removeListener(SessionListener listener)
          changed = listeners.remove(listener);
       }
       if (changed)
-         notificationQueue.offer(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
+         queueNotification(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
    }
 
    /**
@@ -1723,26 +1939,42 @@ public void removeMessageSubscription(int messageCode, long messageId)
     */
    protected void sendNotification(SessionNotification n)
    {
-      if (!notificationQueue.offer(n))
+      if (!queueNotification(n))
       {
          logger.warn("Notification processing queue is full");
       }
    }
 
    /**
-    * Send message to server
+    * Put notification into processing queue.
+    *
+    * @param n notification
+    * @return true if notification was queued
+    */
+   private boolean queueNotification(SessionNotification n)
+   {
+      if (!notificationQueue.offer(n))
+         return false;
+      if (eventLoop != null)
+         notificationProcessor.scheduleDrain();
+      return true;
+   }
+
+   /**
+    * Send message to server. Message is encoded (and encrypted if needed) in calling thread and then queued for writing
+    * to the socket by session's writer thread.
     *
     * @param msg Message to sent
     * @throws IOException  in case of socket communication failure
     * @throws NXCException in case of encryption error
     */
-   public synchronized void sendMessage(final NXCPMessage msg) throws IOException, NXCException
+   public void sendMessage(final NXCPMessage msg) throws IOException, NXCException
    {
-      if (socket == null)
+      final NXCPMessageWriter writer = msgWriter;
+      if (writer == null)
       {
          throw new IllegalStateException("Not connected to the server. Did you forgot to call connect() first?");
       }
-      final OutputStream outputStream = socket.getOutputStream();
       byte[] message;
       if ((encryptionContext != null) && !msg.isEncryptionDisabled())
       {
@@ -1759,7 +1991,29 @@ public synchronized void sendMessage(final NXCPMessage msg) throws IOException,
       {
          message = msg.createNXCPMessage(allowCompression);
       }
-      outputStream.write(message);
+      writer.send(message);
+   }
+
+   /**
+    * Get outbound message writer for this session (can be used for retrieving send statistics, like queue depth and
+    * send rate).
+    *
+    * @return outbound message writer or null if session is not connected
+    */
+   public NXCPMessageWriter getMessageWriter()
+   {
+      return msgWriter;
+   }
+
+   /**
+    * Get inbound message receiver for this session (can be used for retrieving receive statistics, like number of
+    * received messages and bytes, and receive buffer growths).
+    *
+    * @return inbound message receiver or null if session is not connected
+    */
+   public NXCPMessageReceiver getMessageReceiver()
+   {
+      return msgReceiver;
    }
    
    /**
@@ -1954,7 +2208,18 @@ public NXCPMessage waitForRCC(final long id) throws NXCException
     */
    public NXCPMessage waitForRCC(final long id, final int timeout) throws NXCException
    {
-      final NXCPMessage msg = waitForMessage(NXCPCodes.CMD_REQUEST_COMPLETED, id, timeout);
+      return checkRCC(waitForMessage(NXCPCodes.CMD_REQUEST_COMPLETED, id, timeout));
+   }
+
+   /**
+    * Check RCC in received CMD_REQUEST_COMPLETED message.
+    *
+    * @param msg received message
+    * @return same message
+    * @throws NXCException if message contains RCC other than RCC.SUCCESS
+    */
+   private static NXCPMessage checkRCC(final NXCPMessage msg) throws NXCException
+   {
       final int rcc = msg.getFieldAsInt32(NXCPCodes.VID_RCC);
       if (rcc != RCC.SUCCESS && rcc != RCC.FILE_APPEND_POSSIBLE)
       {
@@ -1981,6 +2246,77 @@ else if (msg.findField(NXCPCodes.VID_VALUE) != null)
       return msg;
    }
 
+   /**
+    * Wait asynchronously for message with specific code and id. Returned future is completed by network receiver thread, so
+    * dependent actions should not block. Future completes exceptionally with NXCException if message was not arrived within
+    * timeout interval. If caller completes returned future exceptionally (for example cancels it), waiter is removed from
+    * wait queue.
+    *
+    * @param code    Message code
+    * @param id      Message id
+    * @param timeout Wait timeout in milliseconds
+    * @return future for received message
+    */
+   public CompletableFuture<NXCPMessage> waitForMessageAsync(final int code, final long id, final int timeout)
+   {
+      final CompletableFuture<NXCPMessage> waiter = msgWaitQueue.waitForMessageAsync(code, id, timeout);
+      final CompletableFuture<NXCPMessage> future = waiter.thenApply((msg) -> {
+         if (msg == null)
+            throw new CompletionException((receiverStopCause != null) ? new NXCException(RCC.COMM_FAILURE, receiverStopCause) : new NXCException(RCC.TIMEOUT));
+         return msg;
+      });
+      future.whenComplete((msg, e) -> {
+         if (e != null)
+            waiter.cancel(false);
+      });
+      return future;
+   }
+
+   /**
+    * Wait asynchronously for CMD_REQUEST_COMPLETED message with given id. Future completes exceptionally with NXCException if
+    * message was not arrived within timeout interval or contains RCC other than RCC.SUCCESS.
+    *
+    * @param id      Message id
+    * @param timeout Timeout in milliseconds
+    * @return future for received message
+    */
+   public CompletableFuture<NXCPMessage> waitForRCCAsync(final long id, final int timeout)
+   {
+      return waitForMessageAsync(NXCPCodes.CMD_REQUEST_COMPLETED, id, timeout).thenApply((msg) -> {
+         try
+         {
+            return checkRCC(msg);
+         }
+         catch(NXCException e)
+         {
+            throw new CompletionException(e);
+         }
+      });
+   }
+
+   /**
+    * Send request to server and return future for request completion message (CMD_REQUEST_COMPLETED) without blocking
+    * calling thread. Many requests can be in flight at the same time over single session. Future completes exceptionally
+    * with IOException or NXCException if request cannot be sent, server returns an error or operation was timed out.
+    *
+    * @param msg request message
+    * @return future for request completion message
+    */
+   public CompletableFuture<NXCPMessage> sendRequestAsync(final NXCPMessage msg)
+   {
+      // Register waiter before sending so response cannot be missed
+      final CompletableFuture<NXCPMessage> future = waitForRCCAsync(msg.getMessageId(), msgWaitQueue.getDefaultTimeout());
+      try
+      {
+         sendMessage(msg);
+      }
+      catch(IOException | NXCException e)
+      {
+         future.completeExceptionally(e);
+      }
+      return future;
+   }
+
    /**
     * Create new NXCP message with unique id
     *
@@ -2151,13 +2487,47 @@ public void connect(int[] componentVersions) throws IOException, UnknownHostExce
       logger.info("Connecting to " + connAddress + ":" + connPort);
       try
       {
-         socket = new Socket();
-         socket.connect(new InetSocketAddress(connAddress, connPort), connectTimeout);
-         msgWaitQueue = new NXCPMsgWaitQueue(commandTimeout);
-         recvThread = new ReceiverThread();
-         housekeeperThread = new HousekeeperThread();
-         new NotificationProcessor();
-         new BackgroundUserSync();
+         if (eventLoop != null)
+         {
+            SocketChannel channel = SocketChannel.open();
+            socket = channel.socket();
+            socket.connect(new InetSocketAddress(connAddress, connPort), connectTimeout);
+            msgWaitQueue = new NXCPMsgWaitQueue(commandTimeout);
+            NXCPMessageReceiver receiver = new NXCPMessageReceiver(defaultRecvBufferSize, maxRecvBufferSize);
+            receiver.setLazyDecoding(true);
+            msgReceiver = receiver;
+            loopConnection = eventLoop.register(channel, receiver, new EventLoopHandler());
+            msgWriter = new NXCPMessageWriter(loopConnection.getOutputStream(), sendQueueSize, eventLoop.getWriterExecutor());
+            msgWriter.setErrorHandler((e) -> writerFailed(e));
+            housekeeperTask = eventLoop.scheduleAtFixedRate(() -> {
+               // Housekeeper deletes files, so it should not run on shared timer thread
+               if (housekeeperRunning.compareAndSet(false, true))
+               {
+                  eventLoop.getTaskExecutor().execute(() -> {
+                     try
+                     {
+                        runHousekeeper();
+                     }
+                     finally
+                     {
+                        housekeeperRunning.set(false);
+                     }
+                  });
+               }
+            }, 1, 1, TimeUnit.SECONDS);
+         }
+         else
+         {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(connAddress, connPort), connectTimeout);
+            msgWaitQueue = new NXCPMsgWaitQueue(commandTimeout);
+            msgWriter = new NXCPMessageWriter(socket.getOutputStream(), sendQueueSize, "Network Message Sender");
+            msgWriter.setErrorHandler((e) -> writerFailed(e));
+            recvThread = new ReceiverThread();
+            housekeeperThread = new HousekeeperThread();
+            notificationProcessor.startThread();
+            new BackgroundUserSync();
+         }
 
          // get server information
          logger.debug("Connection established, retrieving server info");
@@ -2496,6 +2866,26 @@ synchronized private void disconnect(int reason)
       if (disconnected)
          return;
 
+      if (msgWriter != null)
+      {
+         msgWriter.close(1000);
+         msgWriter = null;
+      }
+
+      if (housekeeperTask != null)
+      {
+         housekeeperTask.cancel(false);
+         housekeeperTask = null;
+      }
+
+      if (loopConnection != null)
+      {
+         // close() waits for input processing to complete, so receiver is not used after this point
+         loopConnection.close(null);
+         loopConnection.getReceiver().release();
+         loopConnection = null;
+      }
+
       if (socket != null)
       {
          try
@@ -2521,6 +2911,8 @@ synchronized private void disconnect(int reason)
       if (reason != SessionNotification.USER_DISCONNECT)
          notificationQueue.offer(new SessionNotification(reason));
       notificationQueue.offer(new SessionNotification(SessionNotification.STOP_PROCESSING_THREAD));
+      if (eventLoop != null)
+         notificationProcessor.scheduleDrain();
 
       if (recvThread != null)
       {
@@ -2568,9 +2960,7 @@ synchronized private void disconnect(int reason)
       messageSubscriptions.clear();
       receivedFiles.clear();
       receivedFileUpdates.clear();
-      objectList.clear();
-      objectListGUID.clear();
-      zoneList.clear();
+      objectCache.clear();
       eventTemplates.clear();
       userDatabase.clear();
       userDatabaseGUID.clear();
@@ -2845,6 +3235,17 @@ public void setConnectTimeout(int connectTimeout)
       this.connectTimeout = connectTimeout;
    }
 
+   /**
+    * Set maximum number of messages waiting in outbound queue (must be set before connect call). Sending threads will block
+    * when queue is full.
+    *
+    * @param sendQueueSize outbound queue size
+    */
+   public void setSendQueueSize(int sendQueueSize)
+   {
+      this.sendQueueSize = sendQueueSize;
+   }
+
    /**
     * Get identifier of logged in user.
     *
@@ -3216,15 +3617,12 @@ public void syncMissingObjects(long[] objects, boolean syncComments, int options
    {
       final long[] syncList = Arrays.copyOf(objects, objects.length);
       int count = syncList.length;
-      synchronized(objectList)
+      for(int i = 0; i < syncList.length; i++)
       {
-         for(int i = 0; i < syncList.length; i++)
+         if (objectCache.contains(syncList[i]))
          {
-            if (objectList.containsKey(syncList[i]))
-            {
-               syncList[i] = 0;
-               count--;
-            }
+            syncList[i] = 0;
+            count--;
          }
       }
 
@@ -3251,15 +3649,12 @@ public void syncMissingObjects(List<Long> objects, boolean syncComments, int opt
          syncList[i] = objects.get(i);
       
       int count = syncList.length;
-      synchronized(objectList)
+      for(int i = 0; i < syncList.length; i++)
       {
-         for(int i = 0; i < syncList.length; i++)
+         if (objectCache.contains(syncList[i]))
          {
-            if (objectList.containsKey(syncList[i]))
-            {
-               syncList[i] = 0;
-               count--;
-            }
+            syncList[i] = 0;
+            count--;
          }
       }
 
@@ -3322,19 +3717,40 @@ public List<AbstractObject> findObjectByRegex(String regex)
       List<AbstractObject> objects = new ArrayList<AbstractObject>();
       Matcher matcher = Pattern.compile(regex).matcher("");
       
-      synchronized(objectList)
+      for(AbstractObject o : getRegexCandidates(regex))
       {
-         for(AbstractObject o : objectList.values())
-         {
-            matcher.reset(o.getObjectName());
-            if (matcher.matches())
-               objects.add(o);
-         }
+         matcher.reset(o.getObjectName());
+         if (matcher.matches())
+            objects.add(o);
       }
       
       return objects;
    }   
 
+   /**
+    * Get identifiers of all direct and indirect parents of given object. Ancestor sets are memoized by object cache, so
+    * repeated calls are cheap. Returned array is sorted and must not be modified.
+    *
+    * @param objectId object ID
+    * @return sorted array of ancestor identifiers (empty array if object is unknown or has no parents)
+    */
+   public long[] getObjectAncestors(final long objectId)
+   {
+      return objectCache.getAncestors(objectId);
+   }
+
+   /**
+    * Check if one object is direct or indirect child of another.
+    *
+    * @param objectId object ID
+    * @param parentId ID of possible parent object
+    * @return true if object with ID <code>parentId</code> is direct or indirect parent of object with ID <code>objectId</code>
+    */
+   public boolean isObjectChildOf(final long objectId, final long parentId)
+   {
+      return objectCache.isAncestor(objectId, parentId);
+   }
+
    /**
     * Find NetXMS object by it's identifier.
     *
@@ -3343,10 +3759,7 @@ public List<AbstractObject> findObjectByRegex(String regex)
     */
    public AbstractObject findObjectById(final long id)
    {
-      synchronized(objectList)
-      {
-         return objectList.get(id);
-      }
+      return objectCache.get(id);
    }
 
    /**
@@ -3358,9 +3771,9 @@ public AbstractObject findObjectById(final long id)
    public FutureObject findFutureObjectById(final long id)
    {
       final FutureObject object;
-      synchronized(objectList)
+      synchronized(objectCache) // prevent object update between check and listener registration
       {
-         AbstractObject result = objectList.get(id);
+         AbstractObject result = objectCache.get(id);
          if (result == null)
          {
             object = new FutureObject();   
@@ -3399,9 +3812,9 @@ public void findObjectAsync(final long id, ObjectCreationListener callback)
       if (callback == null)
          return;
 
-      synchronized(objectList)
+      synchronized(objectCache) // prevent object update between check and listener registration
       {
-         AbstractObject object = objectList.get(id);
+         AbstractObject object = objectCache.get(id);
          if (object == null)
          { 
             addListener(new SessionListener() {
@@ -3462,20 +3875,16 @@ public List<AbstractObject> findMultipleObjects(final long[] idList, boolean ret
    public List<AbstractObject> findMultipleObjects(final long[] idList, Class<? extends AbstractObject> classFilter, boolean returnUnknown)
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>(idList.length);
-
-      synchronized(objectList)
+      for(int i = 0; i < idList.length; i++)
       {
-         for(int i = 0; i < idList.length; i++)
+         final AbstractObject object = objectCache.get(idList[i]);
+         if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
          {
-            final AbstractObject object = objectList.get(idList[i]);
-            if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
-            {
-               result.add(object);
-            }
-            else if (returnUnknown)
-            {
-               result.add(new UnknownObject(idList[i], this));
-            }
+            result.add(object);
+         }
+         else if (returnUnknown)
+         {
+            result.add(new UnknownObject(idList[i], this));
          }
       }
 
@@ -3505,20 +3914,16 @@ public List<AbstractObject> findMultipleObjects(final Collection<Long> idList, b
    public List<AbstractObject> findMultipleObjects(final Collection<Long> idList, Class<? extends AbstractObject> classFilter, boolean returnUnknown)
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>(idList.size());
-
-      synchronized(objectList)
+      for(Long id : idList)
       {
-         for(Long id : idList)
+         final AbstractObject object = objectCache.get(id);
+         if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
          {
-            final AbstractObject object = objectList.get(id);
-            if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
-            {
-               result.add(object);
-            }
-            else if (returnUnknown)
-            {
-               result.add(new UnknownObject(id, this));
-            }
+            result.add(object);
+         }
+         else if (returnUnknown)
+         {
+            result.add(new UnknownObject(id, this));
          }
       }
 
@@ -3533,10 +3938,7 @@ else if (returnUnknown)
     */
    public AbstractObject findObjectByGUID(final UUID guid)
    {
-      synchronized(objectList)
-      {
-         return objectListGUID.get(guid);
-      }
+      return objectCache.getByGUID(guid);
    }
 
    /**
@@ -3562,10 +3964,7 @@ public <T extends AbstractObject> T findObjectByGUID(final UUID guid, final Clas
     */
    public Zone findZone(int zoneUIN)
    {
-      synchronized(objectList)
-      {
-         return zoneList.get(zoneUIN);
-      }
+      return objectCache.getZone(zoneUIN);
    }
 
    /**
@@ -3575,10 +3974,7 @@ public Zone findZone(int zoneUIN)
     */
    public List<Zone> getAllZones()
    {
-      synchronized(objectList)
-      {
-         return new ArrayList<Zone>(zoneList.values());
-      }
+      return new ArrayList<Zone>(objectCache.getZones());
    }
 
    /**
@@ -3591,19 +3987,13 @@ public List<Zone> getAllZones()
     */
    public AbstractObject findObjectByName(final String name)
    {
-      AbstractObject result = null;
-      synchronized(objectList)
+      for(Long id : objectCache.getSearchIndex().findByName(name))
       {
-         for(AbstractObject object : objectList.values())
-         {
-            if (object.getObjectName().equalsIgnoreCase(name))
-            {
-               result = object;
-               break;
-            }
-         }
+         AbstractObject object = objectCache.get(id);
+         if ((object != null) && object.getObjectName().equalsIgnoreCase(name))
+            return object;
       }
-      return result;
+      return null;
    }
 
    /**
@@ -3616,72 +4006,192 @@ public AbstractObject findObjectByName(final String name)
     */
    public AbstractObject findObjectByName(final String name, ObjectFilter filter)
    {
-      AbstractObject result = null;
-      synchronized(objectList)
+      for(Long id : objectCache.getSearchIndex().findByName(name))
       {
-         for(AbstractObject object : objectList.values())
-         {
-            if (object.getObjectName().equalsIgnoreCase(name) && filter.filter(object))
-            {
-               result = object;
-               break;
-            }
-         }
+         AbstractObject object = objectCache.get(id);
+         if ((object != null) && object.getObjectName().equalsIgnoreCase(name) && filter.filter(object))
+            return object;
       }
-      return result;
+      return null;
    }
 
    /**
-    * Find object by name using regular expression. If multiple objects with same name exist,
-    * it is not determined what object will be returned. Name comparison is case-insensitive.
+    * Find all objects with name starting with given prefix. Name comparison is case-insensitive.
     *
-    * @param pattern regular expression for matching object name
-    * @return object with matching name or null
+    * @param prefix object name prefix
+    * @return list of objects with matching names (empty list if no matching objects found)
     */
-   public AbstractObject findObjectByNamePattern(final String pattern)
+   public List<AbstractObject> findObjectsByNamePrefix(final String prefix)
    {
-      AbstractObject result = null;
-      Matcher matcher = Pattern.compile(pattern).matcher("");
-      synchronized(objectList)
+      List<AbstractObject> result = new ArrayList<AbstractObject>();
+      for(Long id : objectCache.getSearchIndex().findByNamePrefix(prefix))
       {
-         for(AbstractObject object : objectList.values())
-         {
-            matcher.reset(object.getObjectName());
-            if (matcher.matches())
-            {
-               result = object;
-               break;
-            }
-         }
+         AbstractObject object = objectCache.get(id);
+         if (object != null)
+            result.add(object);
       }
       return result;
    }
 
    /**
-    * Generic object find using filter. WIll return first object matching given filter.
+    * Find all objects matching given search query. Object text used for matching is object name with alias. Supported
+    * attributes are "class", "status", "id", "alias", and custom attribute names. Candidate objects are selected using
+    * search index maintained by object cache, so only small subset of objects is usually checked against the query.
     *
-    * @param filter ObjectFilter to filter the result
-    * @return first matching object or null
+    * @param query search query
+    * @return list of matching objects (empty list if no matching objects found)
     */
-   public AbstractObject findObject(ObjectFilter filter)
+   public List<AbstractObject> findObjects(final SearchQuery query)
    {
-      AbstractObject result = null;
-      synchronized(objectList)
+      List<AbstractObject> result = new ArrayList<AbstractObject>();
+      Set<Long> candidates = query.selectCandidates(objectCache.getSearchIndex());
+      if (candidates != null)
       {
-         for(AbstractObject object : objectList.values())
+         for(Long id : candidates)
          {
-            if (filter.filter(object))
-            {
-               result = object;
-               break;
-            }
+            AbstractObject object = objectCache.get(id);
+            if ((object != null) && query.match(ObjectSearchIndex.createAttributeProvider(object)))
+               result.add(object);
+         }
+      }
+      else
+      {
+         for(AbstractObject object : objectCache.getObjects())
+         {
+            if (query.match(ObjectSearchIndex.createAttributeProvider(object)))
+               result.add(object);
          }
       }
       return result;
    }
 
    /**
-    * Find all objects matching given filter.
+    * Find all objects with given IP address. Node primary IP addresses, interface addresses, and access point addresses
+    * are checked.
+    *
+    * @param address IP address
+    * @return list of objects with given IP address (empty list if no matching objects found)
+    */
+   public List<AbstractObject> findObjectsByIP(final InetAddress address)
+   {
+      return objectCache.getByIP(address);
+   }
+
+   /**
+    * Find node with given primary IP address in given zone.
+    *
+    * @param zoneUIN zone UIN
+    * @param address IP address
+    * @return node with given primary IP address or null
+    */
+   public AbstractNode findNodeByPrimaryIP(int zoneUIN, final InetAddress address)
+   {
+      for(AbstractObject object : objectCache.getByIP(address))
+      {
+         if ((object instanceof AbstractNode) && (((AbstractNode)object).getZoneId() == zoneUIN) &&
+             address.equals(((AbstractNode)object).getPrimaryIP().getAddress()))
+            return (AbstractNode)object;
+      }
+      return null;
+   }
+
+   /**
+    * Find all objects with given MAC address. Interfaces, access points, and sensors are checked.
+    *
+    * @param address MAC address
+    * @return list of objects with given MAC address (empty list if no matching objects found)
+    */
+   public List<AbstractObject> findObjectsByMAC(final MacAddress address)
+   {
+      return objectCache.getByMAC(address);
+   }
+
+   /**
+    * Get objects that can match given regular expression for object name. If expression starts with literal prefix,
+    * only objects with names starting with that prefix (case-insensitive) are returned, otherwise all objects are returned.
+    *
+    * @param regex regular expression
+    * @return candidate objects
+    */
+   private Collection<AbstractObject> getRegexCandidates(String regex)
+   {
+      String prefix = getRegexLiteralPrefix(regex);
+      return prefix.isEmpty() ? objectCache.getObjects() : findObjectsByNamePrefix(prefix);
+   }
+
+   /**
+    * Get literal prefix of regular expression (part that any matching string must start with).
+    *
+    * @param regex regular expression
+    * @return literal prefix (empty string if there is none)
+    */
+   private static String getRegexLiteralPrefix(String regex)
+   {
+      // Alternation at any level can make prefix optional
+      if (regex.indexOf('|') != -1)
+         return "";
+
+      StringBuilder sb = new StringBuilder();
+      for(int i = (regex.startsWith("^") ? 1 : 0); i < regex.length(); i++)
+      {
+         char ch = regex.charAt(i);
+         if ("\\[](){}.*+?^$".indexOf(ch) != -1)
+         {
+            // Last literal character is optional or repeated if followed by quantifier
+            if (((ch == '*') || (ch == '?') || (ch == '{')) && (sb.length() > 0))
+               sb.setLength(sb.length() - 1);
+            break;
+         }
+         sb.append(ch);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Find object by name using regular expression. If multiple objects with same name exist,
+    * it is not determined what object will be returned. Name comparison is case-insensitive.
+    *
+    * @param pattern regular expression for matching object name
+    * @return object with matching name or null
+    */
+   public AbstractObject findObjectByNamePattern(final String pattern)
+   {
+      AbstractObject result = null;
+      Matcher matcher = Pattern.compile(pattern).matcher("");
+      for(AbstractObject object : getRegexCandidates(pattern))
+      {
+         matcher.reset(object.getObjectName());
+         if (matcher.matches())
+         {
+            result = object;
+            break;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Generic object find using filter. WIll return first object matching given filter.
+    *
+    * @param filter ObjectFilter to filter the result
+    * @return first matching object or null
+    */
+   public AbstractObject findObject(ObjectFilter filter)
+   {
+      AbstractObject result = null;
+      for(AbstractObject object : objectCache.getObjects())
+      {
+         if (filter.filter(object))
+         {
+            result = object;
+            break;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Find all objects matching given filter.
     *
     * @param filter ObjectFilter to filter the result
     * @return list of matching objects (empty list if nothing found)
@@ -3689,14 +4199,11 @@ public AbstractObject findObject(ObjectFilter filter)
    public List<AbstractObject> filterObjects(ObjectFilter filter)
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>();
-      synchronized(objectList)
+      for(AbstractObject object : objectCache.getObjects())
       {
-         for(AbstractObject object : objectList.values())
+         if (filter.filter(object))
          {
-            if (filter.filter(object))
-            {
-               result.add(object);
-            }
+            result.add(object);
          }
       }
       return result;
@@ -3713,45 +4220,42 @@ public List<AbstractObject> filterObjects(ObjectFilter filter)
    public AbstractObject[] getTopLevelObjects(Set<Integer> classFilter)
    {
       HashSet<AbstractObject> list = new HashSet<AbstractObject>();
-      synchronized(objectList)
+      for(AbstractObject object : objectCache.getObjects())
       {
-         for(AbstractObject object : objectList.values())
-         {
-            if ((classFilter != null) && !classFilter.contains(object.getObjectClass()))
-               continue;
+         if ((classFilter != null) && !classFilter.contains(object.getObjectClass()))
+            continue;
 
-            if (!object.hasParents())
-            {
-               list.add(object);
-            }
-            else
+         if (!object.hasParents())
+         {
+            list.add(object);
+         }
+         else
+         {
+            boolean hasParents = false;
+            Iterator<Long> it = object.getParents();
+            while(it.hasNext())
             {
-               boolean hasParents = false;
-               Iterator<Long> it = object.getParents();
-               while(it.hasNext())
+               Long parent = it.next();
+               if (classFilter != null)
                {
-                  Long parent = it.next();
-                  if (classFilter != null)
+                  AbstractObject p = objectCache.get(parent);
+                  if ((p != null) && classFilter.contains(p.getObjectClass()))
                   {
-                     AbstractObject p = objectList.get(parent);
-                     if ((p != null) && classFilter.contains(p.getObjectClass()))
-                     {
-                        hasParents = true;
-                        break;
-                     }
+                     hasParents = true;
+                     break;
                   }
-                  else
+               }
+               else
+               {
+                  if (objectCache.contains(parent))
                   {
-                     if (objectList.containsKey(parent))
-                     {
-                        hasParents = true;
-                        break;
-                     }
+                     hasParents = true;
+                     break;
                   }
                }
-               if (!hasParents)
-                  list.add(object);
             }
+            if (!hasParents)
+               list.add(object);
          }
       }
       return list.toArray(new AbstractObject[list.size()]);
@@ -3775,10 +4279,7 @@ public AbstractObject[] getTopLevelObjects()
     */
    public List<AbstractObject> getAllObjects()
    {
-      synchronized(objectList)
-      {
-         return new ArrayList<AbstractObject>(objectList.values());
-      }
+      return new ArrayList<AbstractObject>(objectCache.getObjects());
    }
 
    /**
@@ -3967,6 +4468,20 @@ public Alarm getAlarm(long alarmId) throws IOException, NXCException
       return new Alarm(response);
    }
 
+   /**
+    * Get information about single active alarm asynchronously. Terminated alarms cannot be accessed with this call.
+    *
+    * @param alarmId alarm ID
+    * @return future for alarm object
+    * @see #getAlarm(long)
+    */
+   public CompletableFuture<Alarm> getAlarmAsync(long alarmId)
+   {
+      NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_ALARM);
+      msg.setFieldInt32(NXCPCodes.VID_ALARM_ID, (int)alarmId);
+      return sendRequestAsync(msg).thenApply((response) -> new Alarm(response));
+   }
+
    /**
     * Get information about events related to single active alarm. Information for terminated alarms cannot be accessed with this call.
     * User must have "view alarms" permission on alarm's source node and "view event log" system-wide access.
@@ -4709,6 +5224,11 @@ public AbstractUserObject findUserDBObjectById(final long id, Runnable callback)
                callbackList.add(callback);
             userSyncList.notifyAll();
          }
+         if ((eventLoop != null) && userSyncScheduled.compareAndSet(false, true))
+         {
+            // Delay actual sync in case more synchronization requests will come
+            eventLoop.schedule(() -> eventLoop.getTaskExecutor().execute(() -> syncPendingUsers()), 200, TimeUnit.MILLISECONDS);
+         }
       }
       return object;      
    }
@@ -4971,16 +5491,67 @@ public List<DciValue> findMatchingDCI(long objectId, String objectName, String d
     */
    public DciValue[] getLastValues(final long nodeId, boolean objectTooltipOnly, boolean overviewOnly,
          boolean includeNoValueObjects) throws IOException, NXCException
+   {
+      final NXCPMessage msg = createLastValuesRequest(nodeId, objectTooltipOnly, overviewOnly, includeNoValueObjects);
+      sendMessage(msg);
+      return parseLastValues(waitForRCC(msg.getMessageId()));
+   }
+
+   /**
+    * Get last DCI values for given node asynchronously.
+    *
+    * @param nodeId                ID of the node to get DCI values for
+    * @param objectTooltipOnly     if set to true, only DCIs with DCF_SHOW_ON_OBJECT_TOOLTIP flag set are returned
+    * @param overviewOnly          if set to true, only DCIs with DCF_SHOW_IN_OBJECT_OVERVIEW flag set are returned
+    * @param includeNoValueObjects if set to true, objects with no value (like instance discovery DCIs) will be returned as well
+    * @return future for list of DCI values
+    * @see #getLastValues(long, boolean, boolean, boolean)
+    */
+   public CompletableFuture<DciValue[]> getLastValuesAsync(final long nodeId, boolean objectTooltipOnly, boolean overviewOnly,
+         boolean includeNoValueObjects)
+   {
+      final NXCPMessage msg = createLastValuesRequest(nodeId, objectTooltipOnly, overviewOnly, includeNoValueObjects);
+      return sendRequestAsync(msg).thenApply((response) -> parseLastValues(response));
+   }
+
+   /**
+    * Get last DCI values for given node asynchronously.
+    *
+    * @param nodeId ID of the node to get DCI values for
+    * @return future for list of DCI values
+    */
+   public CompletableFuture<DciValue[]> getLastValuesAsync(final long nodeId)
+   {
+      return getLastValuesAsync(nodeId, false, false, false);
+   }
+
+   /**
+    * Create CMD_GET_LAST_VALUES request message.
+    *
+    * @param nodeId                ID of the node to get DCI values for
+    * @param objectTooltipOnly     if set to true, only DCIs with DCF_SHOW_ON_OBJECT_TOOLTIP flag set are returned
+    * @param overviewOnly          if set to true, only DCIs with DCF_SHOW_IN_OBJECT_OVERVIEW flag set are returned
+    * @param includeNoValueObjects if set to true, objects with no value will be returned as well
+    * @return request message
+    */
+   private NXCPMessage createLastValuesRequest(final long nodeId, boolean objectTooltipOnly, boolean overviewOnly, boolean includeNoValueObjects)
    {
       final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_LAST_VALUES);
       msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)nodeId);
       msg.setField(NXCPCodes.VID_OBJECT_TOOLTIP_ONLY, objectTooltipOnly);
       msg.setField(NXCPCodes.VID_OVERVIEW_ONLY, overviewOnly);
       msg.setField(NXCPCodes.VID_INCLUDE_NOVALUE_OBJECTS, includeNoValueObjects);
-      sendMessage(msg);
-
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
+      return msg;
+   }
 
+   /**
+    * Parse response to CMD_GET_LAST_VALUES request.
+    *
+    * @param response server response
+    * @return list of DCI values
+    */
+   private static DciValue[] parseLastValues(final NXCPMessage response)
+   {
       int count = response.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
       DciValue[] list = new DciValue[count];
       long base = NXCPCodes.VID_DCI_VALUES_BASE;
@@ -5079,6 +5650,29 @@ public DciValue[] getLastValues(Set<MapDCIInstance> mapDcis) throws IOException,
     * @throws NXCException if NetXMS server returns an error or operation was timed out
     */
    public DciValue[] getLastValues(List<SingleDciConfig> dciConfig) throws IOException, NXCException
+   {
+      return doLastValuesRequest(createDciValuesRequest(dciConfig));
+   }
+
+   /**
+    * Get last DCI values for given Single Dci Config list asynchronously.
+    *
+    * @param dciConfig List with Single Dci Configs
+    * @return future for list of DCI values
+    * @see #getLastValues(List)
+    */
+   public CompletableFuture<DciValue[]> getLastValuesAsync(List<SingleDciConfig> dciConfig)
+   {
+      return sendRequestAsync(createDciValuesRequest(dciConfig)).thenApply((response) -> parseDciValues(response));
+   }
+
+   /**
+    * Create CMD_GET_DCI_VALUES request message for given Single Dci Config list
+    *
+    * @param dciConfig List with Single Dci Configs
+    * @return request message
+    */
+   private NXCPMessage createDciValuesRequest(List<SingleDciConfig> dciConfig)
    {
       final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_DCI_VALUES);
       long base = NXCPCodes.VID_DCI_VALUES_BASE;
@@ -5088,8 +5682,7 @@ public DciValue[] getLastValues(List<SingleDciConfig> dciConfig) throws IOExcept
          c.fillMessage(msg, base);
          base += 10;
       }
-
-      return doLastValuesRequest(msg);
+      return msg;
    }
 
    /**
@@ -5103,8 +5696,17 @@ public DciValue[] getLastValues(List<SingleDciConfig> dciConfig) throws IOExcept
    private DciValue[] doLastValuesRequest(NXCPMessage msg) throws IOException, NXCException
    {
       sendMessage(msg);
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
+      return parseDciValues(waitForRCC(msg.getMessageId()));
+   }
 
+   /**
+    * Parse response to CMD_GET_DCI_VALUES request.
+    *
+    * @param response server response
+    * @return list of DCI values
+    */
+   private static DciValue[] parseDciValues(final NXCPMessage response)
+   {
       int count = response.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
       DciValue[] list = new DciValue[count];
       long base = NXCPCodes.VID_DCI_VALUES_BASE;
@@ -5211,143 +5813,416 @@ public List<PerfTabDci> getPerfTabItems(final long nodeId) throws IOException, N
       for(int i = 0; i < count; i++, baseId += 50)
          list.add(new PerfTabDci(response, baseId));
 
-      return list;
+      return list;
+   }
+
+   /**
+    * Get threshold violation summary for all nodes under given parent object. Parent object could
+    * be container, subnet, zone, entire network, or infrastructure service root.
+    *
+    * @param objectId parent object ID
+    * @return list of threshold violation summary objects for all nodes below given root
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public List<ThresholdViolationSummary> getThresholdSummary(final long objectId) throws IOException, NXCException
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_THRESHOLD_SUMMARY);
+      msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)objectId);
+      sendMessage(msg);
+
+      final NXCPMessage response = waitForRCC(msg.getMessageId());
+
+      List<ThresholdViolationSummary> list = new ArrayList<ThresholdViolationSummary>();
+      long varId = NXCPCodes.VID_THRESHOLD_BASE;
+      while(response.getFieldAsInt64(varId) != 0)
+      {
+         final ThresholdViolationSummary t = new ThresholdViolationSummary(response, varId);
+         list.add(t);
+         varId += 50 * t.getDciList().size() + 2;
+      }
+
+      return list;
+   }
+
+   /**
+    * Parse data from raw message CMD_DCI_DATA.
+    * This method is intended for calling by client internal methods only. It made public to
+    * allow access from client extensions.
+    *
+    * @param input Raw data
+    * @param data  Data object to add rows to
+    * @return number of received data rows
+    */
+   public int parseDataRows(final byte[] input, DciData data)
+   {
+      final NXCPDataInputStream inputStream = new NXCPDataInputStream(input);
+      int rows = 0;
+      DciDataRow row = null;
+
+      try
+      {
+         inputStream.skipBytes(4); // DCI ID
+         rows = inputStream.readInt();
+         final DataType dataType = DataType.getByValue(inputStream.readInt());
+         data.setDataType(dataType);
+         inputStream.skipBytes(4); // padding
+
+         if (data instanceof ColumnarDciData)
+         {
+            parseDataRowsColumnar(inputStream, rows, dataType, (ColumnarDciData)data);
+         }
+         else
+         {
+            for(int i = 0; i < rows; i++)
+            {
+               long timestamp = inputStream.readUnsignedInt() * 1000; // convert to milliseconds
+               Object value;
+               switch(dataType)
+               {
+                  case INT32:
+                     value = Long.valueOf(inputStream.readInt());
+                     break;
+                  case UINT32:
+                  case COUNTER32:
+                     value = Long.valueOf(inputStream.readUnsignedInt());
+                     break;
+                  case INT64:
+                  case UINT64:
+                  case COUNTER64:
+                     inputStream.skipBytes(4); // padding
+                     value = Long.valueOf(inputStream.readLong());
+                     break;
+                  case FLOAT:
+                     inputStream.skipBytes(4); // padding
+                     value = Double.valueOf(inputStream.readDouble());
+                     break;
+                  case STRING:
+                     value = readDciStringValue(inputStream);
+                     break;
+                  default:
+                     value = null;
+                     break;
+               }
+               if (timestamp > 0)
+               {
+                  row = new DciDataRow(new Date(timestamp), value);
+                  data.addDataRow(row);
+               }
+               else
+               {
+                  // raw value for previous entry
+                  if (row != null)
+                     row.setRawValue(value);
+               }
+            }
+         }
+      }
+      catch(IOException e)
+      {
+      }
+
+      inputStream.close();
+      return rows;
+   }
+
+   /**
+    * Parse data rows from raw message CMD_DCI_DATA into columnar data set without creating row and value objects.
+    *
+    * @param inputStream input stream positioned at first row
+    * @param rows number of rows
+    * @param dataType data type
+    * @param data data set to add rows to
+    * @throws IOException on read error
+    */
+   private static void parseDataRowsColumnar(NXCPDataInputStream inputStream, int rows, DataType dataType, ColumnarDciData data) throws IOException
+   {
+      for(int i = 0; i < rows; i++)
+      {
+         long timestamp = inputStream.readUnsignedInt() * 1000; // convert to milliseconds
+         switch(dataType)
+         {
+            case INT32:
+            case UINT32:
+            case COUNTER32:
+               long v32 = (dataType == DataType.INT32) ? inputStream.readInt() : inputStream.readUnsignedInt();
+               if (timestamp > 0)
+                  data.addLong(timestamp, v32);
+               else
+                  data.setLastRawLong(v32); // raw value for previous entry
+               break;
+            case INT64:
+            case UINT64:
+            case COUNTER64:
+               inputStream.skipBytes(4); // padding
+               long v64 = inputStream.readLong();
+               if (timestamp > 0)
+                  data.addLong(timestamp, v64);
+               else
+                  data.setLastRawLong(v64);
+               break;
+            case FLOAT:
+               inputStream.skipBytes(4); // padding
+               double d = inputStream.readDouble();
+               if (timestamp > 0)
+                  data.addDouble(timestamp, d);
+               else
+                  data.setLastRawDouble(d);
+               break;
+            case STRING:
+               String s = readDciStringValue(inputStream);
+               if (timestamp > 0)
+                  data.addString(timestamp, s);
+               else
+                  data.setLastRawString(s);
+               break;
+            default:
+               if (timestamp > 0)
+                  data.addEmpty(timestamp);
+               break;
+         }
+      }
+   }
+
+   /**
+    * Read fixed length string value from raw DCI data.
+    *
+    * @param inputStream input stream
+    * @return string value
+    * @throws IOException on read error
+    */
+   private static String readDciStringValue(NXCPDataInputStream inputStream) throws IOException
+   {
+      StringBuilder sb = new StringBuilder(256);
+      int count;
+      for(count = MAX_DCI_STRING_VALUE_LENGTH; count > 0; count--)
+      {
+         char ch = inputStream.readChar();
+         if (ch == 0)
+         {
+            count--;
+            break;
+         }
+         sb.append(ch);
+      }
+      inputStream.skipBytes(count * 2);
+      return sb.toString();
+   }
+
+   /**
+    * Get collected DCI data from server. Please note that you should specify
+    * either row count limit or time from/to limit.
+    *
+    * @param nodeId     Node ID
+    * @param dciId      DCI ID
+    * @param instance   instance value (for table DCI only)
+    * @param dataColumn name of column to retrieve data from (for table DCI only)
+    * @param from       Start of time range or null for no limit
+    * @param to         End of time range or null for no limit
+    * @param maxRows    Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType  TODO
+    * @param data       data set to add rows to
+    * @return DCI data set
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   private DciData getCollectedDataInternal(long nodeId, long dciId, String instance, String dataColumn, Date from, Date to,
+         int maxRows, HistoricalDataType valueType, final DciData data) throws IOException, NXCException
+   {
+      int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
+      int timeTo = (to != null) ? (int)(to.getTime() / 1000) : 0;
+
+      // If full table values are requested, each value will be sent in separate message
+      if (valueType == HistoricalDataType.FULL_TABLE)
+      {
+         NXCPMessage msg = createDataRequest(nodeId, dciId, instance, dataColumn, valueType, timeFrom, timeTo, maxRows);
+         sendMessage(msg);
+
+         waitForRCC(msg.getMessageId());
+
+         while(true)
+         {
+            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
+            long timestamp = response.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000L; // Convert to milliseconds
+            if (timestamp == 0)
+               break; // End of value list indicator
+
+            data.addDataRow(new DciDataRow(new Date(timestamp), new Table(response)));
+         }
+      }
+      else
+      {
+         CallerThreadExecutor executor = new CallerThreadExecutor();
+         DataPageRequest request = new DataPageRequest(nodeId, dciId, instance, dataColumn, valueType, timeFrom, (payload) -> parseDataRows(payload, data), executor);
+         executor.runUntilDone(request.start(timeTo, maxRows));
+      }
+      return data;
+   }
+
+   /**
+    * Get collected DCI data from server. Please note that you should specify
+    * either row count limit or time from/to limit.
+    *
+    * @param nodeId    Node ID
+    * @param dciId     DCI ID
+    * @param from      Start of time range or null for no limit
+    * @param to        End of time range or null for no limit
+    * @param maxRows   Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType TODO
+    * @return DCI data set
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public DciData getCollectedData(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType)
+         throws IOException, NXCException
+   {
+      return getCollectedDataInternal(nodeId, dciId, null, null, from, to, maxRows, valueType, new DciData(nodeId, dciId));
+   }
+
+   /**
+    * Get collected DCI data from server as columnar data set. Values are stored in primitive arrays without creating object
+    * per row, which significantly reduces memory usage for large data sets. Please note that you should specify either row
+    * count limit or time from/to limit. Full table values are not supported by this method.
+    *
+    * @param nodeId    Node ID
+    * @param dciId     DCI ID
+    * @param from      Start of time range or null for no limit
+    * @param to        End of time range or null for no limit
+    * @param maxRows   Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType type of historical data to retrieve
+    * @return DCI data set
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public ColumnarDciData getCollectedDataColumnar(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType)
+         throws IOException, NXCException
+   {
+      if (valueType == HistoricalDataType.FULL_TABLE)
+         throw new NXCException(RCC.INVALID_ARGUMENT);
+      ColumnarDciData data = new ColumnarDciData(nodeId, dciId);
+      getCollectedDataInternal(nodeId, dciId, null, null, from, to, maxRows, valueType, data);
+      data.trimToSize();
+      return data;
+   }
+
+   /**
+    * Get collected DCI data from server asynchronously. Please note that you should specify either row count limit or time
+    * from/to limit. Full table values are not supported by this method. Received data is parsed outside of network receiver
+    * thread.
+    *
+    * @param nodeId    Node ID
+    * @param dciId     DCI ID
+    * @param from      Start of time range or null for no limit
+    * @param to        End of time range or null for no limit
+    * @param maxRows   Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType type of historical data to retrieve
+    * @return future for DCI data set
+    */
+   public CompletableFuture<DciData> getCollectedDataAsync(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType)
+   {
+      if (valueType == HistoricalDataType.FULL_TABLE)
+      {
+         CompletableFuture<DciData> future = new CompletableFuture<DciData>();
+         future.completeExceptionally(new NXCException(RCC.INVALID_ARGUMENT));
+         return future;
+      }
+
+      final DciData data = new DciData(nodeId, dciId);
+      int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
+      int timeTo = (to != null) ? (int)(to.getTime() / 1000) : 0;
+      DataPageRequest request = new DataPageRequest(nodeId, dciId, null, null, valueType, timeFrom, (payload) -> parseDataRows(payload, data),
+            ForkJoinPool.commonPool());
+      return request.start(timeTo, maxRows).thenApply((v) -> data);
    }
 
    /**
-    * Get threshold violation summary for all nodes under given parent object. Parent object could
-    * be container, subnet, zone, entire network, or infrastructure service root.
+    * Get collected DCI data from server and pass it to handler page by page instead of accumulating whole data set in memory.
+    * Pages are delivered in newest to oldest order. Request for next page is sent to server before current page is parsed
+    * and passed to handler. Handler is called on calling thread, so it may block (for example on output). Full table values
+    * are not supported by this method.
     *
-    * @param objectId parent object ID
-    * @return list of threshold violation summary objects for all nodes below given root
+    * @param nodeId    Node ID
+    * @param dciId     DCI ID
+    * @param from      Start of time range or null for no limit
+    * @param to        End of time range or null for no limit
+    * @param maxRows   Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType type of historical data to retrieve
+    * @param handler   handler for received pages
     * @throws IOException  if socket I/O error occurs
     * @throws NXCException if NetXMS server returns an error or operation was timed out
     */
-   public List<ThresholdViolationSummary> getThresholdSummary(final long objectId) throws IOException, NXCException
+   public void getCollectedData(final long nodeId, final long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType,
+         final DciDataPageHandler handler) throws IOException, NXCException
    {
-      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_THRESHOLD_SUMMARY);
-      msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)objectId);
-      sendMessage(msg);
-
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
-
-      List<ThresholdViolationSummary> list = new ArrayList<ThresholdViolationSummary>();
-      long varId = NXCPCodes.VID_THRESHOLD_BASE;
-      while(response.getFieldAsInt64(varId) != 0)
-      {
-         final ThresholdViolationSummary t = new ThresholdViolationSummary(response, varId);
-         list.add(t);
-         varId += 50 * t.getDciList().size() + 2;
-      }
+      if (valueType == HistoricalDataType.FULL_TABLE)
+         throw new NXCException(RCC.INVALID_ARGUMENT);
 
-      return list;
+      int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
+      int timeTo = (to != null) ? (int)(to.getTime() / 1000) : 0;
+      CallerThreadExecutor executor = new CallerThreadExecutor();
+      DataPageRequest request = new DataPageRequest(nodeId, dciId, null, null, valueType, timeFrom,
+            (payload) -> handler.onDataPage(parseDataPage(nodeId, dciId, payload)), executor);
+      executor.runUntilDone(request.start(timeTo, maxRows));
    }
 
    /**
-    * Parse data from raw message CMD_DCI_DATA.
-    * This method is intended for calling by client internal methods only. It made public to
-    * allow access from client extensions.
+    * Get collected DCI data from server using several concurrent requests and pass it to handler page by page. Time range is
+    * split into up to given number of sub-ranges which are retrieved in parallel. Pages are delivered to handler in newest to
+    * oldest order, as with sequential retrieval; pages of older sub-ranges received ahead of time are kept in memory until
+    * all newer sub-ranges are delivered. Handler is called on calling thread, so it is never called concurrently and may
+    * block. Full table values are not supported by this method.
     *
-    * @param input Raw data
-    * @param data  Data object to add rows to
-    * @return number of received data rows
+    * @param nodeId      Node ID
+    * @param dciId       DCI ID
+    * @param from        Start of time range
+    * @param to          End of time range
+    * @param valueType   type of historical data to retrieve
+    * @param parallelism maximum number of concurrent requests
+    * @param handler     handler for received pages
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
     */
-   public int parseDataRows(final byte[] input, DciData data)
+   public void getCollectedDataParallel(final long nodeId, final long dciId, Date from, Date to, HistoricalDataType valueType,
+         int parallelism, DciDataPageHandler handler) throws IOException, NXCException
    {
-      final NXCPDataInputStream inputStream = new NXCPDataInputStream(input);
-      int rows = 0;
-      DciDataRow row = null;
+      if ((valueType == HistoricalDataType.FULL_TABLE) || (from == null) || (to == null) || (parallelism < 1))
+         throw new NXCException(RCC.INVALID_ARGUMENT);
 
-      try
-      {
-         inputStream.skipBytes(4); // DCI ID
-         rows = inputStream.readInt();
-         final DataType dataType = DataType.getByValue(inputStream.readInt());
-         data.setDataType(dataType);
-         inputStream.skipBytes(4); // padding
+      int timeFrom = (int)(from.getTime() / 1000);
+      int timeTo = (int)(to.getTime() / 1000);
+      int ranges = (int)Math.min(parallelism, Math.max(1, ((long)timeTo - (long)timeFrom) / MIN_PARALLEL_DATA_RANGE));
+      long span = ((long)timeTo - (long)timeFrom + 1) / ranges;
 
-         for(int i = 0; i < rows; i++)
-         {
-            long timestamp = inputStream.readUnsignedInt() * 1000; // convert to milliseconds
-            Object value;
-            switch(dataType)
-            {
-               case INT32:
-                  value = Long.valueOf(inputStream.readInt());
-                  break;
-               case UINT32:
-               case COUNTER32:
-                  value = Long.valueOf(inputStream.readUnsignedInt());
-                  break;
-               case INT64:
-               case UINT64:
-               case COUNTER64:
-                  inputStream.skipBytes(4); // padding
-                  value = Long.valueOf(inputStream.readLong());
-                  break;
-               case FLOAT:
-                  inputStream.skipBytes(4); // padding
-                  value = Double.valueOf(inputStream.readDouble());
-                  break;
-               case STRING:
-                  StringBuilder sb = new StringBuilder(256);
-                  int count;
-                  for(count = MAX_DCI_STRING_VALUE_LENGTH; count > 0; count--)
-                  {
-                     char ch = inputStream.readChar();
-                     if (ch == 0)
-                     {
-                        count--;
-                        break;
-                     }
-                     sb.append(ch);
-                  }
-                  inputStream.skipBytes(count * 2);
-                  value = sb.toString();
-                  break;
-               default:
-                  value = null;
-                  break;
-            }
-            if (timestamp > 0)
-            {
-               row = new DciDataRow(new Date(timestamp), value);
-               data.addDataRow(row);
-            }
-            else
-            {
-               // raw value for previous entry
-               if (row != null)
-                  row.setRawValue(value);
-            }
-         }
-      }
-      catch(IOException e)
+      final OrderedDataPageSink sink = new OrderedDataPageSink(handler, ranges);
+      CallerThreadExecutor executor = new CallerThreadExecutor();
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[ranges];
+      for(int i = 0; i < ranges; i++)
       {
+         final int index = i;
+         int rangeTo = (int)(timeTo - span * i);
+         int rangeFrom = (i == ranges - 1) ? timeFrom : (int)(rangeTo - span + 1);
+         DataPageRequest request = new DataPageRequest(nodeId, dciId, null, null, valueType, rangeFrom,
+               (payload) -> sink.addPage(index, parseDataPage(nodeId, dciId, payload)), executor);
+         futures[i] = request.start(rangeTo, 0).thenRunAsync(() -> sink.rangeCompleted(index), executor);
       }
-
-      inputStream.close();
-      return rows;
+      executor.runUntilDone(CompletableFuture.allOf(futures));
    }
 
    /**
-    * Get collected DCI data from server. Please note that you should specify
-    * either row count limit or time from/to limit.
+    * Create request message for collected DCI data.
     *
     * @param nodeId     Node ID
     * @param dciId      DCI ID
     * @param instance   instance value (for table DCI only)
     * @param dataColumn name of column to retrieve data from (for table DCI only)
-    * @param from       Start of time range or null for no limit
-    * @param to         End of time range or null for no limit
-    * @param maxRows    Maximum number of rows to retrieve or 0 for no limit
-    * @param valueType  TODO
-    * @return DCI data set
-    * @throws IOException  if socket I/O error occurs
-    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    * @param valueType  type of historical data to retrieve
+    * @param timeFrom   start of time range (UNIX time) or 0
+    * @param timeTo     end of time range (UNIX time) or 0
+    * @param maxRows    maximum number of rows to retrieve or 0 for no limit
+    * @return request message
     */
-   private DciData getCollectedDataInternal(long nodeId, long dciId, String instance, String dataColumn, Date from, Date to,
-         int maxRows, HistoricalDataType valueType) throws IOException, NXCException
+   private NXCPMessage createDataRequest(long nodeId, long dciId, String instance, String dataColumn, HistoricalDataType valueType,
+         int timeFrom, int timeTo, int maxRows)
    {
       NXCPMessage msg;
       if (instance != null) // table DCI
@@ -5363,92 +6238,323 @@ private DciData getCollectedDataInternal(long nodeId, long dciId, String instanc
       msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)nodeId);
       msg.setFieldInt32(NXCPCodes.VID_DCI_ID, (int)dciId);
       msg.setFieldInt16(NXCPCodes.VID_HISTORICAL_DATA_TYPE, valueType.getValue());
+      msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
+      return msg;
+   }
 
-      DciData data = new DciData(nodeId, dciId);
+   /**
+    * Parse raw message CMD_DCI_DATA into new columnar data page.
+    *
+    * @param nodeId  Node ID
+    * @param dciId   DCI ID
+    * @param payload raw data
+    * @return data page
+    */
+   private ColumnarDciData parseDataPage(long nodeId, long dciId, byte[] payload)
+   {
+      ColumnarDciData page = new ColumnarDciData(nodeId, dciId, getDataRowCount(payload));
+      parseDataRows(payload, page);
+      return page;
+   }
 
-      int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
-      int timeTo = (to != null) ? (int)(to.getTime() / 1000) : 0;
+   /**
+    * Get number of rows in raw message CMD_DCI_DATA.
+    *
+    * @param payload raw data
+    * @return number of rows
+    */
+   private static int getDataRowCount(byte[] payload)
+   {
+      return (payload.length >= 16) ? ByteBuffer.wrap(payload).getInt(4) : 0;
+   }
 
-      // If full table values are requested, each value will be sent in separate message
-      if (valueType == HistoricalDataType.FULL_TABLE)
+   /**
+    * Find timestamp of last (oldest) row in raw message CMD_DCI_DATA without parsing values. Rows have fixed size for given
+    * data type, so last row can be located directly.
+    *
+    * @param payload raw data
+    * @return timestamp of last row (UNIX time) or 0 if it cannot be determined
+    */
+   private static int getLastDataTimestamp(byte[] payload)
+   {
+      if (payload.length < 16)
+         return 0;
+
+      ByteBuffer buffer = ByteBuffer.wrap(payload);
+      int rows = buffer.getInt(4);
+      int rowSize;
+      switch(DataType.getByValue(buffer.getInt(8)))
       {
-         msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
-         msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
-         msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
-         sendMessage(msg);
+         case INT32:
+         case UINT32:
+         case COUNTER32:
+            rowSize = 8;
+            break;
+         case INT64:
+         case UINT64:
+         case COUNTER64:
+         case FLOAT:
+            rowSize = 16; // includes 4 bytes of padding
+            break;
+         case STRING:
+            rowSize = 4 + MAX_DCI_STRING_VALUE_LENGTH * 2;
+            break;
+         default:
+            rowSize = 4;
+            break;
+      }
 
-         waitForRCC(msg.getMessageId());
+      // Rows with zero timestamp contain raw value for previous row
+      for(int i = rows - 1; i >= 0; i--)
+      {
+         int offset = 16 + i * rowSize;
+         if (offset + 4 > payload.length)
+            continue;
+         int timestamp = buffer.getInt(offset);
+         if (timestamp != 0)
+            return timestamp;
+      }
+      return 0;
+   }
 
-         while(true)
-         {
-            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
-            long timestamp = response.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000L; // Convert to milliseconds
-            if (timestamp == 0)
-               break; // End of value list indicator
+   /**
+    * Wait for completion of asynchronous request and convert failure into exception thrown by synchronous API.
+    *
+    * @param future request future
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   private static void joinRequest(CompletableFuture<?> future) throws IOException, NXCException
+   {
+      try
+      {
+         future.join();
+      }
+      catch(CompletionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof NXCException)
+            throw (NXCException)cause;
+         if (cause instanceof IOException)
+            throw (IOException)cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         throw new NXCException(RCC.INTERNAL_ERROR, cause);
+      }
+   }
 
-            data.addDataRow(new DciDataRow(new Date(timestamp), new Table(response)));
-         }
+   /**
+    * Paged request for collected DCI data. Rows are sent by server in newest to oldest order, at most MAX_DCI_DATA_ROWS rows
+    * per response. Request for next page is sent as soon as current page arrives, before current page is processed, so
+    * network transfer of next page overlaps with processing of current one. Pages are passed to consumer strictly in order,
+    * on given executor.
+    */
+   private class DataPageRequest
+   {
+      private final long nodeId;
+      private final long dciId;
+      private final String instance;
+      private final String dataColumn;
+      private final HistoricalDataType valueType;
+      private final int timeFrom;
+      private final Consumer<byte[]> consumer;
+      private final Executor executor;
+
+      /**
+       * Create new paged request.
+       *
+       * @param nodeId     Node ID
+       * @param dciId      DCI ID
+       * @param instance   instance value (for table DCI only)
+       * @param dataColumn name of column to retrieve data from (for table DCI only)
+       * @param valueType  type of historical data to retrieve
+       * @param timeFrom   start of time range (UNIX time) or 0
+       * @param consumer   consumer for raw pages
+       * @param executor   executor for page processing
+       */
+      DataPageRequest(long nodeId, long dciId, String instance, String dataColumn, HistoricalDataType valueType, int timeFrom,
+            Consumer<byte[]> consumer, Executor executor)
+      {
+         this.nodeId = nodeId;
+         this.dciId = dciId;
+         this.instance = instance;
+         this.dataColumn = dataColumn;
+         this.valueType = valueType;
+         this.timeFrom = timeFrom;
+         this.consumer = consumer;
+         this.executor = executor;
       }
-      else
+
+      /**
+       * Start retrieval.
+       *
+       * @param timeTo  end of time range (UNIX time) or 0
+       * @param maxRows maximum number of rows to retrieve or 0 for no limit
+       * @return future completed when all pages are passed to consumer
+       */
+      CompletableFuture<Void> start(int timeTo, int maxRows)
       {
-         int rowsReceived, rowsRemaining = maxRows;
-         do
-         {
-            msg.setMessageId(requestId.getAndIncrement());
-            msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
-            msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
-            msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
-            sendMessage(msg);
+         return process(requestPage(timeTo, maxRows), maxRows);
+      }
 
-            waitForRCC(msg.getMessageId());
+      /**
+       * Send request for single page.
+       *
+       * @param timeTo  end of time range (UNIX time) or 0
+       * @param maxRows maximum number of rows to retrieve or 0 for no limit
+       * @return future for CMD_DCI_DATA message
+       */
+      private CompletableFuture<NXCPMessage> requestPage(int timeTo, int maxRows)
+      {
+         NXCPMessage msg = createDataRequest(nodeId, dciId, instance, dataColumn, valueType, timeFrom, timeTo, maxRows);
+         final CompletableFuture<NXCPMessage> dataFuture = waitForMessageAsync(NXCPCodes.CMD_DCI_DATA, msg.getMessageId(), msgWaitQueue.getDefaultTimeout());
+         CompletableFuture<NXCPMessage> rccFuture = sendRequestAsync(msg);
+         rccFuture.whenComplete((rcc, e) -> {
+            // Data will not be sent if request failed - fail data future immediately (this also removes data waiter)
+            if (e != null)
+               dataFuture.completeExceptionally(e);
+         });
+         return rccFuture.thenCombine(dataFuture, (rcc, response) -> response);
+      }
 
-            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
+      /**
+       * Process received page and request next one if needed.
+       *
+       * @param responseFuture future for CMD_DCI_DATA message
+       * @param rowsRemaining  number of rows still to retrieve or 0 for no limit
+       * @return future completed when this and all following pages are passed to consumer
+       */
+      private CompletableFuture<Void> process(CompletableFuture<NXCPMessage> responseFuture, final int rowsRemaining)
+      {
+         return responseFuture.thenComposeAsync((response) -> {
             if (!response.isBinaryMessage())
-               throw new NXCException(RCC.INTERNAL_ERROR);
+               throw new CompletionException(new NXCException(RCC.INTERNAL_ERROR));
 
-            rowsReceived = parseDataRows(response.getBinaryData(), data);
-            if (((rowsRemaining == 0) || (rowsRemaining > MAX_DCI_DATA_ROWS)) && (rowsReceived == MAX_DCI_DATA_ROWS))
+            byte[] payload = response.getBinaryData();
+            int rowsReceived = getDataRowCount(payload);
+            int nextRowsRemaining = (rowsRemaining > 0) ? rowsRemaining - rowsReceived : 0;
+            CompletableFuture<NXCPMessage> nextPage = null;
+            if ((rowsReceived == MAX_DCI_DATA_ROWS) && ((rowsRemaining == 0) || (rowsRemaining > MAX_DCI_DATA_ROWS)))
             {
-               // adjust boundaries for next request
-               if (rowsRemaining > 0)
-                  rowsRemaining -= rowsReceived;
+               // Next page ends one second before last received row (there should be only one value per second)
+               int lastTimestamp = getLastDataTimestamp(payload);
+               if ((lastTimestamp != 0) && (lastTimestamp - 1 >= timeFrom))
+                  nextPage = requestPage(lastTimestamp - 1, nextRowsRemaining);
+            }
 
-               // Rows goes in newest to oldest order, so if we need to
-               // retrieve additional data, we should update timeTo limit
-               if (to != null)
-               {
-                  DciDataRow row = data.getLastValue();
-                  if (row != null)
-                  {
-                     // There should be only one value per second, so we set
-                     // last row's timestamp - 1 second as new boundary
-                     timeTo = (int)(row.getTimestamp().getTime() / 1000) - 1;
-                  }
-               }
+            consumer.accept(payload);
+            return (nextPage != null) ? process(nextPage, nextRowsRemaining) : CompletableFuture.<Void>completedFuture(null);
+         }, executor);
+      }
+   }
+
+   /**
+    * Executor which runs tasks on thread waiting for request completion. Used by synchronous paged requests, so received
+    * pages are processed (and passed to caller's handler, which may block) on calling thread instead of shared thread pool.
+    */
+   private static class CallerThreadExecutor implements Executor
+   {
+      private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+
+      /**
+       * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+       */
+      @Override
+      public void execute(Runnable command)
+      {
+         tasks.add(command);
+      }
+
+      /**
+       * Run submitted tasks on calling thread until given request is completed, and convert request failure into exception
+       * thrown by synchronous API.
+       *
+       * @param future request future
+       * @throws IOException  if socket I/O error occurs
+       * @throws NXCException if NetXMS server returns an error or operation was timed out
+       */
+      void runUntilDone(CompletableFuture<?> future) throws IOException, NXCException
+      {
+         future.whenComplete((r, e) -> tasks.add(() -> {})); // wake up waiting thread
+         while(!future.isDone())
+         {
+            try
+            {
+               tasks.take().run();
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               future.completeExceptionally(e);
             }
-         } while(rowsReceived == MAX_DCI_DATA_ROWS);
+         }
+         joinRequest(future);
       }
-      return data;
    }
 
    /**
-    * Get collected DCI data from server. Please note that you should specify
-    * either row count limit or time from/to limit.
-    *
-    * @param nodeId    Node ID
-    * @param dciId     DCI ID
-    * @param from      Start of time range or null for no limit
-    * @param to        End of time range or null for no limit
-    * @param maxRows   Maximum number of rows to retrieve or 0 for no limit
-    * @param valueType TODO
-    * @return DCI data set
-    * @throws IOException  if socket I/O error occurs
-    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    * Collects pages from concurrently retrieved sub-ranges and passes them to handler in sub-range order. Pages of the
+    * sub-range currently being delivered are passed through immediately, pages of later sub-ranges are held until all
+    * preceding sub-ranges are completed.
     */
-   public DciData getCollectedData(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType)
-         throws IOException, NXCException
+   private static class OrderedDataPageSink
    {
-      return getCollectedDataInternal(nodeId, dciId, null, null, from, to, maxRows, valueType);
+      private final DciDataPageHandler handler;
+      private final List<List<ColumnarDciData>> heldPages;
+      private final boolean[] completed;
+      private int current = 0;
+
+      /**
+       * Create new sink.
+       *
+       * @param handler page handler
+       * @param ranges  number of sub-ranges
+       */
+      OrderedDataPageSink(DciDataPageHandler handler, int ranges)
+      {
+         this.handler = handler;
+         heldPages = new ArrayList<List<ColumnarDciData>>(ranges);
+         for(int i = 0; i < ranges; i++)
+            heldPages.add(new ArrayList<ColumnarDciData>());
+         completed = new boolean[ranges];
+      }
+
+      /**
+       * Add page received for given sub-range.
+       *
+       * @param range sub-range index
+       * @param page data page
+       */
+      synchronized void addPage(int range, ColumnarDciData page)
+      {
+         if (range == current)
+            handler.onDataPage(page);
+         else
+            heldPages.get(range).add(page);
+      }
+
+      /**
+       * Mark sub-range as completed and deliver held pages of following sub-ranges.
+       *
+       * @param range sub-range index
+       */
+      synchronized void rangeCompleted(int range)
+      {
+         completed[range] = true;
+         while((current < completed.length) && completed[current])
+         {
+            current++;
+            if (current < completed.length)
+            {
+               List<ColumnarDciData> pages = heldPages.get(current);
+               for(ColumnarDciData p : pages)
+                  handler.onDataPage(p);
+               pages.clear();
+            }
+         }
+      }
    }
 
    /**
@@ -5471,7 +6577,7 @@ public DciData getCollectedTableData(long nodeId, long dciId, String instance, S
    {
       if (instance == null || dataColumn == null)
          throw new NXCException(RCC.INVALID_ARGUMENT);
-      return getCollectedDataInternal(nodeId, dciId, instance, dataColumn, from, to, maxRows, HistoricalDataType.PROCESSED);
+      return getCollectedDataInternal(nodeId, dciId, instance, dataColumn, from, to, maxRows, HistoricalDataType.PROCESSED, new DciData(nodeId, dciId));
    }
 
    /**
@@ -5894,17 +7000,11 @@ public void deleteObject(final long objectId) throws IOException, NXCException
 
       // If server reports success, delete object from cache and generate
       // appropriate notification without waiting for actual server update
-      synchronized(objectList)
+      synchronized(objectCache)
       {
-         AbstractObject object = objectList.get(objectId);
+         AbstractObject object = objectCache.remove(objectId);
          if (object != null)
-         {
-            objectList.remove(objectId);
-            objectListGUID.remove(object.getGuid());
-            if (object instanceof Zone)
-               zoneList.remove(((Zone)object).getUIN());
             removeOrphanedObjects(object);
-         }
       }
       sendNotification(new SessionNotification(SessionNotification.OBJECT_DELETED, objectId));
    }
@@ -5919,13 +7019,10 @@ private void removeOrphanedObjects(AbstractObject parent)
       Iterator<Long> it = parent.getChildren();
       while(it.hasNext())
       {
-         AbstractObject object = objectList.get(it.next());
+         AbstractObject object = objectCache.get(it.next());
          if ((object != null) && (object.getParentCount() == 1))
          {
-            objectList.remove(object.getObjectId());
-            objectListGUID.remove(object.getGuid());
-            if (object instanceof Zone)
-               zoneList.remove(((Zone)object).getUIN());
+            objectCache.remove(object.getObjectId());
             removeOrphanedObjects(object);
          }
       }
@@ -11224,16 +12321,12 @@ public String getShortTimeFormat()
     */
    public void handover(NXCSession target)
    {
-      target.objectList = objectList;
-      target.objectListGUID = objectListGUID;
-      target.zoneList = zoneList;
-      for(AbstractObject o : objectList.values())
+      target.objectCache = objectCache;
+      for(AbstractObject o : objectCache.getObjects())
       {
          o.setSession(target);
       }
-      objectList = null;
-      objectListGUID = null;
-      zoneList = null;
+      objectCache = null;
    }
 
    /**
@@ -11595,6 +12688,23 @@ public List<ReportResult> getReportResults(UUID reportId) throws NXCException, I
       return results;
    }
 
+   /**
+    * Get status and progress of report execution job. Status of finished jobs is available for limited time after job
+    * completion.
+    *
+    * @param jobId The job UUID
+    * @return job status
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public ReportJobStatus getReportJobStatus(UUID jobId) throws NXCException, IOException
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_RS_GET_JOB_STATUS);
+      msg.setField(NXCPCodes.VID_JOB_ID, jobId);
+      sendMessage(msg);
+      return new ReportJobStatus(waitForRCC(msg.getMessageId()), jobId);
+   }
+
    /**
     * Delete report result
     *
@@ -12142,12 +13252,12 @@ public DciData getPredictedData(long nodeId, long dciId, Date from, Date to) thr
          {
             // Rows goes in newest to oldest order, so if we need to
             // retrieve additional data, we should update timeTo limit
-            DciDataRow row = data.getLastValue();
-            if (row != null)
+            long lastTimestamp = data.getLastTimestamp();
+            if (lastTimestamp != 0)
             {
                // There should be only one value per second, so we set
                // last row's timestamp - 1 second as new boundary
-               timeTo = (int)(row.getTimestamp().getTime() / 1000) - 1;
+               timeTo = (int)(lastTimestamp / 1000) - 1;
             }
          }
       } while((rowsReceived == MAX_DCI_DATA_ROWS) && (timeTo > timeFrom));
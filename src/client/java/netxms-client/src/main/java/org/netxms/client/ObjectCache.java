@@ -0,0 +1,493 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.base.InetAddressEx;
+import org.netxms.base.MacAddress;
+import org.netxms.client.objects.AbstractNode;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.AccessPoint;
+import org.netxms.client.objects.Interface;
+import org.netxms.client.objects.Sensor;
+import org.netxms.client.objects.Zone;
+import org.netxms.client.search.ObjectSearchIndex;
+
+/**
+ * Client-side object cache. Lookups do not take any locks and never wait for updates in progress; updates are serialized
+ * on cache object monitor, so code that must not miss concurrent update (for example, check for object presence followed
+ * by listener registration) can synchronize on cache object. Iteration over objects is weakly consistent - it reflects
+ * state of the cache at some point at or since creation of the iterator and never throws
+ * <code>ConcurrentModificationException</code>. Cache also maintains search index and address indexes (primary IP of
+ * nodes, IP addresses of interfaces and access points, MAC addresses of interfaces, access points, and sensors) which are
+ * updated together with objects.
+ * <p>
+ * Sets of object ancestors (direct and indirect parents) are calculated on demand and memoized. Memoized entries are
+ * invalidated for the subtree of an object when that object is added, removed, or its list of parents changes.
+ */
+public class ObjectCache
+{
+   private static final long[] EMPTY_ID_LIST = new long[0];
+
+   private final ConcurrentHashMap<Long, AbstractObject> objects;
+   private final ConcurrentHashMap<UUID, AbstractObject> objectsByGUID;
+   private final ConcurrentHashMap<Integer, Zone> zones = new ConcurrentHashMap<Integer, Zone>();
+   private final ConcurrentHashMap<InetAddress, Set<Long>> objectsByIP = new ConcurrentHashMap<InetAddress, Set<Long>>();
+   private final ConcurrentHashMap<MacAddress, Set<Long>> objectsByMAC = new ConcurrentHashMap<MacAddress, Set<Long>>();
+   private final ObjectSearchIndex searchIndex = new ObjectSearchIndex();
+   private final ConcurrentHashMap<Long, long[]> ancestors = new ConcurrentHashMap<Long, long[]>();
+   private final AtomicLong hierarchyVersion = new AtomicLong(0);
+
+   /**
+    * Create empty cache.
+    */
+   public ObjectCache()
+   {
+      this(1024);
+   }
+
+   /**
+    * Create empty cache sized for given number of objects.
+    *
+    * @param expectedSize expected number of objects
+    */
+   public ObjectCache(int expectedSize)
+   {
+      objects = new ConcurrentHashMap<Long, AbstractObject>(expectedSize);
+      objectsByGUID = new ConcurrentHashMap<UUID, AbstractObject>(expectedSize);
+   }
+
+   /**
+    * Get object by ID.
+    *
+    * @param id object ID
+    * @return object or null if not found
+    */
+   public AbstractObject get(long id)
+   {
+      return objects.get(id);
+   }
+
+   /**
+    * Check if object with given ID is in cache.
+    *
+    * @param id object ID
+    * @return true if object is in cache
+    */
+   public boolean contains(long id)
+   {
+      return objects.containsKey(id);
+   }
+
+   /**
+    * Get object by GUID.
+    *
+    * @param guid object GUID
+    * @return object or null if not found
+    */
+   public AbstractObject getByGUID(UUID guid)
+   {
+      return objectsByGUID.get(guid);
+   }
+
+   /**
+    * Get objects with given IP address (node primary IP, interface address, or access point address).
+    *
+    * @param address IP address
+    * @return list of objects with given IP address (empty list if none found)
+    */
+   public List<AbstractObject> getByIP(InetAddress address)
+   {
+      return resolve(objectsByIP.get(address));
+   }
+
+   /**
+    * Get objects with given MAC address (interface, access point, or sensor).
+    *
+    * @param address MAC address
+    * @return list of objects with given MAC address (empty list if none found)
+    */
+   public List<AbstractObject> getByMAC(MacAddress address)
+   {
+      return resolve(objectsByMAC.get(address));
+   }
+
+   /**
+    * Resolve set of object IDs from address index into list of objects.
+    *
+    * @param ids set of object IDs (can be null)
+    * @return list of objects
+    */
+   private List<AbstractObject> resolve(Set<Long> ids)
+   {
+      if (ids == null)
+         return new ArrayList<AbstractObject>(0);
+      List<AbstractObject> result = new ArrayList<AbstractObject>(ids.size());
+      for(Long id : ids)
+      {
+         AbstractObject object = objects.get(id);
+         if (object != null)
+            result.add(object);
+      }
+      return result;
+   }
+
+   /**
+    * Get IDs of all direct and indirect parents of given object. Parents missing from cache are included, but their own
+    * parents are unknown and therefore not included. Returned array is sorted and must not be modified by caller.
+    *
+    * @param id object ID
+    * @return sorted array of ancestor IDs (empty array if object is not in cache or has no parents)
+    */
+   public long[] getAncestors(long id)
+   {
+      long[] result = ancestors.get(id);
+      if (result != null)
+         return result;
+
+      AbstractObject object = objects.get(id);
+      if (object == null)
+         return EMPTY_ID_LIST;
+
+      long version = hierarchyVersion.get();
+      Set<Long> set = new HashSet<Long>();
+      Deque<Long> queue = new ArrayDeque<Long>();
+      addParents(object, queue);
+      while(!queue.isEmpty())
+      {
+         Long p = queue.poll();
+         if (!set.add(p))
+            continue;
+         long[] memo = ancestors.get(p);
+         if (memo != null)
+         {
+            for(long a : memo)
+               set.add(a);
+         }
+         else
+         {
+            AbstractObject parent = objects.get(p);
+            if (parent != null)
+               addParents(parent, queue);
+         }
+      }
+
+      result = new long[set.size()];
+      int i = 0;
+      for(Long a : set)
+         result[i++] = a;
+      Arrays.sort(result);
+
+      // Do not keep result calculated while hierarchy was changing
+      if (hierarchyVersion.get() == version)
+      {
+         ancestors.put(id, result);
+         if (hierarchyVersion.get() != version)
+            ancestors.remove(id, result);
+      }
+      return result;
+   }
+
+   /**
+    * Check if one object is direct or indirect parent of another.
+    *
+    * @param id object ID
+    * @param ancestorId ID of possible ancestor
+    * @return true if object with ID <code>ancestorId</code> is direct or indirect parent of object with ID <code>id</code>
+    */
+   public boolean isAncestor(long id, long ancestorId)
+   {
+      return Arrays.binarySearch(getAncestors(id), ancestorId) >= 0;
+   }
+
+   /**
+    * Add parents of given object to queue.
+    *
+    * @param object object
+    * @param queue queue
+    */
+   private static void addParents(AbstractObject object, Deque<Long> queue)
+   {
+      Iterator<Long> it = object.getParents();
+      while(it.hasNext())
+         queue.add(it.next());
+   }
+
+   /**
+    * Check if two objects have same set of parents.
+    *
+    * @param o1 first object
+    * @param o2 second object
+    * @return true if objects have same set of parents
+    */
+   private static boolean hasSameParents(AbstractObject o1, AbstractObject o2)
+   {
+      if (o1.getParentCount() != o2.getParentCount())
+         return false;
+      Iterator<Long> it = o1.getParents();
+      while(it.hasNext())
+      {
+         if (!o2.isDirectChildOf(it.next()))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Invalidate memoized ancestors of given object and all its direct and indirect children.
+    *
+    * @param object object
+    */
+   private void invalidateAncestors(AbstractObject object)
+   {
+      hierarchyVersion.incrementAndGet();
+      if (ancestors.isEmpty())
+         return;
+
+      Set<Long> visited = new HashSet<Long>();
+      Deque<AbstractObject> queue = new ArrayDeque<AbstractObject>();
+      queue.add(object);
+      visited.add(object.getObjectId());
+      while(!queue.isEmpty())
+      {
+         AbstractObject o = queue.poll();
+         ancestors.remove(o.getObjectId());
+         Iterator<Long> it = o.getChildren();
+         while(it.hasNext())
+         {
+            Long childId = it.next();
+            if (!visited.add(childId))
+               continue;
+            AbstractObject child = objects.get(childId);
+            if (child != null)
+               queue.add(child);
+            else
+               ancestors.remove(childId);
+         }
+      }
+   }
+
+   /**
+    * Get zone object by zone UIN.
+    *
+    * @param zoneUIN zone UIN
+    * @return zone object or null if not found
+    */
+   public Zone getZone(int zoneUIN)
+   {
+      return zones.get(zoneUIN);
+   }
+
+   /**
+    * Get all objects. Returned collection is a live view backed by the cache.
+    *
+    * @return all objects
+    */
+   public Collection<AbstractObject> getObjects()
+   {
+      return objects.values();
+   }
+
+   /**
+    * Get all zone objects. Returned collection is a live view backed by the cache.
+    *
+    * @return all zone objects
+    */
+   public Collection<Zone> getZones()
+   {
+      return zones.values();
+   }
+
+   /**
+    * Get search index for cached objects.
+    *
+    * @return search index
+    */
+   public ObjectSearchIndex getSearchIndex()
+   {
+      return searchIndex;
+   }
+
+   /**
+    * Get number of objects in cache.
+    *
+    * @return number of objects
+    */
+   public int size()
+   {
+      return objects.size();
+   }
+
+   /**
+    * Add new object or replace existing object with same ID.
+    *
+    * @param object object to add
+    */
+   public synchronized void put(AbstractObject object)
+   {
+      AbstractObject prev = objects.put(object.getObjectId(), object);
+      if ((prev != null) && !prev.getGuid().equals(object.getGuid()))
+         objectsByGUID.remove(prev.getGuid(), prev);
+      objectsByGUID.put(object.getGuid(), object);
+      if (object instanceof Zone)
+         zones.put(((Zone)object).getUIN(), (Zone)object);
+      else if (prev instanceof Zone)
+         zones.remove(((Zone)prev).getUIN(), prev);
+      if (prev != null)
+         updateAddressIndexes(prev, false);
+      updateAddressIndexes(object, true);
+      searchIndex.update(prev, object);
+      if ((prev == null) || !hasSameParents(prev, object))
+         invalidateAncestors(object);
+   }
+
+   /**
+    * Remove object from cache.
+    *
+    * @param id object ID
+    * @return removed object or null if object was not in cache
+    */
+   public synchronized AbstractObject remove(long id)
+   {
+      AbstractObject object = objects.remove(id);
+      if (object != null)
+      {
+         objectsByGUID.remove(object.getGuid(), object);
+         if (object instanceof Zone)
+            zones.remove(((Zone)object).getUIN(), object);
+         updateAddressIndexes(object, false);
+         searchIndex.update(object, null);
+         invalidateAncestors(object);
+      }
+      return object;
+   }
+
+   /**
+    * Add object to address indexes or remove it from them.
+    *
+    * @param object object
+    * @param add true to add object, false to remove
+    */
+   private void updateAddressIndexes(AbstractObject object, boolean add)
+   {
+      Set<InetAddress> ipAddresses = new HashSet<InetAddress>();
+      MacAddress macAddress = null;
+      if (object instanceof AbstractNode)
+      {
+         addAddress(ipAddresses, ((AbstractNode)object).getPrimaryIP());
+      }
+      else if (object instanceof Interface)
+      {
+         for(InetAddressEx a : ((Interface)object).getIpAddressList())
+            addAddress(ipAddresses, a);
+         macAddress = ((Interface)object).getMacAddress();
+      }
+      else if (object instanceof AccessPoint)
+      {
+         addAddress(ipAddresses, ((AccessPoint)object).getIpAddress());
+         macAddress = ((AccessPoint)object).getMacAddress();
+      }
+      else if (object instanceof Sensor)
+      {
+         macAddress = ((Sensor)object).getMacAddress();
+      }
+
+      Long id = object.getObjectId();
+      for(InetAddress a : ipAddresses)
+      {
+         if (add)
+            objectsByIP.computeIfAbsent(a, (k) -> ConcurrentHashMap.newKeySet()).add(id);
+         else
+            removeFromIndex(objectsByIP, a, id);
+      }
+      if ((macAddress != null) && !macAddress.isNull())
+      {
+         if (add)
+            objectsByMAC.computeIfAbsent(macAddress, (k) -> ConcurrentHashMap.newKeySet()).add(id);
+         else
+            removeFromIndex(objectsByMAC, macAddress, id);
+      }
+   }
+
+   /**
+    * Add IP address to set if it is valid.
+    *
+    * @param set set of addresses
+    * @param address address to add (can be null)
+    */
+   private static void addAddress(Set<InetAddress> set, InetAddressEx address)
+   {
+      if ((address != null) && address.isValidAddress())
+         set.add(address.getAddress());
+   }
+
+   /**
+    * Remove object ID from address index.
+    *
+    * @param index address index
+    * @param key address
+    * @param id object ID
+    */
+   private static <K> void removeFromIndex(ConcurrentHashMap<K, Set<Long>> index, K key, Long id)
+   {
+      Set<Long> ids = index.get(key);
+      if (ids != null)
+      {
+         ids.remove(id);
+         if (ids.isEmpty())
+            index.remove(key, ids);
+      }
+   }
+
+   /**
+    * Remove all objects from cache.
+    */
+   public synchronized void clear()
+   {
+      objects.clear();
+      objectsByGUID.clear();
+      zones.clear();
+      objectsByIP.clear();
+      objectsByMAC.clear();
+      searchIndex.clear();
+      hierarchyVersion.incrementAndGet();
+      ancestors.clear();
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "ObjectCache [objects=" + objects.size() + " zones=" + zones.size() + "]";
+   }
+}
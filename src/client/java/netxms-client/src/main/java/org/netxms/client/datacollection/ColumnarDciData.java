@@ -0,0 +1,755 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.datacollection;
+
+import java.util.Arrays;
+import java.util.Date;
+import org.netxms.client.constants.DataType;
+
+/**
+ * Series of collected DCI data stored in primitive arrays (one array for timestamps and one for values) instead of list of
+ * row objects. Integer data types are stored as <code>long</code>, floating point as <code>double</code>, and only string
+ * values are stored as objects. Row objects are created only if requested via methods inherited from
+ * <code>DciData</code>.
+ */
+public class ColumnarDciData extends DciData
+{
+   private static final int STORAGE_NONE = 0;
+   private static final int STORAGE_LONG = 1;
+   private static final int STORAGE_DOUBLE = 2;
+   private static final int STORAGE_STRING = 3;
+
+   private int size = 0;
+   private int storage = STORAGE_NONE;
+   private long[] timestamps;
+   private long[] longValues = null;
+   private double[] doubleValues = null;
+   private String[] stringValues = null;
+   private long[] rawLongValues = null;
+   private double[] rawDoubleValues = null;
+   private String[] rawStringValues = null;
+
+   /**
+    * Create empty data set.
+    *
+    * @param nodeId The node ID
+    * @param dciId The dci ID
+    */
+   public ColumnarDciData(long nodeId, long dciId)
+   {
+      this(nodeId, dciId, 1024);
+   }
+
+   /**
+    * Create empty data set with given initial capacity.
+    *
+    * @param nodeId The node ID
+    * @param dciId The dci ID
+    * @param capacity initial capacity
+    */
+   public ColumnarDciData(long nodeId, long dciId, int capacity)
+   {
+      super(nodeId, dciId);
+      timestamps = new long[Math.max(capacity, 16)];
+      storage = storageForType(getDataType());
+      allocateValues(timestamps.length);
+   }
+
+   /**
+    * Get storage type for given data type.
+    *
+    * @param dataType data type
+    * @return storage type
+    */
+   private static int storageForType(DataType dataType)
+   {
+      switch(dataType)
+      {
+         case INT32:
+         case UINT32:
+         case COUNTER32:
+         case INT64:
+         case UINT64:
+         case COUNTER64:
+            return STORAGE_LONG;
+         case FLOAT:
+            return STORAGE_DOUBLE;
+         case STRING:
+            return STORAGE_STRING;
+         default:
+            return STORAGE_NONE;
+      }
+   }
+
+   /**
+    * Allocate value arrays for current storage type.
+    *
+    * @param capacity array capacity
+    */
+   private void allocateValues(int capacity)
+   {
+      longValues = (storage == STORAGE_LONG) ? new long[capacity] : null;
+      doubleValues = (storage == STORAGE_DOUBLE) ? new double[capacity] : null;
+      stringValues = (storage == STORAGE_STRING) ? new String[capacity] : null;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#setDataType(org.netxms.client.constants.DataType)
+    */
+   @Override
+   public void setDataType(DataType dataType)
+   {
+      super.setDataType(dataType);
+      int newStorage = storageForType(dataType);
+      if (newStorage == storage)
+         return;
+
+      // Convert already stored values (should not normally happen as data type is set before adding rows)
+      Object[] values = new Object[size];
+      Object[] rawValues = new Object[size];
+      for(int i = 0; i < size; i++)
+      {
+         values[i] = getValue(i);
+         rawValues[i] = getRawValue(i);
+      }
+      storage = newStorage;
+      allocateValues(timestamps.length);
+      rawLongValues = null;
+      rawDoubleValues = null;
+      rawStringValues = null;
+      for(int i = 0; i < size; i++)
+      {
+         setValue(i, values[i], false);
+         if (rawValues[i] != null)
+            setValue(i, rawValues[i], true);
+      }
+   }
+
+   /**
+    * Ensure that arrays can hold at least given number of rows.
+    *
+    * @param capacity required capacity
+    */
+   private void ensureCapacity(int capacity)
+   {
+      if (capacity <= timestamps.length)
+         return;
+
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      if (longValues != null)
+         longValues = Arrays.copyOf(longValues, newCapacity);
+      if (doubleValues != null)
+         doubleValues = Arrays.copyOf(doubleValues, newCapacity);
+      if (stringValues != null)
+         stringValues = Arrays.copyOf(stringValues, newCapacity);
+      if (rawLongValues != null)
+         rawLongValues = Arrays.copyOf(rawLongValues, newCapacity);
+      if (rawDoubleValues != null)
+         rawDoubleValues = Arrays.copyOf(rawDoubleValues, newCapacity);
+      if (rawStringValues != null)
+         rawStringValues = Arrays.copyOf(rawStringValues, newCapacity);
+   }
+
+   /**
+    * Add row with integer value.
+    *
+    * @param timestamp row timestamp (milliseconds since epoch)
+    * @param value row value
+    */
+   public void addLong(long timestamp, long value)
+   {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      if (longValues != null)
+         longValues[size] = value;
+      else if (doubleValues != null)
+         doubleValues[size] = value;
+      else if (stringValues != null)
+         stringValues[size] = Long.toString(value);
+      size++;
+   }
+
+   /**
+    * Add row with floating point value.
+    *
+    * @param timestamp row timestamp (milliseconds since epoch)
+    * @param value row value
+    */
+   public void addDouble(long timestamp, double value)
+   {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      if (doubleValues != null)
+         doubleValues[size] = value;
+      else if (longValues != null)
+         longValues[size] = (long)value;
+      else if (stringValues != null)
+         stringValues[size] = Double.toString(value);
+      size++;
+   }
+
+   /**
+    * Add row with string value.
+    *
+    * @param timestamp row timestamp (milliseconds since epoch)
+    * @param value row value
+    */
+   public void addString(long timestamp, String value)
+   {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      setValue(size, value, false);
+      size++;
+   }
+
+   /**
+    * Add row without value (for NULL data type).
+    *
+    * @param timestamp row timestamp (milliseconds since epoch)
+    */
+   public void addEmpty(long timestamp)
+   {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      size++;
+   }
+
+   /**
+    * Set raw value for last added row.
+    *
+    * @param value raw value
+    */
+   public void setLastRawLong(long value)
+   {
+      if (size == 0)
+         return;
+      if (storage == STORAGE_DOUBLE)
+      {
+         setLastRawDouble(value);
+         return;
+      }
+      if (rawLongValues == null)
+         rawLongValues = new long[timestamps.length];
+      rawLongValues[size - 1] = value;
+   }
+
+   /**
+    * Set raw value for last added row.
+    *
+    * @param value raw value
+    */
+   public void setLastRawDouble(double value)
+   {
+      if (size == 0)
+         return;
+      if (storage == STORAGE_LONG)
+      {
+         setLastRawLong((long)value);
+         return;
+      }
+      if (rawDoubleValues == null)
+         rawDoubleValues = new double[timestamps.length];
+      rawDoubleValues[size - 1] = value;
+   }
+
+   /**
+    * Set raw value for last added row.
+    *
+    * @param value raw value
+    */
+   public void setLastRawString(String value)
+   {
+      if (size == 0)
+         return;
+      if (rawStringValues == null)
+         rawStringValues = new String[timestamps.length];
+      rawStringValues[size - 1] = value;
+   }
+
+   /**
+    * Set value (or raw value) at given position from object.
+    *
+    * @param index row index
+    * @param value value
+    * @param raw true to set raw value
+    */
+   private void setValue(int index, Object value, boolean raw)
+   {
+      if (value == null)
+         return;
+
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            long l = (value instanceof Number) ? ((Number)value).longValue() : parseLong(value.toString());
+            if (raw)
+            {
+               if (rawLongValues == null)
+                  rawLongValues = new long[timestamps.length];
+               rawLongValues[index] = l;
+            }
+            else
+            {
+               longValues[index] = l;
+            }
+            break;
+         case STORAGE_DOUBLE:
+            double d = (value instanceof Number) ? ((Number)value).doubleValue() : parseDouble(value.toString());
+            if (raw)
+            {
+               if (rawDoubleValues == null)
+                  rawDoubleValues = new double[timestamps.length];
+               rawDoubleValues[index] = d;
+            }
+            else
+            {
+               doubleValues[index] = d;
+            }
+            break;
+         case STORAGE_STRING:
+            if (raw)
+            {
+               if (rawStringValues == null)
+                  rawStringValues = new String[timestamps.length];
+               rawStringValues[index] = value.toString();
+            }
+            else
+            {
+               stringValues[index] = value.toString();
+            }
+            break;
+         default:
+            break;
+      }
+   }
+
+   /**
+    * Parse long value from string.
+    */
+   private static long parseLong(String s)
+   {
+      try
+      {
+         return Long.parseLong(s);
+      }
+      catch(NumberFormatException e)
+      {
+         return 0;
+      }
+   }
+
+   /**
+    * Parse double value from string.
+    */
+   private static double parseDouble(String s)
+   {
+      try
+      {
+         return Double.parseDouble(s);
+      }
+      catch(NumberFormatException e)
+      {
+         return 0;
+      }
+   }
+
+   /**
+    * Get number of rows.
+    *
+    * @return number of rows
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Get timestamp of given row.
+    *
+    * @param index row index
+    * @return row timestamp (milliseconds since epoch)
+    */
+   public long getTimestamp(int index)
+   {
+      checkIndex(index);
+      return timestamps[index];
+   }
+
+   /**
+    * Get value of given row as long.
+    *
+    * @param index row index
+    * @return row value as long
+    */
+   public long getLong(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return longValues[index];
+         case STORAGE_DOUBLE:
+            return (long)doubleValues[index];
+         case STORAGE_STRING:
+            return (stringValues[index] != null) ? parseLong(stringValues[index]) : 0;
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Get value of given row as double.
+    *
+    * @param index row index
+    * @return row value as double
+    */
+   public double getDouble(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return longValues[index];
+         case STORAGE_DOUBLE:
+            return doubleValues[index];
+         case STORAGE_STRING:
+            return (stringValues[index] != null) ? parseDouble(stringValues[index]) : 0;
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Get value of given row as string.
+    *
+    * @param index row index
+    * @return row value as string (empty string for rows without value)
+    */
+   public String getString(int index)
+   {
+      Object v = getValue(index);
+      return (v != null) ? v.toString() : "";
+   }
+
+   /**
+    * Get value of given row as object (<code>Long</code>, <code>Double</code>, or <code>String</code>, depending on data
+    * type).
+    *
+    * @param index row index
+    * @return row value or null
+    */
+   public Object getValue(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return Long.valueOf(longValues[index]);
+         case STORAGE_DOUBLE:
+            return Double.valueOf(doubleValues[index]);
+         case STORAGE_STRING:
+            return stringValues[index];
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * Get raw value of given row as double.
+    *
+    * @param index row index
+    * @return raw value as double (0 if not set)
+    */
+   public double getRawDouble(int index)
+   {
+      checkIndex(index);
+      if (rawDoubleValues != null)
+         return rawDoubleValues[index];
+      if (rawLongValues != null)
+         return rawLongValues[index];
+      if ((rawStringValues != null) && (rawStringValues[index] != null))
+         return parseDouble(rawStringValues[index]);
+      return 0;
+   }
+
+   /**
+    * Get raw value of given row as object.
+    *
+    * @param index row index
+    * @return raw value or null if not set
+    */
+   public Object getRawValue(int index)
+   {
+      checkIndex(index);
+      if (rawLongValues != null)
+         return Long.valueOf(rawLongValues[index]);
+      if (rawDoubleValues != null)
+         return Double.valueOf(rawDoubleValues[index]);
+      if (rawStringValues != null)
+         return rawStringValues[index];
+      return null;
+   }
+
+   /**
+    * Check row index.
+    *
+    * @param index row index
+    */
+   private void checkIndex(int index)
+   {
+      if ((index < 0) || (index >= size))
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+   }
+
+   /**
+    * Get copy of timestamps array.
+    *
+    * @return timestamps (milliseconds since epoch)
+    */
+   public long[] getTimestamps()
+   {
+      return Arrays.copyOf(timestamps, size);
+   }
+
+   /**
+    * Get copy of values converted to double.
+    *
+    * @return values as doubles
+    */
+   public double[] getDoubleValues()
+   {
+      if (storage == STORAGE_DOUBLE)
+         return Arrays.copyOf(doubleValues, size);
+      double[] result = new double[size];
+      for(int i = 0; i < size; i++)
+         result[i] = getDouble(i);
+      return result;
+   }
+
+   /**
+    * Get copy of values converted to long.
+    *
+    * @return values as longs
+    */
+   public long[] getLongValues()
+   {
+      if (storage == STORAGE_LONG)
+         return Arrays.copyOf(longValues, size);
+      long[] result = new long[size];
+      for(int i = 0; i < size; i++)
+         result[i] = getLong(i);
+      return result;
+   }
+
+   /**
+    * Release unused capacity.
+    */
+   public void trimToSize()
+   {
+      if (size == timestamps.length)
+         return;
+      int capacity = Math.max(size, 1);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      if (longValues != null)
+         longValues = Arrays.copyOf(longValues, capacity);
+      if (doubleValues != null)
+         doubleValues = Arrays.copyOf(doubleValues, capacity);
+      if (stringValues != null)
+         stringValues = Arrays.copyOf(stringValues, capacity);
+      if (rawLongValues != null)
+         rawLongValues = Arrays.copyOf(rawLongValues, capacity);
+      if (rawDoubleValues != null)
+         rawDoubleValues = Arrays.copyOf(rawDoubleValues, capacity);
+      if (rawStringValues != null)
+         rawStringValues = Arrays.copyOf(rawStringValues, capacity);
+   }
+
+   /**
+    * Create row object for given index.
+    *
+    * @param index row index
+    * @return row object
+    */
+   private DciDataRow createRow(int index)
+   {
+      DciDataRow row = new DciDataRow(new Date(timestamps[index]), getValue(index));
+      Object raw = getRawValue(index);
+      if (raw != null)
+         row.setRawValue(raw);
+      return row;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#getValues()
+    */
+   @Override
+   public DciDataRow[] getValues()
+   {
+      DciDataRow[] rows = new DciDataRow[size];
+      for(int i = 0; i < size; i++)
+         rows[i] = createRow(i);
+      return rows;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#getLastValue()
+    */
+   @Override
+   public DciDataRow getLastValue()
+   {
+      return (size > 0) ? createRow(size - 1) : null;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#getLastTimestamp()
+    */
+   @Override
+   public long getLastTimestamp()
+   {
+      return (size > 0) ? timestamps[size - 1] : 0;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#addDataRow(org.netxms.client.datacollection.DciDataRow)
+    */
+   @Override
+   public void addDataRow(DciDataRow row)
+   {
+      ensureCapacity(size + 1);
+      timestamps[size] = row.getTimestamp().getTime();
+      setValue(size, row.getValue(), false);
+      if (row.getRawValue() != null)
+         setValue(size, row.getRawValue(), true);
+      size++;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#getFirstTimestamp()
+    */
+   @Override
+   public long getFirstTimestamp()
+   {
+      return (size > 0) ? timestamps[0] : 0;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#addNewerValues(org.netxms.client.datacollection.DciData)
+    */
+   @Override
+   public int addNewerValues(DciData data)
+   {
+      long newest = getFirstTimestamp();
+      DciDataRow[] rows = data.getValues();
+      int count = 0;
+      while((count < rows.length) && (rows[count].getTimestamp().getTime() > newest))
+         count++;
+      if (count == 0)
+         return 0;
+
+      // Shift existing rows and clear values at freed positions
+      ensureCapacity(size + count);
+      System.arraycopy(timestamps, 0, timestamps, count, size);
+      if (longValues != null)
+      {
+         System.arraycopy(longValues, 0, longValues, count, size);
+         Arrays.fill(longValues, 0, count, 0);
+      }
+      if (doubleValues != null)
+      {
+         System.arraycopy(doubleValues, 0, doubleValues, count, size);
+         Arrays.fill(doubleValues, 0, count, 0);
+      }
+      if (stringValues != null)
+      {
+         System.arraycopy(stringValues, 0, stringValues, count, size);
+         Arrays.fill(stringValues, 0, count, null);
+      }
+      if (rawLongValues != null)
+      {
+         System.arraycopy(rawLongValues, 0, rawLongValues, count, size);
+         Arrays.fill(rawLongValues, 0, count, 0);
+      }
+      if (rawDoubleValues != null)
+      {
+         System.arraycopy(rawDoubleValues, 0, rawDoubleValues, count, size);
+         Arrays.fill(rawDoubleValues, 0, count, 0);
+      }
+      if (rawStringValues != null)
+      {
+         System.arraycopy(rawStringValues, 0, rawStringValues, count, size);
+         Arrays.fill(rawStringValues, 0, count, null);
+      }
+
+      for(int i = 0; i < count; i++)
+      {
+         timestamps[i] = rows[i].getTimestamp().getTime();
+         setValue(i, rows[i].getValue(), false);
+         if (rows[i].getRawValue() != null)
+            setValue(i, rows[i].getRawValue(), true);
+      }
+      size += count;
+      return count;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#removeValuesBefore(long)
+    */
+   @Override
+   public int removeValuesBefore(long timestamp)
+   {
+      int index = size;
+      while((index > 0) && (timestamps[index - 1] < timestamp))
+         index--;
+      int count = size - index;
+      if (stringValues != null)
+         Arrays.fill(stringValues, index, size, null);
+      if (rawStringValues != null)
+         Arrays.fill(rawStringValues, index, size, null);
+      size = index;
+      return count;
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#invert()
+    */
+   @Override
+   public void invert()
+   {
+      if (longValues != null)
+      {
+         for(int i = 0; i < size; i++)
+            longValues[i] = -longValues[i];
+      }
+      else if (doubleValues != null)
+      {
+         for(int i = 0; i < size; i++)
+            doubleValues[i] = -doubleValues[i];
+      }
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciData#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "ColumnarDciData [nodeId=" + getNodeId() + ", dciId=" + getDciId() + ", dataType=" + getDataType() + ", size=" + size + "]";
+   }
+}
@@ -19,6 +19,7 @@
 package org.netxms.client.datacollection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import org.netxms.client.constants.DataType;
 
 /**
@@ -76,6 +77,16 @@ public DciDataRow getLastValue()
 		return (values.size() > 0) ? values.get(values.size() - 1) : null;
 	}
 	
+	/**
+	 * Get timestamp of last added value
+	 * 
+	 * @return timestamp of last added value (milliseconds since epoch) or 0 if there are no values
+	 */
+	public long getLastTimestamp()
+	{
+		return (values.size() > 0) ? values.get(values.size() - 1).getTimestamp().getTime() : 0;
+	}
+	
 	/**
 	 * Add new value
 	 * 
@@ -86,6 +97,52 @@ public void addDataRow(DciDataRow row)
 		values.add(row);
 	}
 
+	/**
+	 * Get timestamp of first (newest) value
+	 * 
+	 * @return timestamp of first value (milliseconds since epoch) or 0 if there are no values
+	 */
+	public long getFirstTimestamp()
+	{
+		return (values.size() > 0) ? values.get(0).getTimestamp().getTime() : 0;
+	}
+
+	/**
+	 * Add values from given data set which are newer than first (newest) value of this data set. Both data sets are
+	 * expected to be in newest to oldest order, so added values are inserted at the beginning.
+	 * 
+	 * @param data data set with new values
+	 * @return number of added values
+	 */
+	public int addNewerValues(DciData data)
+	{
+		long newest = getFirstTimestamp();
+		DciDataRow[] rows = data.getValues();
+		int count = 0;
+		while((count < rows.length) && (rows[count].getTimestamp().getTime() > newest))
+			count++;
+		if (count > 0)
+			values.addAll(0, Arrays.asList(rows).subList(0, count));
+		return count;
+	}
+
+	/**
+	 * Remove values with timestamp before given time. Values are expected to be in newest to oldest order.
+	 * 
+	 * @param timestamp time limit (milliseconds since epoch)
+	 * @return number of removed values
+	 */
+	public int removeValuesBefore(long timestamp)
+	{
+		int index = values.size();
+		while((index > 0) && (values.get(index - 1).getTimestamp().getTime() < timestamp))
+			index--;
+		int count = values.size() - index;
+		if (count > 0)
+			values.subList(index, values.size()).clear();
+		return count;
+	}
+
 	/**
 	 * @return the dataType
 	 */
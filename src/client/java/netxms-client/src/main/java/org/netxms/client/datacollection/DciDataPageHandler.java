@@ -0,0 +1,34 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.datacollection;
+
+/**
+ * Handler for pages of collected DCI data received from server. Pages are delivered one at a time in newest to oldest
+ * order, so caller can process long time ranges without keeping whole data set in memory.
+ */
+public interface DciDataPageHandler
+{
+   /**
+    * Called for each received page of data. Rows within page are in newest to oldest order. Page object is not used by
+    * library after this method returns.
+    *
+    * @param page received data page
+    */
+   public void onDataPage(ColumnarDciData page);
+}
@@ -22,17 +22,17 @@
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import org.netxms.client.maps.elements.NetworkMapElement;
 import org.netxms.client.maps.elements.NetworkMapObject;
 
 /**
- * Network map object representation used by visualisation tools
- *
+ * Network map object representation used by visualisation tools. Page maintains indexes for lookup of object elements by
+ * object ID, links by element, and links by status object. Indexes are updated when elements and links are added or
+ * removed, so changes to link's status object list should be made before link is added to page (or link should be
+ * removed and added again).
  */
 public class NetworkMapPage
 {
@@ -41,6 +41,10 @@
    private long nextLinkId;
 	private Map<Long, NetworkMapElement> elements = new HashMap<Long, NetworkMapElement>(0);
    private Map<Long, NetworkMapLink> links = new HashMap<Long, NetworkMapLink>(0);
+   private Map<Long, NetworkMapObject> objectElements = new HashMap<Long, NetworkMapObject>(0);
+   private Map<Long, List<NetworkMapLink>> elementLinks = new HashMap<Long, List<NetworkMapLink>>(0);
+   private Map<Long, List<NetworkMapLink>> statusObjectLinks = new HashMap<Long, List<NetworkMapLink>>(0);
+   private Map<Long, Set<Long>> indexedStatusObjects = new HashMap<Long, Set<Long>>(0);
 
 	/**
 	 * Create empty named page.
@@ -61,11 +65,37 @@ public NetworkMapPage(final String id)
 	 */
 	public void addElement(final NetworkMapElement element)
 	{
-		elements.put(element.getId(), element);
+      NetworkMapElement prev = elements.put(element.getId(), element);
+      if (prev instanceof NetworkMapObject)
+         unindexObjectElement((NetworkMapObject)prev);
+      if ((element instanceof NetworkMapObject) && !objectElements.containsKey(((NetworkMapObject)element).getObjectId()))
+         objectElements.put(((NetworkMapObject)element).getObjectId(), (NetworkMapObject)element);
 		if (element.getId() >= nextElementId)
 			nextElementId = element.getId() + 1;
 	}
 
+   /**
+    * Remove object element from object index. If there are other elements for same object, one of them will be indexed
+    * instead.
+    *
+    * @param element object element
+    */
+   private void unindexObjectElement(NetworkMapObject element)
+   {
+      long objectId = element.getObjectId();
+      if (objectElements.get(objectId) != element)
+         return;
+      objectElements.remove(objectId);
+      for(NetworkMapElement e : elements.values())
+      {
+         if ((e instanceof NetworkMapObject) && (((NetworkMapObject)e).getObjectId() == objectId))
+         {
+            objectElements.put(objectId, (NetworkMapObject)e);
+            break;
+         }
+      }
+   }
+
 	/**
 	 * Add all elements from given collection.
 	 *
@@ -84,22 +114,100 @@ public void addAllElements(Collection<NetworkMapElement> set)
 	 */
 	public void addLink(final NetworkMapLink link)
 	{
+      NetworkMapLink prev = links.remove(link.getId());
+      if (prev != null)
+         unindexLink(prev);
+
 	   link.resetPosition();
-      for(NetworkMapLink l : links.values())
+      List<NetworkMapLink> adjacentLinks = elementLinks.get(link.getElement1());
+      if (adjacentLinks != null)
 	   {
-	      if (((l.getElement1() == link.getElement1() && l.getElement2() == link.getElement2()) ||
-	           (l.getElement1() == link.getElement2() && l.getElement2() == link.getElement1())) &&
-	          (l.getId() != link.getId()))
-	      {
-	         l.updatePosition();
-	         link.setDuplicateCount(l.getDuplicateCount());
-	      }
+         for(NetworkMapLink l : adjacentLinks)
+         {
+            if ((l.getElement1() == link.getElement1() && l.getElement2() == link.getElement2()) ||
+                (l.getElement1() == link.getElement2() && l.getElement2() == link.getElement1()))
+            {
+               l.updatePosition();
+               link.setDuplicateCount(l.getDuplicateCount());
+            }
+         }
 	   }
       links.put(link.getId(), link);
+      indexLink(link);
       if (link.getId() >= nextLinkId)
          nextLinkId = link.getId() + 1;
 	}
 
+   /**
+    * Add link to element and status object indexes.
+    *
+    * @param link link to add
+    */
+   private void indexLink(NetworkMapLink link)
+   {
+      addToIndex(elementLinks, link.getElement1(), link);
+      if (link.getElement2() != link.getElement1())
+         addToIndex(elementLinks, link.getElement2(), link);
+      // Status object list can be modified by caller after link is added, so keep set of indexed IDs for removal
+      Set<Long> statusObjects = new HashSet<Long>(link.getStatusObjects());
+      for(Long objectId : statusObjects)
+         addToIndex(statusObjectLinks, objectId, link);
+      if (!statusObjects.isEmpty())
+         indexedStatusObjects.put(link.getId(), statusObjects);
+   }
+
+   /**
+    * Remove link from element and status object indexes.
+    *
+    * @param link link to remove
+    */
+   private void unindexLink(NetworkMapLink link)
+   {
+      removeFromIndex(elementLinks, link.getElement1(), link);
+      removeFromIndex(elementLinks, link.getElement2(), link);
+      Set<Long> statusObjects = indexedStatusObjects.remove(link.getId());
+      if (statusObjects != null)
+      {
+         for(Long objectId : statusObjects)
+            removeFromIndex(statusObjectLinks, objectId, link);
+      }
+   }
+
+   /**
+    * Add link to given index.
+    *
+    * @param index index
+    * @param key index key
+    * @param link link to add
+    */
+   private static void addToIndex(Map<Long, List<NetworkMapLink>> index, long key, NetworkMapLink link)
+   {
+      List<NetworkMapLink> list = index.get(key);
+      if (list == null)
+      {
+         list = new ArrayList<NetworkMapLink>(2);
+         index.put(key, list);
+      }
+      list.add(link);
+   }
+
+   /**
+    * Remove link from given index.
+    *
+    * @param index index
+    * @param key index key
+    * @param link link to remove
+    */
+   private static void removeFromIndex(Map<Long, List<NetworkMapLink>> index, long key, NetworkMapLink link)
+   {
+      List<NetworkMapLink> list = index.get(key);
+      if (list == null)
+         return;
+      list.remove(link);
+      if (list.isEmpty())
+         index.remove(key);
+   }
+
 	/**
 	 * Add all links from given collection
 	 * 
@@ -133,16 +241,18 @@ public NetworkMapElement getElement(long elementId, Class<? extends NetworkMapEl
 	 */
 	public void removeElement(long elementId)
 	{
-		elements.remove(elementId);
+      NetworkMapElement element = elements.remove(elementId);
+      if (element instanceof NetworkMapObject)
+         unindexObjectElement((NetworkMapObject)element);
 
-      Iterator<Entry<Long, NetworkMapLink>> it = links.entrySet().iterator();
-		while(it.hasNext())
+      List<NetworkMapLink> adjacentLinks = elementLinks.get(elementId);
+      if (adjacentLinks != null)
 		{
-         NetworkMapLink l = it.next().getValue();
-			if ((l.getElement1() == elementId) || (l.getElement2() == elementId))
-			{
-				it.remove();
-			}
+         for(NetworkMapLink l : new ArrayList<NetworkMapLink>(adjacentLinks))
+         {
+            links.remove(l.getId());
+            unindexLink(l);
+         }
 		}
 	}
 
@@ -153,22 +263,10 @@ public void removeElement(long elementId)
 	 */
 	public void removeObjectElement(long objectId)
 	{
-		long elementId = -1;
-		for(NetworkMapElement element : elements.values())
-		{
-			if (element instanceof NetworkMapObject)
-			{
-				if (((NetworkMapObject)element).getObjectId() == objectId)
-				{
-					elementId = element.getId();
-					break;
-				}
-			}
-		}
-
-		if (elementId != -1)
+      NetworkMapObject element = objectElements.get(objectId);
+      if (element != null)
 		{
-			removeElement(elementId);
+         removeElement(element.getId());
 		}
 	}
 
@@ -179,7 +277,7 @@ public void removeObjectElement(long objectId)
 	 */
 	public void removeLink(NetworkMapLink link)
 	{
-      links.remove(link.getId());
+      removeLink(link.getId());
 	}
 
    /**
@@ -189,7 +287,9 @@ public void removeLink(NetworkMapLink link)
     */
    public void removeLink(long id)
    {
-      links.remove(id);
+      NetworkMapLink link = links.remove(id);
+      if (link != null)
+         unindexLink(link);
    }
 
 	/**
@@ -292,10 +392,7 @@ public long createLinkId()
     */
 	public NetworkMapObject findObjectElement(long objectId)
 	{
-		for(NetworkMapElement e : elements.values())
-			if ((e instanceof NetworkMapObject) && (((NetworkMapObject)e).getObjectId() == objectId))
-				return (NetworkMapObject)e;
-		return null;
+      return objectElements.get(objectId);
 	}
 	
 	/**
@@ -308,9 +405,13 @@ public NetworkMapObject findObjectElement(long objectId)
 	public List<NetworkMapLink> findLinks(NetworkMapElement source, NetworkMapElement destination)
 	{
 	   List<NetworkMapLink> result = new ArrayList<NetworkMapLink>();
-      for(NetworkMapLink l : links.values())
-			if ((l.getElement1() == source.getId()) && (l.getElement2() == destination.getId()))
-				result.add(l);
+      List<NetworkMapLink> adjacentLinks = elementLinks.get(source.getId());
+      if (adjacentLinks != null)
+      {
+         for(NetworkMapLink l : adjacentLinks)
+            if ((l.getElement1() == source.getId()) && (l.getElement2() == destination.getId()))
+               result.add(l);
+      }
 		return result;
 	}
 
@@ -322,18 +423,8 @@ public List<NetworkMapLink> findLinks(NetworkMapElement source, NetworkMapElemen
 	 */
 	public List<NetworkMapLink> findLinksWithStatusObject(long objectId)
 	{
-		List<NetworkMapLink> list = null;
-      for(NetworkMapLink l : links.values())
-		{
-		   for(Long obj : l.getStatusObjects())
-			if (obj == objectId)
-			{
-				if (list == null)
-					list = new ArrayList<NetworkMapLink>();
-				list.add(l);
-			}
-		}
-		return list;
+      List<NetworkMapLink> list = statusObjectLinks.get(objectId);
+      return (list != null) ? new ArrayList<NetworkMapLink>(list) : null;
 	}
    
    /**
@@ -363,7 +454,10 @@ public List<Long> getAllLinkStatusObjects()
 	 */
 	public boolean areObjectsConnected(long elementId1, long elementId2)
 	{
-      for(NetworkMapLink l : links.values())
+      List<NetworkMapLink> adjacentLinks = elementLinks.get(elementId1);
+      if (adjacentLinks == null)
+         return false;
+      for(NetworkMapLink l : adjacentLinks)
 			if (((l.getElement1() == elementId1) && (l.getElement2() == elementId2)) ||
 			    ((l.getElement1() == elementId2) && (l.getElement2() == elementId1)))
 				return true;
@@ -395,16 +489,19 @@ public Object[] getElementsAndLinks()
 	public NetworkMapElement[] getConnectedElements(long root)
 	{
 		Set<NetworkMapElement> result = new HashSet<NetworkMapElement>(0);
-		
-      for(NetworkMapLink link : links.values())
+      List<NetworkMapLink> adjacentLinks = elementLinks.get(root);
+      if (adjacentLinks != null)
 		{
-			if (link.getElement1() == root)
-			{
-				long id = link.getElement2();
-				NetworkMapElement e = elements.get(id);
-				if (e != null)
-					result.add(e);
-			}
+         for(NetworkMapLink link : adjacentLinks)
+         {
+            if (link.getElement1() == root)
+            {
+               long id = link.getElement2();
+               NetworkMapElement e = elements.get(id);
+               if (e != null)
+                  result.add(e);
+            }
+         }
 		}
 		return result.toArray(new NetworkMapElement[result.size()]);
 	}
@@ -18,10 +18,12 @@
  */
 package org.netxms.client.objects;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -542,12 +544,8 @@ public boolean isChildOf(final long objectId)
 	   
 		for(Long id : parents)
 		{
-			AbstractObject object = session.findObjectById(id);
-			if (object != null)
-			{
-				if (object.isChildOf(objectId))
-				   return true;
-			}
+			if (session.isObjectChildOf(id, objectId))
+			   return true;
 		}
 		return false;
 	}
@@ -586,19 +584,7 @@ public boolean isDirectChildOf(final long objectId)
     */
    public boolean isParentOf(final long objectId)
    {
-      if (children.contains(objectId))
-         return true;
-      
-      for(Long id : children)
-      {
-         AbstractObject object = session.findObjectById(id);
-         if (object != null)
-         {
-            if (object.isParentOf(objectId))
-               return true;
-         }
-      }
-      return false;
+      return children.contains(objectId) || session.isObjectChildOf(objectId, this.objectId);
    }
 
    /**
@@ -701,18 +687,26 @@ public long[] getParentIdList()
     */
 	private void getAllChildrenInternal(int[] classFilter, Set<AbstractObject> set)
 	{
-		for (Long child : children)
-		{
-			AbstractObject obj = session.findObjectById(child);
-			if (obj != null)
-			{
-				if (matchClassFilter(classFilter, obj.getObjectClass()))
-				{
-					set.add(obj);
-				}
-				obj.getAllChildrenInternal(classFilter, set);
-			}
-		}
+      // Objects reachable by multiple paths are visited only once
+      Set<Long> visited = new HashSet<Long>();
+      Deque<AbstractObject> queue = new ArrayDeque<AbstractObject>();
+      queue.add(this);
+      while(!queue.isEmpty())
+      {
+         AbstractObject current = queue.poll();
+         for(Long child : current.children)
+         {
+            if (!visited.add(child))
+               continue;
+            AbstractObject obj = session.findObjectById(child);
+            if (obj != null)
+            {
+               if (matchClassFilter(classFilter, obj.getObjectClass()))
+                  set.add(obj);
+               queue.add(obj);
+            }
+         }
+      }
 	}
 
    /**
@@ -808,9 +802,7 @@ private void getAllParentsInternal(int[] classFilter, Collection<AbstractObject>
 	 */
 	public Set<AbstractObject> getAllParents(int classFilter)
 	{
-		Set<AbstractObject> result = new HashSet<AbstractObject>();
-      getAllParentsInternal((classFilter < 0) ? null : new int[] { classFilter }, result, false);
-		return result;
+      return getAllParents((classFilter < 0) ? null : new int[] { classFilter });
 	}
 
    /**
@@ -821,8 +813,21 @@ public Set<AbstractObject> getAllParents(int classFilter)
     */
    public Set<AbstractObject> getAllParents(int[] classFilter)
    {
+      Set<Long> ids = new HashSet<Long>();
+      for(Long id : parents)
+      {
+         ids.add(id);
+         for(long a : session.getObjectAncestors(id))
+            ids.add(a);
+      }
+
       Set<AbstractObject> result = new HashSet<AbstractObject>();
-      getAllParentsInternal(classFilter, result, false);
+      for(Long id : ids)
+      {
+         AbstractObject obj = session.findObjectById(id);
+         if ((obj != null) && matchClassFilter(classFilter, obj.getObjectClass()))
+            result.add(obj);
+      }
       return result;
    }
 
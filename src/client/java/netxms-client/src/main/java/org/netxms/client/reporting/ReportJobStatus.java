@@ -0,0 +1,131 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.reporting;
+
+import java.util.Date;
+import java.util.UUID;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+
+/**
+ * Status and progress of report execution job on reporting server
+ */
+public class ReportJobStatus
+{
+   /**
+    * Job state
+    */
+   public enum State
+   {
+      PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+   }
+
+   private UUID jobId;
+   private UUID reportId;
+   private State state;
+   private int pageCount;
+   private Date submitTime;
+   private Date startTime;
+   private Date endTime;
+
+   /**
+    * Create job status object from NXCP message.
+    *
+    * @param msg NXCP message
+    * @param jobId job ID
+    */
+   public ReportJobStatus(NXCPMessage msg, UUID jobId)
+   {
+      this.jobId = jobId;
+      reportId = msg.getFieldAsUUID(NXCPCodes.VID_REPORT_DEFINITION);
+      int s = msg.getFieldAsInt32(NXCPCodes.VID_JOB_STATUS);
+      state = ((s >= 0) && (s < State.values().length)) ? State.values()[s] : State.FAILED;
+      pageCount = msg.getFieldAsInt32(NXCPCodes.VID_JOB_PROGRESS);
+      submitTime = msg.getFieldAsDate(NXCPCodes.VID_CREATION_TIME);
+      startTime = msg.isFieldPresent(NXCPCodes.VID_TIME_FROM) ? msg.getFieldAsDate(NXCPCodes.VID_TIME_FROM) : null;
+      endTime = msg.isFieldPresent(NXCPCodes.VID_TIME_TO) ? msg.getFieldAsDate(NXCPCodes.VID_TIME_TO) : null;
+   }
+
+   /**
+    * @return job ID
+    */
+   public UUID getJobId()
+   {
+      return jobId;
+   }
+
+   /**
+    * @return report ID
+    */
+   public UUID getReportId()
+   {
+      return reportId;
+   }
+
+   /**
+    * @return job state
+    */
+   public State getState()
+   {
+      return state;
+   }
+
+   /**
+    * Get number of report pages generated so far.
+    *
+    * @return number of report pages generated so far
+    */
+   public int getPageCount()
+   {
+      return pageCount;
+   }
+
+   /**
+    * @return time when job was submitted
+    */
+   public Date getSubmitTime()
+   {
+      return submitTime;
+   }
+
+   /**
+    * @return time when job was started or null if job is not started yet
+    */
+   public Date getStartTime()
+   {
+      return startTime;
+   }
+
+   /**
+    * @return time when job was finished or null if job is not finished yet
+    */
+   public Date getEndTime()
+   {
+      return endTime;
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "ReportJobStatus [jobId=" + jobId + ", reportId=" + reportId + ", state=" + state + ", pageCount=" + pageCount + "]";
+   }
+}
@@ -0,0 +1,398 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.netxms.client.objects.AbstractObject;
+
+/**
+ * Inverted index of objects for fast evaluation of search queries. Object text (name and alias) is split into tokens
+ * (sequences of letters and digits), and index maps each token and each trigram of a token to set of IDs of objects
+ * containing it. Index also maps full object names and values of indexed attributes to object IDs. Lookups can run concurrently with updates; updates
+ * should be serialized by caller.
+ * <p>
+ * Indexed attributes are:
+ * <p>
+ * class - object class name (as returned by <code>getObjectClassName</code>)
+ * <p>
+ * status - object status name
+ */
+public class ObjectSearchIndex
+{
+   private static final int SMALL_RESULT_SIZE = 1000;
+   private static final int GRAM_SIZE = 3;
+
+   private final ConcurrentSkipListMap<String, Set<Long>> tokens = new ConcurrentSkipListMap<String, Set<Long>>();
+   private final ConcurrentSkipListMap<String, Set<Long>> names = new ConcurrentSkipListMap<String, Set<Long>>();
+   private final ConcurrentHashMap<String, Set<Long>> trigrams = new ConcurrentHashMap<String, Set<Long>>();
+   private final ConcurrentHashMap<String, Set<Long>> attributes = new ConcurrentHashMap<String, Set<Long>>();
+
+   /**
+    * Check if given attribute is indexed.
+    *
+    * @param name attribute name (in lower case)
+    * @return true if given attribute is indexed
+    */
+   public static boolean isIndexedAttribute(String name)
+   {
+      return name.equals("class") || name.equals("status");
+   }
+
+   /**
+    * Get text used for indexing and matching of given object.
+    *
+    * @param object object
+    * @return object text
+    */
+   public static String getText(AbstractObject object)
+   {
+      return object.getNameWithAlias();
+   }
+
+   /**
+    * Get value of given attribute for given object.
+    *
+    * @param object object
+    * @param name attribute name (in lower case)
+    * @return attribute value or null
+    */
+   public static String getAttribute(AbstractObject object, String name)
+   {
+      if (name.equals("class"))
+         return object.getObjectClassName();
+      if (name.equals("status"))
+         return object.getStatus().name();
+      if (name.equals("id"))
+         return Long.toString(object.getObjectId());
+      if (name.equals("alias"))
+         return object.getAlias();
+      return object.getCustomAttributeValue(name);
+   }
+
+   /**
+    * Create search attribute provider for given object, so it can be matched by <code>SearchQuery</code>.
+    *
+    * @param object object
+    * @return search attribute provider for given object
+    */
+   public static SearchAttributeProvider createAttributeProvider(final AbstractObject object)
+   {
+      return new SearchAttributeProvider() {
+         @Override
+         public String getText()
+         {
+            return ObjectSearchIndex.getText(object);
+         }
+
+         @Override
+         public String getAttribute(String name)
+         {
+            return ObjectSearchIndex.getAttribute(object, name);
+         }
+      };
+   }
+
+   /**
+    * Split text into lower case tokens.
+    *
+    * @param text text to split
+    * @return set of tokens
+    */
+   public static Set<String> tokenize(String text)
+   {
+      Set<String> result = new HashSet<String>();
+      int start = -1;
+      for(int i = 0; i <= text.length(); i++)
+      {
+         boolean tokenChar = (i < text.length()) && Character.isLetterOrDigit(text.charAt(i));
+         if (tokenChar)
+         {
+            if (start == -1)
+               start = i;
+         }
+         else if (start != -1)
+         {
+            result.add(text.substring(start, i).toLowerCase());
+            start = -1;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Get all trigrams of given tokens.
+    *
+    * @param tokens tokens
+    * @return set of trigrams
+    */
+   private static Set<String> trigrams(Collection<String> tokens)
+   {
+      Set<String> result = new HashSet<String>();
+      for(String t : tokens)
+      {
+         for(int i = 0; i <= t.length() - GRAM_SIZE; i++)
+            result.add(t.substring(i, i + GRAM_SIZE));
+      }
+      return result;
+   }
+
+   /**
+    * Update index after object change. Either old or new object can be null (for added and removed objects).
+    *
+    * @param oldObject previous version of object or null
+    * @param newObject new version of object or null
+    */
+   public void update(AbstractObject oldObject, AbstractObject newObject)
+   {
+      if (oldObject != null)
+      {
+         if ((newObject == null) || !getText(oldObject).equals(getText(newObject)))
+         {
+            Set<String> oldTokens = tokenize(getText(oldObject));
+            for(String t : oldTokens)
+               removePosting(tokens, t, oldObject.getObjectId());
+            for(String t : trigrams(oldTokens))
+               removePosting(trigrams, t, oldObject.getObjectId());
+         }
+         if ((newObject == null) || !oldObject.getObjectName().equals(newObject.getObjectName()))
+            removePosting(names, oldObject.getObjectName().toLowerCase(), oldObject.getObjectId());
+         removePosting(attributes, "class=" + oldObject.getObjectClassName().toLowerCase(), oldObject.getObjectId());
+         removePosting(attributes, "status=" + oldObject.getStatus().name().toLowerCase(), oldObject.getObjectId());
+      }
+
+      if (newObject != null)
+      {
+         if ((oldObject == null) || !getText(oldObject).equals(getText(newObject)))
+         {
+            Set<String> newTokens = tokenize(getText(newObject));
+            for(String t : newTokens)
+               addPosting(tokens, t, newObject.getObjectId());
+            for(String t : trigrams(newTokens))
+               addPosting(trigrams, t, newObject.getObjectId());
+         }
+         if ((oldObject == null) || !oldObject.getObjectName().equals(newObject.getObjectName()))
+            addPosting(names, newObject.getObjectName().toLowerCase(), newObject.getObjectId());
+         addPosting(attributes, "class=" + newObject.getObjectClassName().toLowerCase(), newObject.getObjectId());
+         addPosting(attributes, "status=" + newObject.getStatus().name().toLowerCase(), newObject.getObjectId());
+      }
+   }
+
+   /**
+    * Remove all entries from index.
+    */
+   public void clear()
+   {
+      tokens.clear();
+      trigrams.clear();
+      names.clear();
+      attributes.clear();
+   }
+
+   /**
+    * Add object ID to posting list for given key.
+    *
+    * @param map index map
+    * @param key key
+    * @param id object ID
+    */
+   private static void addPosting(ConcurrentMap<String, Set<Long>> map, String key, long id)
+   {
+      map.computeIfAbsent(key, (k) -> ConcurrentHashMap.newKeySet()).add(id);
+   }
+
+   /**
+    * Remove object ID from posting list for given key.
+    *
+    * @param map index map
+    * @param key key
+    * @param id object ID
+    */
+   private static void removePosting(ConcurrentMap<String, Set<Long>> map, String key, long id)
+   {
+      Set<Long> ids = map.get(key);
+      if (ids != null)
+      {
+         ids.remove(id);
+         if (ids.isEmpty())
+            map.remove(key, ids);
+      }
+   }
+
+   /**
+    * Find IDs of objects with given name (case-insensitive).
+    *
+    * @param name object name
+    * @return set of object IDs (empty if no objects found)
+    */
+   public Set<Long> findByName(String name)
+   {
+      Set<Long> ids = names.get(name.toLowerCase());
+      return (ids != null) ? new HashSet<Long>(ids) : Collections.<Long>emptySet();
+   }
+
+   /**
+    * Find IDs of objects with name starting with given prefix (case-insensitive).
+    *
+    * @param prefix name prefix
+    * @return set of object IDs (empty if no objects found)
+    */
+   public Set<Long> findByNamePrefix(String prefix)
+   {
+      String p = prefix.toLowerCase();
+      Set<Long> result = new HashSet<Long>();
+      ConcurrentNavigableMap<String, Set<Long>> range = p.isEmpty() ? names : names.tailMap(p);
+      for(Map.Entry<String, Set<Long>> e : range.entrySet())
+      {
+         if (!e.getKey().startsWith(p))
+            break;
+         result.addAll(e.getValue());
+      }
+      return result;
+   }
+
+   /**
+    * Find candidate objects for text containing given substring. Returned set contains all objects whose text contains
+    * given substring, but may also contain objects that do not (if substring spans several tokens), so candidates should
+    * be verified by caller.
+    *
+    * @param text substring to find (in lower case)
+    * @return set of candidate object IDs or null if index cannot be used for given substring
+    */
+   public Set<Long> findTextCandidates(String text)
+   {
+      // Every token of search text is a substring of some token of matching object text
+      List<String> parts = new ArrayList<String>();
+      int start = -1;
+      for(int i = 0; i <= text.length(); i++)
+      {
+         boolean tokenChar = (i < text.length()) && Character.isLetterOrDigit(text.charAt(i));
+         if (tokenChar)
+         {
+            if (start == -1)
+               start = i;
+         }
+         else if (start != -1)
+         {
+            parts.add(text.substring(start, i));
+            start = -1;
+         }
+      }
+      if (parts.isEmpty())
+         return null;
+
+      // Intersect posting lists of all trigrams starting from shortest one, so cost is bound by most selective trigram
+      List<Set<Long>> postings = new ArrayList<Set<Long>>();
+      List<String> shortParts = new ArrayList<String>();
+      for(String p : parts)
+      {
+         if (p.length() < GRAM_SIZE)
+         {
+            shortParts.add(p);
+            continue;
+         }
+         for(String t : trigrams(Collections.singleton(p)))
+         {
+            Set<Long> ids = trigrams.get(t);
+            if (ids == null)
+               return new HashSet<Long>();
+            postings.add(ids);
+         }
+      }
+
+      Set<Long> result = null;
+      if (!postings.isEmpty())
+      {
+         Collections.sort(postings, (a, b) -> a.size() - b.size());
+         result = new HashSet<Long>(postings.get(0));
+         for(int i = 1; (i < postings.size()) && !result.isEmpty(); i++)
+            result.retainAll(postings.get(i));
+      }
+
+      // Candidates are verified anyway, so small set is not worth narrowing further by scanning token dictionary
+      for(String p : shortParts)
+      {
+         if ((result != null) && (result.size() <= SMALL_RESULT_SIZE))
+            break;
+         Set<Long> ids = findByTokenSubstring(p);
+         if (result == null)
+            result = ids;
+         else
+            result.retainAll(ids);
+      }
+      return result;
+   }
+
+   /**
+    * Find objects having token containing given string by scanning token dictionary. Used for strings too short for
+    * trigram lookup.
+    *
+    * @param s search string
+    * @return set of object IDs
+    */
+   private Set<Long> findByTokenSubstring(String s)
+   {
+      Set<Long> result = new HashSet<Long>();
+      for(Map.Entry<String, Set<Long>> e : tokens.entrySet())
+      {
+         if (e.getKey().contains(s))
+            result.addAll(e.getValue());
+      }
+      return result;
+   }
+
+   /**
+    * Find objects with given attribute having one of given values.
+    *
+    * @param name attribute name (in lower case)
+    * @param values attribute values (in lower case)
+    * @return set of object IDs or null if attribute is not indexed
+    */
+   public Set<Long> findByAttribute(String name, Collection<String> values)
+   {
+      if (!isIndexedAttribute(name))
+         return null;
+      Set<Long> result = new HashSet<Long>();
+      for(String v : values)
+      {
+         Set<Long> ids = attributes.get(name + "=" + v);
+         if (ids != null)
+            result.addAll(ids);
+      }
+      return result;
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "ObjectSearchIndex [tokens=" + tokens.size() + " trigrams=" + trigrams.size() + " names=" + names.size() + " attributes=" + attributes.size() + "]";
+   }
+}
@@ -224,6 +224,50 @@ public boolean match(Object object)
       return true;
    }
 
+   /**
+    * Select candidate objects for this query using given object index. Every object matching this query is included into
+    * returned set, but returned set may also contain objects not matching the query, so each candidate should be checked
+    * with <code>match</code> method.
+    *
+    * @param index object search index
+    * @return set of candidate object IDs or null if index cannot narrow the search (all objects should be checked)
+    */
+   public Set<Long> selectCandidates(ObjectSearchIndex index)
+   {
+      Set<Long> result = null;
+      if (includedTexts != null)
+      {
+         for(String s : includedTexts)
+         {
+            Set<Long> ids = index.findTextCandidates(s);
+            if (ids == null)
+               continue;
+            if (result == null)
+               result = ids;
+            else
+               result.retainAll(ids);
+            if (result.isEmpty())
+               return result;
+         }
+      }
+      if (includedAttributes != null)
+      {
+         for(Entry<String, Set<String>> e : includedAttributes.entrySet())
+         {
+            Set<Long> ids = index.findByAttribute(e.getKey(), e.getValue());
+            if (ids == null)
+               continue;
+            if (result == null)
+               result = ids;
+            else
+               result.retainAll(ids);
+            if (result.isEmpty())
+               return result;
+         }
+      }
+      return result;
+   }
+
    /**
     * @see java.lang.Object#toString()
     */
@@ -0,0 +1,251 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.base.NXCPMessageReceiver;
+import org.netxms.client.constants.DataType;
+import org.netxms.client.constants.HistoricalDataType;
+import org.netxms.client.constants.RCC;
+import org.netxms.client.datacollection.ColumnarDciData;
+import junit.framework.TestCase;
+
+/**
+ * Tests for paged retrieval of collected DCI data, using minimal fake server.
+ */
+public class CollectedDataPagingTest extends TestCase
+{
+   private static final int MAX_ROWS_PER_PAGE = 200000;
+   private static final int TIME_TO = 1600000000;
+
+   /**
+    * Minimal server which answers all requests with success and sends DCI data pages (one row per second). Data requests
+    * with end time below given limit are answered with error.
+    */
+   private static class FakeServer extends Thread
+   {
+      private final ServerSocket serverSocket;
+      private final int errorBelow;
+      private final int errorCode;
+      private int dataRequests = 0;
+
+      FakeServer(int errorBelow, int errorCode) throws IOException
+      {
+         super("FakeServer");
+         setDaemon(true);
+         serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+         this.errorBelow = errorBelow;
+         this.errorCode = errorCode;
+      }
+
+      int getPort()
+      {
+         return serverSocket.getLocalPort();
+      }
+
+      synchronized int getDataRequests()
+      {
+         return dataRequests;
+      }
+
+      @Override
+      public void run()
+      {
+         try (Socket socket = serverSocket.accept())
+         {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            NXCPMessageReceiver receiver = new NXCPMessageReceiver(65536, 1048576);
+            while(true)
+            {
+               NXCPMessage request = receiver.receiveMessage(in, null);
+               NXCPMessage response = new NXCPMessage(NXCPCodes.CMD_REQUEST_COMPLETED, request.getMessageId());
+               if (request.getMessageCode() == NXCPCodes.CMD_GET_DCI_DATA)
+               {
+                  synchronized(this)
+                  {
+                     dataRequests++;
+                  }
+                  int timeFrom = request.getFieldAsInt32(NXCPCodes.VID_TIME_FROM);
+                  int timeTo = request.getFieldAsInt32(NXCPCodes.VID_TIME_TO);
+                  if (timeTo < errorBelow)
+                  {
+                     response.setFieldInt32(NXCPCodes.VID_RCC, errorCode);
+                     out.write(response.createNXCPMessage(false));
+                     continue;
+                  }
+                  response.setFieldInt32(NXCPCodes.VID_RCC, RCC.SUCCESS);
+                  out.write(response.createNXCPMessage(false));
+
+                  NXCPMessage data = new NXCPMessage(NXCPCodes.CMD_DCI_DATA, request.getMessageId());
+                  data.setBinaryMessage(true);
+                  data.setBinaryData(encodeRows(timeTo, Math.min(MAX_ROWS_PER_PAGE, timeTo - timeFrom + 1)));
+                  out.write(data.createNXCPMessage(false));
+               }
+               else
+               {
+                  response.setFieldInt32(NXCPCodes.VID_RCC, RCC.SUCCESS);
+                  out.write(response.createNXCPMessage(false));
+               }
+               out.flush();
+            }
+         }
+         catch(Exception e)
+         {
+            // Connection closed by client
+         }
+      }
+
+      void shutdown() throws IOException
+      {
+         serverSocket.close();
+      }
+   }
+
+   /**
+    * Encode CMD_DCI_DATA payload with rows for consecutive seconds, starting at given time and going backwards.
+    */
+   private static byte[] encodeRows(int timeTo, int count) throws IOException
+   {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 + count * 8);
+      DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(1); // DCI ID
+      out.writeInt(count);
+      out.writeInt(DataType.INT32.getValue());
+      out.writeInt(0);
+      for(int i = 0; i < count; i++)
+      {
+         out.writeInt(timeTo - i);
+         out.writeInt(i);
+      }
+      return buffer.toByteArray();
+   }
+
+   /**
+    * Connect new session to fake server.
+    */
+   private static NXCSession connect(FakeServer server) throws Exception
+   {
+      server.start();
+      NXCSession session = new NXCSession("127.0.0.1", server.getPort());
+      session.setIgnoreProtocolVersion(true);
+      session.setCommandTimeout(30000);
+      session.connect();
+      return session;
+   }
+
+   public void testPaging() throws Exception
+   {
+      FakeServer server = new FakeServer(0, RCC.SUCCESS);
+      NXCSession session = connect(server);
+      try
+      {
+         final int rows = MAX_ROWS_PER_PAGE + 50001;
+         final List<Integer> pageSizes = new ArrayList<Integer>();
+         final long[] lastTimestamp = new long[] { (TIME_TO + 1) * 1000L };
+         final Thread caller = Thread.currentThread();
+         session.getCollectedData(1, 1, new Date((TIME_TO - rows + 1) * 1000L), new Date(TIME_TO * 1000L), 0, HistoricalDataType.PROCESSED,
+               (ColumnarDciData page) -> {
+                  assertSame(caller, Thread.currentThread()); // handler may block, so it should not run on shared pool
+                  pageSizes.add(page.size());
+                  for(int i = 0; i < page.size(); i++)
+                  {
+                     assertEquals(lastTimestamp[0] - 1000, page.getTimestamp(i)); // no gaps or duplicates between pages
+                     lastTimestamp[0] = page.getTimestamp(i);
+                  }
+               });
+         assertEquals(2, pageSizes.size());
+         assertEquals(MAX_ROWS_PER_PAGE, pageSizes.get(0).intValue());
+         assertEquals(rows - MAX_ROWS_PER_PAGE, pageSizes.get(1).intValue());
+         assertEquals(2, server.getDataRequests());
+      }
+      finally
+      {
+         session.disconnect();
+         server.shutdown();
+      }
+   }
+
+   public void testRequestError() throws Exception
+   {
+      FakeServer server = new FakeServer(Integer.MAX_VALUE, RCC.ACCESS_DENIED);
+      NXCSession session = connect(server);
+      try
+      {
+         long start = System.currentTimeMillis();
+         try
+         {
+            session.getCollectedData(1, 1, new Date((TIME_TO - 1000) * 1000L), new Date(TIME_TO * 1000L), 0, HistoricalDataType.PROCESSED,
+                  (ColumnarDciData page) -> fail("Unexpected data page"));
+            fail("Exception expected");
+         }
+         catch(NXCException e)
+         {
+            assertEquals(RCC.ACCESS_DENIED, e.getErrorCode());
+         }
+         assertTrue(System.currentTimeMillis() - start < 10000); // should not wait for command timeout
+      }
+      finally
+      {
+         session.disconnect();
+         server.shutdown();
+      }
+   }
+
+   public void testNextPageError() throws Exception
+   {
+      FakeServer server = new FakeServer(TIME_TO, RCC.ACCESS_DENIED);
+      NXCSession session = connect(server);
+      try
+      {
+         final int[] pages = new int[1];
+         long start = System.currentTimeMillis();
+         try
+         {
+            session.getCollectedData(1, 1, new Date((TIME_TO - MAX_ROWS_PER_PAGE * 2) * 1000L), new Date(TIME_TO * 1000L), 0,
+                  HistoricalDataType.PROCESSED, (ColumnarDciData page) -> pages[0]++);
+            fail("Exception expected");
+         }
+         catch(NXCException e)
+         {
+            assertEquals(RCC.ACCESS_DENIED, e.getErrorCode());
+         }
+         assertTrue(System.currentTimeMillis() - start < 10000); // should not wait for command timeout
+         assertEquals(1, pages[0]);
+         assertEquals(2, server.getDataRequests());
+      }
+      finally
+      {
+         session.disconnect();
+         server.shutdown();
+      }
+   }
+}
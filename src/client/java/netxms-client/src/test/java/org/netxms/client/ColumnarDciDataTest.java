@@ -0,0 +1,157 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Date;
+import org.netxms.client.constants.DataType;
+import org.netxms.client.datacollection.ColumnarDciData;
+import org.netxms.client.datacollection.DciData;
+import org.netxms.client.datacollection.DciDataRow;
+import junit.framework.TestCase;
+
+/**
+ * Tests for class <code>ColumnarDciData</code>.
+ */
+public class ColumnarDciDataTest extends TestCase
+{
+   /**
+    * Encode CMD_DCI_DATA payload. Every second row is raw value for previous row.
+    */
+   private static byte[] encodeRows(DataType dataType, int count, boolean withRawValues) throws Exception
+   {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(1); // DCI ID
+      out.writeInt(withRawValues ? count * 2 : count);
+      out.writeInt(dataType.getValue());
+      out.writeInt(0);
+      for(int i = 0; i < count; i++)
+      {
+         for(int r = 0; r < (withRawValues ? 2 : 1); r++)
+         {
+            out.writeInt((r == 0) ? 1600000000 - i : 0);
+            int v = (r == 0) ? i : i * 10;
+            switch(dataType)
+            {
+               case INT32:
+                  out.writeInt(-v);
+                  break;
+               case FLOAT:
+                  out.writeInt(0);
+                  out.writeDouble(v + 0.5);
+                  break;
+               case STRING:
+                  String s = "value " + v;
+                  for(int j = 0; j < 256; j++)
+                     out.writeChar((j < s.length()) ? s.charAt(j) : 0);
+                  break;
+               default:
+                  break;
+            }
+         }
+      }
+      return buffer.toByteArray();
+   }
+
+   private static void compare(DciData expected, ColumnarDciData actual)
+   {
+      DciDataRow[] rows = expected.getValues();
+      assertEquals(expected.getDataType(), actual.getDataType());
+      assertEquals(rows.length, actual.size());
+      for(int i = 0; i < rows.length; i++)
+      {
+         assertEquals(rows[i].getTimestamp().getTime(), actual.getTimestamp(i));
+         assertEquals(rows[i].getValue(), actual.getValue(i));
+         assertEquals(rows[i].getValueAsDouble(), actual.getDouble(i), 0);
+         assertEquals(rows[i].getRawValueAsDouble(), actual.getRawDouble(i), 0);
+      }
+      DciDataRow[] columnarRows = actual.getValues();
+      assertEquals(rows.length, columnarRows.length);
+      assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp());
+   }
+
+   public void testParseDataRows() throws Exception
+   {
+      NXCSession session = new NXCSession("127.0.0.1");
+      for(DataType t : new DataType[] { DataType.INT32, DataType.FLOAT, DataType.STRING })
+      {
+         for(boolean raw : new boolean[] { false, true })
+         {
+            byte[] input = encodeRows(t, 1000, raw);
+            DciData data = new DciData(0, 1);
+            ColumnarDciData columnar = new ColumnarDciData(0, 1, 16);
+            assertEquals(session.parseDataRows(input, data), session.parseDataRows(input, columnar));
+            compare(data, columnar);
+         }
+      }
+   }
+
+   public void testPrimitiveAccess() throws Exception
+   {
+      ColumnarDciData data = new ColumnarDciData(0, 1);
+      data.setDataType(DataType.FLOAT);
+      for(int i = 0; i < 100; i++)
+         data.addDouble(1000L * i, i * 1.5);
+      data.trimToSize();
+
+      double[] values = data.getDoubleValues();
+      long[] timestamps = data.getTimestamps();
+      assertEquals(100, values.length);
+      assertEquals(100, timestamps.length);
+      assertEquals(99 * 1.5, values[99], 0);
+      assertEquals(99000L, timestamps[99]);
+
+      data.invert();
+      assertEquals(-1.5, data.getDouble(1), 0);
+      assertEquals(-148L, data.getLong(99));
+      assertEquals(99000L, data.getLastValue().getTimestamp().getTime());
+   }
+
+   public void testDeltaMerge() throws Exception
+   {
+      DciData[] series = new DciData[] { new DciData(0, 1), new ColumnarDciData(0, 1) };
+      for(DciData data : series)
+      {
+         data.setDataType(DataType.INT32);
+         for(int i = 10; i > 0; i--)
+            data.addDataRow(new DciDataRow(new Date(1000L * i), Long.valueOf(i)));
+
+         // Update overlaps with existing newest row
+         DciData update = new DciData(0, 1);
+         update.setDataType(DataType.INT32);
+         for(int i = 13; i >= 10; i--)
+            update.addDataRow(new DciDataRow(new Date(1000L * i), Long.valueOf(i)));
+
+         assertEquals(3, data.addNewerValues(update));
+         assertEquals(13000L, data.getFirstTimestamp());
+         assertEquals(4, data.removeValuesBefore(5000L));
+         DciDataRow[] rows = data.getValues();
+         assertEquals(9, rows.length);
+         for(int i = 0; i < rows.length; i++)
+         {
+            assertEquals(1000L * (13 - i), rows[i].getTimestamp().getTime());
+            assertEquals(13 - i, ((Number)rows[i].getValue()).intValue());
+         }
+         assertEquals(5000L, data.getLastTimestamp());
+         assertEquals(0, data.addNewerValues(update));
+      }
+   }
+}
@@ -0,0 +1,78 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.Arrays;
+import java.util.List;
+import org.netxms.client.maps.NetworkMapLink;
+import org.netxms.client.maps.NetworkMapPage;
+import org.netxms.client.maps.elements.NetworkMapElement;
+import org.netxms.client.maps.elements.NetworkMapObject;
+
+/**
+ * Benchmark for lookups done by label and status providers on full refresh of large network map. Not a unit test - run
+ * manually with test classpath:
+ *
+ * <pre>
+ * java -cp ... org.netxms.client.NetworkMapPageBenchmark [elementCount] [linkCount]
+ * </pre>
+ */
+public class NetworkMapPageBenchmark
+{
+   /**
+    * Entry point.
+    *
+    * @param args command line arguments: number of elements and number of links
+    */
+   public static void main(String[] args)
+   {
+      int elementCount = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+      int linkCount = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+
+      NetworkMapPage page = new NetworkMapPage("test");
+      for(int i = 1; i <= elementCount; i++)
+         page.addElement(new NetworkMapObject(i, i + 1000000));
+      for(int i = 1; i <= linkCount; i++)
+      {
+         NetworkMapLink link = new NetworkMapLink(i, NetworkMapLink.NORMAL, (i % elementCount) + 1, ((i * 7) % elementCount) + 1);
+         link.setStatusObjects(Arrays.asList((long)((i % elementCount) + 1000001)));
+         page.addLink(link);
+      }
+
+      // Simulate refresh of all elements and links by label and status providers
+      long startTime = System.currentTimeMillis();
+      int connected = 0;
+      for(NetworkMapElement e : page.getElements())
+      {
+         page.findObjectElement(((NetworkMapObject)e).getObjectId());
+         page.getConnectedElements(e.getId());
+         List<NetworkMapLink> links = page.findLinksWithStatusObject(((NetworkMapObject)e).getObjectId());
+         if (links != null)
+         {
+            for(NetworkMapLink l : links)
+            {
+               if (page.areObjectsConnected(l.getElement1(), l.getElement2()))
+                  connected++;
+            }
+         }
+      }
+      long elapsed = System.currentTimeMillis() - startTime;
+      System.out.println("NetworkMapPage: " + elementCount + " elements, " + linkCount + " links: full refresh lookups in " + elapsed + " ms (" + connected + " connected links)");
+   }
+}
@@ -0,0 +1,157 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.netxms.client.maps.NetworkMapLink;
+import org.netxms.client.maps.NetworkMapPage;
+import org.netxms.client.maps.elements.NetworkMapElement;
+import org.netxms.client.maps.elements.NetworkMapObject;
+import junit.framework.TestCase;
+
+/**
+ * Tests for class <code>NetworkMapPage</code>.
+ */
+public class NetworkMapPageTest extends TestCase
+{
+   private static final int ELEMENT_COUNT = 500;
+   private static final int LINK_COUNT = 1000;
+
+   public void testIndexes() throws Exception
+   {
+      NetworkMapPage page = new NetworkMapPage("test");
+      page.addElement(new NetworkMapObject(1, 100));
+      page.addElement(new NetworkMapObject(2, 200));
+      page.addElement(new NetworkMapObject(3, 300));
+
+      NetworkMapLink l1 = new NetworkMapLink(1, NetworkMapLink.NORMAL, 1, 2);
+      l1.setStatusObjects(Arrays.asList(100L, 200L));
+      page.addLink(l1);
+      NetworkMapLink l2 = new NetworkMapLink(2, NetworkMapLink.NORMAL, 2, 1);
+      page.addLink(l2);
+      assertEquals(1, l2.getDuplicateCount());
+      NetworkMapLink l3 = new NetworkMapLink(3, NetworkMapLink.NORMAL, 2, 3);
+      l3.setStatusObjects(Arrays.asList(200L));
+      page.addLink(l3);
+
+      assertEquals(2, page.findObjectElement(200).getId());
+      assertNull(page.findObjectElement(400));
+      assertTrue(page.areObjectsConnected(1, 2));
+      assertTrue(page.areObjectsConnected(3, 2));
+      assertFalse(page.areObjectsConnected(1, 3));
+      assertEquals(Arrays.asList(l1), page.findLinks(page.getElement(1, null), page.getElement(2, null)));
+      assertEquals(Arrays.asList(l2), page.findLinks(page.getElement(2, null), page.getElement(1, null)));
+      assertEquals(2, page.findLinksWithStatusObject(200).size());
+      assertNull(page.findLinksWithStatusObject(300));
+      assertEquals(2, page.getConnectedElements(2).length);
+
+      // Replacing link with same ID should update indexes
+      NetworkMapLink l3a = new NetworkMapLink(3, NetworkMapLink.NORMAL, 1, 3);
+      page.addLink(l3a);
+      assertEquals(3, page.getLinks().size());
+      assertFalse(page.areObjectsConnected(2, 3));
+      assertTrue(page.areObjectsConnected(1, 3));
+      assertEquals(Arrays.asList(l1), page.findLinksWithStatusObject(200));
+
+      page.removeLink(l1);
+      assertNull(page.findLinksWithStatusObject(100));
+      assertTrue(page.areObjectsConnected(1, 2));
+
+      page.removeObjectElement(100);
+      assertNull(page.findObjectElement(100));
+      assertNull(page.getElement(1, null));
+      assertTrue(page.getLinks().isEmpty());
+      assertFalse(page.areObjectsConnected(1, 2));
+      assertEquals(0, page.getConnectedElements(2).length);
+
+      // Second element for same object should be found after first one is removed
+      page.addElement(new NetworkMapObject(4, 200));
+      assertEquals(2, page.findObjectElement(200).getId());
+      page.removeElement(2);
+      assertEquals(4, page.findObjectElement(200).getId());
+   }
+
+   public void testStatusObjectListChange() throws Exception
+   {
+      NetworkMapPage page = new NetworkMapPage("test");
+      page.addElement(new NetworkMapObject(1, 100));
+      page.addElement(new NetworkMapObject(2, 200));
+
+      NetworkMapLink link = new NetworkMapLink(1, NetworkMapLink.NORMAL, 1, 2);
+      link.setStatusObjects(new ArrayList<Long>(Arrays.asList(100L, 200L)));
+      page.addLink(link);
+      assertEquals(Arrays.asList(link), page.findLinksWithStatusObject(100));
+
+      // Link editor modifies live status object list and then re-adds link
+      link.getStatusObjects().remove(100L);
+      link.getStatusObjects().add(300L);
+      page.removeLink(link);
+      assertNull(page.findLinksWithStatusObject(100));
+      assertNull(page.findLinksWithStatusObject(200));
+      assertNull(page.findLinksWithStatusObject(300));
+
+      page.addLink(link);
+      assertNull(page.findLinksWithStatusObject(100));
+      assertEquals(Arrays.asList(link), page.findLinksWithStatusObject(200));
+      assertEquals(Arrays.asList(link), page.findLinksWithStatusObject(300));
+
+      // Replacing link with same ID should remove entries indexed for previous instance
+      link.getStatusObjects().clear();
+      page.addLink(link);
+      assertNull(page.findLinksWithStatusObject(200));
+      assertNull(page.findLinksWithStatusObject(300));
+   }
+
+   /**
+    * Lookups done by label and status providers on full map refresh should be consistent with map content. Timing
+    * measurement is in <code>NetworkMapPageBenchmark</code>.
+    */
+   public void testRefreshLookups() throws Exception
+   {
+      NetworkMapPage page = new NetworkMapPage("test");
+      for(int i = 1; i <= ELEMENT_COUNT; i++)
+         page.addElement(new NetworkMapObject(i, i + 1000000));
+      for(int i = 1; i <= LINK_COUNT; i++)
+      {
+         NetworkMapLink link = new NetworkMapLink(i, NetworkMapLink.NORMAL, (i % ELEMENT_COUNT) + 1, ((i * 7) % ELEMENT_COUNT) + 1);
+         link.setStatusObjects(Arrays.asList((long)((i % ELEMENT_COUNT) + 1000001)));
+         page.addLink(link);
+      }
+
+      int found = 0;
+      int linksFound = 0;
+      for(NetworkMapElement e : page.getElements())
+      {
+         if (page.findObjectElement(((NetworkMapObject)e).getObjectId()) == e)
+            found++;
+         page.getConnectedElements(e.getId());
+         List<NetworkMapLink> links = page.findLinksWithStatusObject(((NetworkMapObject)e).getObjectId());
+         if (links != null)
+         {
+            for(NetworkMapLink l : links)
+               assertTrue(page.areObjectsConnected(l.getElement1(), l.getElement2()));
+            linksFound += links.size();
+         }
+      }
+      assertEquals(ELEMENT_COUNT, found);
+      assertEquals(LINK_COUNT, linksFound);
+   }
+}
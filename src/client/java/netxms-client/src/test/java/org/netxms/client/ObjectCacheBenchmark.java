@@ -0,0 +1,96 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.client.objects.UnknownObject;
+
+/**
+ * Benchmark for lookups on <code>ObjectCache</code> while single writer thread applies steady stream of object updates
+ * (as receiver thread does on update storm). Not a unit test - run manually with test classpath:
+ *
+ * <pre>
+ * java -cp ... org.netxms.client.ObjectCacheBenchmark [objectCount] [readerThreads] [time]
+ * </pre>
+ */
+public class ObjectCacheBenchmark
+{
+   /**
+    * Entry point.
+    *
+    * @param args command line arguments: number of objects, number of reader threads, and run time in milliseconds
+    * @throws Exception on error
+    */
+   public static void main(String[] args) throws Exception
+   {
+      final int objectCount = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+      final int readerThreads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+      final long time = (args.length > 2) ? Long.parseLong(args[2]) : 2000;
+
+      final ObjectCache cache = new ObjectCache(objectCount);
+      for(int i = 1; i <= objectCount; i++)
+         cache.put(new UnknownObject(i, null));
+
+      final AtomicBoolean stop = new AtomicBoolean(false);
+      final AtomicLong lookups = new AtomicLong(0);
+      final AtomicLong misses = new AtomicLong(0);
+      final AtomicLong updates = new AtomicLong(0);
+
+      Thread writer = new Thread(() -> {
+         ThreadLocalRandom random = ThreadLocalRandom.current();
+         while(!stop.get())
+         {
+            cache.put(new UnknownObject(random.nextInt(objectCount) + 1, null));
+            updates.incrementAndGet();
+         }
+      });
+
+      Thread[] readers = new Thread[readerThreads];
+      for(int i = 0; i < readers.length; i++)
+      {
+         readers[i] = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long count = 0;
+            long missCount = 0;
+            while(!stop.get())
+            {
+               if (cache.get(random.nextInt(objectCount) + 1) == null)
+                  missCount++;
+               count++;
+            }
+            lookups.addAndGet(count);
+            misses.addAndGet(missCount);
+         });
+      }
+
+      writer.start();
+      for(Thread t : readers)
+         t.start();
+      Thread.sleep(time);
+      stop.set(true);
+      writer.join();
+      for(Thread t : readers)
+         t.join();
+
+      System.out.printf("ObjectCache: %d objects, %d reader threads: %.1f M lookups/s, %.1f K updates/s, %d misses%n",
+            objectCount, readerThreads, lookups.get() / (time * 1000.0), updates.get() / (double)time, misses.get());
+   }
+}
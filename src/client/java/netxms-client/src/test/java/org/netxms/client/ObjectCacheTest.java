@@ -0,0 +1,192 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.base.InetAddressEx;
+import org.netxms.base.MacAddress;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.GenericObject;
+import org.netxms.client.objects.Interface;
+import org.netxms.client.objects.UnknownObject;
+import junit.framework.TestCase;
+
+/**
+ * Tests for class <code>ObjectCache</code>.
+ */
+public class ObjectCacheTest extends TestCase
+{
+   private static final int OBJECT_COUNT = 10000;
+   private static final int READER_THREADS = 4;
+   private static final int LOOKUP_COUNT = 100000;
+   private static final int UPDATE_COUNT = 10000;
+
+   public void testPutRemove() throws Exception
+   {
+      ObjectCache cache = new ObjectCache();
+      AbstractObject o1 = new UnknownObject(10, null);
+      cache.put(o1);
+      assertSame(o1, cache.get(10));
+      assertSame(o1, cache.getByGUID(o1.getGuid()));
+      assertTrue(cache.contains(10));
+
+      // Replacement with different GUID should drop old GUID mapping
+      AbstractObject o2 = new UnknownObject(10, null);
+      cache.put(o2);
+      assertEquals(1, cache.size());
+      assertSame(o2, cache.get(10));
+      assertNull(cache.getByGUID(o1.getGuid()));
+      assertSame(o2, cache.getByGUID(o2.getGuid()));
+
+      assertSame(o2, cache.remove(10));
+      assertNull(cache.get(10));
+      assertNull(cache.getByGUID(o2.getGuid()));
+      assertNull(cache.remove(10));
+      assertEquals(0, cache.size());
+   }
+
+   public void testAddressIndexes() throws Exception
+   {
+      ObjectCache cache = new ObjectCache();
+      cache.put(createInterface(10, "10.0.0.1", "00:11:22:33:44:55"));
+      cache.put(createInterface(11, "10.0.0.2", "00:11:22:33:44:66"));
+
+      assertEquals(1, cache.getByIP(InetAddress.getByName("10.0.0.1")).size());
+      assertEquals(10, cache.getByIP(InetAddress.getByName("10.0.0.1")).get(0).getObjectId());
+      assertEquals(11, cache.getByMAC(MacAddress.parseMacAddress("00:11:22:33:44:66")).get(0).getObjectId());
+      assertTrue(cache.getByIP(InetAddress.getByName("10.0.0.3")).isEmpty());
+
+      // Address change should move object to new index entry
+      cache.put(createInterface(10, "10.0.0.3", "00:11:22:33:44:55"));
+      assertTrue(cache.getByIP(InetAddress.getByName("10.0.0.1")).isEmpty());
+      assertEquals(10, cache.getByIP(InetAddress.getByName("10.0.0.3")).get(0).getObjectId());
+
+      cache.remove(11);
+      assertTrue(cache.getByMAC(MacAddress.parseMacAddress("00:11:22:33:44:66")).isEmpty());
+   }
+
+   public void testAncestors() throws Exception
+   {
+      // 1 -> 2 -> 4, 1 -> 3 -> 4 -> 5
+      ObjectCache cache = new ObjectCache();
+      cache.put(new HierarchyObject(1, new long[0], new long[] { 2, 3 }));
+      cache.put(new HierarchyObject(2, new long[] { 1 }, new long[] { 4 }));
+      cache.put(new HierarchyObject(3, new long[] { 1 }, new long[] { 4 }));
+      cache.put(new HierarchyObject(4, new long[] { 2, 3 }, new long[] { 5 }));
+      cache.put(new HierarchyObject(5, new long[] { 4 }, new long[0]));
+
+      assertTrue(Arrays.equals(new long[] { 1, 2, 3, 4 }, cache.getAncestors(5)));
+      assertTrue(cache.isAncestor(4, 1));
+      assertFalse(cache.isAncestor(1, 4));
+      assertSame(cache.getAncestors(5), cache.getAncestors(5)); // memoized
+
+      // Move 4 under 2 only - memoized ancestors of 4 and 5 should be invalidated
+      cache.put(new HierarchyObject(4, new long[] { 2 }, new long[] { 5 }));
+      assertTrue(Arrays.equals(new long[] { 1, 2, 4 }, cache.getAncestors(5)));
+
+      // Update without hierarchy change keeps memoized value
+      long[] a = cache.getAncestors(5);
+      cache.put(new HierarchyObject(4, new long[] { 2 }, new long[] { 5 }));
+      assertSame(a, cache.getAncestors(5));
+
+      cache.remove(2);
+      assertTrue(Arrays.equals(new long[] { 2, 4 }, cache.getAncestors(5))); // missing parent is still listed
+      assertFalse(cache.isAncestor(5, 1));
+   }
+
+   /**
+    * Create interface object with given IP and MAC address.
+    */
+   private static Interface createInterface(long id, String ip, String mac) throws Exception
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT);
+      msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)id);
+      msg.setField(NXCPCodes.VID_GUID, UUID.randomUUID());
+      msg.setField(NXCPCodes.VID_MAC_ADDR, MacAddress.parseMacAddress(mac).getValue());
+      msg.setFieldInt32(NXCPCodes.VID_IP_ADDRESS_COUNT, 1);
+      msg.setField(NXCPCodes.VID_IP_ADDRESS_LIST_BASE, new InetAddressEx(InetAddress.getByName(ip), 24));
+      return new Interface(msg, null);
+   }
+
+   /**
+    * Lookups on cache while single writer thread applies stream of object updates (as receiver thread does on update
+    * storm). Throughput measurement is in <code>ObjectCacheBenchmark</code>.
+    */
+   public void testLookupUnderUpdates() throws Exception
+   {
+      final ObjectCache cache = new ObjectCache(OBJECT_COUNT);
+      for(int i = 1; i <= OBJECT_COUNT; i++)
+         cache.put(new UnknownObject(i, null));
+      assertEquals(OBJECT_COUNT, cache.size());
+
+      final AtomicLong misses = new AtomicLong(0);
+
+      Thread writer = new Thread(() -> {
+         ThreadLocalRandom random = ThreadLocalRandom.current();
+         for(int i = 0; i < UPDATE_COUNT; i++)
+            cache.put(new UnknownObject(random.nextInt(OBJECT_COUNT) + 1, null));
+      });
+
+      Thread[] readers = new Thread[READER_THREADS];
+      for(int i = 0; i < readers.length; i++)
+      {
+         readers[i] = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long missCount = 0;
+            for(int j = 0; j < LOOKUP_COUNT; j++)
+            {
+               if (cache.get(random.nextInt(OBJECT_COUNT) + 1) == null)
+                  missCount++;
+            }
+            misses.addAndGet(missCount);
+         });
+      }
+
+      writer.start();
+      for(Thread t : readers)
+         t.start();
+      writer.join();
+      for(Thread t : readers)
+         t.join();
+
+      assertEquals(0, misses.get()); // updates replace objects, so every lookup must succeed
+      assertEquals(OBJECT_COUNT, cache.size());
+   }
+
+   /**
+    * Object with given parents and children
+    */
+   private static class HierarchyObject extends GenericObject
+   {
+      public HierarchyObject(long id, long[] parentIds, long[] childIds)
+      {
+         super(id, null);
+         for(long p : parentIds)
+            parents.add(p);
+         for(long c : childIds)
+            children.add(c);
+      }
+   }
+}
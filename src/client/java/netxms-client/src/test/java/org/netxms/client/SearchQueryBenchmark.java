@@ -0,0 +1,91 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2021 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.netxms.client.constants.ObjectStatus;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.GenericObject;
+import org.netxms.client.search.ObjectSearchIndex;
+import org.netxms.client.search.SearchQuery;
+
+/**
+ * Benchmark for indexed object search compared to full scan of object cache. Not a unit test - run manually with test
+ * classpath:
+ *
+ * <pre>
+ * java -cp ... org.netxms.client.SearchQueryBenchmark [objectCount] [query]
+ * </pre>
+ */
+public class SearchQueryBenchmark
+{
+   /**
+    * Entry point.
+    *
+    * @param args command line arguments: number of objects and search query
+    * @throws Exception on error
+    */
+   public static void main(String[] args) throws Exception
+   {
+      int count = (args.length > 0) ? Integer.parseInt(args[0]) : 150000;
+      String query = (args.length > 1) ? args[1] : "\"node-1234\"";
+
+      ObjectCache cache = new ObjectCache(count);
+      for(int i = 1; i <= count; i++)
+         cache.put(new NamedObject(i, "node-" + i + ((i % 10 == 0) ? "-db" : "-web"), ObjectStatus.NORMAL));
+
+      SearchQuery q = new SearchQuery(query);
+      q.selectCandidates(cache.getSearchIndex()); // warm up
+
+      long start = System.nanoTime();
+      List<Long> result = new ArrayList<Long>();
+      for(Long id : q.selectCandidates(cache.getSearchIndex()))
+      {
+         if (q.match(ObjectSearchIndex.createAttributeProvider(cache.get(id))))
+            result.add(id);
+      }
+      long indexed = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int scanned = 0;
+      for(AbstractObject o : cache.getObjects())
+      {
+         if (q.match(ObjectSearchIndex.createAttributeProvider(o)))
+            scanned++;
+      }
+      long full = System.nanoTime() - start;
+
+      System.out.printf("ObjectSearchIndex: %d objects, indexed query %.1f ms (%d matches), full scan %.1f ms (%d matches)%n",
+            count, indexed / 1000000.0, result.size(), full / 1000000.0, scanned);
+   }
+
+   /**
+    * Object with given name and status
+    */
+   private static class NamedObject extends GenericObject
+   {
+      public NamedObject(long id, String name, ObjectStatus status)
+      {
+         super(id, null);
+         this.objectName = name;
+         this.status = status;
+      }
+   }
+}
@@ -18,6 +18,14 @@
  */
 package org.netxms.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.netxms.client.constants.ObjectStatus;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.GenericObject;
+import org.netxms.client.search.ObjectSearchIndex;
 import org.netxms.client.search.SearchAttributeProvider;
 import org.netxms.client.search.SearchQuery;
 import junit.framework.TestCase;
@@ -68,6 +76,85 @@ public void testAttributeMatch() throws Exception
       assertTrue(q.match(new TestObject("OEMCAT", "C-200", "BFCorp", "Heavy duty truck")));
    }
 
+   public void testObjectIndex() throws Exception
+   {
+      ObjectCache cache = new ObjectCache();
+      cache.put(new NamedObject(1, "core-router-01", ObjectStatus.NORMAL));
+      cache.put(new NamedObject(2, "core-switch-01", ObjectStatus.CRITICAL));
+      cache.put(new NamedObject(3, "edge-router-02", ObjectStatus.NORMAL));
+      cache.put(new NamedObject(4, "Printer", ObjectStatus.CRITICAL));
+      ObjectSearchIndex index = cache.getSearchIndex();
+
+      assertEquals(2, index.findByNamePrefix("CORE-").size());
+      assertTrue(index.findByName("printer").contains(4L));
+
+      SearchQuery q = new SearchQuery("router");
+      Set<Long> candidates = q.selectCandidates(index);
+      assertEquals(2, candidates.size());
+      assertTrue(candidates.contains(1L) && candidates.contains(3L));
+
+      // Substring spanning token boundary selects superset of matching objects
+      q = new SearchQuery("\"e-r\"");
+      candidates = q.selectCandidates(index);
+      assertTrue(candidates.contains(1L) && candidates.contains(3L));
+
+      q = new SearchQuery("01 status:critical");
+      candidates = q.selectCandidates(index);
+      assertEquals(1, candidates.size());
+      assertTrue(candidates.contains(2L));
+
+      // Object rename should update index
+      cache.put(new NamedObject(4, "core-printer", ObjectStatus.NORMAL));
+      assertTrue(index.findByName("printer").isEmpty());
+      assertEquals(3, index.findByNamePrefix("core").size());
+      assertTrue(new SearchQuery("status:critical").selectCandidates(index).equals(Collections.singleton(2L)));
+
+      cache.remove(1);
+      assertEquals(1, new SearchQuery("router").selectCandidates(index).size());
+   }
+
+   /**
+    * Indexed query should select same objects as full scan. Timing comparison is in <code>SearchQueryBenchmark</code>.
+    */
+   public void testIndexedQueryMatchesFullScan() throws Exception
+   {
+      final int count = 2000;
+      ObjectCache cache = new ObjectCache(count);
+      for(int i = 1; i <= count; i++)
+         cache.put(new NamedObject(i, "node-" + i + ((i % 10 == 0) ? "-db" : "-web"), ObjectStatus.NORMAL));
+
+      SearchQuery q = new SearchQuery("\"node-12\"");
+      List<Long> result = new ArrayList<Long>();
+      for(Long id : q.selectCandidates(cache.getSearchIndex()))
+      {
+         if (q.match(ObjectSearchIndex.createAttributeProvider(cache.get(id))))
+            result.add(id);
+      }
+
+      int scanned = 0;
+      for(AbstractObject o : cache.getObjects())
+      {
+         if (q.match(ObjectSearchIndex.createAttributeProvider(o)))
+            scanned++;
+      }
+
+      assertEquals(scanned, result.size());
+      assertEquals(111, result.size()); // node-12, node-120 .. node-129, node-1200 .. node-1299
+   }
+
+   /**
+    * Object with given name and status
+    */
+   private static class NamedObject extends GenericObject
+   {
+      public NamedObject(long id, String name, ObjectStatus status)
+      {
+         super(id, null);
+         this.objectName = name;
+         this.status = status;
+      }
+   }
+
    private static class TestObject implements SearchAttributeProvider
    {
       private String name;
@@ -32,6 +32,11 @@
    private int port = 4701;
    private boolean encryptedSession;
    private long sessionTimeout = 300000;
+   private boolean sharedTransport = false;
+   private int sharedTransportThreads = 8;
+   private boolean sharedObjectCache = false;
+   private String objectCacheLogin = null;
+   private String objectCachePassword = null;
    
    /**
     * Class for reading API properties file
@@ -50,6 +55,11 @@ public ApiProperties()
             port = getIntProperty("netxms.server.port", 4701);
             encryptedSession = getBooleanProperty("netxms.server.useEncryption", true);
             sessionTimeout = getIntProperty("session.timeout", 300) * 1000;
+            sharedTransport = getBooleanProperty("netxms.server.sharedTransport", false);
+            sharedTransportThreads = getIntProperty("netxms.server.sharedTransportThreads", 8);
+            sharedObjectCache = getBooleanProperty("netxms.objectCache.shared", false);
+            objectCacheLogin = properties.getProperty("netxms.objectCache.login");
+            objectCachePassword = properties.getProperty("netxms.objectCache.password", "");
          }
       }
       catch(Exception e)
@@ -145,4 +155,55 @@ public long getSessionTimeout()
    {
       return sessionTimeout;
    }
+
+   /**
+    * Check if sessions should use shared transport (single event loop for all sessions instead of dedicated threads).
+    *
+    * @return true if shared transport should be used
+    */
+   public boolean isSharedTransport()
+   {
+      return sharedTransport;
+   }
+
+   /**
+    * Get number of worker threads for shared transport.
+    *
+    * @return number of worker threads for shared transport
+    */
+   public int getSharedTransportThreads()
+   {
+      return sharedTransportThreads;
+   }
+
+   /**
+    * Check if sessions should use object cache shared between all sessions instead of synchronizing objects for each
+    * session. Shared cache requires login name of service account to be configured.
+    *
+    * @return true if shared object cache should be used
+    */
+   public boolean isSharedObjectCache()
+   {
+      return sharedObjectCache && (objectCacheLogin != null) && !objectCacheLogin.isEmpty();
+   }
+
+   /**
+    * Get login name of service account used by shared object cache.
+    *
+    * @return login name of service account used by shared object cache
+    */
+   public String getObjectCacheLogin()
+   {
+      return objectCacheLogin;
+   }
+
+   /**
+    * Get password of service account used by shared object cache.
+    *
+    * @return password of service account used by shared object cache
+    */
+   public String getObjectCachePassword()
+   {
+      return objectCachePassword;
+   }
 }
@@ -18,12 +18,14 @@
  */
 package org.netxms.websvc;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import javax.servlet.ServletContext;
+import org.netxms.base.NXCPEventLoop;
 import org.netxms.client.NXCSession;
 import org.netxms.client.SessionListener;
 import org.netxms.client.SessionNotification;
@@ -40,6 +42,8 @@
    private Map<UUID, SessionToken> sessions = new HashMap<UUID, SessionToken>();
    private Logger log = LoggerFactory.getLogger(SessionStore.class);
    private Thread sessionManager = null;
+   private NXCPEventLoop eventLoop = null;
+   private SharedObjectCache objectCache = null;
 
    /**
     * Get session store instance for servlet
@@ -58,6 +62,45 @@ public static synchronized SessionStore getInstance(ServletContext context)
       return s;
    }
    
+   /**
+    * Get shared event loop for new sessions. Event loop is created on first call if shared transport is enabled in
+    * configuration.
+    *
+    * @return shared event loop or null if shared transport is disabled or event loop cannot be created
+    */
+   public synchronized NXCPEventLoop getEventLoop()
+   {
+      if ((eventLoop == null) && properties.isSharedTransport())
+      {
+         try
+         {
+            eventLoop = new NXCPEventLoop("Shared Transport", properties.getSharedTransportThreads());
+            log.info("Shared transport started with " + properties.getSharedTransportThreads() + " worker threads");
+         }
+         catch(IOException e)
+         {
+            log.error("Cannot create shared transport event loop", e);
+         }
+      }
+      return eventLoop;
+   }
+
+   /**
+    * Get object cache shared by all sessions. Cache is created on first call if shared object cache is enabled in
+    * configuration.
+    *
+    * @return shared object cache or null if shared object cache is disabled
+    */
+   public synchronized SharedObjectCache getSharedObjectCache()
+   {
+      if ((objectCache == null) && properties.isSharedObjectCache())
+      {
+         objectCache = new SharedObjectCache(properties, getEventLoop());
+         log.info("Shared object cache enabled (service account " + properties.getObjectCacheLogin() + ")");
+      }
+      return objectCache;
+   }
+
    /**
     * Get session token with given UUID.
     *
@@ -167,5 +210,8 @@ else if (!s.getSession().checkConnection())
       
       for(UUID u : disconnectedSessions)
          unregisterSession(u);
+
+      if (objectCache != null)
+         objectCache.checkConnection();
    }
 }
@@ -0,0 +1,624 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.base.NXCPEventLoop;
+import org.netxms.client.AccessListElement;
+import org.netxms.client.NXCSession;
+import org.netxms.client.ObjectFilter;
+import org.netxms.client.SessionListener;
+import org.netxms.client.SessionNotification;
+import org.netxms.client.constants.UserAccessRights;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.users.AbstractUserObject;
+import org.netxms.client.users.User;
+import org.netxms.client.users.UserGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Object cache shared by all API sessions. Objects are synchronized once, using dedicated session logged in with service
+ * account (which should have read access to all objects and to user database), and kept up to date by that session.
+ * Objects are filtered for each API session at read time, using object access lists and group membership of session's
+ * user, following same rules as server uses for checking object access rights. Calculated access rights are dropped
+ * only when change may affect them (change of object access list, parent list, or rights inheritance flag, object
+ * deletion, or user database change).
+ */
+public class SharedObjectCache
+{
+   private static final long GROUP_FLAG = 0x40000000L;
+
+   private Logger log = LoggerFactory.getLogger(SharedObjectCache.class);
+   private ApiProperties properties;
+   private NXCPEventLoop eventLoop;
+   private NXCSession session = null;
+   private AtomicLong version = new AtomicLong(0);
+   private ConcurrentHashMap<Integer, UserView> views = new ConcurrentHashMap<Integer, UserView>();
+   private ConcurrentHashMap<Long, AccessSignature> signatures = new ConcurrentHashMap<Long, AccessSignature>();
+
+   /**
+    * Create shared object cache. Connection to server is established on first access.
+    *
+    * @param properties API properties
+    * @param eventLoop event loop for cache session or null
+    */
+   public SharedObjectCache(ApiProperties properties, NXCPEventLoop eventLoop)
+   {
+      this.properties = properties;
+      this.eventLoop = eventLoop;
+   }
+
+   /**
+    * Get cache session. Session is created, and objects and user database are synchronized, on first call or after
+    * connection loss.
+    *
+    * @return cache session
+    * @throws Exception if session cannot be established or synchronization fails
+    */
+   private synchronized NXCSession getSession() throws Exception
+   {
+      if (session != null)
+         return session;
+
+      log.info("Connecting shared object cache session to " + properties.getServerAddress() + ":" + properties.getServerPort());
+      final NXCSession s = new NXCSession(properties.getServerAddress(), properties.getServerPort(), properties.isEncryptedSession(), eventLoop);
+      s.setClientType(NXCSession.WEB_CLIENT);
+      s.connect();
+      try
+      {
+         s.login(properties.getObjectCacheLogin(), properties.getObjectCachePassword());
+         s.addListener(new SessionListener() {
+            @Override
+            public void notificationHandler(SessionNotification n)
+            {
+               switch(n.getCode())
+               {
+                  case SessionNotification.OBJECT_CHANGED:
+                     if (updateSignature((AbstractObject)n.getObject()))
+                        version.incrementAndGet();
+                     break;
+                  case SessionNotification.OBJECT_DELETED:
+                     signatures.remove(n.getSubCode());
+                     version.incrementAndGet();
+                     break;
+                  case SessionNotification.USER_DB_CHANGED:
+                     version.incrementAndGet();
+                     break;
+                  case SessionNotification.CONNECTION_BROKEN:
+                  case SessionNotification.SERVER_SHUTDOWN:
+                  case SessionNotification.SESSION_KILLED:
+                     log.info("Shared object cache session disconnected");
+                     reset(s);
+                     break;
+               }
+            }
+         });
+         s.syncUserDatabase();
+         s.subscribeToUserDBUpdates();
+         s.syncObjects();
+         signatures.clear();
+         for(AbstractObject o : s.getAllObjects())
+            updateSignature(o);
+      }
+      catch(Exception e)
+      {
+         s.disconnect();
+         throw e;
+      }
+      session = s;
+      version.incrementAndGet();
+      log.info("Shared object cache synchronized (" + s.getAllObjects().size() + " objects)");
+      return session;
+   }
+
+   /**
+    * Update stored access signature of given object.
+    *
+    * @param object changed object
+    * @return true if access signature of existing object was changed (so calculated access rights may be invalid)
+    */
+   private boolean updateSignature(AbstractObject object)
+   {
+      AccessSignature signature = new AccessSignature(object);
+      AccessSignature prev = signatures.put(object.getObjectId(), signature);
+      return (prev != null) && !prev.equals(signature);
+   }
+
+   /**
+    * Reset cache after cache session disconnect.
+    *
+    * @param s disconnected session
+    */
+   private synchronized void reset(NXCSession s)
+   {
+      if (session != s)
+         return;
+      session.disconnect();
+      session = null;
+      views.clear();
+      version.incrementAndGet();
+   }
+
+   /**
+    * Check connection of cache session. Should be called periodically.
+    */
+   public void checkConnection()
+   {
+      NXCSession s;
+      synchronized(this)
+      {
+         s = session;
+      }
+      if ((s != null) && !s.checkConnection())
+      {
+         log.info("Shared object cache session removed due to communication failure");
+         reset(s);
+      }
+   }
+
+   /**
+    * Shutdown cache and disconnect cache session.
+    */
+   public synchronized void shutdown()
+   {
+      if (session != null)
+      {
+         session.disconnect();
+         session = null;
+      }
+      views.clear();
+      signatures.clear();
+   }
+
+   /**
+    * Get view of shared cache for given API session.
+    *
+    * @param userSession API session
+    * @return view containing only objects accessible by session's user
+    * @throws Exception if cache session cannot be established
+    */
+   public UserView getView(NXCSession userSession) throws Exception
+   {
+      NXCSession s = getSession();
+      int userId = userSession.getUserId();
+      UserView view = views.get(userId);
+      if ((view == null) || (view.cacheSession != s))
+      {
+         view = new UserView(s, userId);
+         views.put(userId, view);
+      }
+      return view;
+   }
+
+   /**
+    * View of shared object cache for specific user
+    */
+   public class UserView
+   {
+      private NXCSession cacheSession;
+      private int userId;
+      private long viewVersion = -1;
+      private Set<Long> groups = null;
+      private ConcurrentHashMap<Long, Integer> rights = new ConcurrentHashMap<Long, Integer>();
+
+      /**
+       * Create view.
+       *
+       * @param cacheSession cache session
+       * @param userId user ID
+       */
+      private UserView(NXCSession cacheSession, int userId)
+      {
+         this.cacheSession = cacheSession;
+         this.userId = userId;
+      }
+
+      /**
+       * Drop cached access rights if objects or user database were changed since they were calculated.
+       */
+      private synchronized void validate()
+      {
+         long v = version.get();
+         if (v != viewVersion)
+         {
+            rights.clear();
+            groups = null;
+            viewVersion = v;
+         }
+      }
+
+      /**
+       * Get all groups user is member of (directly or through other groups).
+       *
+       * @return set of group IDs
+       */
+      private synchronized Set<Long> getGroups()
+      {
+         if (groups != null)
+            return groups;
+
+         Set<Long> result = new HashSet<Long>();
+         result.add(AbstractUserObject.WELL_KNOWN_ID_EVERYONE);
+         AbstractUserObject user = cacheSession.findUserDBObjectById(userId, null);
+         if (user instanceof User)
+         {
+            List<Long> pending = new ArrayList<Long>();
+            for(long g : ((User)user).getGroups())
+               pending.add(g);
+            AbstractUserObject[] userDatabase = null;
+            while(!pending.isEmpty())
+            {
+               Long groupId = pending.remove(pending.size() - 1);
+               if (!result.add(groupId))
+                  continue;
+               // Find groups containing this group
+               if (userDatabase == null)
+                  userDatabase = cacheSession.getUserDatabaseObjects();
+               for(AbstractUserObject o : userDatabase)
+               {
+                  if (!(o instanceof UserGroup))
+                     continue;
+                  for(long m : ((UserGroup)o).getMembers())
+                  {
+                     if (m == groupId)
+                     {
+                        pending.add(o.getId());
+                        break;
+                     }
+                  }
+               }
+            }
+         }
+         groups = result;
+         return groups;
+      }
+
+      /**
+       * Get effective access rights of user for given object.
+       *
+       * @param object object to check
+       * @param depth current recursion depth (protects against loops in object hierarchy)
+       * @return effective access rights
+       */
+      private int getAccessRights(AbstractObject object, int depth)
+      {
+         if (userId == 0)
+            return 0xFFFFFFFF;
+
+         Integer cachedRights = rights.get(object.getObjectId());
+         if (cachedRights != null)
+            return cachedRights;
+
+         // Explicit right assignment for user takes precedence over group rights
+         int result = 0;
+         boolean found = false;
+         AccessListElement[] acl = object.getAccessList();
+         for(AccessListElement e : acl)
+         {
+            if (e.getUserId() == userId)
+            {
+               result = e.getAccessRights();
+               found = true;
+               break;
+            }
+         }
+         if (!found)
+         {
+            Set<Long> userGroups = null;
+            for(AccessListElement e : acl)
+            {
+               if ((e.getUserId() & GROUP_FLAG) == 0)
+                  continue;
+               if (userGroups == null)
+                  userGroups = getGroups();
+               if (userGroups.contains(e.getUserId()))
+               {
+                  result |= e.getAccessRights();
+                  found = true;
+               }
+            }
+         }
+
+         if (!found && object.isInheritAccessRights() && (depth < 64))
+         {
+            Iterator<Long> it = object.getParents();
+            while(it.hasNext())
+            {
+               AbstractObject parent = cacheSession.findObjectById(it.next());
+               if (parent != null)
+                  result |= getAccessRights(parent, depth + 1);
+            }
+         }
+
+         rights.put(object.getObjectId(), result);
+         return result;
+      }
+
+      /**
+       * Check if user has read access to given object.
+       *
+       * @param object object to check
+       * @return true if user has read access to given object
+       */
+      public boolean isAccessible(AbstractObject object)
+      {
+         validate();
+         return (object != null) && ((getAccessRights(object, 0) & UserAccessRights.OBJECT_ACCESS_READ) != 0);
+      }
+
+      /**
+       * Filter list of objects.
+       *
+       * @param objects objects to filter
+       * @return list of accessible objects
+       */
+      private List<AbstractObject> filter(List<AbstractObject> objects)
+      {
+         validate();
+         List<AbstractObject> result = new ArrayList<AbstractObject>(objects.size());
+         for(AbstractObject o : objects)
+            if ((getAccessRights(o, 0) & UserAccessRights.OBJECT_ACCESS_READ) != 0)
+               result.add(o);
+         return result;
+      }
+
+      /**
+       * Find object by ID.
+       *
+       * @param id object ID
+       * @return object or null if object does not exist or is not accessible
+       */
+      public AbstractObject findObjectById(long id)
+      {
+         AbstractObject object = cacheSession.findObjectById(id);
+         return isAccessible(object) ? object : null;
+      }
+
+      /**
+       * Find object by GUID.
+       *
+       * @param guid object GUID
+       * @return object or null if object does not exist or is not accessible
+       */
+      public AbstractObject findObjectByGUID(UUID guid)
+      {
+         AbstractObject object = cacheSession.findObjectByGUID(guid);
+         return isAccessible(object) ? object : null;
+      }
+
+      /**
+       * Find object by name.
+       *
+       * @param name object name
+       * @return first accessible object with given name or null
+       */
+      public AbstractObject findObjectByName(String name)
+      {
+         return cacheSession.findObjectByName(name, new ObjectFilter() {
+            @Override
+            public boolean filter(AbstractObject object)
+            {
+               return isAccessible(object);
+            }
+         });
+      }
+
+      /**
+       * Find objects by name prefix.
+       *
+       * @param prefix name prefix
+       * @return list of accessible objects with matching name
+       */
+      public List<AbstractObject> findObjectsByNamePrefix(String prefix)
+      {
+         return filter(cacheSession.findObjectsByNamePrefix(prefix));
+      }
+
+      /**
+       * Get all accessible objects.
+       *
+       * @return list of all accessible objects
+       */
+      public List<AbstractObject> getAllObjects()
+      {
+         return filter(cacheSession.getAllObjects());
+      }
+
+      /**
+       * Get accessible direct children of given object.
+       *
+       * @param object parent object
+       * @return array of accessible child objects
+       */
+      public AbstractObject[] getChildren(AbstractObject object)
+      {
+         return findObjects(object.getChildIdList());
+      }
+
+      /**
+       * Get accessible direct parents of given object.
+       *
+       * @param object child object
+       * @return array of accessible parent objects
+       */
+      public AbstractObject[] getParents(AbstractObject object)
+      {
+         return findObjects(object.getParentIdList());
+      }
+
+      /**
+       * Get accessible objects from list of object identifiers.
+       *
+       * @param idList list of object identifiers
+       * @return array of accessible objects
+       */
+      private AbstractObject[] findObjects(long[] idList)
+      {
+         List<AbstractObject> result = new ArrayList<AbstractObject>(idList.length);
+         for(long id : idList)
+         {
+            AbstractObject o = findObjectById(id);
+            if (o != null)
+               result.add(o);
+         }
+         return result.toArray(new AbstractObject[result.size()]);
+      }
+
+      /**
+       * Check if given object is direct or indirect child of object with given ID. Only accessible objects are checked
+       * when walking up the hierarchy, same as with per-session object cache.
+       *
+       * @param object object to check
+       * @param parentId ID of possible parent object
+       * @return true if given object is direct or indirect child of object with given ID
+       */
+      public boolean isChildOf(AbstractObject object, long parentId)
+      {
+         return isChildOf(object, parentId, new HashSet<Long>());
+      }
+
+      /**
+       * Check if given object is direct or indirect child of object with given ID.
+       *
+       * @param object object to check
+       * @param parentId ID of possible parent object
+       * @param visited set of already checked objects
+       * @return true if given object is direct or indirect child of object with given ID
+       */
+      private boolean isChildOf(AbstractObject object, long parentId, Set<Long> visited)
+      {
+         if (object.isDirectChildOf(parentId))
+            return true;
+         for(AbstractObject p : getParents(object))
+         {
+            if (visited.add(p.getObjectId()) && isChildOf(p, parentId, visited))
+               return true;
+         }
+         return false;
+      }
+
+      /**
+       * Check if object with given ID is accessible direct or indirect child of given object.
+       *
+       * @param object object to check
+       * @param childId ID of possible child object
+       * @return true if object with given ID is direct or indirect child of given object
+       */
+      public boolean isParentOf(AbstractObject object, long childId)
+      {
+         if (object.isDirectParentOf(childId))
+            return true;
+         AbstractObject child = findObjectById(childId);
+         return (child != null) && isChildOf(child, object.getObjectId());
+      }
+
+      /**
+       * Get top level objects (objects without accessible parents) matching given class filter.
+       *
+       * @param classFilter class filter or null to ignore object class
+       * @return top level objects
+       */
+      public AbstractObject[] getTopLevelObjects(Set<Integer> classFilter)
+      {
+         List<AbstractObject> result = new ArrayList<AbstractObject>();
+         for(AbstractObject object : getAllObjects())
+         {
+            if ((classFilter != null) && !classFilter.contains(object.getObjectClass()))
+               continue;
+
+            boolean hasParents = false;
+            Iterator<Long> it = object.getParents();
+            while(it.hasNext())
+            {
+               AbstractObject p = cacheSession.findObjectById(it.next());
+               if ((p != null) && ((classFilter == null) || classFilter.contains(p.getObjectClass())) && isAccessible(p))
+               {
+                  hasParents = true;
+                  break;
+               }
+            }
+            if (!hasParents)
+               result.add(object);
+         }
+         return result.toArray(new AbstractObject[result.size()]);
+      }
+   }
+
+   /**
+    * Object attributes that affect calculated access rights
+    */
+   private static class AccessSignature
+   {
+      private long[] parents;
+      private long[] aclUsers;
+      private int[] aclRights;
+      private boolean inheritAccessRights;
+
+      /**
+       * Create access signature for given object.
+       *
+       * @param object object
+       */
+      AccessSignature(AbstractObject object)
+      {
+         parents = object.getParentIdList();
+         Arrays.sort(parents);
+         AccessListElement[] acl = object.getAccessList();
+         aclUsers = new long[acl.length];
+         aclRights = new int[acl.length];
+         for(int i = 0; i < acl.length; i++)
+         {
+            aclUsers[i] = acl[i].getUserId();
+            aclRights[i] = acl[i].getAccessRights();
+         }
+         inheritAccessRights = object.isInheritAccessRights();
+      }
+
+      /**
+       * @see java.lang.Object#equals(java.lang.Object)
+       */
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof AccessSignature))
+            return false;
+         AccessSignature s = (AccessSignature)obj;
+         return (inheritAccessRights == s.inheritAccessRights) && Arrays.equals(parents, s.parents) &&
+               Arrays.equals(aclUsers, s.aclUsers) && Arrays.equals(aclRights, s.aclRights);
+      }
+
+      /**
+       * @see java.lang.Object#hashCode()
+       */
+      @Override
+      public int hashCode()
+      {
+         return Arrays.hashCode(parents) ^ Arrays.hashCode(aclUsers);
+      }
+   }
+}
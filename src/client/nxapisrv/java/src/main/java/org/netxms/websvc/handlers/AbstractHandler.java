@@ -18,10 +18,10 @@
  */
 package org.netxms.websvc.handlers;
 
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -35,8 +35,9 @@
 import org.netxms.websvc.ApiProperties;
 import org.netxms.websvc.SessionStore;
 import org.netxms.websvc.SessionToken;
+import org.netxms.websvc.SharedObjectCache;
 import org.netxms.websvc.WebSvcStatusService;
-import org.netxms.websvc.json.JsonTools;
+import org.netxms.websvc.json.JsonStreamRepresentation;
 import org.restlet.Application;
 import org.restlet.data.CookieSetting;
 import org.restlet.data.Header;
@@ -78,7 +79,9 @@ public Representation onGet() throws Exception
       {
          Map<String, String> query = getRequest().getResourceRef().getQueryAsForm().getValuesMap();
          Object response = (id == null) ? getCollection(query) : get(id, query);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, getRequestedFields()), MediaType.APPLICATION_JSON);
+         if (response instanceof Representation)
+            return (Representation)response; // handler provides its own (possibly streaming) representation
+         return new JsonStreamRepresentation(response, getRequestedFields());
       }
       else
       {
@@ -106,7 +109,7 @@ public Representation onPost(Representation entity) throws Exception
       if (attachToSession())
       {
          String command = getRequest().getResourceRef().getQueryAsForm().getValuesMap().get("command");
-         return new StringRepresentation(JsonTools.jsonFromObject((command != null) ? executeCommand(command, data) : create(data), null), MediaType.APPLICATION_JSON);
+         return new JsonStreamRepresentation((command != null) ? executeCommand(command, data) : create(data), null);
       }
       else
       {
@@ -135,7 +138,7 @@ public Representation onPut(Representation entity) throws Exception
       if (attachToSession())
       {
          Object response = (id != null) ? update(id, data) : createErrorResponse(RCC.INCOMPATIBLE_OPERATION);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, null), MediaType.APPLICATION_JSON);
+         return new JsonStreamRepresentation(response, null);
       }
       else
       {
@@ -157,7 +160,7 @@ public Representation onDelete(Representation entity) throws Exception
       if (attachToSession())
       {    	 
          Object response = (id != null) ? delete(id) : createErrorResponse(RCC.INCOMPATIBLE_OPERATION);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, null), MediaType.APPLICATION_JSON);
+         return new JsonStreamRepresentation(response, null);
       }
       else
       {
@@ -269,6 +272,187 @@ protected NXCSession getSession()
       return session;
    }
    
+   /**
+    * Get object cache shared by all sessions.
+    *
+    * @return shared object cache or null if shared object cache is disabled
+    */
+   protected SharedObjectCache getSharedObjectCache()
+   {
+      return SessionStore.getInstance(getServletContext()).getSharedObjectCache();
+   }
+
+   /**
+    * Make objects available for this handler. If shared object cache is disabled, synchronizes objects for attached
+    * session if needed. If shared object cache is enabled, session's own object synchronization is not needed.
+    *
+    * @throws Exception if object synchronization fails
+    */
+   protected void syncObjects() throws Exception
+   {
+      if ((getSharedObjectCache() == null) && !session.areObjectsSynchronized())
+         session.syncObjects();
+   }
+
+   /**
+    * Find object by ID, either in shared object cache or in attached session.
+    *
+    * @param id object ID
+    * @return object or null if object does not exist or is not accessible
+    * @throws Exception if object synchronization fails
+    */
+   protected AbstractObject findObjectById(long id) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).findObjectById(id);
+      syncObjects();
+      return session.findObjectById(id);
+   }
+
+   /**
+    * Find object by GUID, either in shared object cache or in attached session.
+    *
+    * @param guid object GUID
+    * @return object or null if object does not exist or is not accessible
+    * @throws Exception if object synchronization fails
+    */
+   protected AbstractObject findObjectByGUID(UUID guid) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).findObjectByGUID(guid);
+      syncObjects();
+      return session.findObjectByGUID(guid);
+   }
+
+   /**
+    * Find object by name, either in shared object cache or in attached session.
+    *
+    * @param name object name
+    * @return object or null if object does not exist or is not accessible
+    * @throws Exception if object synchronization fails
+    */
+   protected AbstractObject findObjectByName(String name) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).findObjectByName(name);
+      syncObjects();
+      return session.findObjectByName(name);
+   }
+
+   /**
+    * Find objects by name prefix, either in shared object cache or in attached session.
+    *
+    * @param prefix object name prefix
+    * @return list of matching objects
+    * @throws Exception if object synchronization fails
+    */
+   protected List<AbstractObject> findObjectsByNamePrefix(String prefix) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).findObjectsByNamePrefix(prefix);
+      syncObjects();
+      return session.findObjectsByNamePrefix(prefix);
+   }
+
+   /**
+    * Get all objects, either from shared object cache or from attached session.
+    *
+    * @return list of all accessible objects
+    * @throws Exception if object synchronization fails
+    */
+   protected List<AbstractObject> getAllObjects() throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).getAllObjects();
+      syncObjects();
+      return session.getAllObjects();
+   }
+
+   /**
+    * Get top level objects, either from shared object cache or from attached session.
+    *
+    * @param classFilter class filter or null to ignore object class
+    * @return top level objects
+    * @throws Exception if object synchronization fails
+    */
+   protected AbstractObject[] getTopLevelObjects(Set<Integer> classFilter) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).getTopLevelObjects(classFilter);
+      syncObjects();
+      return session.getTopLevelObjects(classFilter);
+   }
+
+   /**
+    * Get accessible direct children of given object, either from shared object cache or from attached session.
+    *
+    * @param object parent object
+    * @return array of child objects
+    * @throws Exception if shared object cache is not available
+    */
+   protected AbstractObject[] getChildren(AbstractObject object) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).getChildren(object);
+      return object.getChildrenAsArray();
+   }
+
+   /**
+    * Get accessible direct parents of given object, either from shared object cache or from attached session.
+    *
+    * @param object child object
+    * @return array of parent objects
+    * @throws Exception if shared object cache is not available
+    */
+   protected AbstractObject[] getParents(AbstractObject object) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).getParents(object);
+      return object.getParentsAsArray();
+   }
+
+   /**
+    * Check if given object is direct or indirect child of object with given ID. Only objects accessible for session's
+    * user are considered.
+    *
+    * @param object object to check
+    * @param parentId ID of possible parent object
+    * @return true if given object is direct or indirect child of object with given ID
+    * @throws Exception if shared object cache is not available
+    */
+   protected boolean isChildOf(AbstractObject object, long parentId) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).isChildOf(object, parentId);
+      return object.isChildOf(parentId);
+   }
+
+   /**
+    * Check if object with given ID is direct or indirect child of given object. Only objects accessible for session's
+    * user are considered.
+    *
+    * @param object object to check
+    * @param childId ID of possible child object
+    * @return true if object with given ID is direct or indirect child of given object
+    * @throws Exception if shared object cache is not available
+    */
+   protected boolean isParentOf(AbstractObject object, long childId) throws Exception
+   {
+      SharedObjectCache cache = getSharedObjectCache();
+      if (cache != null)
+         return cache.getView(session).isParentOf(object, childId);
+      return object.isParentOf(childId);
+   }
+
    /**
     * Get token of attached session
     * 
@@ -399,7 +583,8 @@ protected SessionToken login(String login, String password) throws Exception
    {
       String clientAddress = getRequest().getClientInfo().getUpstreamAddress();
       log.debug("Performing login to " + properties.getServerAddress() + ":" + properties.getServerPort() + " for client at " + clientAddress);
-      session = new NXCSession(properties.getServerAddress(), properties.getServerPort(), properties.isEncryptedSession());
+      session = new NXCSession(properties.getServerAddress(), properties.getServerPort(), properties.isEncryptedSession(),
+            SessionStore.getInstance(getServletContext()).getEventLoop());
       session.setClientType(NXCSession.WEB_CLIENT);
       session.setClientAddress(clientAddress);
       session.connect();
@@ -451,24 +636,20 @@ protected String getHeader(String name)
     * Get object reference from query parameters. Supported references (in priority order):
     *    objectGuid=
     *    objectId=
-    * Will call NXCSession.syncObjects() if necessary.
+    * Will synchronize objects if necessary.
     *    
     * @param query query parameters
     * @return referenced object or null if object reference was not given
-    * @throws IOException if I/O error occurs during object synchronization
-    * @throws NXCException if error occurs during object synchronization or given object reference is invalid
+    * @throws Exception if error occurs during object synchronization or given object reference is invalid
     */
-   AbstractObject getObjectFromQuery(Map<String, String> query) throws IOException, NXCException
+   AbstractObject getObjectFromQuery(Map<String, String> query) throws Exception
    {
       String objectGuid = query.get("objectGuid");
       if (objectGuid != null)
       {         
-         if (!session.areObjectsSynchronized())
-            session.syncObjects();
-
          try
          {
-            AbstractObject object = session.findObjectByGUID(UUID.fromString(objectGuid));
+            AbstractObject object = findObjectByGUID(UUID.fromString(objectGuid));
             if (object == null)
                throw new NXCException(RCC.INVALID_OBJECT_ID);
             return object;
@@ -482,12 +663,9 @@ AbstractObject getObjectFromQuery(Map<String, String> query) throws IOException,
       String objectId = query.get("objectId");
       if (objectId != null)
       {
-         if (!session.areObjectsSynchronized())
-            session.syncObjects();
-
          try
          {
-            AbstractObject object = session.findObjectById(Long.parseLong(objectId));
+            AbstractObject object = findObjectById(Long.parseLong(objectId));
             if (object == null)
                throw new NXCException(RCC.INVALID_OBJECT_ID);
             return object;
@@ -20,7 +20,6 @@
 
 import java.util.UUID;
 import org.netxms.client.NXCException;
-import org.netxms.client.NXCSession;
 import org.netxms.client.constants.RCC;
 import org.netxms.client.objects.AbstractObject;
 
@@ -37,21 +36,17 @@ public class AbstractObjectHandler extends AbstractHandler
     */
    protected AbstractObject getObject() throws Exception
    {
-      NXCSession session = getSession();
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
-      
       String entityId = (String)getRequest().getAttributes().get("object-id");
       AbstractObject object;
       try
       {
          long objectId = Long.parseLong(entityId);
-         object = session.findObjectById(objectId);
+         object = findObjectById(objectId);
       }
       catch(NumberFormatException e)
       {
          UUID objectGuid = UUID.fromString(entityId);
-         object = session.findObjectByGUID(objectGuid);
+         object = findObjectByGUID(objectGuid);
       }
       if (object == null)
          throw new NXCException(RCC.INVALID_OBJECT_ID);
@@ -137,7 +137,7 @@ else if (s.equalsIgnoreCase("terminated"))
 
             if ((rootObject != null) &&
                 (alarm.getSourceObjectId() != rootObject.getObjectId()) &&
-                (!includeChildren || !rootObject.isParentOf(alarm.getSourceObjectId())))
+                (!includeChildren || !isParentOf(rootObject, alarm.getSourceObjectId())))
             {
                iterator.remove();
             }
@@ -162,8 +162,7 @@ else if (s.equalsIgnoreCase("terminated"))
       if (!Boolean.parseBoolean(query.getOrDefault("resolveReferences", "false")) || alarms.isEmpty())
          return new ResponseContainer("alarms", alarms);
 
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
+      syncObjects();
       if (!session.isUserDatabaseSynchronized())
          session.syncUserDatabase();
       if (!session.isAlarmCategoriesSynchronized())
@@ -173,11 +172,11 @@ else if (s.equalsIgnoreCase("terminated"))
 
       List<JsonObject> serializedAlarms = new ArrayList<JsonObject>();
       Map<Long, DciValue[]> cachedValues = null;
-      Gson gson = JsonTools.createGsonInstance();
+      Gson gson = JsonTools.getGsonInstance();
       for(Alarm a : alarms)
       {
          JsonObject json = (JsonObject)gson.toJsonTree(a);
-         AbstractObject object = session.findObjectById(a.getSourceObjectId());
+         AbstractObject object = findObjectById(a.getSourceObjectId());
          if (object != null)
          {
             json.add("sourceObject", gson.toJsonTree(object));
@@ -319,8 +318,7 @@ else if (command.equals("resolve"))
    protected Object get(String id, Map<String, String> query) throws Exception
    {
       NXCSession session = getSession();
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
+      syncObjects();
       if (!session.isUserDatabaseSynchronized())
          session.syncUserDatabase();
       if (!session.isAlarmCategoriesSynchronized())
@@ -342,9 +340,9 @@ protected Object get(String id, Map<String, String> query) throws Exception
       if (alarm == null)
          throw new NXCException(RCC.INVALID_ALARM_ID);      
 
-      Gson gson = JsonTools.createGsonInstance();
+      Gson gson = JsonTools.getGsonInstance();
       JsonObject json = (JsonObject)gson.toJsonTree(alarm);
-      AbstractObject object = session.findObjectById(alarm.getSourceObjectId());
+      AbstractObject object = findObjectById(alarm.getSourceObjectId());
       if (object != null)
       {
          json.add("sourceObject", gson.toJsonTree(object));
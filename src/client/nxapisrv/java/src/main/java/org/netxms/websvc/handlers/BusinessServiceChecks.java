@@ -50,7 +50,7 @@ protected Object getCollection(Map<String, String> query) throws Exception
    protected Object create(JSONObject data) throws Exception
    {  
       NXCSession session = getSession();
-      BusinessServiceCheck check = JsonTools.createGsonInstance().fromJson(data.toString(), BusinessServiceCheck.class);        
+      BusinessServiceCheck check = JsonTools.getGsonInstance().fromJson(data.toString(), BusinessServiceCheck.class);        
       check.setId(0);
       session.modifyBusinessServiceCheck(getObjectId(), check);     
       return null;     
@@ -72,7 +72,7 @@ protected Object update(String id, JSONObject data) throws Exception
       {
          throw new NXCException(RCC.INVALID_BUSINESS_CHECK_ID);
       }
-      BusinessServiceCheck check = JsonTools.createGsonInstance().fromJson(data.toString(), BusinessServiceCheck.class);    
+      BusinessServiceCheck check = JsonTools.getGsonInstance().fromJson(data.toString(), BusinessServiceCheck.class);    
       check.setId(checkId);
       session.modifyBusinessServiceCheck(getObjectId(), check);     
       return null;  
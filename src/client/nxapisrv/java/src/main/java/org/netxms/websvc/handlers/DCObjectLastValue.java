@@ -51,7 +51,7 @@ protected Object get(String id, Map<String, String> query) throws Exception
       JsonObject tableValue = new JsonObject();
       result.add("tableValue", tableValue);
 
-      Gson gson = JsonTools.createGsonInstance();
+      Gson gson = JsonTools.getGsonInstance();
       TableColumnDefinition[] columns = value.getTableValue().getColumns();
       tableValue.add("columns", gson.toJsonTree(columns));
 
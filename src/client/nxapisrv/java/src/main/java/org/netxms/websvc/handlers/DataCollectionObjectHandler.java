@@ -45,7 +45,7 @@ protected Object get(String id, Map<String, String> query) throws Exception
    @Override
    protected Object update(String id, JSONObject data) throws Exception
    {
-      DataCollectionObject dcObject = JsonTools.createGsonInstance().fromJson(data.toString(), DataCollectionObject.class);
+      DataCollectionObject dcObject = JsonTools.getGsonInstance().fromJson(data.toString(), DataCollectionObject.class);
       if ((dcObject.getName() == null) || dcObject.getName().isEmpty() || (dcObject.getDescription() == null)
             || dcObject.getDescription().isEmpty())
          throw new NXCException(RCC.INVALID_ARGUMENT, "Name and description for new DCI cannot be empty");
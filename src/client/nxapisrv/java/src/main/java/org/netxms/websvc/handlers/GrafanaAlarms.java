@@ -43,8 +43,7 @@ public class GrafanaAlarms extends AbstractHandler
    @Override
    public Object getCollection(Map<String, String> query) throws Exception
    {
-      if (!getSession().areObjectsSynchronized())
-         getSession().syncObjects();
+      syncObjects();
       
       if (!getSession().isUserDatabaseSynchronized())
          getSession().syncUserDatabase();
@@ -57,7 +56,7 @@ public Object getCollection(Map<String, String> query) throws Exception
          classFilter.add(AbstractObject.OBJECT_RACK);
          classFilter.add(AbstractObject.OBJECT_CLUSTER);
          classFilter.add(AbstractObject.OBJECT_SENSOR);
-         AbstractObject[] objects = getSession().getTopLevelObjects(classFilter);
+         AbstractObject[] objects = getTopLevelObjects(classFilter);
          Map<Long, String> result = new HashMap<Long, String>();
          for(AbstractObject o : objects)
                result.put(o.getObjectId(), o.getObjectName());
@@ -112,7 +111,7 @@ public Object getCollection(Map<String, String> query) throws Exception
                r.add(a.getCurrentSeverity().name());
                r.add(STATES[a.getState()]);
                
-               object = getSession().findObjectById(a.getSourceObjectId());
+               object = findObjectById(a.getSourceObjectId());
                if (object == null)
                   r.add(a.getSourceObjectId());
                else
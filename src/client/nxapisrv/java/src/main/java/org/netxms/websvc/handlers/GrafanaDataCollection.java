@@ -52,10 +52,9 @@ public class GrafanaDataCollection extends AbstractHandler
    @Override
    protected Object getCollection(Map<String, String> query) throws Exception
    {
-      if (!getSession().areObjectsSynchronized())
-         getSession().syncObjects();
+      syncObjects();
 
-      objects = getSession().getAllObjects();
+      objects = getAllObjects();
       if (query.containsKey("targets"))
       {
          return getGraphData(query);
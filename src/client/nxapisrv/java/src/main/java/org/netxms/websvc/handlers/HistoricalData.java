@@ -39,6 +39,7 @@
 import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.objects.DataCollectionTarget;
+import org.netxms.websvc.json.HistoricalDataRepresentation;
 import org.netxms.websvc.json.ResponseContainer;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -74,7 +75,6 @@ protected Object get(String id, Map<String, String> query) throws Exception
       String timeInterval = query.get("timeInterval");
       String itemCount = query.get("itemCount");
 
-      DciData data = null;
       DataCollectionConfiguration dataCollectionConfiguration = session.openDataCollectionConfiguration(getObjectId());
       DataCollectionObject dataCollectionObject = dataCollectionConfiguration.findItem(dciId);
       HistoricalDataType valueType = HistoricalDataType.PROCESSED;
@@ -84,28 +84,38 @@ protected Object get(String id, Map<String, String> query) throws Exception
          valueType = HistoricalDataType.FULL_TABLE;
       }
 
+      Date from, to;
       if (timeFrom != null || timeTo != null)
       {
-         data = session.getCollectedData(object.getObjectId(), dciId, new Date(parseLong(timeFrom, 0) * 1000), new Date(parseLong(timeTo, System.currentTimeMillis() / 1000) * 1000),
-               parseInt(itemCount, 0), valueType);
+         from = new Date(parseLong(timeFrom, 0) * 1000);
+         to = new Date(parseLong(timeTo, System.currentTimeMillis() / 1000) * 1000);
       }
       else if (timeInterval != null)
       {
-         Date now = new Date();
-         long from = now.getTime() - parseLong(timeInterval, 0) * 1000;
-         data = session.getCollectedData(object.getObjectId(), dciId, new Date(from), new Date(), parseInt(itemCount, 0), valueType);
+         to = new Date();
+         from = new Date(to.getTime() - parseLong(timeInterval, 0) * 1000);
       }
       else if (itemCount != null)
       {
-         data = session.getCollectedData(object.getObjectId(), dciId, null, null, parseInt(itemCount, 0), valueType);
+         from = null;
+         to = null;
       }
       else
       {
-         Date now = new Date();
-         long from = now.getTime() - 3600000; // one hour
-         data = session.getCollectedData(object.getObjectId(), dciId, new Date(from), now, parseInt(itemCount, 0), valueType);
+         to = new Date();
+         from = new Date(to.getTime() - 3600000); // one hour
       }
 
+      // In streaming mode rows are written to response as they are received from server
+      int maxDataPoints = parseInt(query.get("maxDataPoints"), 0);
+      if ((Boolean.parseBoolean(query.get("stream")) || (maxDataPoints > 0)) && (valueType != HistoricalDataType.FULL_TABLE))
+      {
+         HistoricalDataRepresentation representation = new HistoricalDataRepresentation(session, false, maxDataPoints);
+         representation.addRequest(object.getObjectId(), dciId, from, to, parseInt(itemCount, 0));
+         return representation;
+      }
+
+      DciData data = session.getCollectedData(object.getObjectId(), dciId, from, to, parseInt(itemCount, 0), valueType);
       return (dataCollectionObject instanceof DataCollectionTable) ? transformTableDataOutput(data, query.get("outputFormat")) : data;
    }
 
@@ -296,6 +306,10 @@ protected Object getCollection(Map<String, String> query) throws Exception
       if (requestPairs == null)
          throw new NXCException(RCC.INVALID_DCI_ID);
 
+      // In streaming mode rows are written to response as they are received from server
+      int maxDataPoints = parseInt(query.get("maxDataPoints"), 0);
+      HistoricalDataRepresentation representation = (Boolean.parseBoolean(query.get("stream")) || (maxDataPoints > 0)) ?
+            new HistoricalDataRepresentation(session, true, maxDataPoints) : null;
       HashMap<Long, DciData> dciData = new HashMap<Long, DciData>();
 
       for(int i = 0; i < requestPairs.length; i++)
@@ -311,38 +325,43 @@ protected Object getCollection(Map<String, String> query) throws Exception
          String timeInterval = dciPairs[4];
          String timeUnit = dciPairs[5];
 
-         if (dciId == null || nodeId == null || !(session.findObjectById(parseLong(nodeId, 0)) instanceof DataCollectionTarget))
+         if (dciId == null || nodeId == null || !(findObjectById(parseLong(nodeId, 0)) instanceof DataCollectionTarget))
             throw new NXCException(RCC.INVALID_OBJECT_ID);
 
-         DciData collectedData = null;
-
+         Date from, to;
          if (!timeFrom.equals("0") || !timeTo.equals("0"))
          {
-            collectedData = session.getCollectedData(parseLong(nodeId, 0), parseLong(dciId, 0), new Date(parseLong(timeFrom, 0) * 1000),
-                  new Date(parseLong(timeTo, System.currentTimeMillis() / 1000) * 1000), 0, HistoricalDataType.PROCESSED);
+            from = new Date(parseLong(timeFrom, 0) * 1000);
+            to = new Date(parseLong(timeTo, System.currentTimeMillis() / 1000) * 1000);
          }
          else if (!timeInterval.equals("0"))
          {
-            Date now = new Date();
-            long from;
+            to = new Date();
             if (parseInt(timeUnit, 0) == TimeUnit.HOUR.getValue())
-               from = now.getTime() - parseLong(timeInterval, 0) * 3600000;
+               from = new Date(to.getTime() - parseLong(timeInterval, 0) * 3600000);
             else if (parseInt(timeUnit, 0) == TimeUnit.DAY.getValue())
-               from = now.getTime() - parseLong(timeInterval, 0) * 3600000 * 24;
+               from = new Date(to.getTime() - parseLong(timeInterval, 0) * 3600000 * 24);
             else
-               from = now.getTime() - parseLong(timeInterval, 0) * 60000;
-            collectedData = session.getCollectedData(parseInt(nodeId, 0), parseInt(dciId, 0), new Date(from), new Date(), 0, HistoricalDataType.PROCESSED);
+               from = new Date(to.getTime() - parseLong(timeInterval, 0) * 60000);
          }
          else
          {
-            Date now = new Date();
-            long from = now.getTime() - 3600000; // one hour
-            collectedData = session.getCollectedData(parseInt(nodeId, 0), parseInt(dciId, 0), new Date(from), now, 0, HistoricalDataType.PROCESSED);
+            to = new Date();
+            from = new Date(to.getTime() - 3600000); // one hour
+         }
+
+         if (representation != null)
+         {
+            representation.addRequest(parseLong(nodeId, 0), parseLong(dciId, 0), from, to, 0);
+            continue;
          }
 
+         DciData collectedData = session.getCollectedData(parseLong(nodeId, 0), parseLong(dciId, 0), from, to, 0, HistoricalDataType.PROCESSED);
          dciData.put((long)parseInt(dciId, 0), collectedData);
       }
 
+      if (representation != null)
+         return representation;
       return new ResponseContainer("values", dciData);
    }
 }
@@ -48,7 +48,7 @@ protected Object getCollection(Map<String, String> query) throws Exception
       }
       else
       {
-         AbstractObject[] children = object.getChildrenAsArray();
+         AbstractObject[] children = getChildren(object);
          for(AbstractObject child : children)
          {
             if (child instanceof DataCollectionTarget)
@@ -57,18 +57,24 @@ public class Objects extends AbstractObjectHandler
    @Override
    protected Object getCollection(Map<String, String> query) throws Exception
    {
-      NXCSession session = getSession();
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
-
       boolean topLevelOnly = (query.get("topLevelOnly") != null) ? Boolean.parseBoolean(query.get("topLevelOnly")) : false;
-      List<AbstractObject> objects = topLevelOnly ? Arrays.asList(session.getTopLevelObjects()) : session.getAllObjects();
+      List<AbstractObject> objects = topLevelOnly ? Arrays.asList(getTopLevelObjects(null)) : getAllObjects();
 
       boolean useRegex = (query.get("regex") != null) ? Boolean.parseBoolean(query.get("regex")) : false;
 
       String areaFilter = query.get("area");
       String classFilter = query.get("class");
       String nameFilter = query.get("name");
+
+      // Use name index to select candidates if name pattern starts with literal prefix
+      if (!topLevelOnly && !useRegex && (nameFilter != null))
+      {
+         int wildcard = 0;
+         while((wildcard < nameFilter.length()) && (nameFilter.charAt(wildcard) != '*') && (nameFilter.charAt(wildcard) != '?'))
+            wildcard++;
+         if (wildcard > 0)
+            objects = findObjectsByNamePrefix(nameFilter.substring(0, wildcard));
+      }
       String parentFilter = query.get("parent");
       String primaryNameFilter = query.get("primaryName");
       String stateFilter = query.get("state");
@@ -234,7 +240,7 @@ protected Object getCollection(Map<String, String> query) throws Exception
             }
 
             // Filter by parent
-            if ((parentId != 0) && !o.isChildOf(parentId))
+            if ((parentId != 0) && !isChildOf(o, parentId))
                continue;
 
             // Filter by geographical area
@@ -316,8 +322,9 @@ protected Object getCollection(Map<String, String> query) throws Exception
     * 
     * @param obj
     * @return
+    * @throws Exception if parent objects cannot be retrieved
     */
-   private static long getZoneUin(AbstractObject obj)
+   private long getZoneUin(AbstractObject obj) throws Exception
    {
       if (obj instanceof AbstractNode)
       {
@@ -331,17 +338,13 @@ private static long getZoneUin(AbstractObject obj)
       {
          return ((Interface)obj).getZoneId();
       }
-      if (obj instanceof NetworkService)
+      if ((obj instanceof NetworkService) || (obj instanceof VPNConnector) || (obj instanceof AccessPoint))
       {
-         return ((NetworkService)obj).getParentNode().getZoneId();
-      }
-      if (obj instanceof VPNConnector)
-      {
-         return ((VPNConnector)obj).getParentNode().getZoneId();
-      }
-      if (obj instanceof AccessPoint)
-      {
-         return ((AccessPoint)obj).getParentNode().getZoneId();
+         for(AbstractObject p : getParents(obj))
+         {
+            if (p instanceof AbstractNode)
+               return ((AbstractNode)p).getZoneId();
+         }
       }
       return -1;
    }
@@ -397,7 +400,7 @@ protected Object create(JSONObject data) throws Exception
       createData.setCommProtocol(JsonTools.getIntFromJson(data, "commProtocol", createData.getCommProtocol()));
       createData.setCommProtocol(JsonTools.getIntFromJson(data, "instanceDiscoveryMethod", createData.getInstanceDiscoveryMethod()));
 
-      NXCObjectModificationData mdObject = JsonTools.createGsonInstance().fromJson(data.toString(), NXCObjectModificationData.class);
+      NXCObjectModificationData mdObject = JsonTools.getGsonInstance().fromJson(data.toString(), NXCObjectModificationData.class);
       createData.updateFromMofidyData(mdObject);
 
       NXCSession session = getSession();
@@ -417,7 +420,7 @@ protected Object create(JSONObject data) throws Exception
    protected Object update(String id, JSONObject data) throws Exception
    {
       NXCSession session = getSession();
-      NXCObjectModificationData mdObject = JsonTools.createGsonInstance().fromJson(data.toString(), NXCObjectModificationData.class);
+      NXCObjectModificationData mdObject = JsonTools.getGsonInstance().fromJson(data.toString(), NXCObjectModificationData.class);
       mdObject.setObjectId(getObjectId());
       session.modifyObject(mdObject);
       return null;
@@ -40,11 +40,11 @@ protected Object create(JSONObject data) throws Exception
       if (data.has("data"))
       {
          JSONArray obj = data.getJSONArray("data");
-         dciData = JsonTools.createGsonInstance().fromJson(obj.toString(), DciPushData[].class);
+         dciData = JsonTools.getGsonInstance().fromJson(obj.toString(), DciPushData[].class);
       }
       else
       {
-         DciPushData tmp = JsonTools.createGsonInstance().fromJson(data.toString(), DciPushData.class);         
+         DciPushData tmp = JsonTools.getGsonInstance().fromJson(data.toString(), DciPushData.class);         
          dciData = new DciPushData[] {tmp};
       }
       session.pushDciData(dciData);
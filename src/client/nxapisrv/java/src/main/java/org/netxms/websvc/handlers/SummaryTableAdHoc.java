@@ -46,8 +46,7 @@ public class SummaryTableAdHoc  extends AbstractHandler
    protected Object create(JSONObject data) throws Exception
    {
       NXCSession session = getSession();
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
+      syncObjects();
 
       String objectFilter = JsonTools.getStringFromJson(data, "baseObject", null);
       log.debug("POST adhoc summaryTable: baseObject = " + objectFilter);
@@ -64,7 +63,7 @@ protected Object create(JSONObject data) throws Exception
       }
       catch(NumberFormatException ex)
       {
-         AbstractObject object = session.findObjectByName(objectFilter); 
+         AbstractObject object = findObjectByName(objectFilter); 
          if (object != null)
             baseObjectId = object.getObjectId();
          else
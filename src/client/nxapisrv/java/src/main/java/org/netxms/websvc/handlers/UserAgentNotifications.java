@@ -24,7 +24,6 @@
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.netxms.client.NXCException;
-import org.netxms.client.NXCSession;
 import org.netxms.client.constants.RCC;
 import org.netxms.websvc.json.ResponseContainer;
 
@@ -39,10 +38,8 @@ public class UserAgentNotifications extends AbstractHandler
    @Override
    protected Object getCollection(Map<String, String> query) throws Exception
    {
-      NXCSession session = getSession();
-      if (!session.areObjectsSynchronized())
-         session.syncObjects();
-      return new ResponseContainer("notifications", session.getUserAgentNotifications());
+      syncObjects();
+      return new ResponseContainer("notifications", getSession().getUserAgentNotifications());
    }
 
    /**
@@ -0,0 +1,235 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * JSON writer that drops object members not present in given field set while serialized data is being written. Filter is
+ * applied to objects on all nesting levels (including objects inside arrays), same as for JSON tree filters, but without
+ * building complete JSON tree first.
+ */
+public class FilteringJsonWriter extends JsonWriter
+{
+   private Set<String> fields;
+   private int skipDepth = 0;
+   private boolean skipValue = false;
+
+   /**
+    * Create new filtering writer.
+    *
+    * @param out underlying writer
+    * @param fields set of fields to keep
+    */
+   public FilteringJsonWriter(Writer out, Set<String> fields)
+   {
+      super(out);
+      this.fields = fields;
+   }
+
+   /**
+    * Write member name without checking it against field set.
+    *
+    * @param name member name
+    * @return this writer
+    * @throws IOException on write error
+    */
+   public JsonWriter unfilteredName(String name) throws IOException
+   {
+      return super.name(name);
+   }
+
+   /**
+    * Check if next value should be skipped. Resets "skip value" flag set by filtered out member name.
+    *
+    * @return true if next value should be skipped
+    */
+   private boolean skipNextValue()
+   {
+      if (skipDepth > 0)
+         return true;
+      if (skipValue)
+      {
+         skipValue = false;
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * Start skipped container if needed.
+    *
+    * @return true if container should be skipped
+    */
+   private boolean skipContainer()
+   {
+      if (skipNextValue())
+      {
+         skipDepth++;
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#name(java.lang.String)
+    */
+   @Override
+   public JsonWriter name(String name) throws IOException
+   {
+      if (skipDepth > 0)
+         return this;
+      if (!fields.contains(name))
+      {
+         skipValue = true;
+         return this;
+      }
+      return super.name(name);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#beginObject()
+    */
+   @Override
+   public JsonWriter beginObject() throws IOException
+   {
+      return skipContainer() ? this : super.beginObject();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#endObject()
+    */
+   @Override
+   public JsonWriter endObject() throws IOException
+   {
+      if (skipDepth > 0)
+      {
+         skipDepth--;
+         return this;
+      }
+      return super.endObject();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#beginArray()
+    */
+   @Override
+   public JsonWriter beginArray() throws IOException
+   {
+      return skipContainer() ? this : super.beginArray();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#endArray()
+    */
+   @Override
+   public JsonWriter endArray() throws IOException
+   {
+      if (skipDepth > 0)
+      {
+         skipDepth--;
+         return this;
+      }
+      return super.endArray();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.String)
+    */
+   @Override
+   public JsonWriter value(String value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#jsonValue(java.lang.String)
+    */
+   @Override
+   public JsonWriter jsonValue(String value) throws IOException
+   {
+      return skipNextValue() ? this : super.jsonValue(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#nullValue()
+    */
+   @Override
+   public JsonWriter nullValue() throws IOException
+   {
+      return skipNextValue() ? this : super.nullValue();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(boolean)
+    */
+   @Override
+   public JsonWriter value(boolean value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.Boolean)
+    */
+   @Override
+   public JsonWriter value(Boolean value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(float)
+    */
+   @Override
+   public JsonWriter value(float value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(double)
+    */
+   @Override
+   public JsonWriter value(double value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(long)
+    */
+   @Override
+   public JsonWriter value(long value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.Number)
+    */
+   @Override
+   public JsonWriter value(Number value) throws IOException
+   {
+      return skipNextValue() ? this : super.value(value);
+   }
+}
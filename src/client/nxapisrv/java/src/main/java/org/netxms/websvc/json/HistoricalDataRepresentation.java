@@ -0,0 +1,151 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.netxms.client.NXCException;
+import org.netxms.client.NXCSession;
+import org.netxms.client.constants.HistoricalDataType;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Representation of historical DCI data which is retrieved from server while response is being written. Data pages are
+ * written to response as soon as they arrive, so memory usage does not depend on size of requested time range. Errors
+ * reported by server after response has been started are reported in "error" field of affected data object.
+ */
+public class HistoricalDataRepresentation extends WriterRepresentation
+{
+   private static final Logger logger = LoggerFactory.getLogger(HistoricalDataRepresentation.class);
+
+   private NXCSession session;
+   private boolean collection;
+   private int maxDataPoints;
+   private List<Request> requests = new ArrayList<Request>();
+
+   /**
+    * Create new representation.
+    *
+    * @param session client session
+    * @param collection true to write data for multiple DCIs (as map under "values" key)
+    * @param maxDataPoints maximum number of data points per DCI (values are downsampled if needed) or 0 to write all rows
+    */
+   public HistoricalDataRepresentation(NXCSession session, boolean collection, int maxDataPoints)
+   {
+      super(MediaType.APPLICATION_JSON);
+      setCharacterSet(CharacterSet.UTF_8);
+      this.session = session;
+      this.collection = collection;
+      this.maxDataPoints = maxDataPoints;
+   }
+
+   /**
+    * Add data request.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for no limit
+    * @param maxRows maximum number of rows to retrieve or 0 for no limit
+    */
+   public void addRequest(long nodeId, long dciId, Date from, Date to, int maxRows)
+   {
+      requests.add(new Request(nodeId, dciId, from, to, maxRows));
+   }
+
+   /**
+    * @see org.restlet.representation.Representation#write(java.io.Writer)
+    */
+   @Override
+   public void write(Writer out) throws IOException
+   {
+      JsonWriter writer = new JsonWriter(out);
+      if (collection)
+      {
+         writer.beginObject();
+         writer.name("values").beginObject();
+      }
+
+      for(Request r : requests)
+      {
+         if (collection)
+            writer.name(Long.toString(r.dciId));
+
+         // Downsampling requires known time range
+         long bucketSize = 0;
+         if ((maxDataPoints > 0) && (r.from != null) && (r.to != null))
+            bucketSize = Math.max((r.to.getTime() - r.from.getTime() + maxDataPoints - 1) / maxDataPoints, 1000);
+
+         HistoricalDataWriter dataWriter = new HistoricalDataWriter(writer, (r.from != null) ? r.from.getTime() : 0, bucketSize);
+         dataWriter.start(r.nodeId, r.dciId);
+         int rcc = 0;
+         try
+         {
+            session.getCollectedData(r.nodeId, r.dciId, r.from, r.to, r.maxRows, HistoricalDataType.PROCESSED, dataWriter);
+         }
+         catch(NXCException e)
+         {
+            logger.debug("Cannot retrieve data for DCI " + r.nodeId + "/" + r.dciId, e);
+            rcc = e.getErrorCode();
+         }
+         catch(UncheckedIOException e)
+         {
+            throw e.getCause();
+         }
+         dataWriter.finish(rcc);
+      }
+
+      if (collection)
+      {
+         writer.endObject();
+         writer.endObject();
+      }
+      writer.flush();
+   }
+
+   /**
+    * Single data request
+    */
+   private static class Request
+   {
+      long nodeId;
+      long dciId;
+      Date from;
+      Date to;
+      int maxRows;
+
+      Request(long nodeId, long dciId, Date from, Date to, int maxRows)
+      {
+         this.nodeId = nodeId;
+         this.dciId = dciId;
+         this.from = from;
+         this.to = to;
+         this.maxRows = maxRows;
+      }
+   }
+}
@@ -0,0 +1,211 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.netxms.client.constants.DataType;
+import org.netxms.client.datacollection.ColumnarDciData;
+import org.netxms.client.datacollection.DciDataPageHandler;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes pages of collected DCI data to JSON stream as they arrive. Produces same structure as serialized
+ * <code>DciData</code> object. If bucket size is set, numeric values are downsampled - each bucket is written as single
+ * entry with average value, minimum, maximum, and number of aggregated rows.
+ */
+public class HistoricalDataWriter implements DciDataPageHandler
+{
+   private JsonWriter writer;
+   private long timeFrom;
+   private long bucketSize;
+   private DataType dataType = null;
+   private boolean downsample = false;
+   private long currentBucket;
+   private int count = 0;
+   private double sum;
+   private double min;
+   private double max;
+
+   /**
+    * Create new writer.
+    *
+    * @param writer JSON writer
+    * @param timeFrom start of requested time range (milliseconds since epoch) used for bucket alignment
+    * @param bucketSize bucket size in milliseconds or 0 to write all rows
+    */
+   public HistoricalDataWriter(JsonWriter writer, long timeFrom, long bucketSize)
+   {
+      this.writer = writer;
+      this.timeFrom = timeFrom;
+      this.bucketSize = bucketSize;
+   }
+
+   /**
+    * Start data object.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @throws IOException on write error
+    */
+   public void start(long nodeId, long dciId) throws IOException
+   {
+      writer.beginObject();
+      writer.name("nodeId").value(nodeId);
+      writer.name("dciId").value(dciId);
+      writer.name("values").beginArray();
+   }
+
+   /**
+    * Finish data object.
+    *
+    * @param rcc error code to report or 0 if data was retrieved successfully
+    * @throws IOException on write error
+    */
+   public void finish(int rcc) throws IOException
+   {
+      if (count > 0)
+         writeBucket();
+      writer.endArray();
+      if (dataType != null)
+         writer.name("dataType").value(dataType.name());
+      if (rcc != 0)
+         writer.name("error").value(rcc);
+      writer.endObject();
+      writer.flush();
+   }
+
+   /**
+    * @see org.netxms.client.datacollection.DciDataPageHandler#onDataPage(org.netxms.client.datacollection.ColumnarDciData)
+    */
+   @Override
+   public void onDataPage(ColumnarDciData page)
+   {
+      if (dataType == null)
+      {
+         dataType = page.getDataType();
+         downsample = (bucketSize > 0) && (dataType != null) && (dataType != DataType.STRING) && (dataType != DataType.NULL);
+      }
+
+      try
+      {
+         for(int i = 0; i < page.size(); i++)
+         {
+            if (downsample)
+               addToBucket(page.getTimestamp(i), page.getDouble(i));
+            else
+               writeRow(page, i);
+         }
+         writer.flush();
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Add value to current bucket. Rows arrive in newest to oldest order, so bucket is complete as soon as row from
+    * different bucket arrives.
+    *
+    * @param timestamp row timestamp
+    * @param value row value
+    * @throws IOException on write error
+    */
+   private void addToBucket(long timestamp, double value) throws IOException
+   {
+      long bucket = Math.floorDiv(timestamp - timeFrom, bucketSize);
+      if ((count > 0) && (bucket != currentBucket))
+         writeBucket();
+
+      if (count == 0)
+      {
+         currentBucket = bucket;
+         sum = value;
+         min = value;
+         max = value;
+      }
+      else
+      {
+         sum += value;
+         if (value < min)
+            min = value;
+         if (value > max)
+            max = value;
+      }
+      count++;
+   }
+
+   /**
+    * Write current bucket and reset it.
+    *
+    * @throws IOException on write error
+    */
+   private void writeBucket() throws IOException
+   {
+      writer.beginObject();
+      writer.name("timestamp").value((timeFrom + currentBucket * bucketSize) / 1000);
+      writer.name("value").value(sum / count);
+      writer.name("min").value(min);
+      writer.name("max").value(max);
+      writer.name("count").value(count);
+      writer.endObject();
+      count = 0;
+   }
+
+   /**
+    * Write single row.
+    *
+    * @param page data page
+    * @param index row index
+    * @throws IOException on write error
+    */
+   private void writeRow(ColumnarDciData page, int index) throws IOException
+   {
+      writer.beginObject();
+      writer.name("timestamp").value(page.getTimestamp(index) / 1000);
+      writer.name("value");
+      writeValue(page.getValue(index));
+      Object rawValue = page.getRawValue(index);
+      if (rawValue != null)
+      {
+         writer.name("rawValue");
+         writeValue(rawValue);
+      }
+      writer.endObject();
+   }
+
+   /**
+    * Write single value.
+    *
+    * @param value value to write
+    * @throws IOException on write error
+    */
+   private void writeValue(Object value) throws IOException
+   {
+      if (value instanceof Long)
+         writer.value(((Long)value).longValue());
+      else if (value instanceof Double)
+         writer.value(((Double)value).doubleValue());
+      else if (value != null)
+         writer.value(value.toString());
+      else
+         writer.nullValue();
+   }
+}
@@ -0,0 +1,59 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * Representation of response object which is serialized directly into response stream, without building complete JSON
+ * document in memory first.
+ */
+public class JsonStreamRepresentation extends WriterRepresentation
+{
+   private Object object;
+   private Set<String> fields;
+
+   /**
+    * Create new representation.
+    *
+    * @param object response object
+    * @param fields set of fields to include or null to include all fields
+    */
+   public JsonStreamRepresentation(Object object, Set<String> fields)
+   {
+      super(MediaType.APPLICATION_JSON);
+      setCharacterSet(CharacterSet.UTF_8);
+      this.object = object;
+      this.fields = fields;
+   }
+
+   /**
+    * @see org.restlet.representation.Representation#write(java.io.Writer)
+    */
+   @Override
+   public void write(Writer out) throws IOException
+   {
+      JsonTools.writeJson(object, fields, out);
+   }
+}
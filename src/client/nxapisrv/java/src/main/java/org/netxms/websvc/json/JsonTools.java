@@ -18,10 +18,14 @@
  */
 package org.netxms.websvc.json;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.net.InetAddress;
 import java.util.Date;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -43,17 +47,55 @@
 import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Collection of JSON tools
  */
 public class JsonTools
 {
+   private static final Gson gson = createGsonInstance(null);
+   private static final ConcurrentHashMap<Class<?>, Gson> restrictedInstances = new ConcurrentHashMap<Class<?>, Gson>();
+
+   /**
+    * Get shared, correctly configured GSON instance. GSON instances are thread safe, so same instance can be used by all
+    * request handlers.
+    *
+    * @return GSON instance
+    */
+   public static Gson getGsonInstance()
+   {
+      return gson;
+   }
+
    /**
-    * Create correctly configured GSON instance.
+    * Get shared, correctly configured GSON instance with specific type adapter excluded. Intended for use by type adapters
+    * that delegate to default serialization.
+    *
+    * @param adapterExclusion adapter class to be excluded
+    * @return GSON instance
+    */
+   public static Gson getGsonInstance(Class<?> adapterExclusion)
+   {
+      if (adapterExclusion == null)
+         return gson;
+      Gson instance = restrictedInstances.get(adapterExclusion);
+      if (instance == null)
+      {
+         instance = createGsonInstance(adapterExclusion);
+         Gson existing = restrictedInstances.putIfAbsent(adapterExclusion, instance);
+         if (existing != null)
+            instance = existing;
+      }
+      return instance;
+   }
+
+   /**
+    * Create correctly configured GSON instance. Creating GSON instance is expensive, so shared instance returned by
+    * <code>getGsonInstance()</code> should be used where possible.
     *
     * @return GSON instance
     */
@@ -130,28 +172,94 @@ private static GsonBuilder registerTypeHierarchyAdapter(GsonBuilder builder, Cla
     * Create JSON representation for given object
     *
     * @param object object to serialize
+    * @param fields set of fields to include or null to include all fields
     * @return JSON code
     */
    public static String jsonFromObject(Object object, Set<String> fields)
+   {
+      StringWriter out = new StringWriter();
+      try
+      {
+         writeJson(object, fields, out);
+      }
+      catch(IOException e)
+      {
+         throw new IllegalStateException(e); // Should not happen with StringWriter
+      }
+      return out.toString();
+   }
+
+   /**
+    * Write JSON representation of given object to given writer. If set of fields is provided, object members not in that
+    * set are dropped while object is being serialized.
+    *
+    * @param object object to serialize
+    * @param fields set of fields to include or null to include all fields
+    * @param out output writer
+    * @throws IOException on write error
+    */
+   public static void writeJson(Object object, Set<String> fields, Writer out) throws IOException
    {
       if (object == null)
-         return "{ }"; 
-               
-      if ((object instanceof JsonObject) || 
-          (object instanceof JsonArray) ||
-          (object instanceof JSONObject) ||
-          (object instanceof JSONArray))
-         return JsonFilter.createFilter(object, fields).filter().toString();
-      
+      {
+         out.write("{ }");
+         return;
+      }
+
+      boolean filter = (fields != null) && !fields.isEmpty();
+      JsonWriter writer = filter ? new FilteringJsonWriter(out, fields) : new JsonWriter(out);
+      writer.setSerializeNulls(false);
+      writeValue(object, writer, filter ? fields : null);
+      writer.flush();
+   }
+
+   /**
+    * Write single value to JSON writer. Members of org.json objects are written as raw JSON, so filtering writer cannot
+    * see them - such objects are filtered by top level keys before writing.
+    *
+    * @param object value to write
+    * @param writer JSON writer
+    * @param fields set of fields to include or null to include all fields
+    * @throws IOException on write error
+    */
+   private static void writeValue(Object object, JsonWriter writer, Set<String> fields) throws IOException
+   {
       if (object instanceof ResponseContainer)
-         return ((ResponseContainer)object).toJson(fields);
-      
-      Gson gson = createGsonInstance();
-      if ((fields != null) && !fields.isEmpty())
       {
-         return JsonFilter.createFilter(gson.toJsonTree(object), fields).filter().toString();
+         ResponseContainer container = (ResponseContainer)object;
+         writer.beginObject();
+         if (writer instanceof FilteringJsonWriter)
+            ((FilteringJsonWriter)writer).unfilteredName(container.getName());
+         else
+            writer.name(container.getName());
+         if (container.getValue() != null)
+         {
+            writeValue(container.getValue(), writer, fields);
+         }
+         else
+         {
+            writer.setSerializeNulls(true);
+            writer.nullValue();
+            writer.setSerializeNulls(false);
+         }
+         writer.endObject();
+      }
+      else if (object instanceof JSONObject)
+      {
+         writer.jsonValue(((fields != null) ? new JsonFilterOrgJsonObject((JSONObject)object, fields).filter() : object).toString());
+      }
+      else if (object instanceof JSONArray)
+      {
+         writer.jsonValue(((fields != null) ? new JsonFilterOrgJsonArray((JSONArray)object, fields).filter() : object).toString());
+      }
+      else if (object instanceof JsonElement)
+      {
+         gson.toJson((JsonElement)object, writer);
+      }
+      else
+      {
+         gson.toJson(object, object.getClass(), writer);
       }
-      return gson.toJson(object);
    }
 
    /**
@@ -63,11 +63,6 @@ public Object getValue()
     */
    public String toJson(Set<String> fields)
    {
-      StringBuilder sb = new StringBuilder("{ \"");
-      sb.append(name);
-      sb.append("\":");
-      sb.append((value != null) ? JsonTools.jsonFromObject(value, fields) : "null");
-      sb.append(" }");
-      return sb.toString();
+      return JsonTools.jsonFromObject(this, fields);
    }
 }
@@ -31,16 +31,13 @@
  */
 public class AbstractObjectSerializer implements JsonSerializer<AbstractObject>
 {
-   private Gson gson = null;
-   
    /**
     * Serialize element
     */
    @Override
    public JsonElement serialize(AbstractObject src, Type typeOfSrc, JsonSerializationContext context)
    {
-      if (gson == null)
-         gson = JsonTools.createGsonInstance(AbstractObjectSerializer.class);
+      Gson gson = JsonTools.getGsonInstance(AbstractObjectSerializer.class);
       JsonElement json = gson.toJsonTree(src, typeOfSrc);
       json.getAsJsonObject().addProperty("objectClassName", src.getObjectClassName());
       return json;
@@ -36,8 +36,6 @@
  */
 public class DataCollectionObjectDeserializer implements JsonDeserializer<DataCollectionObject>
 {
-   private Gson gson;
-
    /**
     * @see com.google.gson.JsonDeserializer#deserialize(com.google.gson.JsonElement, java.lang.reflect.Type, com.google.gson.JsonDeserializationContext)
     */
@@ -49,8 +47,7 @@ public DataCollectionObject deserialize(JsonElement src, Type typeOfSrc, JsonDes
       if (type == null)
          throw new JsonParseException("Missing mandatory attribute \"valueType\"");
       
-      if (gson == null)
-         gson = JsonTools.createGsonInstance(DataCollectionObjectDeserializer.class);
+      Gson gson = JsonTools.getGsonInstance(DataCollectionObjectDeserializer.class);
 
       String stype = type.getAsString();
       if ("single".equals(stype))
@@ -32,8 +32,6 @@
  */
 public class DataCollectionObjectSerializer implements JsonSerializer<DataCollectionObject>
 {
-   private Gson gson;
-
    /**
     * @see com.google.gson.JsonSerializer#serialize(java.lang.Object, java.lang.reflect.Type,
     *      com.google.gson.JsonSerializationContext)
@@ -41,8 +39,7 @@ public class DataCollectionObjectSerializer implements JsonSerializer<DataCollec
    @Override
    public JsonElement serialize(DataCollectionObject src, Type typeOfSrc, JsonSerializationContext context)
    {
-      if (gson == null)
-         gson = JsonTools.createGsonInstance(DataCollectionObjectSerializer.class);
+      Gson gson = JsonTools.getGsonInstance(DataCollectionObjectSerializer.class);
       JsonElement json = gson.toJsonTree(src, typeOfSrc);
       json.getAsJsonObject().addProperty("valueType", (src instanceof DataCollectionItem) ? "single" : "table");
       return json;
@@ -0,0 +1,222 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.netxms.base.InetAddressEx;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.Interface;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Benchmark for JSON serialization of large object lists, as returned by <code>/objects</code> endpoint. Compares tree
+ * based serialization and filtering (previous implementation) with streaming serialization by <code>JsonTools</code>.
+ * Not a unit test - run manually with test classpath:
+ *
+ * <pre>
+ * java -cp ... org.netxms.websvc.json.JsonSerializationBenchmark [objectCount] [rounds]
+ * </pre>
+ */
+public class JsonSerializationBenchmark
+{
+   /**
+    * Writer that only counts characters written.
+    */
+   private static class CountingWriter extends Writer
+   {
+      long count = 0;
+
+      @Override
+      public void write(char[] cbuf, int off, int len)
+      {
+         count += len;
+      }
+
+      @Override
+      public void write(String str, int off, int len)
+      {
+         count += len;
+      }
+
+      @Override
+      public void write(int c)
+      {
+         count++;
+      }
+
+      @Override
+      public void flush()
+      {
+      }
+
+      @Override
+      public void close()
+      {
+      }
+   }
+
+   /**
+    * Serialization method under test
+    */
+   private interface Serializer
+   {
+      long serialize(Object object, Set<String> fields) throws IOException;
+   }
+
+   /**
+    * Create synthetic interface objects.
+    *
+    * @param count number of objects
+    * @return list of objects
+    * @throws Exception on error
+    */
+   private static List<AbstractObject> createObjects(int count) throws Exception
+   {
+      List<AbstractObject> objects = new ArrayList<AbstractObject>(count);
+      for(int i = 0; i < count; i++)
+      {
+         NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT);
+         msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, i + 100);
+         msg.setField(NXCPCodes.VID_GUID, UUID.randomUUID());
+         msg.setField(NXCPCodes.VID_OBJECT_NAME, "eth" + (i % 48) + "/" + (i / 48));
+         msg.setFieldInt16(NXCPCodes.VID_OBJECT_CLASS, AbstractObject.OBJECT_INTERFACE);
+         msg.setFieldInt16(NXCPCodes.VID_OBJECT_STATUS, i % 5);
+         msg.setField(NXCPCodes.VID_COMMENTS, "Synthetic interface object #" + i);
+         msg.setFieldInt32(NXCPCodes.VID_PARENT_CNT, 1);
+         msg.setFieldInt32(NXCPCodes.VID_PARENT_ID_BASE, (i / 48) + 1000000);
+         msg.setFieldInt32(NXCPCodes.VID_IF_INDEX, i % 48 + 1);
+         msg.setFieldInt32(NXCPCodes.VID_IF_TYPE, 6);
+         msg.setFieldInt32(NXCPCodes.VID_MTU, 1500);
+         msg.setField(NXCPCodes.VID_MAC_ADDR, new byte[] { 0, 0x1C, 0x42, (byte)(i >> 16), (byte)(i >> 8), (byte)i });
+         msg.setField(NXCPCodes.VID_DESCRIPTION, "GigabitEthernet" + (i % 48));
+         msg.setFieldInt32(NXCPCodes.VID_IP_ADDRESS_COUNT, 1);
+         msg.setField(NXCPCodes.VID_IP_ADDRESS_LIST_BASE,
+               new InetAddressEx(InetAddress.getByAddress(new byte[] { 10, (byte)(i >> 16), (byte)(i >> 8), (byte)i }), 24));
+         objects.add(new Interface(msg, null));
+      }
+      return objects;
+   }
+
+   /**
+    * Run benchmark for given serialization method.
+    *
+    * @param name test name
+    * @param serializer serialization method
+    * @param object object to serialize
+    * @param fields field set or null
+    * @param objectCount number of serialized objects per round
+    * @param rounds number of rounds
+    * @throws IOException on error
+    */
+   private static void run(String name, Serializer serializer, Object object, Set<String> fields, int objectCount, int rounds) throws IOException
+   {
+      long best = Long.MAX_VALUE;
+      long size = 0;
+      for(int i = 0; i < rounds; i++)
+      {
+         long start = System.nanoTime();
+         size = serializer.serialize(object, fields);
+         long elapsed = System.nanoTime() - start;
+         if (elapsed < best)
+            best = elapsed;
+      }
+      System.out.printf("%-28s %10.0f objects/s  (%d characters)%n", name, objectCount * 1000000000.0 / best, size);
+   }
+
+   /**
+    * Entry point.
+    *
+    * @param args command line arguments: number of objects and number of rounds
+    * @throws Exception on error
+    */
+   public static void main(String[] args) throws Exception
+   {
+      int objectCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+      int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+      final List<AbstractObject> objects = createObjects(objectCount);
+      final ResponseContainer response = new ResponseContainer("objects", objects);
+      final Set<String> fields = new HashSet<String>(Arrays.asList("objectId", "objectName", "status", "macAddress"));
+
+      // Previous implementation - build complete tree, filter it, and convert to string
+      Serializer treeSerializer = new Serializer() {
+         @Override
+         public long serialize(Object object, Set<String> fields)
+         {
+            Object value = ((ResponseContainer)object).getValue();
+            JsonElement tree = JsonTools.getGsonInstance().toJsonTree(value);
+            JsonObject root = new JsonObject();
+            root.add(((ResponseContainer)object).getName(), (JsonElement)JsonFilter.createFilter(tree, fields).filter());
+            return root.toString().length();
+         }
+      };
+
+      // Current implementation - stream directly into output writer
+      Serializer streamSerializer = new Serializer() {
+         @Override
+         public long serialize(Object object, Set<String> fields) throws IOException
+         {
+            CountingWriter out = new CountingWriter();
+            JsonTools.writeJson(object, fields, out);
+            return out.count;
+         }
+      };
+
+      Serializer singleObjectTree = new Serializer() {
+         @Override
+         public long serialize(Object object, Set<String> fields)
+         {
+            long size = 0;
+            for(AbstractObject o : objects)
+               size += JsonTools.createGsonInstance().toJson(o).length(); // previous implementation created GSON instance per request
+            return size;
+         }
+      };
+
+      Serializer singleObjectStream = new Serializer() {
+         @Override
+         public long serialize(Object object, Set<String> fields) throws IOException
+         {
+            CountingWriter out = new CountingWriter();
+            for(AbstractObject o : objects)
+               JsonTools.writeJson(o, null, out);
+            return out.count;
+         }
+      };
+
+      System.out.println("Serializing " + objectCount + " objects, best of " + rounds + " rounds");
+      run("tree, all fields", treeSerializer, response, null, objectCount, rounds);
+      run("stream, all fields", streamSerializer, response, null, objectCount, rounds);
+      run("tree, " + fields.size() + " fields", treeSerializer, response, fields, objectCount, rounds);
+      run("stream, " + fields.size() + " fields", streamSerializer, response, fields, objectCount, rounds);
+      run("tree, single object", singleObjectTree, null, null, objectCount, rounds);
+      run("stream, single object", singleObjectStream, null, null, objectCount, rounds);
+   }
+}
@@ -0,0 +1,136 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.charts.widgets.internal;
+
+/**
+ * Downsampling of line chart series using "largest triangle three buckets" algorithm. Selects points which preserve visual
+ * shape of the series (including spikes) while limiting number of points passed to renderer. Only points within visible
+ * time range (plus one point on each side, so lines are drawn up to plot area edges) are considered.
+ */
+public final class SeriesDownsampler
+{
+   /**
+    * Private constructor to prevent instantiation
+    */
+   private SeriesDownsampler()
+   {
+   }
+
+   /**
+    * Select indexes of points to be displayed. Timestamps should be sorted (in either ascending or descending order).
+    * Returned indexes are in same order as source points.
+    *
+    * @param timestamps point timestamps
+    * @param values point values
+    * @param from start of visible time range
+    * @param to end of visible time range
+    * @param threshold maximum number of points to select (values below 3 disable downsampling)
+    * @return indexes of selected points
+    */
+   public static int[] selectPoints(long[] timestamps, double[] values, long from, long to, int threshold)
+   {
+      int n = timestamps.length;
+
+      int lo = -1, hi = -1;
+      for(int i = 0; i < n; i++)
+      {
+         if ((timestamps[i] >= from) && (timestamps[i] <= to))
+         {
+            if (lo == -1)
+               lo = i;
+            hi = i;
+         }
+      }
+
+      if (lo == -1)
+      {
+         // No points within range, but line between two points may still cross visible area
+         for(int i = 0; i < n - 1; i++)
+         {
+            if ((Math.min(timestamps[i], timestamps[i + 1]) < from) && (Math.max(timestamps[i], timestamps[i + 1]) > to))
+               return new int[] { i, i + 1 };
+         }
+         return new int[0];
+      }
+
+      lo = Math.max(lo - 1, 0);
+      hi = Math.min(hi + 1, n - 1);
+      int count = hi - lo + 1;
+      if ((threshold < 3) || (count <= threshold))
+      {
+         int[] result = new int[count];
+         for(int i = 0; i < count; i++)
+            result[i] = lo + i;
+         return result;
+      }
+
+      int[] result = new int[threshold];
+      int k = 0;
+      result[k++] = lo;
+
+      // First and last points are always selected, remaining points are divided into (threshold - 2) buckets
+      double bucketSize = (double)(count - 2) / (double)(threshold - 2);
+      long base = timestamps[lo];
+      int a = lo;
+      for(int b = 0; b < threshold - 2; b++)
+      {
+         // Average point of next bucket (last point for last bucket)
+         int avgStart = lo + (int)((b + 1) * bucketSize) + 1;
+         int avgEnd = Math.min(lo + (int)((b + 2) * bucketSize) + 1, hi + 1);
+         double avgX = 0, avgY = 0;
+         if (avgStart < avgEnd)
+         {
+            for(int i = avgStart; i < avgEnd; i++)
+            {
+               avgX += timestamps[i] - base;
+               avgY += values[i];
+            }
+            avgX /= (avgEnd - avgStart);
+            avgY /= (avgEnd - avgStart);
+         }
+         else
+         {
+            avgX = timestamps[hi] - base;
+            avgY = values[hi];
+         }
+
+         // Select point from current bucket forming largest triangle with previously selected point and next bucket average
+         int rangeStart = lo + (int)(b * bucketSize) + 1;
+         int rangeEnd = Math.min(lo + (int)((b + 1) * bucketSize) + 1, hi);
+         double ax = timestamps[a] - base;
+         double ay = values[a];
+         double maxArea = -1;
+         int selected = rangeStart;
+         for(int i = rangeStart; i < rangeEnd; i++)
+         {
+            double area = Math.abs((ax - avgX) * (values[i] - ay) - (ax - (timestamps[i] - base)) * (avgY - ay));
+            if (area > maxArea)
+            {
+               maxArea = area;
+               selected = i;
+            }
+         }
+         result[k++] = selected;
+         a = selected;
+      }
+
+      result[k++] = hi;
+      return result;
+   }
+}
@@ -0,0 +1,113 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.charts.widgets.internal;
+
+/**
+ * Time range state of line chart X axis. While chart is zoomed to selection, time ranges set by chart owner (for example
+ * on periodic refresh) are deferred and applied when X axis is adjusted. Also tracks time range displayed series were
+ * sampled for, so chart can detect when series should be recreated from original data after X axis range change.
+ */
+public class TimeRangeState
+{
+   private boolean zoomedToSelection = false;
+   private boolean delayed = false;
+   private long delayedFrom = 0;
+   private long delayedTo = 0;
+   private boolean sampled = false;
+   private long sampledFrom = 0;
+   private long sampledTo = 0;
+
+   /**
+    * Request new time range. If chart is zoomed to selection, range is stored and applied later by
+    * <code>resetZoom</code>.
+    *
+    * @param from start time
+    * @param to end time
+    * @return true if range should be applied to X axis now, false if it is deferred
+    */
+   public boolean setTimeRange(long from, long to)
+   {
+      if (zoomedToSelection)
+      {
+         delayed = true;
+         delayedFrom = from;
+         delayedTo = to;
+         return false;
+      }
+      delayed = false;
+      return true;
+   }
+
+   /**
+    * Mark X axis as zoomed to selection.
+    */
+   public void setZoomedToSelection()
+   {
+      zoomedToSelection = true;
+   }
+
+   /**
+    * Check if X axis is zoomed to selection.
+    *
+    * @return true if X axis is zoomed to selection
+    */
+   public boolean isZoomedToSelection()
+   {
+      return zoomedToSelection;
+   }
+
+   /**
+    * Reset zoom to selection.
+    *
+    * @return time range deferred while zoomed (as two element array of start and end time) or null if there is none
+    */
+   public long[] resetZoom()
+   {
+      zoomedToSelection = false;
+      if (!delayed)
+         return null;
+      delayed = false;
+      return new long[] { delayedFrom, delayedTo };
+   }
+
+   /**
+    * Set time range displayed series were sampled for.
+    *
+    * @param from start of time range
+    * @param to end of time range
+    */
+   public void setSampledRange(long from, long to)
+   {
+      sampled = true;
+      sampledFrom = from;
+      sampledTo = to;
+   }
+
+   /**
+    * Check if displayed series should be recreated for given X axis range.
+    *
+    * @param from start of X axis range
+    * @param to end of X axis range
+    * @return true if series were not sampled for given range
+    */
+   public boolean isResampleRequired(long from, long to)
+   {
+      return !sampled || (from != sampledFrom) || (to != sampledTo);
+   }
+}
@@ -24,15 +24,12 @@
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Composite;
 import org.netxms.client.NXCSession;
-import org.netxms.client.constants.HistoricalDataType;
+import org.netxms.client.constants.DataType;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartDciConfig;
-import org.netxms.client.datacollection.DciData;
 import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.DciValue;
 import org.netxms.client.datacollection.GraphItem;
@@ -41,10 +38,12 @@
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.nxmc.Registry;
 import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.widgets.MessageArea;
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
-import org.netxms.nxmc.tools.ViewRefreshController;
+import org.netxms.nxmc.modules.dashboards.widgets.DashboardRefreshScheduler.DataConsumer;
+import org.netxms.nxmc.modules.dashboards.widgets.DashboardRefreshScheduler.Registration;
 import org.xnap.commons.i18n.I18n;
 
 /**
@@ -60,8 +59,7 @@ public abstract class ComparisonChartElement extends ElementWidget
 	protected boolean updateThresholds = false;
    protected List<ChartDciConfig> runtimeDciList = new ArrayList<>();
 
-	private ViewRefreshController refreshController;
-	private boolean updateInProgress = false;
+   private Registration refreshRegistration;
 
    /**
     * @param parent parent composite
@@ -72,15 +70,6 @@ public ComparisonChartElement(DashboardControl parent, DashboardElement element,
    {
       super(parent, element, view);
       session = Registry.getSession();
-
-		addDisposeListener(new DisposeListener() {
-         @Override
-         public void widgetDisposed(DisposeEvent e)
-         {
-            if (refreshController != null)
-               refreshController.dispose();
-         }
-      });
    }
 
    /**
@@ -157,108 +146,55 @@ protected String getErrorMessage()
       job.start();
    }
 
-	/**
-	 * Start refresh timer
-	 */
-	protected void startRefreshTimer()
-	{
-      refreshController = new ViewRefreshController(view, refreshInterval, new Runnable() {
-			@Override
-			public void run()
-			{
-				if (ComparisonChartElement.this.isDisposed())
-					return;
-				
-            refreshData();
-			}
-		});
-      refreshData();
-	}
-
-	/**
-	 * Refresh graph's data
-	 */
-   protected void refreshData()
-	{
-		if (updateInProgress)
-			return;
-
-		updateInProgress = true;
-
-      Job job = new Job(i18n.tr("Reading DCI data for chart"), view, this) {
-			@Override
-         protected void run(IProgressMonitor monitor) throws Exception
-			{
-            final DciData[] data = new DciData[runtimeDciList.size()];
-            for(int i = 0; i < runtimeDciList.size(); i++)
-				{
-               ChartDciConfig dci = runtimeDciList.get(i);
-               if (dci.type == ChartDciConfig.ITEM)
-                  data[i] = session.getCollectedData(dci.nodeId, dci.dciId, null, null, 1, HistoricalDataType.PROCESSED);
-					else
-                  data[i] = session.getCollectedTableData(dci.nodeId, dci.dciId, dci.instance, dci.column, null, null, 1);
-				}
-
-            final Threshold[][] thresholds;
-            if (updateThresholds)
-            {
-               thresholds = new Threshold[runtimeDciList.size()][];
-               for(int i = 0; i < runtimeDciList.size(); i++)
-               {
-                  ChartDciConfig dci = runtimeDciList.get(i);
-                  if (dci.type == ChartDciConfig.ITEM)
-                     thresholds[i] = session.getThresholds(dci.nodeId, dci.dciId);
-                  else
-                     thresholds[i] = new Threshold[0];
-               }
-            }
-            else
-            {
-               thresholds = null;
-            }
-
-				runInUIThread(new Runnable() {
-					@Override
-					public void run()
-					{
-                  updateInProgress = false;
-                  if (chart.isDisposed())
-                     return;
-
-                  for(int i = 0; i < data.length; i++)
-						{
-                     DciDataRow lastValue = data[i].getLastValue();
-                     chart.updateParameter(i, (lastValue != null) ? lastValue : new DciDataRow(new Date(), 0.0), data[i].getDataType(), false);
-                     if (updateThresholds)
-                        chart.updateParameterThresholds(i, thresholds[i]);
-						}
-                  chart.refresh();
-                  clearMessages();
-					}
-				});
-			}
-
-			@Override
-			protected String getErrorMessage()
-			{
-            return i18n.tr("Cannot read DCI data");
-			}
+   /**
+    * Register with dashboard refresh scheduler and request initial refresh
+    */
+   protected void startRefreshTimer()
+   {
+      refreshRegistration = getRefreshScheduler().register(this, refreshInterval, runtimeDciList, updateThresholds, new DataConsumer() {
+         @Override
+         public void onDataUpdate(DciDataRow[] values, DataType[] dataTypes, Threshold[][] thresholds)
+         {
+            if (!chart.isDisposed())
+               updateChart(values, dataTypes, thresholds);
+         }
 
          @Override
-         protected void jobFailureHandler(Exception e)
+         public void onDataError(Exception e)
          {
-            runInUIThread(new Runnable() {
-               @Override
-               public void run()
-               {
-                  updateInProgress = false;
-               }
-            });
+            addMessage(MessageArea.ERROR, i18n.tr("Cannot read DCI data") + ": " + e.getLocalizedMessage());
          }
-		};
-		job.setUser(false);
-		job.start();
-	}
+      });
+      refreshData();
+   }
+
+   /**
+    * Request refresh of graph's data. Data is read by dashboard refresh scheduler together with data for other elements.
+    */
+   protected void refreshData()
+   {
+      if (refreshRegistration != null)
+         refreshRegistration.refreshNow();
+   }
+
+   /**
+    * Update chart with new data. Called on UI thread by dashboard refresh scheduler.
+    *
+    * @param values last values for DCIs from runtime DCI list (element is null if value is not available)
+    * @param dataTypes data types for DCIs from runtime DCI list
+    * @param thresholds thresholds for DCIs from runtime DCI list or null if threshold update is not enabled
+    */
+   protected void updateChart(DciDataRow[] values, DataType[] dataTypes, Threshold[][] thresholds)
+   {
+      for(int i = 0; i < values.length; i++)
+      {
+         chart.updateParameter(i, (values[i] != null) ? values[i] : new DciDataRow(new Date(), 0.0), dataTypes[i], false);
+         if (thresholds != null)
+            chart.updateParameterThresholds(i, thresholds[i]);
+      }
+      chart.refresh();
+      clearMessages();
+   }
 
    /**
     * @see org.netxms.nxmc.modules.dashboards.widgets.ElementWidget#adjustContentHeight(org.eclipse.swt.widgets.Composite,
@@ -84,6 +84,7 @@ public class DashboardControl extends Composite
 	private DashboardModifyListener modifyListener = null;
    private AbstractDashboardView view;
 	private IntermediateSelectionProvider selectionProvider;
+   private DashboardRefreshScheduler refreshScheduler;
 
    /**
     * Create new dashboard control.
@@ -134,6 +135,9 @@ public DashboardControl(Composite parent, int style, DashboardControl originalCo
 	 */
 	private void createContent()
 	{
+      refreshScheduler = new DashboardRefreshScheduler(view);
+      addDisposeListener((e) -> refreshScheduler.dispose());
+
       setBackground(ThemeEngine.getBackgroundColor("Dashboard"));
 
 		DashboardLayout layout = new DashboardLayout();
@@ -710,6 +714,16 @@ public IntermediateSelectionProvider getSelectionProvider()
       return selectionProvider;
    }
 
+   /**
+    * Get refresh scheduler shared by all elements of this dashboard.
+    *
+    * @return refresh scheduler
+    */
+   public DashboardRefreshScheduler getRefreshScheduler()
+   {
+      return refreshScheduler;
+   }
+
    /**
     * @return the dashboard
     */
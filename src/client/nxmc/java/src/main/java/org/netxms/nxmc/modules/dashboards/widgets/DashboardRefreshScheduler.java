@@ -0,0 +1,593 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.dashboards.widgets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.netxms.client.NXCSession;
+import org.netxms.client.constants.DataType;
+import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.DciDataRow;
+import org.netxms.client.datacollection.DciValue;
+import org.netxms.client.datacollection.Threshold;
+import org.netxms.client.maps.configs.SingleDciConfig;
+import org.netxms.nxmc.Registry;
+import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.views.View;
+import org.netxms.nxmc.base.views.ViewStateListener;
+import org.netxms.nxmc.localization.LocalizationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Refresh scheduler shared by all elements of single dashboard. Runs single timer with period equal to greatest common
+ * divisor of all registered refresh intervals, so elements with same or multiple intervals are refreshed on same tick.
+ * DCI values requested by all elements due on a tick are deduplicated and retrieved in one background job - last values
+ * of single value DCIs and table cells are read with one bulk request, thresholds are read once per distinct DCI. Read
+ * errors are reported only to elements that use failed DCIs.
+ */
+public class DashboardRefreshScheduler implements ViewStateListener
+{
+   private static final Logger logger = LoggerFactory.getLogger(DashboardRefreshScheduler.class);
+
+   private final I18n i18n = LocalizationHelper.getI18n(DashboardRefreshScheduler.class);
+
+   private View view;
+   private Display display;
+   private NXCSession session;
+   private List<Registration> registrations = new ArrayList<Registration>();
+   private Runnable timer;
+   private int tickInterval = 0;
+   private boolean updateInProgress = false;
+   private boolean refreshPending = false;
+   private boolean disposed = false;
+
+   /**
+    * Create new scheduler attached to given view.
+    *
+    * @param view owning view
+    */
+   public DashboardRefreshScheduler(View view)
+   {
+      this.view = view;
+      display = view.getDisplay();
+      session = Registry.getSession();
+      timer = new Runnable() {
+         @Override
+         public void run()
+         {
+            if (view.isVisible())
+               runDueRefreshes(false);
+            if (tickInterval > 0)
+               display.timerExec(tickInterval * 1000, this);
+         }
+      };
+      view.addStateListener(this);
+   }
+
+   /**
+    * Register element which only needs periodic refresh call. Handler is called on UI thread on scheduler tick.
+    *
+    * @param owner owning control (registration is cancelled automatically when control is disposed)
+    * @param interval refresh interval in seconds
+    * @param handler refresh handler
+    * @return registration handle
+    */
+   public Registration register(Control owner, int interval, Runnable handler)
+   {
+      return register(new Registration(owner, interval, null, false, null, handler));
+   }
+
+   /**
+    * Register element which needs last values of given DCIs. Consumer is called on UI thread with values in same order
+    * as DCIs in provided list.
+    *
+    * @param owner owning control (registration is cancelled automatically when control is disposed)
+    * @param interval refresh interval in seconds
+    * @param dciList list of DCIs to read
+    * @param thresholdsRequired true if DCI thresholds should be read as well
+    * @param consumer data consumer
+    * @return registration handle
+    */
+   public Registration register(Control owner, int interval, List<ChartDciConfig> dciList, boolean thresholdsRequired, DataConsumer consumer)
+   {
+      return register(new Registration(owner, interval, new ArrayList<ChartDciConfig>(dciList), thresholdsRequired, consumer, null));
+   }
+
+   /**
+    * Add registration and recalculate timer interval.
+    *
+    * @param r registration to add
+    * @return added registration
+    */
+   private Registration register(final Registration r)
+   {
+      registrations.add(r);
+      r.owner.addDisposeListener((e) -> r.cancel());
+      updateTimer();
+      return r;
+   }
+
+   /**
+    * Remove registration and recalculate timer interval.
+    *
+    * @param r registration to remove
+    */
+   private void unregister(Registration r)
+   {
+      if (registrations.remove(r))
+         updateTimer();
+   }
+
+   /**
+    * Recalculate tick interval and restart timer if it was changed.
+    */
+   private void updateTimer()
+   {
+      if (disposed)
+         return;
+
+      int interval = 0;
+      for(Registration r : registrations)
+      {
+         if (r.interval > 0)
+            interval = (interval == 0) ? r.interval : gcd(interval, r.interval);
+      }
+      if (interval == tickInterval)
+         return;
+
+      tickInterval = interval;
+      display.timerExec(-1, timer);
+      if (tickInterval > 0)
+         display.timerExec(tickInterval * 1000, timer);
+   }
+
+   /**
+    * Calculate greatest common divisor.
+    *
+    * @param a first number
+    * @param b second number
+    * @return greatest common divisor of a and b
+    */
+   private static int gcd(int a, int b)
+   {
+      while(b != 0)
+      {
+         int t = a % b;
+         a = b;
+         b = t;
+      }
+      return a;
+   }
+
+   /**
+    * Request refresh for given registration. Requests made in same UI event loop cycle are served by single background job.
+    *
+    * @param r registration
+    */
+   private void requestRefresh(Registration r)
+   {
+      if (disposed)
+         return;
+
+      r.forced = true;
+      if (!refreshPending)
+      {
+         refreshPending = true;
+         display.asyncExec(() -> {
+            if (refreshPending)
+               runDueRefreshes(false);
+         });
+      }
+   }
+
+   /**
+    * Run refresh for all registrations that are due.
+    *
+    * @param all true to refresh all registrations regardless of schedule
+    */
+   private void runDueRefreshes(boolean all)
+   {
+      if (disposed)
+         return;
+
+      if (updateInProgress)
+      {
+         // Will be processed when current update completes
+         refreshPending = true;
+         if (all)
+         {
+            for(Registration r : registrations)
+               r.forced = true;
+         }
+         return;
+      }
+      refreshPending = false;
+
+      // Registrations due within half of tick interval are refreshed now to avoid skipping a tick because of timer jitter
+      long now = System.currentTimeMillis();
+      long tolerance = tickInterval * 500L;
+      final List<Registration> dataConsumers = new ArrayList<Registration>();
+      for(Registration r : new ArrayList<Registration>(registrations))
+      {
+         if (!all && !r.forced && ((r.interval <= 0) || (now < r.nextRefresh - tolerance)))
+            continue;
+
+         r.forced = false;
+         r.nextRefresh = now + r.interval * 1000L;
+         if (r.handler != null)
+            r.handler.run();
+         else
+            dataConsumers.add(r);
+      }
+
+      if (!dataConsumers.isEmpty())
+         readData(dataConsumers);
+   }
+
+   /**
+    * Read data for given registrations and pass it to consumers.
+    *
+    * @param consumers registrations to read data for
+    */
+   private void readData(final List<Registration> consumers)
+   {
+      final Map<String, ChartDciConfig> dciSet = new LinkedHashMap<String, ChartDciConfig>();
+      final Map<String, ChartDciConfig> thresholdSources = new LinkedHashMap<String, ChartDciConfig>();
+      for(Registration r : consumers)
+      {
+         for(ChartDciConfig dci : r.dciList)
+         {
+            if ((dci.type != ChartDciConfig.ITEM) && ((dci.instance == null) || dci.instance.isEmpty() || (dci.column == null) || dci.column.isEmpty()))
+               continue; // Table cell is not fully defined
+            String key = getKey(dci);
+            dciSet.put(key, dci);
+            if (r.thresholdsRequired && (dci.type == ChartDciConfig.ITEM))
+               thresholdSources.put(key, dci);
+         }
+      }
+
+      if (dciSet.isEmpty())
+      {
+         // Nothing to read from server (element computes its data locally)
+         for(Registration r : consumers)
+            r.consumer.onDataUpdate(new DciDataRow[r.dciList.size()], new DataType[r.dciList.size()], r.thresholdsRequired ? new Threshold[0][] : null);
+         return;
+      }
+
+      updateInProgress = true;
+      Job job = new Job(i18n.tr("Reading DCI data for dashboard"), view) {
+         @Override
+         protected void run(IProgressMonitor monitor) throws Exception
+         {
+            final Map<String, Value> values = new HashMap<String, Value>();
+            final Map<String, Exception> valueErrors = new HashMap<String, Exception>();
+            final List<String> keys = new ArrayList<String>(dciSet.keySet());
+            List<SingleDciConfig> request = new ArrayList<SingleDciConfig>(dciSet.size());
+            for(ChartDciConfig dci : dciSet.values())
+            {
+               SingleDciConfig c = new SingleDciConfig();
+               c.nodeId = dci.nodeId;
+               c.dciId = dci.dciId;
+               if (dci.type != ChartDciConfig.ITEM)
+               {
+                  c.setType(ChartDciConfig.TABLE);
+                  c.setInstance(dci.instance);
+                  c.setColumn(dci.column);
+               }
+               request.add(c);
+            }
+            try
+            {
+               // Server skips DCIs it cannot read (missing object or DCI, no access) but keeps request order, so values are
+               // matched to requested DCIs by position, skipping requests without matching node and DCI ID. All cells of
+               // same table DCI are either all present or all skipped.
+               int index = 0;
+               for(DciValue v : session.getLastValues(request))
+               {
+                  while((index < request.size()) && ((request.get(index).nodeId != v.getNodeId()) || (request.get(index).dciId != v.getId())))
+                     index++;
+                  if (index == request.size())
+                     break;
+                  values.put(keys.get(index++), new Value(createDataRow(v), v.getDataType()));
+               }
+            }
+            catch(Exception e)
+            {
+               logger.debug("Cannot read last values for dashboard elements", e);
+               for(String key : keys)
+                  valueErrors.put(key, e);
+            }
+
+            final Map<String, Threshold[]> thresholds = new HashMap<String, Threshold[]>();
+            final Map<String, Exception> thresholdErrors = new HashMap<String, Exception>();
+            for(Map.Entry<String, ChartDciConfig> e : thresholdSources.entrySet())
+            {
+               ChartDciConfig dci = e.getValue();
+               try
+               {
+                  thresholds.put(e.getKey(), session.getThresholds(dci.nodeId, dci.dciId));
+               }
+               catch(Exception ex)
+               {
+                  logger.debug("Cannot read thresholds for DCI " + dci.nodeId + "/" + dci.dciId, ex);
+                  thresholdErrors.put(e.getKey(), ex);
+               }
+            }
+
+            runInUIThread(new Runnable() {
+               @Override
+               public void run()
+               {
+                  updateInProgress = false;
+                  if (disposed)
+                     return;
+
+                  for(Registration r : consumers)
+                  {
+                     if (r.cancelled || r.owner.isDisposed())
+                        continue;
+
+                     // Element is not updated if any of its DCIs cannot be read, same as when it was reading data by itself
+                     Exception error = null;
+                     for(ChartDciConfig dci : r.dciList)
+                     {
+                        String key = getKey(dci);
+                        error = valueErrors.get(key);
+                        if ((error == null) && r.thresholdsRequired)
+                           error = thresholdErrors.get(key);
+                        if (error != null)
+                           break;
+                     }
+                     if (error != null)
+                     {
+                        r.consumer.onDataError(error);
+                        continue;
+                     }
+
+                     DciDataRow[] rows = new DciDataRow[r.dciList.size()];
+                     DataType[] dataTypes = new DataType[r.dciList.size()];
+                     Threshold[][] dciThresholds = r.thresholdsRequired ? new Threshold[r.dciList.size()][] : null;
+                     for(int i = 0; i < rows.length; i++)
+                     {
+                        String key = getKey(r.dciList.get(i));
+                        Value v = values.get(key);
+                        rows[i] = (v != null) ? v.row : null;
+                        dataTypes[i] = (v != null) ? v.dataType : DataType.FLOAT;
+                        if (dciThresholds != null)
+                        {
+                           Threshold[] t = thresholds.get(key);
+                           dciThresholds[i] = (t != null) ? t : new Threshold[0];
+                        }
+                     }
+                     r.consumer.onDataUpdate(rows, dataTypes, dciThresholds);
+                  }
+
+                  if (refreshPending)
+                     runDueRefreshes(false);
+               }
+            });
+         }
+
+         @Override
+         protected String getErrorMessage()
+         {
+            return i18n.tr("Cannot read DCI data");
+         }
+
+         @Override
+         protected void jobFailureHandler(Exception e)
+         {
+            runInUIThread(new Runnable() {
+               @Override
+               public void run()
+               {
+                  updateInProgress = false;
+                  if (refreshPending)
+                     runDueRefreshes(false);
+               }
+            });
+         }
+      };
+      job.setUser(false);
+      job.start();
+   }
+
+   /**
+    * Get deduplication key for DCI.
+    *
+    * @param dci DCI configuration
+    * @return key for given DCI
+    */
+   private static String getKey(ChartDciConfig dci)
+   {
+      if (dci.type == ChartDciConfig.ITEM)
+         return dci.nodeId + ":" + dci.dciId;
+      return dci.nodeId + ":" + dci.dciId + ":" + dci.instance + ":" + dci.column;
+   }
+
+   /**
+    * Create data row from last value reported by server.
+    *
+    * @param v last value
+    * @return data row
+    */
+   private static DciDataRow createDataRow(DciValue v)
+   {
+      String value = v.getValue();
+      Object typedValue = value;
+      try
+      {
+         switch(v.getDataType())
+         {
+            case INT32:
+            case UINT32:
+            case COUNTER32:
+            case INT64:
+               typedValue = Long.valueOf(value);
+               break;
+            case UINT64:
+            case COUNTER64:
+               typedValue = Long.valueOf(Long.parseUnsignedLong(value));
+               break;
+            case FLOAT:
+               typedValue = Double.valueOf(value);
+               break;
+            default:
+               break;
+         }
+      }
+      catch(NumberFormatException e)
+      {
+         // Keep value as string, it will be parsed on use if possible
+      }
+      return new DciDataRow(v.getTimestamp(), typedValue);
+   }
+
+   /**
+    * Dispose scheduler.
+    */
+   public void dispose()
+   {
+      if (disposed)
+         return;
+
+      view.removeStateListener(this);
+      display.timerExec(-1, timer);
+      registrations.clear();
+      disposed = true;
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewActivated(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewActivated(View view)
+   {
+      if (tickInterval > 0)
+         runDueRefreshes(true);
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewDeactivated(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewDeactivated(View view)
+   {
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewClosed(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewClosed(View view)
+   {
+      dispose();
+   }
+
+   /**
+    * Consumer for DCI data retrieved by scheduler.
+    */
+   public interface DataConsumer
+   {
+      /**
+       * Called on UI thread when new data is available.
+       *
+       * @param values last values in same order as registered DCIs (element is null if value is not available)
+       * @param dataTypes data types in same order as registered DCIs
+       * @param thresholds DCI thresholds in same order as registered DCIs or null if thresholds were not requested
+       */
+      public void onDataUpdate(DciDataRow[] values, DataType[] dataTypes, Threshold[][] thresholds);
+
+      /**
+       * Called on UI thread instead of <code>onDataUpdate</code> when data for any of registered DCIs cannot be read.
+       *
+       * @param e read error
+       */
+      public void onDataError(Exception e);
+   }
+
+   /**
+    * Element registration
+    */
+   public class Registration
+   {
+      private Control owner;
+      private int interval;
+      private List<ChartDciConfig> dciList;
+      private boolean thresholdsRequired;
+      private DataConsumer consumer;
+      private Runnable handler;
+      private long nextRefresh = 0;
+      private boolean forced = false;
+      private boolean cancelled = false;
+
+      private Registration(Control owner, int interval, List<ChartDciConfig> dciList, boolean thresholdsRequired, DataConsumer consumer, Runnable handler)
+      {
+         this.owner = owner;
+         this.interval = interval;
+         this.dciList = dciList;
+         this.thresholdsRequired = thresholdsRequired;
+         this.consumer = consumer;
+         this.handler = handler;
+      }
+
+      /**
+       * Request immediate refresh. Refresh is executed asynchronously on UI thread together with other pending requests.
+       */
+      public void refreshNow()
+      {
+         if (!cancelled)
+            requestRefresh(this);
+      }
+
+      /**
+       * Cancel this registration.
+       */
+      public void cancel()
+      {
+         if (cancelled)
+            return;
+         cancelled = true;
+         unregister(this);
+      }
+   }
+
+   /**
+    * Retrieved value
+    */
+   private static class Value
+   {
+      DciDataRow row;
+      DataType dataType;
+
+      Value(DciDataRow row, DataType dataType)
+      {
+         this.row = row;
+         this.dataType = dataType;
+      }
+   }
+}
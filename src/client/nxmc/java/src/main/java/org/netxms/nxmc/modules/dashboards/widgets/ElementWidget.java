@@ -435,6 +435,16 @@ protected long getDashboardObjectId()
       return dbc.getDashboardObject().getObjectId();
    }
 
+   /**
+    * Get refresh scheduler of owning dashboard.
+    *
+    * @return refresh scheduler of owning dashboard
+    */
+   protected DashboardRefreshScheduler getRefreshScheduler()
+   {
+      return dbc.getRefreshScheduler();
+   }
+
    /**
     * Get context for owning dashboard.
     *
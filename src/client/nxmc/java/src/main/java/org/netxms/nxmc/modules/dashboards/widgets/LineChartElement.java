@@ -73,6 +73,8 @@ public class LineChartElement extends ElementWidget implements HistoricalChartOw
 	private NXCSession session;
    private List<ChartDciConfig> runtimeDciList = new ArrayList<>();
 	private List<DataCacheElement> dataCache = new ArrayList<DataCacheElement>(16);
+   private DciData[] seriesData = null;
+   private long seriesTimeRange = 0;
    private Action actionRefresh;
    private Action actionAdjustX;
    private Action actionAdjustY;
@@ -289,7 +291,8 @@ private void fillContextMenu(IMenuManager manager)
 	}
 
 	/**
-	 * Refresh graph's data
+	 * Refresh graph's data. Series received on previous refresh are kept and only newer samples are requested from server;
+	 * full time window is loaded only on first refresh or when time range changes.
 	 */
 	private void refreshData()
 	{
@@ -297,28 +300,39 @@ private void refreshData()
 			return;
 		
 		updateInProgress = true;
-		
+
+      final long timeRange = config.getTimeRangeMillis();
+      final boolean fullReload = (seriesData == null) || (seriesData.length != runtimeDciList.size()) || (seriesTimeRange != timeRange);
+      final long[] lastTimestamps = new long[runtimeDciList.size()];
+      if (!fullReload)
+      {
+         for(int i = 0; i < seriesData.length; i++)
+            lastTimestamps[i] = seriesData[i].getFirstTimestamp();
+      }
+
       Job job = new Job(i18n.tr("Reading DCI data for line chart"), view, this) {
 			private ChartDciConfig currentDci;
 
 			@Override
          protected void run(IProgressMonitor monitor) throws Exception
 			{
-				final Date from = new Date(System.currentTimeMillis() - config.getTimeRangeMillis());
-				final Date to = new Date(System.currentTimeMillis());
+            final Date to = new Date(System.currentTimeMillis());
+            final Date from = new Date(to.getTime() - timeRange);
             final DciData[] data = new DciData[runtimeDciList.size()];
             final Threshold[][] thresholds = new Threshold[runtimeDciList.size()][];
             for(int i = 0; i < runtimeDciList.size(); i++)
             {
+               // Server timestamps have one second resolution, so start right after last known sample
+               Date start = ((lastTimestamps[i] != 0) && (lastTimestamps[i] + 1000 > from.getTime())) ? new Date(lastTimestamps[i] + 1000) : from;
                currentDci = runtimeDciList.get(i);
                if (currentDci.type == ChartDciConfig.ITEM)
                {
-                  data[i] = session.getCollectedData(currentDci.nodeId, currentDci.dciId, from, to, 0, HistoricalDataType.PROCESSED);
+                  data[i] = session.getCollectedData(currentDci.nodeId, currentDci.dciId, start, to, 0, HistoricalDataType.PROCESSED);
                   thresholds[i] = session.getThresholds(currentDci.nodeId, currentDci.dciId);
                }
                else
                {
-                  data[i] = session.getCollectedTableData(currentDci.nodeId, currentDci.dciId, currentDci.instance, currentDci.column, from, to, 0);
+                  data[i] = session.getCollectedTableData(currentDci.nodeId, currentDci.dciId, currentDci.instance, currentDci.column, start, to, 0);
                   thresholds[i] = null;
                }
             }
@@ -328,12 +342,24 @@ public void run()
                {
                   if (!chart.isDisposed())
                   {
+                     if (fullReload)
+                     {
+                        seriesData = data;
+                        seriesTimeRange = timeRange;
+                     }
+                     else
+                     {
+                        for(int i = 0; i < data.length; i++)
+                           seriesData[i].addNewerValues(data[i]);
+                     }
+
                      dataCache.clear();
                      chart.setTimeRange(from, to);
-                     for(int i = 0; i < data.length; i++)
+                     for(int i = 0; i < seriesData.length; i++)
                      {
-                        chart.updateParameter(i, data[i], false);
-                        dataCache.add(new DataCacheElement(runtimeDciList.get(i), data[i]));
+                        seriesData[i].removeValuesBefore(from.getTime());
+                        chart.updateParameter(i, seriesData[i], false);
+                        dataCache.add(new DataCacheElement(runtimeDciList.get(i), seriesData[i]));
                      }
                      chart.setThresholds(thresholds);
                      chart.refresh();
@@ -20,11 +20,14 @@
 
 import java.util.Arrays;
 import org.eclipse.swt.SWT;
+import org.netxms.client.constants.DataType;
 import org.netxms.client.constants.ObjectStatus;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartConfiguration;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.GraphItem;
+import org.netxms.client.datacollection.Threshold;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.nxmc.modules.charts.api.ChartColor;
 import org.netxms.nxmc.modules.charts.api.ChartType;
@@ -90,10 +93,11 @@ protected ChartDciConfig[] getDciList()
 	}
 
    /**
-    * @see org.netxms.nxmc.modules.dashboards.widgets.ComparisonChartElement#refreshData()
+    * @see org.netxms.nxmc.modules.dashboards.widgets.ComparisonChartElement#updateChart(org.netxms.client.datacollection.DciDataRow[],
+    *      org.netxms.client.constants.DataType[], org.netxms.client.datacollection.Threshold[][])
     */
 	@Override
-   protected void refreshData()
+   protected void updateChart(DciDataRow[] values, DataType[] dataTypes, Threshold[][] thresholds)
 	{
 		int[] objectCount = new int[6];
 		Arrays.fill(objectCount, 0);
@@ -22,8 +22,6 @@
 import java.util.Map.Entry;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Point;
 import org.netxms.client.NXCSession;
 import org.netxms.client.dashboards.DashboardElement;
@@ -34,7 +32,6 @@
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
 import org.netxms.nxmc.tools.ColorConverter;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.xnap.commons.i18n.I18n;
 import com.google.gson.Gson;
 
@@ -52,7 +49,6 @@ public abstract class ScriptedComparisonChartElement extends ElementWidget
 	protected int refreshInterval = 30;
 	protected boolean updateThresholds = false;
 
-	private ViewRefreshController refreshController;
 	private boolean updateInProgress = false;
 
 	/**
@@ -63,23 +59,14 @@ public ScriptedComparisonChartElement(DashboardControl parent, DashboardElement
 	{
       super(parent, element, view);
       session = Registry.getSession();
-
-		addDisposeListener(new DisposeListener() {
-         @Override
-         public void widgetDisposed(DisposeEvent e)
-         {
-            if (refreshController != null)
-               refreshController.dispose();
-         }
-      });
 	}
 
 	/**
-	 * Start refresh timer
+	 * Register with dashboard refresh scheduler and do initial refresh
 	 */
 	protected void startRefreshTimer()
 	{
-      refreshController = new ViewRefreshController(view, refreshInterval, new Runnable() {
+      getRefreshScheduler().register(this, refreshInterval, new Runnable() {
 			@Override
 			public void run()
 			{
@@ -39,7 +39,6 @@
 import org.netxms.nxmc.modules.dashboards.config.StatusIndicatorConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
 import org.netxms.nxmc.resources.StatusDisplayInfo;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -55,7 +54,6 @@ public class StatusIndicatorElement extends ElementWidget
 
 	private StatusIndicatorConfig config;
 	private Canvas canvas;
-	private ViewRefreshController refreshController;
 	private Font font;
 	private ObjectStatus status = ObjectStatus.UNKNOWN;
 
@@ -98,7 +96,6 @@ public Point computeSize(int wHint, int hHint, boolean changed)
 			public void widgetDisposed(DisposeEvent e)
 			{
 				font.dispose();
-            refreshController.dispose();
 			}
 		});
 
@@ -159,11 +156,11 @@ protected void refreshData()
 	}
 
 	/**
-	 * Start element refresh timer
+	 * Register with dashboard refresh scheduler and do initial refresh
 	 */
 	protected void startRefreshTimer()
 	{
-      refreshController = new ViewRefreshController(view, 1, new Runnable() {
+      getRefreshScheduler().register(this, 1, new Runnable() {
 			@Override
 			public void run()
 			{
@@ -23,8 +23,6 @@
 import java.util.Map;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Widget;
 import org.netxms.client.NXCSession;
@@ -41,7 +39,6 @@
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.config.TableComparisonChartConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.xnap.commons.i18n.I18n;
 
 /**
@@ -55,7 +52,6 @@ public abstract class TableComparisonChartElement extends ElementWidget
 	protected NXCSession session;
 	protected TableComparisonChartConfig config;
 	
-	private ViewRefreshController refreshController;
 	private boolean updateInProgress = false;
    private Map<String, Integer> instanceMap = new HashMap<String, Integer>(ChartConfiguration.MAX_GRAPH_ITEM_COUNT);
 	private boolean chartInitialized = false;
@@ -68,26 +64,17 @@ public TableComparisonChartElement(DashboardControl parent, DashboardElement ele
 	{
       super(parent, element, view);
       session = Registry.getSession();
-
-		addDisposeListener(new DisposeListener() {
-         @Override
-         public void widgetDisposed(DisposeEvent e)
-         {
-            if (refreshController != null)
-               refreshController.dispose();
-         }
-      });
 	}
 
 	/**
-	 * Start refresh timer
+	 * Register with dashboard refresh scheduler and do initial refresh
 	 */
 	protected void startRefreshTimer()
 	{
 		if ((config == null) || (config.getDataColumn() == null))
 			return;	// Invalid configuration
 		
-      refreshController = new ViewRefreshController(view, config.getRefreshRate(), new Runnable() {
+      getRefreshScheduler().register(this, config.getRefreshRate(), new Runnable() {
 			@Override
 			public void run()
 			{
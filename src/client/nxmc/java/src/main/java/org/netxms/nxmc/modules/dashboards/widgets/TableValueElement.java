@@ -19,13 +19,10 @@
 package org.netxms.nxmc.modules.dashboards.widgets;
 
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.nxmc.modules.dashboards.config.TableValueConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
 import org.netxms.nxmc.modules.datacollection.widgets.TableValueViewer;
-import org.netxms.nxmc.tools.ViewRefreshController;
 
 /**
  * "Table value" element for dashboard
@@ -60,7 +57,7 @@ public TableValueElement(DashboardControl parent, DashboardElement element, Abst
 		viewer.setObject(config.getObjectId(), config.getDciId());	
 		viewer.refresh(null);
 
-      final ViewRefreshController refreshController = new ViewRefreshController(view, config.getRefreshRate(), new Runnable() {
+      getRefreshScheduler().register(this, config.getRefreshRate(), new Runnable() {
 			@Override
 			public void run()
 			{
@@ -70,13 +67,5 @@ public void run()
 				viewer.refresh(null);
 			}
 		});
-
-		addDisposeListener(new DisposeListener() {
-         @Override
-         public void widgetDisposed(DisposeEvent e)
-         {
-            refreshController.dispose();
-         }
-      });
 	}
 }
@@ -0,0 +1,240 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.networkmaps.algorithms;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.gef4.zest.layouts.LayoutAlgorithm;
+import org.eclipse.gef4.zest.layouts.dataStructures.DisplayIndependentRectangle;
+import org.eclipse.gef4.zest.layouts.interfaces.EntityLayout;
+import org.eclipse.gef4.zest.layouts.interfaces.LayoutContext;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Item;
+import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.localization.LocalizationHelper;
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Scalable force directed layout (replacement for spring layout on large maps). Uses multilevel Barnes-Hut layout
+ * engine. Small graphs are laid out immediately; for large graphs layout is calculated by background job, and
+ * intermediate results are shown on map as they become available. Owner of layout should call <code>cancel()</code> when
+ * layout is replaced by another layout algorithm, so background job will not update node positions anymore.
+ */
+public class ForceDirectedLayout implements LayoutAlgorithm
+{
+   private static final int BACKGROUND_THRESHOLD = 300;
+   private static final double MARGIN = 20;
+
+   private I18n i18n = LocalizationHelper.getI18n(ForceDirectedLayout.class);
+   private LayoutContext context;
+   private boolean fitToBounds;
+   private AtomicInteger generation = new AtomicInteger(0);
+   private Job job = null;
+
+   /**
+    * Create new layout.
+    *
+    * @param fitToBounds true to scale layout to fit into layout context bounds
+    */
+   public ForceDirectedLayout(boolean fitToBounds)
+   {
+      this.fitToBounds = fitToBounds;
+   }
+
+   /**
+    * @see org.eclipse.gef4.zest.layouts.LayoutAlgorithm#setLayoutContext(org.eclipse.gef4.zest.layouts.interfaces.LayoutContext)
+    */
+   @Override
+   public void setLayoutContext(LayoutContext context)
+   {
+      this.context = context;
+      cancel(); // Cancel layout running for previous context
+   }
+
+   /**
+    * Cancel running layout calculation. Pending position updates from background job are discarded.
+    */
+   public void cancel()
+   {
+      generation.incrementAndGet();
+      if (job != null)
+      {
+         job.cancel();
+         job = null;
+      }
+   }
+
+   /**
+    * @see org.eclipse.gef4.zest.layouts.LayoutAlgorithm#applyLayout(boolean)
+    */
+   @Override
+   public void applyLayout(boolean clean)
+   {
+      if (!clean)
+         return;
+
+      cancel();
+      final int currentGeneration = generation.get();
+      final EntityLayout[] entities = context.getEntities();
+      if (entities.length == 0)
+         return;
+
+      // Take snapshot of graph structure, entities should not be accessed outside UI thread
+      Map<EntityLayout, Integer> index = new IdentityHashMap<EntityLayout, Integer>(entities.length);
+      double sizeSum = 0;
+      for(int i = 0; i < entities.length; i++)
+      {
+         index.put(entities[i], i);
+         sizeSum += Math.max(entities[i].getSize().width, entities[i].getSize().height);
+      }
+      List<int[]> edges = new ArrayList<int[]>();
+      for(int i = 0; i < entities.length; i++)
+      {
+         for(EntityLayout e : entities[i].getSuccessingEntities())
+         {
+            Integer j = index.get(e);
+            if (j != null)
+               edges.add(new int[] { i, j });
+         }
+      }
+      int[] sources = new int[edges.size()];
+      int[] targets = new int[edges.size()];
+      for(int i = 0; i < sources.length; i++)
+      {
+         sources[i] = edges.get(i)[0];
+         targets[i] = edges.get(i)[1];
+      }
+
+      final ForceDirectedLayoutEngine engine = new ForceDirectedLayoutEngine(entities.length, sources, targets, Math.max(sizeSum / entities.length * 1.5, 60));
+      final double[] x = new double[entities.length];
+      final double[] y = new double[entities.length];
+
+      if ((entities.length < BACKGROUND_THRESHOLD) || (Display.getCurrent() == null))
+      {
+         engine.run(x, y, null);
+         setLocations(entities, x, y);
+         return;
+      }
+
+      final AtomicBoolean updatePending = new AtomicBoolean(false);
+      job = new Job(i18n.tr("Calculating network map layout"), null) {
+         @Override
+         protected void run(IProgressMonitor monitor) throws Exception
+         {
+            engine.run(x, y, new ForceDirectedLayoutEngine.ProgressListener() {
+               @Override
+               public boolean layoutUpdated(double[] nx, double[] ny, boolean finished)
+               {
+                  if (monitor.isCanceled() || (generation.get() != currentGeneration) || getDisplay().isDisposed() || isDisposed(entities))
+                     return false;
+
+                  // Skip intermediate update if previous one was not applied yet
+                  if (updatePending.getAndSet(true) && !finished)
+                     return true;
+
+                  final double[] ux = nx.clone();
+                  final double[] uy = ny.clone();
+                  runInUIThread(new Runnable() {
+                     @Override
+                     public void run()
+                     {
+                        updatePending.set(false);
+                        if ((generation.get() != currentGeneration) || isDisposed(entities))
+                           return;
+                        setLocations(entities, ux, uy);
+                        context.flushChanges(false);
+                     }
+                  });
+                  return true;
+               }
+            });
+         }
+
+         @Override
+         protected String getErrorMessage()
+         {
+            return i18n.tr("Cannot calculate network map layout");
+         }
+      };
+      job.setUser(false);
+      job.start();
+   }
+
+   /**
+    * Check if graph items for given entities were disposed.
+    *
+    * @param entities layout entities
+    * @return true if graph items were disposed
+    */
+   private static boolean isDisposed(EntityLayout[] entities)
+   {
+      Item[] items = entities[0].getItems();
+      return (items.length > 0) && items[0].isDisposed();
+   }
+
+   /**
+    * Set entity locations from calculated layout. Layout is either scaled to fit into context bounds or moved to top
+    * left corner of the map.
+    *
+    * @param entities layout entities
+    * @param x X coordinates of entity centers
+    * @param y Y coordinates of entity centers
+    */
+   private void setLocations(EntityLayout[] entities, double[] x, double[] y)
+   {
+      double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+      double maxWidth = 0, maxHeight = 0;
+      for(int i = 0; i < entities.length; i++)
+      {
+         minX = Math.min(minX, x[i]);
+         minY = Math.min(minY, y[i]);
+         maxX = Math.max(maxX, x[i]);
+         maxY = Math.max(maxY, y[i]);
+         maxWidth = Math.max(maxWidth, entities[i].getSize().width);
+         maxHeight = Math.max(maxHeight, entities[i].getSize().height);
+      }
+
+      double scaleX = 1.0, scaleY = 1.0, offsetX, offsetY;
+      DisplayIndependentRectangle bounds = context.getBounds();
+      if (fitToBounds && (bounds != null) && (bounds.width > 0) && (bounds.height > 0))
+      {
+         double width = bounds.width - maxWidth - MARGIN * 2;
+         double height = bounds.height - maxHeight - MARGIN * 2;
+         if (maxX > minX)
+            scaleX = Math.max(width, 1) / (maxX - minX);
+         if (maxY > minY)
+            scaleY = Math.max(height, 1) / (maxY - minY);
+         offsetX = bounds.x + MARGIN + maxWidth / 2;
+         offsetY = bounds.y + MARGIN + maxHeight / 2;
+      }
+      else
+      {
+         offsetX = MARGIN + maxWidth / 2;
+         offsetY = MARGIN + maxHeight / 2;
+      }
+
+      for(int i = 0; i < entities.length; i++)
+         entities[i].setLocation((x[i] - minX) * scaleX + offsetX, (y[i] - minY) * scaleY + offsetY);
+   }
+}
@@ -0,0 +1,873 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.networkmaps.algorithms;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Multilevel force directed layout engine. Graph is coarsened by collapsing leaf nodes into their neighbors and merging
+ * matched pairs of nodes, until it is small enough. Coarsest graph is laid out first, and each layout is then used as
+ * starting point for next finer level. Repulsive forces are approximated using Barnes-Hut quadtree, so single iteration
+ * takes O(N log N) time instead of O(N^2). Engine does not depend on UI and can be run on any thread.
+ */
+public class ForceDirectedLayoutEngine
+{
+   private static final int MIN_LEVEL_SIZE = 16;
+   private static final int MAX_LEVELS = 32;
+   private static final int MAX_TREE_DEPTH = 48;
+   private static final double THETA = 1.2;
+   private static final double REPULSION = 0.2;
+   private static final double GRAVITY = 0.02;
+   private static final double STEP_RATIO = 0.9;
+   private static final double TOLERANCE = 0.01;
+
+   /**
+    * Listener for intermediate layout results
+    */
+   public interface ProgressListener
+   {
+      /**
+       * Called when intermediate or final layout is available. Coordinate arrays are owned by engine and should not be
+       * used after method returns.
+       *
+       * @param x X coordinates of node centers
+       * @param y Y coordinates of node centers
+       * @param finished true if layout is complete
+       * @return true to continue layout calculation, false to cancel it
+       */
+      public boolean layoutUpdated(double[] x, double[] y, boolean finished);
+   }
+
+   private final int nodeCount;
+   private final double nodeDistance;
+   private final double springLength;
+   private final Level[] levels;
+   private int maxIterations = 500;
+   private long updateInterval = 250;
+   private double meanEdgeLength;
+   private QuadTree tree = new QuadTree();
+   private Random random = new Random(1);
+
+   /**
+    * Create layout engine for given graph. Duplicate edges and self loops are ignored. Final layout is scaled so that
+    * most nodes (90%) are not closer to their nearest neighbor than requested node distance.
+    *
+    * @param nodeCount number of nodes
+    * @param edgeSources source node index for each edge
+    * @param edgeTargets target node index for each edge
+    * @param nodeDistance desired distance between neighbor nodes
+    */
+   public ForceDirectedLayoutEngine(int nodeCount, int[] edgeSources, int[] edgeTargets, double nodeDistance)
+   {
+      this.nodeCount = nodeCount;
+      this.nodeDistance = nodeDistance;
+      springLength = nodeDistance / Math.cbrt(REPULSION);
+
+      double[] mass = new double[nodeCount];
+      Arrays.fill(mass, 1.0);
+      double[] weights = new double[edgeSources.length];
+      Arrays.fill(weights, 1.0);
+      Level[] chain = new Level[MAX_LEVELS];
+      chain[0] = new Level(nodeCount, mass, edgeSources, edgeTargets, weights, edgeSources.length);
+      int count = 1;
+      while((count < MAX_LEVELS) && (chain[count - 1].size > MIN_LEVEL_SIZE))
+      {
+         Level coarse = chain[count - 1].coarsen(random);
+         if (coarse == null)
+            break;
+         chain[count++] = coarse;
+      }
+      levels = Arrays.copyOf(chain, count);
+   }
+
+   /**
+    * Set maximum number of iterations on each level.
+    *
+    * @param maxIterations maximum number of iterations on each level
+    */
+   public void setMaxIterations(int maxIterations)
+   {
+      this.maxIterations = maxIterations;
+   }
+
+   /**
+    * Set minimal interval between intermediate updates sent to progress listener.
+    *
+    * @param updateInterval update interval in milliseconds
+    */
+   public void setUpdateInterval(long updateInterval)
+   {
+      this.updateInterval = updateInterval;
+   }
+
+   /**
+    * Get number of levels in multilevel hierarchy (including original graph).
+    *
+    * @return number of levels
+    */
+   public int getLevelCount()
+   {
+      return levels.length;
+   }
+
+   /**
+    * Calculate layout.
+    *
+    * @param x array for calculated X coordinates of node centers
+    * @param y array for calculated Y coordinates of node centers
+    * @param listener progress listener or null
+    * @return true if layout was calculated, false if it was cancelled by listener
+    */
+   public boolean run(double[] x, double[] y, ProgressListener listener)
+   {
+      if (nodeCount == 0)
+         return true;
+
+      // Initial random placement of coarsest graph
+      Level coarsest = levels[levels.length - 1];
+      double side = Math.sqrt(levels[0].size) * springLength;
+      for(int i = 0; i < coarsest.size; i++)
+      {
+         coarsest.x[i] = random.nextDouble() * side;
+         coarsest.y[i] = random.nextDouble() * side;
+      }
+
+      meanEdgeLength = springLength;
+      for(int l = levels.length - 1; l >= 0; l--)
+      {
+         Level level = levels[l];
+         if (l < levels.length - 1)
+            level.prolongate(levels[l + 1], random, meanEdgeLength * 0.1);
+         if (!layoutLevel(l, x, y, listener))
+            return false;
+         if (l > 0)
+         {
+            project(l, x, y);
+            if ((listener != null) && !listener.layoutUpdated(x, y, false))
+               return false;
+         }
+      }
+
+      // Spring-electrical model expands large graphs, scale result to get requested distance between neighbor nodes
+      double distance = getNearestDistance(levels[0].x, levels[0].y);
+      double scale = (distance > 0) ? nodeDistance / distance : 1.0;
+      for(int i = 0; i < nodeCount; i++)
+      {
+         x[i] = levels[0].x[i] * scale;
+         y[i] = levels[0].y[i] * scale;
+      }
+      if (listener != null)
+         listener.layoutUpdated(x, y, true);
+      return true;
+   }
+
+   /**
+    * Run force directed placement on given level. Uses adaptive step length: step is increased after series of
+    * iterations with decreasing system energy and decreased otherwise. Initial step and convergence tolerance are
+    * relative to average edge length, because large graphs expand well beyond natural spring length.
+    *
+    * @param l level index
+    * @param x buffer for intermediate results
+    * @param y buffer for intermediate results
+    * @param listener progress listener or null
+    * @return false if layout was cancelled
+    */
+   private boolean layoutLevel(int l, double[] x, double[] y, ProgressListener listener)
+   {
+      Level level = levels[l];
+      if (level.size < 2)
+         return true;
+
+      double[] fx = new double[level.size];
+      double[] fy = new double[level.size];
+      double step = (l == levels.length - 1) ? springLength : meanEdgeLength * 0.3;
+      double energy = Double.MAX_VALUE;
+      int progress = 0;
+      long lastUpdate = System.currentTimeMillis();
+      for(int iteration = 0; (iteration < maxIterations) && (step > Math.max(springLength, meanEdgeLength) * TOLERANCE); iteration++)
+      {
+         calculateForces(level, fx, fy);
+
+         double prevEnergy = energy;
+         energy = 0;
+         for(int i = 0; i < level.size; i++)
+         {
+            double f = Math.sqrt(fx[i] * fx[i] + fy[i] * fy[i]);
+            if (f > 0)
+            {
+               level.x[i] += step * fx[i] / f;
+               level.y[i] += step * fy[i] / f;
+               energy += f * f;
+            }
+         }
+
+         if (energy < prevEnergy)
+         {
+            if (++progress >= 5)
+            {
+               progress = 0;
+               step /= STEP_RATIO;
+            }
+         }
+         else
+         {
+            progress = 0;
+            step *= STEP_RATIO;
+         }
+
+         if ((listener != null) && (System.currentTimeMillis() - lastUpdate >= updateInterval))
+         {
+            project(l, x, y);
+            if (!listener.layoutUpdated(x, y, false))
+               return false;
+            lastUpdate = System.currentTimeMillis();
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Calculate forces acting on each node of given level.
+    *
+    * @param level graph level
+    * @param fx X components of forces
+    * @param fy Y components of forces
+    */
+   private void calculateForces(Level level, double[] fx, double[] fy)
+   {
+      final double[] x = level.x;
+      final double[] y = level.y;
+      final double k2 = REPULSION * springLength * springLength;
+      double totalEdgeLength = 0;
+
+      tree.build(x, y, level.mass, level.size);
+
+      double cx = 0, cy = 0, totalMass = 0;
+      for(int i = 0; i < level.size; i++)
+      {
+         cx += x[i] * level.mass[i];
+         cy += y[i] * level.mass[i];
+         totalMass += level.mass[i];
+      }
+      cx /= totalMass;
+      cy /= totalMass;
+
+      for(int i = 0; i < level.size; i++)
+      {
+         // Repulsion (approximated)
+         tree.calculateRepulsion(i, x[i], y[i], level.mass[i] * k2, springLength);
+         double forceX = tree.forceX;
+         double forceY = tree.forceY;
+
+         // Attraction along edges
+         for(int e = level.edgeStart[i]; e < level.edgeStart[i + 1]; e++)
+         {
+            int j = level.edgeNodes[e];
+            double dx = x[j] - x[i];
+            double dy = y[j] - y[i];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            totalEdgeLength += d;
+            forceX += level.edgeWeights[e] * dx * d / springLength;
+            forceY += level.edgeWeights[e] * dy * d / springLength;
+         }
+
+         // Weak gravity toward center keeps disconnected components together
+         forceX -= GRAVITY * level.mass[i] * (x[i] - cx);
+         forceY -= GRAVITY * level.mass[i] * (y[i] - cy);
+
+         fx[i] = forceX;
+         fy[i] = forceY;
+      }
+
+      if (level.edgeNodes.length > 0)
+         meanEdgeLength = totalEdgeLength / level.edgeNodes.length;
+   }
+
+   /**
+    * Calculate distance from node to its nearest neighbor which is exceeded by 90% of nodes. Uses uniform grid with
+    * average occupancy of one node per cell; for large graphs distance is calculated for sample of nodes only.
+    *
+    * @param x node X coordinates
+    * @param y node Y coordinates
+    * @return nearest neighbor distance or 0 if it cannot be calculated
+    */
+   private double getNearestDistance(double[] x, double[] y)
+   {
+      int n = nodeCount;
+      if (n < 2)
+         return 0;
+
+      double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+      for(int i = 0; i < n; i++)
+      {
+         minX = Math.min(minX, x[i]);
+         minY = Math.min(minY, y[i]);
+         maxX = Math.max(maxX, x[i]);
+         maxY = Math.max(maxY, y[i]);
+      }
+      double cellSize = Math.sqrt(Math.max((maxX - minX) * (maxY - minY), 1e-6) / n);
+      int width = Math.min((int)((maxX - minX) / cellSize) + 1, 4 * n);
+      int height = Math.min((int)((maxY - minY) / cellSize) + 1, 4 * n);
+      cellSize = Math.max((maxX - minX) / width, (maxY - minY) / height) * 1.001 + 1e-9;
+
+      // Sort nodes by cell (counting sort)
+      int[] cell = new int[n];
+      int[] cellStart = new int[width * height + 1];
+      for(int i = 0; i < n; i++)
+      {
+         cell[i] = (int)((y[i] - minY) / cellSize) * width + (int)((x[i] - minX) / cellSize);
+         cellStart[cell[i] + 1]++;
+      }
+      for(int c = 0; c < width * height; c++)
+         cellStart[c + 1] += cellStart[c];
+      int[] fill = Arrays.copyOf(cellStart, width * height);
+      int[] nodes = new int[n];
+      for(int i = 0; i < n; i++)
+         nodes[fill[cell[i]]++] = i;
+
+      int samples = Math.min(n, 1000);
+      double[] distances = new double[samples];
+      for(int s = 0; s < samples; s++)
+      {
+         int i = (int)((long)s * n / samples);
+         int cx = cell[i] % width, cy = cell[i] / width;
+         double best = Double.MAX_VALUE;
+         for(int r = 0; (r <= Math.max(width, height)) && ((r - 1) * cellSize < Math.sqrt(best)); r++)
+         {
+            for(int gy = Math.max(cy - r, 0); gy <= Math.min(cy + r, height - 1); gy++)
+            {
+               for(int gx = Math.max(cx - r, 0); gx <= Math.min(cx + r, width - 1); gx++)
+               {
+                  if ((Math.abs(gx - cx) != r) && (Math.abs(gy - cy) != r))
+                     continue; // inner cells already checked
+                  int c = gy * width + gx;
+                  for(int k = cellStart[c]; k < cellStart[c + 1]; k++)
+                  {
+                     int j = nodes[k];
+                     if (j == i)
+                        continue;
+                     double d2 = (x[i] - x[j]) * (x[i] - x[j]) + (y[i] - y[j]) * (y[i] - y[j]);
+                     if (d2 < best)
+                        best = d2;
+                  }
+               }
+            }
+         }
+         distances[s] = Math.sqrt(best);
+      }
+      Arrays.sort(distances);
+      return distances[samples / 10];
+   }
+
+   /**
+    * Project node positions from given level to original graph.
+    *
+    * @param l level index
+    * @param x X coordinates of original nodes
+    * @param y Y coordinates of original nodes
+    */
+   private void project(int l, double[] x, double[] y)
+   {
+      for(int i = 0; i < nodeCount; i++)
+      {
+         int n = i;
+         for(int k = 0; k < l; k++)
+            n = levels[k].parent[n];
+         x[i] = levels[l].x[n];
+         y[i] = levels[l].y[n];
+      }
+   }
+
+
+   /**
+    * Single level of multilevel graph hierarchy. Edges are stored as adjacency lists in compressed form, each edge is
+    * stored for both its nodes.
+    */
+   private static class Level
+   {
+      int size;
+      double[] mass;
+      int[] edgeStart;
+      int[] edgeNodes;
+      double[] edgeWeights;
+      int[] parent; // Node index on next coarser level
+      double[] x;
+      double[] y;
+
+      /**
+       * Create level from edge list. Self loops and invalid edges are dropped, weights of duplicate edges are summed.
+       *
+       * @param size number of nodes
+       * @param mass node masses
+       * @param sources edge sources
+       * @param targets edge targets
+       * @param weights edge weights
+       * @param edgeCount number of edges in arrays
+       */
+      Level(int size, double[] mass, int[] sources, int[] targets, double[] weights, int edgeCount)
+      {
+         this.size = size;
+         this.mass = mass;
+         x = new double[size];
+         y = new double[size];
+
+         int[] start = new int[size + 1];
+         for(int e = 0; e < edgeCount; e++)
+         {
+            if (isValidEdge(sources[e], targets[e]))
+            {
+               start[sources[e] + 1]++;
+               start[targets[e] + 1]++;
+            }
+         }
+         for(int i = 0; i < size; i++)
+            start[i + 1] += start[i];
+
+         int[] nodes = new int[start[size]];
+         double[] nodeWeights = new double[start[size]];
+         int[] fill = Arrays.copyOf(start, size);
+         for(int e = 0; e < edgeCount; e++)
+         {
+            int a = sources[e], b = targets[e];
+            if (isValidEdge(a, b))
+            {
+               nodes[fill[a]] = b;
+               nodeWeights[fill[a]++] = weights[e];
+               nodes[fill[b]] = a;
+               nodeWeights[fill[b]++] = weights[e];
+            }
+         }
+
+         // Merge duplicates; mark[j] holds position of last stored edge to j
+         edgeStart = new int[size + 1];
+         int[] mark = new int[size];
+         Arrays.fill(mark, -1);
+         int pos = 0;
+         for(int i = 0; i < size; i++)
+         {
+            edgeStart[i] = pos;
+            for(int e = start[i]; e < start[i + 1]; e++)
+            {
+               int j = nodes[e];
+               if (mark[j] >= edgeStart[i])
+               {
+                  nodeWeights[mark[j]] += nodeWeights[e];
+               }
+               else
+               {
+                  mark[j] = pos;
+                  nodes[pos] = j;
+                  nodeWeights[pos++] = nodeWeights[e];
+               }
+            }
+         }
+         edgeStart[size] = pos;
+         edgeNodes = Arrays.copyOf(nodes, pos);
+         edgeWeights = Arrays.copyOf(nodeWeights, pos);
+      }
+
+      /**
+       * Check if edge is valid (connects two different existing nodes).
+       *
+       * @param a first node
+       * @param b second node
+       * @return true if edge is valid
+       */
+      private boolean isValidEdge(int a, int b)
+      {
+         return (a != b) && (a >= 0) && (b >= 0) && (a < size) && (b < size);
+      }
+
+      /**
+       * Get node degree.
+       *
+       * @param i node index
+       * @return node degree
+       */
+      private int degree(int i)
+      {
+         return edgeStart[i + 1] - edgeStart[i];
+      }
+
+      /**
+       * Create coarser level. Leaf nodes are merged into their neighbors, then remaining nodes are matched with neighbor
+       * connected by heaviest edge (relative to node masses), and unconnected nodes are merged in pairs.
+       *
+       * @param random random number generator
+       * @return coarser level or null if graph cannot be reduced significantly
+       */
+      Level coarsen(Random random)
+      {
+         int[] p = new int[size];
+         Arrays.fill(p, -1);
+         int count = 0;
+
+         for(int i = 0; i < size; i++)
+         {
+            if (degree(i) != 1)
+               continue;
+            int j = edgeNodes[edgeStart[i]];
+            if (degree(j) > 1)
+            {
+               if (p[j] == -1)
+                  p[j] = count++;
+               p[i] = p[j];
+            }
+         }
+
+         int[] order = new int[size];
+         for(int i = 0; i < size; i++)
+            order[i] = i;
+         for(int i = size - 1; i > 0; i--)
+         {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+         }
+
+         int unconnected = -1;
+         for(int u : order)
+         {
+            if (p[u] != -1)
+               continue;
+
+            if (degree(u) == 0)
+            {
+               if (unconnected == -1)
+               {
+                  p[u] = count++;
+                  unconnected = p[u];
+               }
+               else
+               {
+                  p[u] = unconnected;
+                  unconnected = -1;
+               }
+               continue;
+            }
+
+            int match = -1;
+            double bestScore = 0;
+            for(int e = edgeStart[u]; e < edgeStart[u + 1]; e++)
+            {
+               int v = edgeNodes[e];
+               if (p[v] != -1)
+                  continue;
+               double score = edgeWeights[e] / (mass[u] * mass[v]);
+               if (score > bestScore)
+               {
+                  bestScore = score;
+                  match = v;
+               }
+            }
+            p[u] = count;
+            if (match != -1)
+               p[match] = count;
+            count++;
+         }
+
+         if (count > size * 0.9)
+            return null;
+
+         double[] coarseMass = new double[count];
+         for(int i = 0; i < size; i++)
+            coarseMass[p[i]] += mass[i];
+
+         int edgeCount = edgeNodes.length / 2;
+         int[] sources = new int[edgeCount];
+         int[] targets = new int[edgeCount];
+         double[] weights = new double[edgeCount];
+         int n = 0;
+         for(int i = 0; i < size; i++)
+         {
+            for(int e = edgeStart[i]; e < edgeStart[i + 1]; e++)
+            {
+               int j = edgeNodes[e];
+               if (j <= i)
+                  continue;
+               sources[n] = p[i];
+               targets[n] = p[j];
+               weights[n++] = edgeWeights[e];
+            }
+         }
+
+         parent = p;
+         return new Level(count, coarseMass, sources, targets, weights, n);
+      }
+
+      /**
+       * Set initial node positions from positions of their parents on coarser level.
+       *
+       * @param coarse coarser level
+       * @param random random number generator
+       * @param jitter maximum random offset from parent position
+       */
+      void prolongate(Level coarse, Random random, double jitter)
+      {
+         for(int i = 0; i < size; i++)
+         {
+            x[i] = coarse.x[parent[i]] + (random.nextDouble() - 0.5) * jitter;
+            y[i] = coarse.y[parent[i]] + (random.nextDouble() - 0.5) * jitter;
+         }
+      }
+   }
+
+   /**
+    * Barnes-Hut quadtree for approximate calculation of repulsive forces. Tree is stored in arrays and reused between
+    * iterations. Leaf cells contain linked lists of bodies (more than one only when maximum depth is reached).
+    */
+   private static class QuadTree
+   {
+      private int capacity = 0;
+      private int cellCount = 0;
+      private double[] originX;
+      private double[] originY;
+      private double[] size;
+      private double[] centerX;
+      private double[] centerY;
+      private double[] mass;
+      private boolean[] internal;
+      private int[] children; // 4 per cell, 0 means no child (root cell is never a child)
+      private int[] firstBody;
+      private int[] nextBody = new int[0];
+      private int[] stack = new int[4 * MAX_TREE_DEPTH + 8];
+      private double[] bodyX;
+      private double[] bodyY;
+      private double[] bodyMass;
+
+      double forceX;
+      double forceY;
+
+      /**
+       * Build tree for given set of bodies.
+       *
+       * @param x body X coordinates
+       * @param y body Y coordinates
+       * @param m body masses
+       * @param n number of bodies
+       */
+      void build(double[] x, double[] y, double[] m, int n)
+      {
+         bodyX = x;
+         bodyY = y;
+         bodyMass = m;
+         if (nextBody.length < n)
+            nextBody = new int[n];
+
+         double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+         for(int i = 0; i < n; i++)
+         {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+         }
+         double side = Math.max(maxX - minX, maxY - minY) * 1.001;
+         if (side <= 0)
+            side = 1;
+
+         cellCount = 0;
+         createCell(minX, minY, side);
+         for(int i = 0; i < n; i++)
+            insert(i);
+
+         // Child cells always have greater index than parent, so reverse order is bottom-up
+         for(int c = cellCount - 1; c >= 0; c--)
+         {
+            double cm = 0, cx = 0, cy = 0;
+            if (internal[c])
+            {
+               for(int q = 0; q < 4; q++)
+               {
+                  int child = children[c * 4 + q];
+                  if (child != 0)
+                  {
+                     cm += mass[child];
+                     cx += centerX[child] * mass[child];
+                     cy += centerY[child] * mass[child];
+                  }
+               }
+            }
+            else
+            {
+               for(int b = firstBody[c]; b != -1; b = nextBody[b])
+               {
+                  cm += m[b];
+                  cx += x[b] * m[b];
+                  cy += y[b] * m[b];
+               }
+            }
+            mass[c] = cm;
+            centerX[c] = (cm > 0) ? cx / cm : 0;
+            centerY[c] = (cm > 0) ? cy / cm : 0;
+         }
+      }
+
+      /**
+       * Create new empty leaf cell.
+       *
+       * @param x cell origin X coordinate
+       * @param y cell origin Y coordinate
+       * @param s cell side length
+       * @return cell index
+       */
+      private int createCell(double x, double y, double s)
+      {
+         if (cellCount == capacity)
+         {
+            capacity = Math.max(1024, capacity * 2);
+            originX = Arrays.copyOf(originX != null ? originX : new double[0], capacity);
+            originY = Arrays.copyOf(originY != null ? originY : new double[0], capacity);
+            size = Arrays.copyOf(size != null ? size : new double[0], capacity);
+            centerX = Arrays.copyOf(centerX != null ? centerX : new double[0], capacity);
+            centerY = Arrays.copyOf(centerY != null ? centerY : new double[0], capacity);
+            mass = Arrays.copyOf(mass != null ? mass : new double[0], capacity);
+            internal = Arrays.copyOf(internal != null ? internal : new boolean[0], capacity);
+            children = Arrays.copyOf(children != null ? children : new int[0], capacity * 4);
+            firstBody = Arrays.copyOf(firstBody != null ? firstBody : new int[0], capacity);
+         }
+         int c = cellCount++;
+         originX[c] = x;
+         originY[c] = y;
+         size[c] = s;
+         internal[c] = false;
+         firstBody[c] = -1;
+         Arrays.fill(children, c * 4, c * 4 + 4, 0);
+         return c;
+      }
+
+      /**
+       * Get child cell of given cell containing given body, creating it if needed.
+       *
+       * @param c cell index
+       * @param b body index
+       * @return child cell index
+       */
+      private int getChild(int c, int b)
+      {
+         double half = size[c] / 2;
+         int q = ((bodyX[b] >= originX[c] + half) ? 1 : 0) | ((bodyY[b] >= originY[c] + half) ? 2 : 0);
+         int child = children[c * 4 + q];
+         if (child == 0)
+         {
+            child = createCell(originX[c] + (((q & 1) != 0) ? half : 0), originY[c] + (((q & 2) != 0) ? half : 0), half);
+            children[c * 4 + q] = child;
+         }
+         return child;
+      }
+
+      /**
+       * Insert body into tree.
+       *
+       * @param i body index
+       */
+      private void insert(int i)
+      {
+         int c = 0;
+         for(int depth = 0;; depth++)
+         {
+            if (!internal[c])
+            {
+               if ((firstBody[c] == -1) || (depth >= MAX_TREE_DEPTH))
+               {
+                  nextBody[i] = firstBody[c];
+                  firstBody[c] = i;
+                  return;
+               }
+
+               // Split leaf (it contains exactly one body at this point)
+               int b = firstBody[c];
+               firstBody[c] = -1;
+               internal[c] = true;
+               int child = getChild(c, b);
+               nextBody[b] = -1;
+               firstBody[child] = b;
+            }
+            c = getChild(c, i);
+         }
+      }
+
+      /**
+       * Calculate repulsive force acting on given body. Result is stored in <code>forceX</code> and <code>forceY</code>.
+       *
+       * @param i body index
+       * @param x body X coordinate
+       * @param y body Y coordinate
+       * @param factor force factor (body mass multiplied by repulsion constant)
+       * @param length natural edge length, used to resolve coinciding bodies
+       */
+      void calculateRepulsion(int i, double x, double y, double factor, double length)
+      {
+         final double theta2 = THETA * THETA;
+         final double minDistance2 = length * length * 1e-4;
+         forceX = 0;
+         forceY = 0;
+         int sp = 0;
+         stack[sp++] = 0;
+         while(sp > 0)
+         {
+            int c = stack[--sp];
+            if (!internal[c])
+            {
+               for(int b = firstBody[c]; b != -1; b = nextBody[b])
+               {
+                  if (b == i)
+                     continue;
+                  double dx = x - bodyX[b];
+                  double dy = y - bodyY[b];
+                  double d2 = dx * dx + dy * dy;
+                  if (d2 < minDistance2)
+                  {
+                     // Coinciding nodes - push apart in direction defined by node order
+                     dx = (i < b) ? Math.sqrt(minDistance2) : -Math.sqrt(minDistance2);
+                     dy = 0;
+                     d2 = minDistance2;
+                  }
+                  double f = factor * bodyMass[b] / d2;
+                  forceX += f * dx;
+                  forceY += f * dy;
+               }
+            }
+            else
+            {
+               double dx = x - centerX[c];
+               double dy = y - centerY[c];
+               double d2 = dx * dx + dy * dy;
+               if ((size[c] * size[c] < theta2 * d2) && (d2 >= minDistance2))
+               {
+                  double f = factor * mass[c] / d2;
+                  forceX += f * dx;
+                  forceY += f * dy;
+               }
+               else
+               {
+                  for(int q = 0; q < 4; q++)
+                  {
+                     int child = children[c * 4 + q];
+                     if (child != 0)
+                        stack[sp++] = child;
+                  }
+               }
+            }
+         }
+      }
+   }
+}
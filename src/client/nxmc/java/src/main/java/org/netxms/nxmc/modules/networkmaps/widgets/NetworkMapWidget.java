@@ -27,7 +27,6 @@
 import org.eclipse.gef4.zest.layouts.algorithms.CompositeLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.GridLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.RadialLayoutAlgorithm;
-import org.eclipse.gef4.zest.layouts.algorithms.SpringLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.TreeLayoutAlgorithm;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
@@ -64,6 +63,7 @@
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.imagelibrary.ImageProvider;
 import org.netxms.nxmc.modules.networkmaps.ObjectDoubleClickHandlerRegistry;
+import org.netxms.nxmc.modules.networkmaps.algorithms.ForceDirectedLayout;
 import org.netxms.nxmc.modules.networkmaps.algorithms.ManualLayout;
 import org.netxms.nxmc.modules.networkmaps.algorithms.SparseTree;
 import org.netxms.nxmc.modules.networkmaps.widgets.helpers.ExtendedGraphViewer;
@@ -92,6 +92,7 @@ public class NetworkMapWidget extends Composite
    private long currentMapId = 0;
    private LinkDciValueProvider dciValueProvider;
    private View view;
+   private ForceDirectedLayout forceDirectedLayout = null;
 
 	/**
 	 * @param parent
@@ -117,6 +118,7 @@ public void widgetDisposed(DisposeEvent e)
 			{
 				if (defaultLinkColor != null)
 					defaultLinkColor.dispose();
+				cancelLayoutCalculation();
 		      if (sessionListener != null)
 		         session.removeListener(sessionListener);
 			}
@@ -357,6 +359,7 @@ public void setMapLayout(MapLayoutAlgorithm layout)
 	{
 		if (layout == MapLayoutAlgorithm.MANUAL)
 		{
+			cancelLayoutCalculation();
 			viewer.setLayoutAlgorithm(new ManualLayout());
 		}
 		else
@@ -371,12 +374,15 @@ public void setMapLayout(MapLayoutAlgorithm layout)
 	 */
 	public void setLayoutAlgorithm(MapLayoutAlgorithm alg)
 	{
+		cancelLayoutCalculation();
+
 		LayoutAlgorithm algorithm;
 		
 		switch(alg)
 		{
 			case SPRING:
-				algorithm = new SpringLayoutAlgorithm();
+				forceDirectedLayout = new ForceDirectedLayout(true);
+				algorithm = forceDirectedLayout;
 				break;
 			case RADIAL:
 				algorithm = new RadialLayoutAlgorithm();
@@ -407,6 +413,18 @@ public int compare(Viewer viewer, Object e1, Object e2)
 		viewer.setLayoutAlgorithm(algorithm);
 	}
 
+   /**
+    * Cancel background calculation of force directed layout, so it will not override positions set by new layout.
+    */
+   private void cancelLayoutCalculation()
+   {
+      if (forceDirectedLayout != null)
+      {
+         forceDirectedLayout.cancel();
+         forceDirectedLayout = null;
+      }
+   }
+
 	/**
 	 * Set map default connection routing algorithm
 	 * 
@@ -18,8 +18,13 @@
  */
 package org.netxms.nxmc.modules.objects.widgets;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.util.IPropertyChangeListener;
@@ -31,6 +36,7 @@
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.DragSourceAdapter;
@@ -60,6 +66,7 @@
 import org.netxms.client.objects.Cluster;
 import org.netxms.client.objects.Container;
 import org.netxms.client.objects.EntireNetwork;
+import org.netxms.client.objects.Node;
 import org.netxms.client.objects.Rack;
 import org.netxms.client.objects.ServiceRoot;
 import org.netxms.client.objects.Subnet;
@@ -102,6 +109,10 @@ public class ObjectTree extends Composite
    private boolean filterEnabled = true;
    private boolean statusIndicatorEnabled = false;
    private boolean objectsFullySync;
+   private Set<Integer> classFilter;
+   private Map<Long, AbstractObject> pendingChanges = new HashMap<Long, AbstractObject>();
+   private Set<Long> pendingDeletes = new HashSet<Long>();
+   private int maxIncrementalUpdates;
 
    /**
     * Create object tree control. If vie wis specified then use view's filter instead of own.
@@ -119,9 +130,11 @@ public ObjectTree(Composite parent, int style, int options, Set<Integer> classFi
       super(parent, style);
 
       this.view = view;
+      this.classFilter = classFilter;
 
       PreferenceStore store = PreferenceStore.getInstance();
       objectsFullySync = store.getAsBoolean("ObjectBrowser.FullSync", false);
+      maxIncrementalUpdates = store.getAsInteger("ObjectBrowser.MaxIncrementalUpdates", 500);
 
       session = Registry.getSession();
       refreshTimer = new RefreshTimer(session.getMinViewRefreshInterval(), this, new Runnable() {
@@ -132,7 +145,7 @@ public void run()
                return;
 
             objectTree.getTree().setRedraw(false);
-            objectTree.refresh();
+            applyPendingChanges();
             if (statusIndicatorEnabled)
                updateStatusIndicator();
             objectTree.getTree().setRedraw(true);
@@ -299,11 +312,21 @@ public void notificationHandler(SessionNotification n)
          {
             if (n.getCode() == SessionNotification.OBJECT_DELETED)
             {
+               synchronized(pendingChanges)
+               {
+                  pendingChanges.remove(n.getSubCode());
+                  pendingDeletes.add(n.getSubCode());
+               }
                refreshTimer.execute();
             }
             else if ((n.getCode() == SessionNotification.OBJECT_CHANGED) &&
                 ((classFilter == null) || classFilter.contains(((AbstractObject)n.getObject()).getObjectClass())))
             {
+               AbstractObject object = (AbstractObject)n.getObject();
+               synchronized(pendingChanges)
+               {
+                  pendingChanges.put(object.getObjectId(), object);
+               }
                refreshTimer.execute();
             }
          }
@@ -329,6 +352,217 @@ public void widgetDisposed(DisposeEvent e)
       enableStatusIndicator(statusIndicatorEnabled);
    }
 
+   /**
+    * Apply object changes collected since last update. Changes are applied only to affected tree items. Full refresh is
+    * done instead if number of changes exceeds configured limit (preference "ObjectBrowser.MaxIncrementalUpdates"), or
+    * if changes cannot be applied incrementally (text filter is active or set of top level objects has changed).
+    */
+   private void applyPendingChanges()
+   {
+      List<AbstractObject> changes;
+      Set<Long> deletes;
+      synchronized(pendingChanges)
+      {
+         changes = new ArrayList<AbstractObject>(pendingChanges.values());
+         deletes = new HashSet<Long>(pendingDeletes);
+         pendingChanges.clear();
+         pendingDeletes.clear();
+      }
+      if (changes.isEmpty() && deletes.isEmpty())
+         return;
+
+      if ((changes.size() + deletes.size() > maxIncrementalUpdates) || filter.isFilterStringSet() || !updateTreeItems(changes, deletes))
+         objectTree.refresh();
+   }
+
+   /**
+    * Update tree items affected by given changes.
+    *
+    * @param changes changed objects
+    * @param deletes IDs of deleted objects
+    * @return true if tree was updated, false if full refresh is needed
+    */
+   private boolean updateTreeItems(Collection<AbstractObject> changes, Set<Long> deletes)
+   {
+      if (!deletes.isEmpty())
+      {
+         List<Object> deletedElements = new ArrayList<Object>();
+         findDeletedElements(objectTree.getTree().getItems(), deletes, deletedElements);
+         if (!deletedElements.isEmpty())
+            objectTree.remove(deletedElements.toArray());
+      }
+
+      // Collect objects which child lists should be checked: changed objects, their current parents,
+      // and objects under which they are currently shown
+      Map<Long, AbstractObject> parents = new HashMap<Long, AbstractObject>();
+      for(AbstractObject object : changes)
+      {
+         boolean shownAsTopLevel = false;
+         for(TreeItem item : objectTree.findObjectItems(object))
+         {
+            TreeItem parentItem = item.getParentItem();
+            if (parentItem == null)
+            {
+               shownAsTopLevel = true;
+            }
+            else if (parentItem.getData() instanceof AbstractObject)
+            {
+               AbstractObject parent = session.findObjectById(((AbstractObject)parentItem.getData()).getObjectId());
+               if (parent != null)
+                  parents.put(parent.getObjectId(), parent);
+            }
+         }
+         if (shownAsTopLevel != isTopLevelObject(object))
+            return false;
+
+         parents.put(object.getObjectId(), object);
+         for(AbstractObject parent : object.getParentsAsArray())
+            parents.put(parent.getObjectId(), parent);
+      }
+
+      objectTree.update(changes.toArray(), null);
+      for(AbstractObject parent : parents.values())
+         updateChildItems(parent);
+
+      // Re-sort siblings of changed objects if their position is no longer valid
+      Map<Long, AbstractObject> unsorted = new HashMap<Long, AbstractObject>();
+      for(AbstractObject object : changes)
+      {
+         for(TreeItem item : objectTree.findObjectItems(object))
+         {
+            if (isSortOrderValid(item, object))
+               continue;
+            TreeItem parentItem = item.getParentItem();
+            if (parentItem == null)
+               return false;
+            AbstractObject parent = (AbstractObject)parentItem.getData();
+            unsorted.put(parent.getObjectId(), parent);
+         }
+      }
+      for(AbstractObject parent : unsorted.values())
+         objectTree.refresh(parent, false);
+
+      return true;
+   }
+
+   /**
+    * Find elements for deleted objects in already created tree items.
+    *
+    * @param items tree items to check
+    * @param deletes IDs of deleted objects
+    * @param elements list for found elements
+    */
+   private static void findDeletedElements(TreeItem[] items, Set<Long> deletes, List<Object> elements)
+   {
+      for(TreeItem item : items)
+      {
+         Object data = item.getData();
+         if (!(data instanceof AbstractObject))
+            continue;
+         if (deletes.contains(((AbstractObject)data).getObjectId()))
+            elements.add(data);
+         else
+            findDeletedElements(item.getItems(), deletes, elements);
+      }
+   }
+
+   /**
+    * Check if given object will be shown on top level of the tree (same logic as used by session for selecting top
+    * level objects).
+    *
+    * @param object object to check
+    * @return true if object is a top level object
+    */
+   private boolean isTopLevelObject(AbstractObject object)
+   {
+      Iterator<Long> it = object.getParents();
+      while(it.hasNext())
+      {
+         AbstractObject parent = session.findObjectById(it.next());
+         if ((parent != null) && ((classFilter == null) || classFilter.contains(parent.getObjectClass())))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Add and remove child items of given object to match its current child list.
+    *
+    * @param parent parent object
+    */
+   private void updateChildItems(AbstractObject parent)
+   {
+      if (!objectsFullySync && (parent instanceof Node) && parent.hasChildren() && !parent.areChildrenSynchronized())
+         return; // Node components will be loaded when node is expanded
+
+      List<TreeItem> items = objectTree.findObjectItems(parent);
+      if (items.isEmpty())
+         return;
+
+      Map<Long, AbstractObject> children = new HashMap<Long, AbstractObject>();
+      for(AbstractObject child : parent.getChildrenAsArray())
+      {
+         if (filter.select(objectTree, parent, child))
+            children.put(child.getObjectId(), child);
+      }
+
+      Set<Long> shown = new HashSet<Long>();
+      List<Object> removed = new ArrayList<Object>();
+      for(TreeItem item : items)
+      {
+         for(TreeItem childItem : item.getItems())
+         {
+            Object data = childItem.getData();
+            if (!(data instanceof AbstractObject))
+               continue;
+            long id = ((AbstractObject)data).getObjectId();
+            if (shown.add(id) && !children.containsKey(id))
+               removed.add(data);
+         }
+      }
+
+      List<Object> added = new ArrayList<Object>();
+      for(AbstractObject child : children.values())
+      {
+         if (!shown.contains(child.getObjectId()))
+            added.add(child);
+      }
+
+      if (!removed.isEmpty())
+         objectTree.remove(parent, removed.toArray());
+      if (!added.isEmpty())
+         objectTree.add(parent, added.toArray());
+   }
+
+   /**
+    * Check if tree item is still correctly placed relative to its siblings.
+    *
+    * @param item tree item
+    * @param object object represented by item
+    * @return true if item's position is valid
+    */
+   private boolean isSortOrderValid(TreeItem item, AbstractObject object)
+   {
+      ViewerComparator comparator = objectTree.getComparator();
+      TreeItem parentItem = item.getParentItem();
+      Tree tree = objectTree.getTree();
+      int index = (parentItem != null) ? parentItem.indexOf(item) : tree.indexOf(item);
+      int count = (parentItem != null) ? parentItem.getItemCount() : tree.getItemCount();
+      if (index > 0)
+      {
+         Object prev = (parentItem != null) ? parentItem.getItem(index - 1).getData() : tree.getItem(index - 1).getData();
+         if ((prev != null) && (comparator.compare(objectTree, prev, object) > 0))
+            return false;
+      }
+      if ((index >= 0) && (index < count - 1))
+      {
+         Object next = (parentItem != null) ? parentItem.getItem(index + 1).getData() : tree.getItem(index + 1).getData();
+         if ((next != null) && (comparator.compare(objectTree, object, next) > 0))
+            return false;
+      }
+      return true;
+   }
+
    /**
     * Enable drag support in object tree
     */
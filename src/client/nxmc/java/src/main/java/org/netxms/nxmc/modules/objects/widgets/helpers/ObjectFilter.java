@@ -35,6 +35,7 @@
 import org.netxms.client.objects.Interface;
 import org.netxms.client.objects.Subnet;
 import org.netxms.client.objects.Zone;
+import org.netxms.client.search.SearchQuery;
 import org.netxms.nxmc.Registry;
 
 /**
@@ -266,7 +267,13 @@ private void updateObjectList(boolean doFullSearch)
 		{
 			if (doFullSearch)
 			{
-            List<AbstractObject> fullList = (sourceObjects != null) ? sourceObjects : Registry.getSession().getAllObjects();
+            List<AbstractObject> fullList;
+            if (sourceObjects != null)
+               fullList = sourceObjects;
+            else if ((mode == NAME) && !usePatternMatching && (filterString.indexOf('"') == -1))
+               fullList = Registry.getSession().findObjects(new SearchQuery("\"" + filterString + "\"")); // Use object index to select candidates
+            else
+               fullList = Registry.getSession().getAllObjects();
 				objectList = new HashMap<Long, AbstractObject>();
 				for(AbstractObject o : fullList)
                if (matchFilterString(o))
@@ -296,6 +303,16 @@ private void updateObjectList(boolean doFullSearch)
 		}
 	}
 
+	/**
+	 * Check if filter string is set.
+	 *
+	 * @return true if filter string is set
+	 */
+	public boolean isFilterStringSet()
+	{
+		return filterString != null;
+	}
+
 	/**
 	 * Get last matched object
 	 * @return Last matched object
@@ -18,6 +18,8 @@
  */
 package org.netxms.nxmc.modules.objects.widgets.helpers;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.viewers.IElementComparer;
 import org.eclipse.jface.viewers.TreeViewer;
@@ -25,6 +27,7 @@
 import org.eclipse.swt.events.TreeEvent;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.swt.widgets.Widget;
 import org.netxms.client.NXCSession;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.objects.Node;
@@ -75,6 +78,24 @@ public ViewerRow getTreeViewerRow(TreeItem item)
 		return getViewerRowFromItem(item);
 	}
 	
+   /**
+    * Find all tree items representing given object.
+    *
+    * @param object object to find
+    * @return list of tree items (empty if object is not shown)
+    */
+   public List<TreeItem> findObjectItems(AbstractObject object)
+   {
+      Widget[] widgets = findItems(object);
+      List<TreeItem> items = new ArrayList<TreeItem>(widgets.length);
+      for(Widget w : widgets)
+      {
+         if (w instanceof TreeItem)
+            items.add((TreeItem)w);
+      }
+      return items;
+   }
+
 	/**
 	 * Toggle item's expanded/collapsed state
 	 * 
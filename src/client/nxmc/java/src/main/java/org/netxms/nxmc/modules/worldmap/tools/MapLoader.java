@@ -25,8 +25,11 @@
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
@@ -46,7 +49,9 @@
 import org.slf4j.LoggerFactory;
 
 /**
- * Map Loader - loads geographic map from tile server. Uses cached tiles when possible.
+ * Map Loader - loads geographic map from tile server. Uses cached tiles when possible. Decoded tiles are kept in in-memory
+ * cache shared by all loaders on same display, tiles saved on disk are decoded only when not found in memory. Access to
+ * disk cache files is serialized per tile (using striped locks), so different tiles can be read and written concurrently.
  */
 public class MapLoader
 {
@@ -56,11 +61,19 @@
 	public static final int TOP_LEFT = GeoLocationCache.TOP_LEFT;
 	public static final int BOTTOM_RIGHT = GeoLocationCache.BOTTOM_RIGHT;
 
-	private static Object CACHE_MUTEX = new Object();
+	private static final Object[] DISK_LOCKS = new Object[64];
+
+	static
+	{
+	   for(int i = 0; i < DISK_LOCKS.length; i++)
+	      DISK_LOCKS[i] = new Object();
+	}
 
 	private Display display;
 	private NXCSession session;
 	private ExecutorService workers;
+	private MapTileCache tileCache;
+	private Set<Long> pendingPrefetch = ConcurrentHashMap.newKeySet();
 	private Image missingTile = null; 
 	private Image loadingTile = null; 
 	private Image borderTile = null;
@@ -77,6 +90,7 @@ public MapLoader(Display display)
       loadingTile = ResourceManager.getImage(display, "icons/worldmap/loading_tile.png");
       borderTile = ResourceManager.getImage(display, "icons/worldmap/border_tile.png");
       session = Registry.getSession();
+      tileCache = MapTileCache.getInstance(display);
       workers = Executors.newFixedThreadPool(16, new ThreadFactory() {
          private int threadNumber = 1;
 
@@ -90,6 +104,20 @@ public Thread newThread(Runnable r)
       });
 	}
 
+	/**
+	 * Get lock object for disk cache file of given tile.
+	 *
+	 * @param zoom zoom level
+	 * @param x tile X coordinate
+	 * @param y tile Y coordinate
+	 * @return lock object
+	 */
+	private static Object getDiskLock(int zoom, int x, int y)
+	{
+	   int hash = (zoom * 31 + x) * 31 + y;
+	   return DISK_LOCKS[(hash & 0x7FFFFFFF) % DISK_LOCKS.length];
+	}
+
 	/**
 	 * @param location
 	 * @param zoom
@@ -184,14 +212,11 @@ private Image loadTile(int zoom, int x, int y)
 		{
 			// save to cache
          File imageFile = buildCacheFileName(zoom, x, y);
-			synchronized(CACHE_MUTEX)
-			{
-				imageFile.getParentFile().mkdirs();
-			}
          ImageLoader imageLoader = new ImageLoader();
          imageLoader.data = new ImageData[] { image.getImageData() };
-         synchronized(CACHE_MUTEX)
+         synchronized(getDiskLock(zoom, x, y))
          {
+            imageFile.getParentFile().mkdirs();
             imageLoader.save(imageFile.getAbsolutePath(), SWT.IMAGE_PNG);
          }
 		}
@@ -230,7 +255,7 @@ private Image loadTileFromCache(int zoom, int x, int y)
 		{
 			final File imageFile = buildCacheFileName(zoom, x, y);
 			ImageData[] imageData = null;
-         synchronized(CACHE_MUTEX)
+         synchronized(getDiskLock(zoom, x, y))
          {
             if (!imageFile.canRead())
                return null;
@@ -259,14 +284,78 @@ public Tile getTile(int zoom, int x, int y, boolean cachedOnly)
 		if ((x < 0) || (y < 0) || (x > maxTileNum) || (y > maxTileNum))
          return new Tile(x, y, borderTile, true, true);
 
-		Image tileImage = loadTileFromCache(zoom, x, y);
+		Image tileImage = tileCache.acquire(zoom, x, y);
+		if (tileImage != null)
+		   return new Tile(x, y, tileImage, tileCache);
+
+		tileImage = loadTileFromCache(zoom, x, y);
 		if (tileImage == null)
 		{
 			if (cachedOnly)
             return new Tile(x, y, loadingTile, false, true);
 			tileImage = loadTile(zoom, x, y);
 		}
-      return (tileImage != null) ? new Tile(x, y, tileImage, true, false) : new Tile(x, y, missingTile, true, true);
+		if (tileImage == null)
+		   return new Tile(x, y, missingTile, true, true);
+      return new Tile(x, y, tileCache.put(zoom, x, y, tileImage), tileCache);
+	}
+
+	/**
+	 * Start background loading of tiles surrounding given tile set, so they are available in memory when map is moved.
+	 * Tiles already present in memory cache or already scheduled for loading are skipped.
+	 *
+	 * @param tiles tile set
+	 */
+	private void prefetchSurroundingTiles(TileSet tiles)
+	{
+	   if ((tiles.tiles.length == 0) || (tiles.tiles[0].length == 0))
+	      return;
+
+	   final int zoom = tiles.zoom;
+	   int xLow = tiles.tiles[0][0].getX();
+	   int yLow = tiles.tiles[0][0].getY();
+	   int xHigh = tiles.tiles[tiles.tiles.length - 1][tiles.tiles[0].length - 1].getX();
+	   int yHigh = tiles.tiles[tiles.tiles.length - 1][tiles.tiles[0].length - 1].getY();
+	   int maxTileNum = (1 << zoom) - 1;
+	   for(int y = yLow - 1; y <= yHigh + 1; y++)
+	   {
+	      for(int x = xLow - 1; x <= xHigh + 1; x++)
+	      {
+	         if ((x >= xLow) && (x <= xHigh) && (y >= yLow) && (y <= yHigh))
+	            continue; // Inside tile set
+	         if ((x < 0) || (y < 0) || (x > maxTileNum) || (y > maxTileNum) || tileCache.contains(zoom, x, y))
+	            continue;
+
+	         final Long key = ((long)zoom << 56) | ((long)x << 28) | y;
+	         if (!pendingPrefetch.add(key))
+	            continue;
+
+	         final int tileX = x;
+	         final int tileY = y;
+	         try
+	         {
+	            workers.execute(new Runnable() {
+	               @Override
+	               public void run()
+	               {
+	                  try
+	                  {
+	                     getTile(zoom, tileX, tileY, false).dispose();
+	                  }
+	                  finally
+	                  {
+	                     pendingPrefetch.remove(key);
+	                  }
+	               }
+	            });
+	         }
+	         catch(RejectedExecutionException e)
+	         {
+	            pendingPrefetch.remove(key);
+	            return; // Loader is disposed
+	         }
+	      }
+	   }
 	}
 
 	/**
@@ -320,7 +409,10 @@ public TileSet getAllTiles(Point mapSize, GeoLocation basePoint, int pointLocati
 		Point realTopLeft = GeoLocationCache.coordinateToDisplay(new GeoLocation(lat, lon), zoom);
 		Point reqTopLeft = GeoLocationCache.coordinateToDisplay(new GeoLocation(coverage.getxHigh(), coverage.getyLow()), zoom);
 
-		return new TileSet(tiles, realTopLeft.x - reqTopLeft.x, realTopLeft.y - reqTopLeft.y, zoom);
+		TileSet tileSet = new TileSet(tiles, realTopLeft.x - reqTopLeft.x, realTopLeft.y - reqTopLeft.y, zoom);
+		if (tileSet.missingTiles == 0)
+		   prefetchSurroundingTiles(tileSet); // Otherwise surrounding tiles will be loaded after missing ones
+		return tileSet;
 	}
 
 	/**
@@ -394,6 +486,8 @@ public void run()
             {
             }
    		}
+   		if (!tiles.cancelled)
+   		   prefetchSurroundingTiles(tiles);
 	   }
 		display.asyncExec(progressHandler);
 	}
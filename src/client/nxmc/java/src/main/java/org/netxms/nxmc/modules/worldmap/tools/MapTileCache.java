@@ -0,0 +1,232 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.worldmap.tools;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * In-memory cache of decoded map tiles, shared by all map loaders on same display. Cache size is limited by estimated
+ * memory used by tile images; least recently used tiles are evicted first. Images are reference counted - image of
+ * evicted tile is disposed only after all tiles using it are disposed.
+ */
+public class MapTileCache
+{
+   private static final long DEFAULT_MAX_SIZE = 64L * 1024L * 1024L;
+
+   private static final Map<Display, MapTileCache> instances = new HashMap<Display, MapTileCache>();
+
+   private final long maxSize;
+   private long currentSize = 0;
+   private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(256, 0.75f, true);
+   private final IdentityHashMap<Image, Entry> images = new IdentityHashMap<Image, Entry>();
+
+   /**
+    * Get tile cache for given display.
+    *
+    * @param display display
+    * @return tile cache for given display
+    */
+   public static MapTileCache getInstance(final Display display)
+   {
+      synchronized(instances)
+      {
+         MapTileCache cache = instances.get(display);
+         if (cache == null)
+         {
+            final MapTileCache newCache = new MapTileCache(DEFAULT_MAX_SIZE);
+            instances.put(display, newCache);
+            display.disposeExec(new Runnable() {
+               @Override
+               public void run()
+               {
+                  synchronized(instances)
+                  {
+                     instances.remove(display);
+                  }
+                  newCache.clear();
+               }
+            });
+            cache = newCache;
+         }
+         return cache;
+      }
+   }
+
+   /**
+    * Create new tile cache.
+    *
+    * @param maxSize maximum cache size in bytes
+    */
+   public MapTileCache(long maxSize)
+   {
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Build cache key from tile coordinates.
+    *
+    * @param zoom zoom level
+    * @param x tile X coordinate
+    * @param y tile Y coordinate
+    * @return cache key
+    */
+   private static Long key(int zoom, int x, int y)
+   {
+      return ((long)zoom << 56) | ((long)x << 28) | y;
+   }
+
+   /**
+    * Get tile image from cache. Caller should call <code>release</code> when image is no longer needed.
+    *
+    * @param zoom zoom level
+    * @param x tile X coordinate
+    * @param y tile Y coordinate
+    * @return tile image or null if tile is not in cache
+    */
+   public synchronized Image acquire(int zoom, int x, int y)
+   {
+      Entry e = entries.get(key(zoom, x, y));
+      if (e == null)
+         return null;
+      e.refCount++;
+      return e.image;
+   }
+
+   /**
+    * Check if tile is in cache. Does not change tile position in eviction order.
+    *
+    * @param zoom zoom level
+    * @param x tile X coordinate
+    * @param y tile Y coordinate
+    * @return true if tile is in cache
+    */
+   public synchronized boolean contains(int zoom, int x, int y)
+   {
+      return entries.containsKey(key(zoom, x, y));
+   }
+
+   /**
+    * Add tile image to cache. Cache takes ownership of the image. Returned image is acquired for the caller and may differ
+    * from provided one if same tile was added by another thread in the meantime (provided image is disposed in that case).
+    *
+    * @param zoom zoom level
+    * @param x tile X coordinate
+    * @param y tile Y coordinate
+    * @param image tile image
+    * @return cached tile image
+    */
+   public synchronized Image put(int zoom, int x, int y, Image image)
+   {
+      Long k = key(zoom, x, y);
+      Entry e = entries.get(k);
+      if (e != null)
+      {
+         image.dispose();
+         e.refCount++;
+         return e.image;
+      }
+
+      Rectangle bounds = image.getBounds();
+      e = new Entry(image, (long)bounds.width * (long)bounds.height * 4L);
+      e.refCount = 1;
+      entries.put(k, e);
+      images.put(image, e);
+      currentSize += e.size;
+
+      Iterator<Entry> it = entries.values().iterator();
+      while((currentSize > maxSize) && it.hasNext())
+      {
+         Entry victim = it.next();
+         if (victim == e)
+            continue;
+         it.remove();
+         currentSize -= victim.size;
+         victim.evicted = true;
+         if (victim.refCount == 0)
+            dispose(victim);
+      }
+      return image;
+   }
+
+   /**
+    * Release image acquired from cache.
+    *
+    * @param image image to release
+    */
+   public synchronized void release(Image image)
+   {
+      Entry e = images.get(image);
+      if (e == null)
+         return;
+      e.refCount--;
+      if (e.evicted && (e.refCount <= 0))
+         dispose(e);
+   }
+
+   /**
+    * Remove all tiles from cache. Images still in use are disposed when released.
+    */
+   public synchronized void clear()
+   {
+      for(Entry e : entries.values())
+      {
+         e.evicted = true;
+         if (e.refCount == 0)
+            dispose(e);
+      }
+      entries.clear();
+      currentSize = 0;
+   }
+
+   /**
+    * Dispose cache entry.
+    *
+    * @param e cache entry
+    */
+   private void dispose(Entry e)
+   {
+      images.remove(e.image);
+      if (!e.image.isDisposed())
+         e.image.dispose();
+   }
+
+   /**
+    * Cache entry
+    */
+   private static class Entry
+   {
+      Image image;
+      long size;
+      int refCount = 0;
+      boolean evicted = false;
+
+      Entry(Image image, long size)
+      {
+         this.image = image;
+         this.size = size;
+      }
+   }
+}
@@ -15,6 +15,7 @@
 	private Image image;
 	private boolean loaded;
 	private boolean internalImage;
+	private MapTileCache cache = null;
 	
 	/**
 	 * @param image
@@ -31,13 +32,38 @@ public Tile(int x, int y, Image image, boolean loaded, boolean internalImage)
 		this.y = y;
 	}
 
+	/**
+	 * Create loaded tile with image owned by tile cache. Image is released back to cache when tile is disposed.
+	 *
+	 * @param x tile X coordinate
+	 * @param y tile Y coordinate
+	 * @param image tile image acquired from cache
+	 * @param cache owning cache
+	 */
+	public Tile(int x, int y, Image image, MapTileCache cache)
+	{
+		this(x, y, image, true, false);
+		this.cache = cache;
+	}
+
 	/**
 	 * Dispose tile
 	 */
 	public void dispose()
 	{
-		if ((image != null) && !internalImage)
+		if ((image == null) || internalImage)
+			return;
+		if (cache != null)
+		{
+			// Tile can be disposed more than once, but image should be released only once
+			cache.release(image);
+			cache = null;
+			internalImage = true;
+		}
+		else
+		{
 			image.dispose();
+		}
 	}
 
 	/**
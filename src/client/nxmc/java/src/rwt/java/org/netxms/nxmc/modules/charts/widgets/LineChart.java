@@ -24,6 +24,8 @@
 import java.util.Date;
 import java.util.List;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseListener;
 import org.eclipse.swt.events.MouseMoveListener;
@@ -60,7 +62,10 @@
 import org.netxms.nxmc.localization.DateFormatFactory;
 import org.netxms.nxmc.modules.charts.api.ChartColor;
 import org.netxms.nxmc.modules.charts.api.DataPoint;
+import org.netxms.nxmc.modules.charts.api.DataSeries;
 import org.netxms.nxmc.modules.charts.widgets.internal.SelectionRectangle;
+import org.netxms.nxmc.modules.charts.widgets.internal.SeriesDownsampler;
+import org.netxms.nxmc.modules.charts.widgets.internal.TimeRangeState;
 import org.netxms.nxmc.tools.ColorCache;
 import org.netxms.nxmc.tools.ColorConverter;
 import org.netxms.nxmc.tools.WidgetHelper;
@@ -91,10 +96,9 @@ public class LineChart extends org.eclipse.swtchart.Chart implements PlotArea
 	private MouseListener zoomMouseListener = null;
 	private PaintListener zoomPaintListener = null;
 	private boolean tooltipShown = false;
-	private boolean zoomedToSelectionX = false;
    private boolean zoomedToSelectionY = false;
-   private Date delayedRangeFrom;
-   private Date delayedRangeTo;
+   private TimeRangeState timeRangeState = new TimeRangeState();
+   private int plotAreaWidth = 0;
 
 	/**
 	 * @param parent
@@ -251,6 +255,20 @@ public boolean drawBehindSeries()
 				return true;
 			}
 		});
+
+      // Number of displayed points depends on plot area width
+      plotArea.getControl().addControlListener(new ControlAdapter() {
+         @Override
+         public void controlResized(ControlEvent e)
+         {
+            int width = plotArea.getControl().getSize().x;
+            if (width == plotAreaWidth)
+               return;
+            plotAreaWidth = width;
+            if (getSeriesSet().getSeries().length > 0)
+               resampleSeries();
+         }
+      });
 	}
 
 	/**
@@ -313,8 +331,9 @@ private void endSelection()
 					setRange(range, axis);
 				}
 			}
-			zoomedToSelectionX = true;
+			timeRangeState.setZoomedToSelection();
 			zoomedToSelectionY = true;
+			resampleSeries();
 		}
 
 		selection.dispose();
@@ -404,15 +423,8 @@ private ILineSeries<?> addLineSeries(int index, String description, Date[] xSeri
     */
 	public void setTimeRange(final Date from, final Date to)
 	{
-	   if (zoomedToSelectionX)
-	   {
-	      delayedRangeFrom = from;
-	      delayedRangeTo = to;
-	      return;
-	   }
-
-      delayedRangeFrom = null;
-      delayedRangeTo = null;
+      if (!timeRangeState.setTimeRange(from.getTime(), to.getTime()))
+         return;
 
 		timeFrom = from.getTime();
 		timeTo = to.getTime();
@@ -487,9 +499,11 @@ private void paintThresholds(PaintEvent e, IAxis axis)
     */
 	public void refresh()
 	{
+      Range range = getAxisSet().getXAxis(0).getRange();
       List<GraphItem> items = chart.getItems();
       for(int i = 0; i < items.size(); i++)
-         updateSeries(i, items.get(i));
+         updateSeries(i, items.get(i), (long)range.lower, (long)range.upper);
+      timeRangeState.setSampledRange((long)range.lower, (long)range.upper);
 
 	   updateLayout();
 	   updateStackAndRiserData();
@@ -500,23 +514,75 @@ public void refresh()
 	}
 
    /**
-    * Update data series on chart
+    * Recreate displayed series from original data for current X axis range.
+    */
+   private void resampleSeries()
+   {
+      Range range = getAxisSet().getXAxis(0).getRange();
+      resampleSeries((long)range.lower, (long)range.upper);
+   }
+
+   /**
+    * Recreate displayed series from original data for given time range.
+    *
+    * @param from start of time range
+    * @param to end of time range
+    */
+   private void resampleSeries(long from, long to)
+   {
+      List<GraphItem> items = chart.getItems();
+      for(int i = 0; i < items.size(); i++)
+         updateSeries(i, items.get(i), from, to);
+      timeRangeState.setSampledRange(from, to);
+      updateStackAndRiserData();
+   }
+
+   /**
+    * Update data series on chart. Original data is kept in chart's data series, only points selected for display within
+    * given time range are passed to series, so series can be recreated with full resolution when visible range changes.
     *
     * @param index item index
     * @param item graph item
+    * @param from start of visible time range
+    * @param to end of visible time range
     */
-   private void updateSeries(int index, GraphItem item)
+   private void updateSeries(int index, GraphItem item, long from, long to)
 	{
       final DciDataRow[] values = chart.getDataSeries().get(index).getValues();
 
 		// Create series
-		Date[] xSeries = new Date[values.length];
-		double[] ySeries = new double[values.length];
-		for(int i = 0; i < values.length; i++)
-		{
-			xSeries[i] = values[i].getTimestamp();
-			ySeries[i] = values[i].getValueAsDouble();
-		}
+      Date[] xSeries;
+      double[] ySeries;
+      if (configuration.isStacked())
+      {
+         // Stacked series are summed point by point, so all points are kept to keep series aligned
+         xSeries = new Date[values.length];
+         ySeries = new double[values.length];
+         for(int i = 0; i < values.length; i++)
+         {
+            xSeries[i] = values[i].getTimestamp();
+            ySeries[i] = values[i].getValueAsDouble();
+         }
+      }
+      else
+      {
+         long[] timestamps = new long[values.length];
+         double[] data = new double[values.length];
+         for(int i = 0; i < values.length; i++)
+         {
+            timestamps[i] = values[i].getTimestamp().getTime();
+            data[i] = values[i].getValueAsDouble();
+         }
+
+         int[] points = SeriesDownsampler.selectPoints(timestamps, data, from, to, Math.max(plotAreaWidth, 200) * 2);
+         xSeries = new Date[points.length];
+         ySeries = new double[points.length];
+         for(int i = 0; i < points.length; i++)
+         {
+            xSeries[i] = values[points[i]].getTimestamp();
+            ySeries[i] = data[points[i]];
+         }
+      }
 
       ILineSeries<?> series = addLineSeries(index, item.getDescription(), xSeries, ySeries);
       if (item.getColor() != -1)
@@ -583,18 +649,31 @@ private void setGridVisible(boolean visible)
     */
 	public void adjustXAxis(boolean repaint)
 	{
-      zoomedToSelectionX = false;
-      if (delayedRangeFrom != null)
+      long[] delayedRange = timeRangeState.resetZoom();
+      if (delayedRange != null)
       {
-         setTimeRange(delayedRangeFrom, delayedRangeTo);
+         // Apply time range set while chart was zoomed to selection
+         setTimeRange(new Date(delayedRange[0]), new Date(delayedRange[1]));
       }
       else
       {
+         // Restore all points so axis range is adjusted to full data set
+         resampleSeries(Long.MIN_VALUE, Long.MAX_VALUE);
    		for(final IAxis axis : getAxisSet().getXAxes())
    		{
    			axis.adjustRange();
    		}
       }
+
+      // Series are still sampled for previous (zoomed) range, so recreate them as refresh() does
+      Range range = getAxisSet().getXAxis(0).getRange();
+      if (timeRangeState.isResampleRequired((long)range.lower, (long)range.upper))
+      {
+         resampleSeries();
+         updateLayout();
+         if (configuration.isAutoScale() && !zoomedToSelectionY)
+            adjustYAxis(false);
+      }
 		if (repaint)
 			redraw();
 	}
@@ -626,6 +705,7 @@ else if (range.lower < 0)
 	public void zoomIn()
 	{
 		getAxisSet().zoomIn();
+      resampleSeries();
 		redraw();
 	}
 
@@ -635,6 +715,7 @@ public void zoomIn()
 	public void zoomOut()
 	{
 		getAxisSet().zoomOut();
+      resampleSeries();
 		redraw();
 	}
 
@@ -672,25 +753,28 @@ public DataPoint getClosestDataPoint(int px, int py)
       double minDist = Double.MAX_VALUE;
       ISeries<?> closestSeries = null;
 
-      /* over all series */
+      /* over all series (use original data, displayed series may contain only subset of points) */
+      List<DataSeries> dataSeries = chart.getDataSeries();
       ISeries<?>[] series = getSeriesSet().getSeries();
       for(ISeries<?> s : series)
       {
-          double[] xS = s.getXSeries();
-          double[] yS = s.getYSeries();
+          DciDataRow[] values = dataSeries.get(Integer.parseInt(s.getId())).getValues();
 
           /* check all data points */
-          for (int i = 0; i < xS.length; i++) 
+          for (int i = 0; i < values.length; i++) 
           {
+              double xV = values[i].getTimestamp().getTime();
+              double yV = values[i].getValueAsDouble();
+
               /* compute distance to mouse position */
-              double newDist = Math.sqrt(Math.pow((x - xS[i]), 2) + Math.pow((y - yS[i]), 2));
+              double newDist = Math.sqrt(Math.pow((x - xV), 2) + Math.pow((y - yV), 2));
 
               /* if closer to mouse, remember */
               if (newDist < minDist) 
               {
                   minDist = newDist;
-                  closestX = xS[i];
-                  closestY = yS[i];
+                  closestX = xV;
+                  closestY = yV;
                   closestSeries = s;
               }
           }
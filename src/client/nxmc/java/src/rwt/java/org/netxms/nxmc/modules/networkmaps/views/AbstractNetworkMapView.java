@@ -38,7 +38,6 @@
 import org.eclipse.gef4.zest.layouts.algorithms.CompositeLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.GridLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.RadialLayoutAlgorithm;
-import org.eclipse.gef4.zest.layouts.algorithms.SpringLayoutAlgorithm;
 import org.eclipse.gef4.zest.layouts.algorithms.TreeLayoutAlgorithm;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IContributionItem;
@@ -97,6 +96,7 @@
 import org.netxms.nxmc.modules.datacollection.views.HistoricalGraphView;
 import org.netxms.nxmc.modules.networkmaps.ObjectDoubleClickHandlerRegistry;
 import org.netxms.nxmc.modules.networkmaps.algorithms.ExpansionAlgorithm;
+import org.netxms.nxmc.modules.networkmaps.algorithms.ForceDirectedLayout;
 import org.netxms.nxmc.modules.networkmaps.algorithms.ManualLayout;
 import org.netxms.nxmc.modules.networkmaps.views.helpers.BendpointEditor;
 import org.netxms.nxmc.modules.networkmaps.widgets.helpers.ExtendedGraphViewer;
@@ -144,6 +144,7 @@ public abstract class AbstractNetworkMapView extends ObjectView implements ISele
 	protected int routingAlgorithm = NetworkMapLink.ROUTING_DIRECT;
 	protected boolean allowManualLayout = false; // True if manual layout can be switched on
 	protected boolean automaticLayoutEnabled = true; // Current layout mode - automatic or manual
+	private ForceDirectedLayout forceDirectedLayout = null; // Current force directed layout (may run in background)
 	protected boolean alwaysFitLayout = false;
 
 	protected Action actionShowStatusIcon;
@@ -395,6 +396,7 @@ protected void setLayoutAlgorithm(MapLayoutAlgorithm alg, boolean forceChange)
 			if (!automaticLayoutEnabled)
 				return; // manual layout already
 
+			cancelLayoutCalculation();
 			automaticLayoutEnabled = false;
 			// TODO: rewrite, enum value should not be used as index
 			actionSetAlgorithm[layoutAlgorithm.getValue()].setChecked(false);
@@ -411,12 +413,15 @@ protected void setLayoutAlgorithm(MapLayoutAlgorithm alg, boolean forceChange)
 			automaticLayoutEnabled = true;
 		}
 
+		cancelLayoutCalculation();
+
 		LayoutAlgorithm algorithm;
 
 		switch(alg)
 		{
 			case SPRING:
-				algorithm = new SpringLayoutAlgorithm();
+				forceDirectedLayout = new ForceDirectedLayout(alwaysFitLayout);
+				algorithm = forceDirectedLayout;
 				break;
 			case RADIAL:
 				algorithm = new RadialLayoutAlgorithm();
@@ -436,13 +441,29 @@ protected void setLayoutAlgorithm(MapLayoutAlgorithm alg, boolean forceChange)
 				break;
 		}
 
-		viewer.setLayoutAlgorithm(alwaysFitLayout ? algorithm : new CompositeLayoutAlgorithm(new LayoutAlgorithm[] { algorithm, new ExpansionAlgorithm() }));
+		// Force directed layout keeps distance between nodes by itself and may update node positions asynchronously
+		if (alwaysFitLayout || (alg == MapLayoutAlgorithm.SPRING))
+			viewer.setLayoutAlgorithm(algorithm);
+		else
+			viewer.setLayoutAlgorithm(new CompositeLayoutAlgorithm(new LayoutAlgorithm[] { algorithm, new ExpansionAlgorithm() }));
 
 		actionSetAlgorithm[layoutAlgorithm.getValue()].setChecked(false);
 		layoutAlgorithm = alg;
 		actionSetAlgorithm[layoutAlgorithm.getValue()].setChecked(true);
 	}
 
+	/**
+	 * Cancel background calculation of force directed layout, so it will not override positions set by new layout.
+	 */
+	private void cancelLayoutCalculation()
+	{
+		if (forceDirectedLayout != null)
+		{
+			forceDirectedLayout.cancel();
+			forceDirectedLayout = null;
+		}
+	}
+
 	/**
 	 * Update stored object positions with actual positions read from graph control
 	 */
@@ -470,6 +491,7 @@ protected void updateObjectPositions()
 	 */
 	protected void setManualLayout()
 	{
+		cancelLayoutCalculation();
 		updateObjectPositions();
 
 		automaticLayoutEnabled = false;
@@ -1113,6 +1135,8 @@ public void setFocus()
 	@Override
 	public void dispose()
 	{
+		cancelLayoutCalculation();
+
 		if (sessionListener != null)
 			session.removeListener(sessionListener);
 
@@ -0,0 +1,84 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.charts.widgets.internal;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests for class <code>TimeRangeState</code>.
+ */
+public class TimeRangeStateTest extends TestCase
+{
+   public void testSetTimeRange()
+   {
+      TimeRangeState state = new TimeRangeState();
+      assertTrue(state.setTimeRange(1000, 2000));
+      assertNull(state.resetZoom());
+      assertTrue(state.isResampleRequired(1000, 2000));
+      state.setSampledRange(1000, 2000);
+      assertFalse(state.isResampleRequired(1000, 2000));
+   }
+
+   /**
+    * Zoom to selection, then refresh (new time range set while zoomed), then adjust X axis. Series sampled for zoomed
+    * range should be recreated for deferred time range.
+    */
+   public void testZoomRefreshAdjust()
+   {
+      TimeRangeState state = new TimeRangeState();
+      assertTrue(state.setTimeRange(1000, 5000));
+      state.setSampledRange(1000, 5000);
+
+      // Zoom to selection
+      state.setZoomedToSelection();
+      state.setSampledRange(2000, 3000);
+      assertTrue(state.isZoomedToSelection());
+
+      // Refresh - new range is deferred, series are resampled for zoomed range
+      assertFalse(state.setTimeRange(1500, 5500));
+      state.setSampledRange(2000, 3000);
+
+      // Adjust X axis - deferred range is applied and requires resampling
+      long[] range = state.resetZoom();
+      assertTrue(Arrays.equals(new long[] { 1500, 5500 }, range));
+      assertFalse(state.isZoomedToSelection());
+      assertTrue(state.setTimeRange(range[0], range[1]));
+      assertTrue(state.isResampleRequired(range[0], range[1]));
+      state.setSampledRange(range[0], range[1]);
+      assertFalse(state.isResampleRequired(range[0], range[1]));
+
+      // Deferred range is applied only once
+      assertNull(state.resetZoom());
+   }
+
+   /**
+    * Adjust X axis after zoom without refresh - axis is adjusted to data, so series sampled for zoomed range should be
+    * recreated.
+    */
+   public void testZoomAdjust()
+   {
+      TimeRangeState state = new TimeRangeState();
+      state.setSampledRange(1000, 5000);
+      state.setZoomedToSelection();
+      state.setSampledRange(2000, 3000);
+      assertNull(state.resetZoom());
+      assertTrue(state.isResampleRequired(1000, 5000));
+   }
+}
@@ -0,0 +1,326 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.networkmaps.algorithms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark for force directed layout engine on synthetic graphs. Engine does not depend on UI, so benchmark can be run
+ * standalone. Not a unit test - run manually with test classpath:
+ *
+ * <pre>
+ * java -cp ... org.netxms.nxmc.modules.networkmaps.algorithms.ForceDirectedLayoutBenchmark [nodeCount ...]
+ * </pre>
+ */
+public class ForceDirectedLayoutBenchmark
+{
+   private static final double DISTANCE = 100;
+   private static final double CLOSE_RATIO = 0.3;
+
+   /**
+    * Synthetic graph
+    */
+   private static class Graph
+   {
+      int nodeCount;
+      List<int[]> edges = new ArrayList<int[]>();
+
+      Graph(int nodeCount)
+      {
+         this.nodeCount = nodeCount;
+      }
+
+      void link(int a, int b)
+      {
+         edges.add(new int[] { a, b });
+      }
+
+      int[] sources()
+      {
+         int[] result = new int[edges.size()];
+         for(int i = 0; i < result.length; i++)
+            result[i] = edges.get(i)[0];
+         return result;
+      }
+
+      int[] targets()
+      {
+         int[] result = new int[edges.size()];
+         for(int i = 0; i < result.length; i++)
+            result[i] = edges.get(i)[1];
+         return result;
+      }
+   }
+
+   /**
+    * Create graph resembling L2/L3 network topology: meshed core, distribution switches with redundant uplinks, access
+    * switches and end nodes.
+    *
+    * @param n number of nodes
+    * @param random random number generator
+    * @return graph
+    */
+   private static Graph createTopology(int n, Random random)
+   {
+      Graph g = new Graph(n);
+      int core = Math.max(2, n / 2000);
+      int distribution = Math.max(core, n / 200);
+      int access = Math.max(distribution, n / 25);
+      for(int i = 1; i < core; i++)
+         for(int j = 0; j < i; j++)
+            g.link(i, j);
+      int d0 = core, a0 = core + distribution, h0 = Math.min(a0 + access, n);
+      for(int i = d0; i < Math.min(a0, n); i++)
+      {
+         g.link(i, random.nextInt(core));
+         g.link(i, random.nextInt(core));
+      }
+      for(int i = a0; i < h0; i++)
+         g.link(i, d0 + random.nextInt(distribution));
+      for(int i = h0; i < n; i++)
+         g.link(i, a0 + random.nextInt(access));
+      return g;
+   }
+
+   /**
+    * Create scale-free graph using preferential attachment (Barabasi-Albert model).
+    *
+    * @param n number of nodes
+    * @param random random number generator
+    * @return graph
+    */
+   private static Graph createScaleFree(int n, Random random)
+   {
+      Graph g = new Graph(n);
+      List<Integer> targets = new ArrayList<Integer>();
+      g.link(1, 0);
+      targets.add(0);
+      targets.add(1);
+      for(int i = 2; i < n; i++)
+      {
+         for(int k = 0; k < 2; k++)
+         {
+            int t = targets.get(random.nextInt(targets.size()));
+            g.link(i, t);
+            targets.add(t);
+         }
+         targets.add(i);
+         targets.add(i);
+      }
+      return g;
+   }
+
+   /**
+    * Create square grid graph.
+    *
+    * @param n number of nodes
+    * @return graph
+    */
+   private static Graph createGrid(int n)
+   {
+      Graph g = new Graph(n);
+      int side = (int)Math.ceil(Math.sqrt(n));
+      for(int i = 0; i < n; i++)
+      {
+         if ((i % side != side - 1) && (i + 1 < n))
+            g.link(i, i + 1);
+         if (i + side < n)
+            g.link(i, i + side);
+      }
+      return g;
+   }
+
+   /**
+    * Create graph with many small disconnected components (small trees) and isolated nodes.
+    *
+    * @param n number of nodes
+    * @param random random number generator
+    * @return graph
+    */
+   private static Graph createDisconnected(int n, Random random)
+   {
+      Graph g = new Graph(n);
+      int i = 0;
+      while(i < n)
+      {
+         int size = 1 + random.nextInt(12);
+         for(int j = 1; (j < size) && (i + j < n); j++)
+            g.link(i + j, i + random.nextInt(j));
+         i += size;
+      }
+      return g;
+   }
+
+   /**
+    * Count nodes which have another node closer than given distance (spatial hashing, expected O(N)).
+    *
+    * @param x X coordinates
+    * @param y Y coordinates
+    * @param limit distance limit
+    * @return number of nodes with close neighbor
+    */
+   private static int countCloseNodes(double[] x, double[] y, double limit)
+   {
+      Map<Long, List<Integer>> cells = new HashMap<Long, List<Integer>>();
+      for(int i = 0; i < x.length; i++)
+      {
+         long key = (((long)Math.floor(x[i] / limit)) << 32) ^ (((long)Math.floor(y[i] / limit)) & 0xFFFFFFFFL);
+         List<Integer> cell = cells.get(key);
+         if (cell == null)
+         {
+            cell = new ArrayList<Integer>(2);
+            cells.put(key, cell);
+         }
+         cell.add(i);
+      }
+
+      int count = 0;
+      for(int i = 0; i < x.length; i++)
+      {
+         long cx = (long)Math.floor(x[i] / limit), cy = (long)Math.floor(y[i] / limit);
+         boolean found = false;
+         for(long dx = -1; (dx <= 1) && !found; dx++)
+         {
+            for(long dy = -1; (dy <= 1) && !found; dy++)
+            {
+               List<Integer> cell = cells.get(((cx + dx) << 32) ^ ((cy + dy) & 0xFFFFFFFFL));
+               if (cell == null)
+                  continue;
+               for(int j : cell)
+               {
+                  if ((j != i) && (Math.hypot(x[i] - x[j], y[i] - y[j]) < limit))
+                  {
+                     found = true;
+                     break;
+                  }
+               }
+            }
+         }
+         if (found)
+            count++;
+      }
+      return count;
+   }
+
+   /**
+    * Measure time of single naive O(N^2) force iteration, for comparison with previous spring layout.
+    *
+    * @param g graph
+    * @param random random number generator
+    * @return iteration time in milliseconds
+    */
+   private static double measureNaiveIteration(Graph g, Random random)
+   {
+      int n = g.nodeCount;
+      double[] x = new double[n], y = new double[n], fx = new double[n], fy = new double[n];
+      for(int i = 0; i < n; i++)
+      {
+         x[i] = random.nextDouble() * 1000;
+         y[i] = random.nextDouble() * 1000;
+      }
+      long start = System.nanoTime();
+      for(int i = 0; i < n; i++)
+      {
+         for(int j = i + 1; j < n; j++)
+         {
+            double dx = x[i] - x[j], dy = y[i] - y[j];
+            double d2 = Math.max(dx * dx + dy * dy, 0.01);
+            double f = DISTANCE * DISTANCE / d2;
+            fx[i] += dx * f;
+            fy[i] += dy * f;
+            fx[j] -= dx * f;
+            fy[j] -= dy * f;
+         }
+      }
+      for(int[] e : g.edges)
+      {
+         double dx = x[e[0]] - x[e[1]], dy = y[e[0]] - y[e[1]];
+         double d = Math.sqrt(dx * dx + dy * dy) / DISTANCE;
+         fx[e[0]] -= dx * d;
+         fy[e[0]] -= dy * d;
+         fx[e[1]] += dx * d;
+         fy[e[1]] += dy * d;
+      }
+      return (System.nanoTime() - start) / 1000000.0;
+   }
+
+   /**
+    * Run layout for given graph and print results.
+    *
+    * @param name graph type name
+    * @param g graph
+    */
+   private static void run(String name, Graph g)
+   {
+      final long start = System.nanoTime();
+      final long[] firstUpdate = new long[] { -1 };
+      ForceDirectedLayoutEngine engine = new ForceDirectedLayoutEngine(g.nodeCount, g.sources(), g.targets(), DISTANCE);
+      double[] x = new double[g.nodeCount];
+      double[] y = new double[g.nodeCount];
+      engine.run(x, y, new ForceDirectedLayoutEngine.ProgressListener() {
+         @Override
+         public boolean layoutUpdated(double[] x, double[] y, boolean finished)
+         {
+            if (firstUpdate[0] < 0)
+               firstUpdate[0] = System.nanoTime() - start;
+            return true;
+         }
+      });
+      long elapsed = System.nanoTime() - start;
+      int close = countCloseNodes(x, y, DISTANCE * CLOSE_RATIO);
+      System.out.printf("%6d %-13s %4d levels %8.2f s  first update %6.1f ms  close nodes %5.2f%%%n", g.nodeCount, name,
+            engine.getLevelCount(), elapsed / 1e9, firstUpdate[0] / 1e6, close * 100.0 / g.nodeCount);
+   }
+
+   /**
+    * Entry point.
+    *
+    * @param args node counts to test (default 2000, 5000, 10000)
+    */
+   public static void main(String[] args)
+   {
+      int[] sizes;
+      if (args.length > 0)
+      {
+         sizes = new int[args.length];
+         for(int i = 0; i < args.length; i++)
+            sizes[i] = Integer.parseInt(args[i]);
+      }
+      else
+      {
+         sizes = new int[] { 2000, 5000, 10000 };
+      }
+
+      // Warm up JIT
+      run("warm-up", createScaleFree(2000, new Random(0)));
+
+      for(int n : sizes)
+      {
+         run("topology", createTopology(n, new Random(n)));
+         run("scale-free", createScaleFree(n, new Random(n)));
+         run("grid", createGrid(n));
+         run("disconnected", createDisconnected(n, new Random(n)));
+         System.out.printf("%6d naive O(N^2) iteration: %.1f ms%n", n, measureNaiveIteration(createScaleFree(n, new Random(n)), new Random(n)));
+      }
+   }
+}
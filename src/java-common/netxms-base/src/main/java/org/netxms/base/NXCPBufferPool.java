@@ -0,0 +1,157 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2020 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of receive buffers shared between message receivers. Buffers are grouped into power of two size classes, and each
+ * class keeps limited number of free buffers.
+ */
+public class NXCPBufferPool
+{
+   private static final int MIN_SIZE_CLASS = 12;   // 4KB
+   private static final int MAX_SIZE_CLASS = 30;   // 1GB
+
+   private static final NXCPBufferPool defaultPool = new NXCPBufferPool(4);
+
+   private final int buffersPerClass;
+   private final ConcurrentLinkedQueue<byte[]>[] freeBuffers;
+   private final AtomicInteger[] freeCount;
+   private final AtomicLong allocations = new AtomicLong(0);
+   private final AtomicLong reuses = new AtomicLong(0);
+
+   /**
+    * Get default pool.
+    *
+    * @return default buffer pool
+    */
+   public static NXCPBufferPool getDefault()
+   {
+      return defaultPool;
+   }
+
+   /**
+    * Create new buffer pool.
+    *
+    * @param buffersPerClass maximum number of free buffers kept for each size class
+    */
+   @SuppressWarnings("unchecked")
+   public NXCPBufferPool(int buffersPerClass)
+   {
+      this.buffersPerClass = buffersPerClass;
+      freeBuffers = new ConcurrentLinkedQueue[MAX_SIZE_CLASS + 1];
+      freeCount = new AtomicInteger[MAX_SIZE_CLASS + 1];
+      for(int i = MIN_SIZE_CLASS; i <= MAX_SIZE_CLASS; i++)
+      {
+         freeBuffers[i] = new ConcurrentLinkedQueue<byte[]>();
+         freeCount[i] = new AtomicInteger(0);
+      }
+   }
+
+   /**
+    * Get size class for given minimal buffer size.
+    *
+    * @param size minimal buffer size
+    * @return size class (base 2 logarithm of buffer size)
+    */
+   private static int sizeClass(int size)
+   {
+      if (size <= (1 << MIN_SIZE_CLASS))
+         return MIN_SIZE_CLASS;
+      return 32 - Integer.numberOfLeadingZeros(size - 1);
+   }
+
+   /**
+    * Acquire buffer with at least given size. Buffer content is undefined.
+    *
+    * @param size minimal buffer size
+    * @return buffer
+    */
+   public byte[] acquire(int size)
+   {
+      int c = sizeClass(size);
+      if (c > MAX_SIZE_CLASS)
+      {
+         allocations.incrementAndGet();
+         return new byte[size];
+      }
+
+      byte[] buffer = freeBuffers[c].poll();
+      if (buffer != null)
+      {
+         freeCount[c].decrementAndGet();
+         reuses.incrementAndGet();
+         return buffer;
+      }
+      allocations.incrementAndGet();
+      return new byte[1 << c];
+   }
+
+   /**
+    * Return buffer to the pool. Buffers not allocated by the pool or exceeding pool capacity are left for garbage collector.
+    *
+    * @param buffer buffer to return
+    */
+   public void release(byte[] buffer)
+   {
+      if ((buffer == null) || (Integer.bitCount(buffer.length) != 1))
+         return;
+      int c = 31 - Integer.numberOfLeadingZeros(buffer.length);
+      if ((c < MIN_SIZE_CLASS) || (c > MAX_SIZE_CLASS))
+         return;
+      if (freeCount[c].incrementAndGet() > buffersPerClass)
+      {
+         freeCount[c].decrementAndGet();
+         return;
+      }
+      freeBuffers[c].offer(buffer);
+   }
+
+   /**
+    * Get number of buffers allocated by this pool.
+    *
+    * @return number of buffer allocations
+    */
+   public long getAllocations()
+   {
+      return allocations.get();
+   }
+
+   /**
+    * Get number of buffer requests served from free buffers.
+    *
+    * @return number of buffer reuses
+    */
+   public long getReuses()
+   {
+      return reuses.get();
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "NXCPBufferPool [buffersPerClass=" + buffersPerClass + " allocations=" + allocations.get() + " reuses=" + reuses.get() + "]";
+   }
+}
@@ -484,6 +484,7 @@
 	public static final int CMD_RS_RENDER_RESULT = 0x1104;
 	public static final int CMD_RS_DELETE_RESULT = 0x1105;
    public static final int CMD_RS_NOTIFY = 0x1106;
+   public static final int CMD_RS_GET_JOB_STATUS = 0x1107;
 
 	// Variable codes
 	public static final long VID_LOGIN_NAME = 1;
@@ -0,0 +1,618 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2020 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared transport for NXCP connections. Sockets of all registered connections are multiplexed on single selector thread.
+ * When connection becomes readable, its input is processed by a task on shared worker pool (only one task per connection
+ * is active at any time, so messages are processed in order). Worker pool is intended for non-blocking processing only;
+ * tasks that may block (like waiting for server responses or calling user callbacks) should be passed to separate task
+ * executor, otherwise blocked workers may prevent reading responses they are waiting for. Writes to connections block
+ * until peer accepts data, so queued outgoing messages are written by separate writer executor, and slow or stalled peers
+ * cannot occupy worker threads. Event loop also provides shared timer for periodic housekeeping tasks of its users.
+ */
+public class NXCPEventLoop
+{
+   private static final Logger logger = LoggerFactory.getLogger(NXCPEventLoop.class);
+
+   private static final int MAX_MESSAGES_PER_PASS = 256;
+   private static final int MAX_ERROR_COUNT = 100;
+
+   private String name;
+   private Selector selector;
+   private Thread selectorThread;
+   private ExecutorService workers;
+   private ExecutorService tasks;
+   private ExecutorService writers;
+   private ScheduledExecutorService timer;
+   private ConcurrentLinkedQueue<Runnable> pendingOperations = new ConcurrentLinkedQueue<Runnable>();
+   private Set<Connection> connections = ConcurrentHashMap.newKeySet();
+   private volatile boolean shutdown = false;
+
+   /**
+    * Handler for connection events. Methods are called on worker threads.
+    */
+   public interface Handler
+   {
+      /**
+       * Get encryption context for decoding received messages.
+       *
+       * @return encryption context or null
+       */
+      public EncryptionContext getEncryptionContext();
+
+      /**
+       * Process received message. Throwing IOException closes connection.
+       *
+       * @param msg received message
+       * @throws Exception on processing error
+       */
+      public void onMessage(NXCPMessage msg) throws Exception;
+
+      /**
+       * Called once when connection is closed.
+       *
+       * @param cause close cause (null if connection was closed locally)
+       */
+      public void onClose(Throwable cause);
+   }
+
+   /**
+    * Create new event loop.
+    *
+    * @param name name prefix for event loop threads
+    * @param workerThreads number of worker threads
+    * @throws IOException if selector cannot be created
+    */
+   public NXCPEventLoop(String name, int workerThreads) throws IOException
+   {
+      this.name = name;
+      selector = Selector.open();
+      workers = Executors.newFixedThreadPool(workerThreads, new DaemonThreadFactory(name + " Worker"));
+      tasks = Executors.newCachedThreadPool(new DaemonThreadFactory(name + " Task"));
+      writers = Executors.newCachedThreadPool(new DaemonThreadFactory(name + " Writer"));
+      timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + " Timer"));
+      selectorThread = new Thread(() -> selectorLoop(), name + " Selector");
+      selectorThread.setDaemon(true);
+      selectorThread.start();
+   }
+
+   /**
+    * Register connected socket channel with event loop. Channel is switched to non-blocking mode.
+    *
+    * @param channel connected socket channel
+    * @param receiver message receiver for this connection
+    * @param handler connection event handler
+    * @return connection object
+    * @throws IOException if channel cannot be switched to non-blocking mode
+    */
+   public Connection register(SocketChannel channel, NXCPMessageReceiver receiver, Handler handler) throws IOException
+   {
+      if (shutdown)
+         throw new IOException("Event loop is shut down");
+
+      channel.configureBlocking(false);
+      final Connection connection = new Connection(channel, receiver, handler);
+      connections.add(connection);
+      runOnSelectorThread(() -> {
+         if (connection.closed.get())
+            return;
+         try
+         {
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+         }
+         catch(IOException e)
+         {
+            connection.close(e);
+         }
+      });
+      return connection;
+   }
+
+   /**
+    * Get executor backed by event loop's worker pool. Tasks submitted to this executor should not block waiting for
+    * other connection's input or for writes to connection (use writer executor for draining outgoing message queues).
+    *
+    * @return executor
+    */
+   public Executor getExecutor()
+   {
+      return workers;
+   }
+
+   /**
+    * Get executor for tasks that may block (waiting for server responses, calling user callbacks, file operations). This
+    * executor is separate from worker pool and creates new threads on demand, so blocked tasks never hold threads needed
+    * for processing network input.
+    *
+    * @return task executor
+    */
+   public Executor getTaskExecutor()
+   {
+      return tasks;
+   }
+
+   /**
+    * Get executor for writing outgoing messages to connections (intended for use by <code>NXCPMessageWriter</code>).
+    * Writes block while peer does not accept data, so this executor is separate from worker pool and creates new threads on
+    * demand; stalled peers never prevent input processing for other connections.
+    *
+    * @return writer executor
+    */
+   public Executor getWriterExecutor()
+   {
+      return writers;
+   }
+
+   /**
+    * Schedule one time task on shared timer. Task should be short, longer processing should be passed to executor.
+    *
+    * @param task task to run
+    * @param delay delay before execution
+    * @param unit time unit for delay
+    * @return scheduled future which can be used for task cancellation
+    */
+   public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit)
+   {
+      return timer.schedule(task, delay, unit);
+   }
+
+   /**
+    * Schedule periodic task on shared timer. Task should be short, longer processing should be passed to executor.
+    *
+    * @param task task to run
+    * @param initialDelay delay before first execution
+    * @param period execution period
+    * @param unit time unit for delay and period
+    * @return scheduled future which can be used for task cancellation
+    */
+   public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit)
+   {
+      return timer.scheduleAtFixedRate(() -> {
+         try
+         {
+            task.run();
+         }
+         catch(Exception e)
+         {
+            logger.error("Unhandled exception in scheduled task", e);
+         }
+      }, initialDelay, period, unit);
+   }
+
+   /**
+    * Get number of registered connections.
+    *
+    * @return number of registered connections
+    */
+   public int getConnectionCount()
+   {
+      return connections.size();
+   }
+
+   /**
+    * Shutdown event loop. All registered connections will be closed.
+    */
+   public void shutdown()
+   {
+      if (shutdown)
+         return;
+      shutdown = true;
+      selector.wakeup();
+      try
+      {
+         selectorThread.join(5000);
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      for(Connection c : connections)
+         c.close(new NXCPException(NXCPException.SESSION_CLOSED));
+      timer.shutdownNow();
+      workers.shutdown();
+      tasks.shutdown();
+      writers.shutdown();
+      try
+      {
+         selector.close();
+      }
+      catch(IOException e)
+      {
+      }
+   }
+
+   /**
+    * Run given operation on selector thread.
+    *
+    * @param operation operation to run
+    */
+   private void runOnSelectorThread(Runnable operation)
+   {
+      pendingOperations.add(operation);
+      selector.wakeup();
+   }
+
+   /**
+    * Selector thread main loop
+    */
+   private void selectorLoop()
+   {
+      logger.debug("Event loop " + name + " started");
+      while(!shutdown)
+      {
+         try
+         {
+            selector.select();
+         }
+         catch(IOException e)
+         {
+            logger.error("Selector error in event loop " + name, e);
+            break;
+         }
+
+         Runnable operation;
+         while((operation = pendingOperations.poll()) != null)
+            operation.run();
+
+         Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+         while(it.hasNext())
+         {
+            SelectionKey key = it.next();
+            it.remove();
+            if (key.isValid() && key.isReadable())
+            {
+               // Stop watching channel until worker process all available input
+               key.interestOps(0);
+               final Connection connection = (Connection)key.attachment();
+               workers.execute(() -> connection.processInput());
+            }
+         }
+      }
+      logger.debug("Event loop " + name + " stopped");
+   }
+
+   /**
+    * Connection registered with event loop
+    */
+   public class Connection
+   {
+      private SocketChannel channel;
+      private NXCPMessageReceiver receiver;
+      private Handler handler;
+      private SelectionKey key = null;
+      private AtomicBoolean closed = new AtomicBoolean(false);
+      private Thread processingThread = null;
+      private int errorCount = 0;
+      private ChannelOutputStream outputStream;
+
+      /**
+       * Create connection object.
+       */
+      private Connection(SocketChannel channel, NXCPMessageReceiver receiver, Handler handler)
+      {
+         this.channel = channel;
+         this.receiver = receiver;
+         this.handler = handler;
+         outputStream = new ChannelOutputStream(channel);
+      }
+
+      /**
+       * Process available input (called on worker thread).
+       */
+      private void processInput()
+      {
+         synchronized(this)
+         {
+            processingThread = Thread.currentThread();
+         }
+
+         boolean resubmit = false;
+         try
+         {
+            int messages = 0;
+            while(!closed.get())
+            {
+               NXCPMessage msg;
+               try
+               {
+                  msg = receiver.nextMessage(handler.getEncryptionContext());
+               }
+               catch(NXCPException e)
+               {
+                  logger.debug("Receiver error", e);
+                  if (++errorCount > MAX_ERROR_COUNT)
+                     close(new NXCPException(NXCPException.FATAL_PROTOCOL_ERROR));
+                  continue;
+               }
+
+               if (msg != null)
+               {
+                  errorCount = 0;
+                  try
+                  {
+                     handler.onMessage(msg);
+                  }
+                  catch(IOException e)
+                  {
+                     logger.debug("Receiver error", e);
+                     close(e);
+                     break;
+                  }
+                  catch(Exception e)
+                  {
+                     logger.debug("Receiver error", e);
+                     if (++errorCount > MAX_ERROR_COUNT)
+                        close(new NXCPException(NXCPException.FATAL_PROTOCOL_ERROR));
+                  }
+
+                  if (++messages >= MAX_MESSAGES_PER_PASS)
+                  {
+                     // Give other connections a chance; messages may remain in buffer, so continue on worker directly
+                     resubmit = true;
+                     break;
+                  }
+                  continue;
+               }
+
+               int bytes = receiver.readFrom(channel);
+               if (bytes == -1)
+               {
+                  close(new NXCPException(NXCPException.SESSION_CLOSED));
+                  break;
+               }
+               if (bytes == 0)
+                  break;
+            }
+         }
+         catch(IOException e)
+         {
+            logger.debug("Receiver error", e);
+            close(e);
+         }
+         catch(Exception e)
+         {
+            logger.error("Unhandled exception in connection input processing", e);
+            close(e);
+         }
+         finally
+         {
+            synchronized(this)
+            {
+               processingThread = null;
+               notifyAll();
+            }
+         }
+
+         if (closed.get())
+            return;
+
+         if (resubmit)
+         {
+            workers.execute(() -> processInput());
+         }
+         else
+         {
+            runOnSelectorThread(() -> {
+               if ((key != null) && key.isValid())
+                  key.interestOps(SelectionKey.OP_READ);
+            });
+         }
+      }
+
+      /**
+       * Get output stream for writing to this connection. Writes block calling thread until all data is written, so they
+       * should not be done on worker threads.
+       *
+       * @return output stream
+       */
+      public OutputStream getOutputStream()
+      {
+         return outputStream;
+      }
+
+      /**
+       * Get message receiver for this connection.
+       *
+       * @return message receiver
+       */
+      public NXCPMessageReceiver getReceiver()
+      {
+         return receiver;
+      }
+
+      /**
+       * Check if connection is closed.
+       *
+       * @return true if connection is closed
+       */
+      public boolean isClosed()
+      {
+         return closed.get();
+      }
+
+      /**
+       * Close connection. Waits for input processing running on other thread to complete, then calls handler's
+       * <code>onClose</code> method.
+       *
+       * @param cause close cause (null for local close)
+       */
+      public void close(Throwable cause)
+      {
+         if (!closed.compareAndSet(false, true))
+            return;
+
+         connections.remove(this);
+         if (key != null)
+            key.cancel();
+         try
+         {
+            channel.close();
+         }
+         catch(IOException e)
+         {
+         }
+         outputStream.closeSelector();
+         selector.wakeup();
+
+         synchronized(this)
+         {
+            while((processingThread != null) && (processingThread != Thread.currentThread()))
+            {
+               try
+               {
+                  wait();
+               }
+               catch(InterruptedException e)
+               {
+                  Thread.currentThread().interrupt();
+                  break;
+               }
+            }
+         }
+
+         try
+         {
+            handler.onClose(cause);
+         }
+         catch(Exception e)
+         {
+            logger.error("Unhandled exception in connection close handler", e);
+         }
+      }
+   }
+
+   /**
+    * Output stream for non-blocking socket channel. Calling thread waits on private selector when socket send buffer is full.
+    */
+   private static class ChannelOutputStream extends OutputStream
+   {
+      private SocketChannel channel;
+      private Selector writeSelector = null;
+
+      ChannelOutputStream(SocketChannel channel)
+      {
+         this.channel = channel;
+      }
+
+      /**
+       * @see java.io.OutputStream#write(int)
+       */
+      @Override
+      public void write(int b) throws IOException
+      {
+         write(new byte[] { (byte)b }, 0, 1);
+      }
+
+      /**
+       * @see java.io.OutputStream#write(byte[], int, int)
+       */
+      @Override
+      public synchronized void write(byte[] b, int off, int len) throws IOException
+      {
+         final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+         while(buffer.hasRemaining())
+         {
+            if (channel.write(buffer) == 0)
+            {
+               try
+               {
+                  if (writeSelector == null)
+                  {
+                     writeSelector = Selector.open();
+                     channel.register(writeSelector, SelectionKey.OP_WRITE);
+                  }
+                  writeSelector.select(1000);
+                  writeSelector.selectedKeys().clear();
+               }
+               catch(ClosedSelectorException e)
+               {
+                  throw new IOException("Connection closed", e);
+               }
+            }
+         }
+      }
+
+      /**
+       * Close private selector
+       */
+      void closeSelector()
+      {
+         Selector s = writeSelector;
+         if (s != null)
+         {
+            try
+            {
+               s.close();
+            }
+            catch(IOException e)
+            {
+            }
+         }
+      }
+   }
+
+   /**
+    * Thread factory for event loop threads
+    */
+   private static class DaemonThreadFactory implements ThreadFactory
+   {
+      private String prefix;
+      private AtomicInteger count = new AtomicInteger(0);
+
+      DaemonThreadFactory(String prefix)
+      {
+         this.prefix = prefix;
+      }
+
+      /**
+       * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+       */
+      @Override
+      public Thread newThread(Runnable r)
+      {
+         Thread t = new Thread(r, prefix + " " + count.incrementAndGet());
+         t.setDaemon(true);
+         return t;
+      }
+   }
+}
@@ -0,0 +1,178 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+/**
+ * Index of encoded message fields - maps field ID to field offset within message buffer. Uses open addressing over
+ * primitive arrays to avoid boxing of field IDs.
+ */
+final class NXCPFieldIndex
+{
+   private long[] ids;
+   private int[] offsets;
+   private int[] table; // hash table of (entry index + 1), 0 means empty slot
+   private int mask;
+   private int size = 0;
+
+   /**
+    * Create index for given number of fields.
+    *
+    * @param capacity expected number of fields
+    */
+   NXCPFieldIndex(int capacity)
+   {
+      ids = new long[Math.max(capacity, 1)];
+      offsets = new int[ids.length];
+      int tableSize = 4;
+      while(tableSize < ids.length * 2)
+         tableSize <<= 1;
+      table = new int[tableSize];
+      mask = tableSize - 1;
+   }
+
+   /**
+    * Calculate hash table slot for field ID.
+    *
+    * @param id field ID
+    * @return initial slot
+    */
+   private int slot(long id)
+   {
+      long h = id * 0x9E3779B97F4A7C15L;
+      return (int)(h ^ (h >>> 32)) & mask;
+   }
+
+   /**
+    * Add field to index. If field with same ID already exists its offset is replaced.
+    *
+    * @param id field ID
+    * @param offset field offset
+    */
+   void put(long id, int offset)
+   {
+      int s = slot(id);
+      while(table[s] != 0)
+      {
+         int e = table[s] - 1;
+         if (ids[e] == id)
+         {
+            offsets[e] = offset;
+            return;
+         }
+         s = (s + 1) & mask;
+      }
+
+      if (size == ids.length)
+      {
+         grow();
+         s = slot(id);
+         while(table[s] != 0)
+            s = (s + 1) & mask;
+      }
+      ids[size] = id;
+      offsets[size] = offset;
+      size++;
+      table[s] = size;
+   }
+
+   /**
+    * Grow index storage and rebuild hash table.
+    */
+   private void grow()
+   {
+      long[] newIds = new long[ids.length * 2];
+      int[] newOffsets = new int[ids.length * 2];
+      System.arraycopy(ids, 0, newIds, 0, size);
+      System.arraycopy(offsets, 0, newOffsets, 0, size);
+      ids = newIds;
+      offsets = newOffsets;
+
+      table = new int[table.length * 2];
+      mask = table.length - 1;
+      for(int e = 0; e < size; e++)
+      {
+         int s = slot(ids[e]);
+         while(table[s] != 0)
+            s = (s + 1) & mask;
+         table[s] = e + 1;
+      }
+   }
+
+   /**
+    * Get offset of field with given ID.
+    *
+    * @param id field ID
+    * @return field offset or -1 if field is not in index
+    */
+   int get(long id)
+   {
+      int s = slot(id);
+      while(table[s] != 0)
+      {
+         int e = table[s] - 1;
+         if (ids[e] == id)
+            return offsets[e];
+         s = (s + 1) & mask;
+      }
+      return -1;
+   }
+
+   /**
+    * Shift all field offsets (used when fields are moved to another buffer).
+    *
+    * @param delta value to subtract from each offset
+    */
+   void rebase(int delta)
+   {
+      for(int i = 0; i < size; i++)
+         offsets[i] -= delta;
+   }
+
+   /**
+    * Get number of indexed fields.
+    *
+    * @return number of indexed fields
+    */
+   int size()
+   {
+      return size;
+   }
+
+   /**
+    * Get field ID for entry with given index (entries are kept in insertion order).
+    *
+    * @param index entry index
+    * @return field ID
+    */
+   long idAt(int index)
+   {
+      return ids[index];
+   }
+
+   /**
+    * Get field offset for entry with given index (entries are kept in insertion order).
+    *
+    * @param index entry index
+    * @return field offset
+    */
+   int offsetAt(int index)
+   {
+      return offsets[index];
+   }
+}
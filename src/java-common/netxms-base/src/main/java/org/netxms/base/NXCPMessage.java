@@ -23,6 +23,7 @@
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -62,6 +63,8 @@
 	private int messageFlags;
 	private long messageId;
 	private Map<Long, NXCPMessageField> fields = new HashMap<Long, NXCPMessageField>(0);
+	private ByteBuffer fieldBuffer = null;   // encoded fields for lazy decoding
+	private NXCPFieldIndex fieldIndex = null;
 	private long timestamp;
 	private byte[] binaryData = null;
 	private long controlData = 0;
@@ -101,130 +104,230 @@ public NXCPMessage(final int msgCode, final long msgId)
 	 */
 	public NXCPMessage(final byte[] nxcpMessage, EncryptionContext ectx) throws IOException, NXCPException
 	{
-		final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(nxcpMessage);
-		final NXCPDataInputStream inputStream = new NXCPDataInputStream(byteArrayInputStream);
+	   this(nxcpMessage, ectx, false);
+	}
 
-		messageCode = inputStream.readUnsignedShort();
-		if (messageCode == NXCPCodes.CMD_ENCRYPTED_MESSAGE)
-		{
-			if (ectx == null)
-			{
-			   inputStream.close();
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR);
-			}
-			
-			int padding = inputStream.readByte();
-			inputStream.skipBytes(1);
-			int msgLen = inputStream.readInt();
-			byte[] payload;
-			try
-			{
-				payload = ectx.decryptMessage(inputStream, msgLen - padding - ENCRYPTION_HEADER_SIZE);
-			}
-			catch(GeneralSecurityException e)
-			{		   
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR, e);
-			}
+   /**
+    * Create NXCPMessage from binary NXCP message. In lazy decoding mode only index of field offsets is built, and field values
+    * are decoded directly from message buffer when accessed. Message keeps reference to provided byte array in that mode, so
+    * caller should not modify it after this call.
+    *
+    * @param nxcpMessage NXCP message
+    * @param ectx encryption context
+    * @param lazyDecoding true to decode fields on access
+    * @throws IOException if internal byte stream error occurs (normally should not happen)
+    * @throws NXCPException if message cannot be parsed
+    */
+   public NXCPMessage(final byte[] nxcpMessage, EncryptionContext ectx, boolean lazyDecoding) throws IOException, NXCPException
+   {
+      this(nxcpMessage, 0, nxcpMessage.length, ectx, lazyDecoding);
+   }
 
-			final ByteArrayInputStream payloadByteArrayInputStream = new ByteArrayInputStream(payload);
-			final NXCPDataInputStream payloadInputStream = new NXCPDataInputStream(payloadByteArrayInputStream);
-			
-			CRC32 crc32 = new CRC32();
-			crc32.update(payload, 8, payload.length - 8);
-			if (payloadInputStream.readUnsignedInt() != crc32.getValue())
-			{
-			   payloadInputStream.close();
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR);
-			}
-			
-			payloadInputStream.skip(4);
-			messageCode = payloadInputStream.readUnsignedShort();
-			createFromStream(payloadInputStream);
-		}
-		else
-		{
-			createFromStream(inputStream);
-		}
-	}
+   /**
+    * Create NXCPMessage from binary NXCP message located at given offset within byte array. Allows decoding messages
+    * directly from receive buffer without copying them out first. In lazy decoding mode message keeps reference to provided
+    * byte array, so caller should not modify it after this call.
+    *
+    * @param buffer byte array containing NXCP message
+    * @param offset message offset within byte array
+    * @param length message length
+    * @param ectx encryption context
+    * @param lazyDecoding true to decode fields on access
+    * @throws IOException if internal byte stream error occurs (normally should not happen)
+    * @throws NXCPException if message cannot be parsed
+    */
+   public NXCPMessage(final byte[] buffer, int offset, int length, EncryptionContext ectx, boolean lazyDecoding) throws IOException, NXCPException
+   {
+      byte[] data = buffer;
+      int start = offset;
+      int end = offset + length;
 
-	/**
-	 * Create NXCPMessage from prepared input byte stream
-	 * @param inputStream
-	 * @param byteArrayInputStream
-	 * @throws IOException
-	 */
-	private void createFromStream(NXCPDataInputStream inputStream) throws IOException
-	{
-		messageFlags = inputStream.readUnsignedShort();
-		inputStream.skipBytes(4);	// Message size
-		messageId = (long)inputStream.readInt();
-		
-		if ((messageFlags & MF_BINARY) == MF_BINARY)
-		{
-			final int size = inputStream.readInt();
-			binaryData = new byte[size];
+      messageCode = ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+      if (messageCode == NXCPCodes.CMD_ENCRYPTED_MESSAGE)
+      {
+         if (ectx == null)
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR);
+
+         final ByteBuffer header = ByteBuffer.wrap(buffer);
+         int padding = header.get(offset + 2);
+         int msgLen = header.getInt(offset + 4);
+         final NXCPDataInputStream inputStream =
+               new NXCPDataInputStream(new ByteArrayInputStream(buffer, offset + ENCRYPTION_HEADER_SIZE, length - ENCRYPTION_HEADER_SIZE));
+         try
+         {
+            data = ectx.decryptMessage(inputStream, msgLen - padding - ENCRYPTION_HEADER_SIZE);
+         }
+         catch(GeneralSecurityException e)
+         {
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR, e);
+         }
+         finally
+         {
+            inputStream.close();
+         }
+
+         if (data.length < 8 + HEADER_SIZE)
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR);
+
+         CRC32 crc32 = new CRC32();
+         crc32.update(data, 8, data.length - 8);
+         if (((long)ByteBuffer.wrap(data).getInt(0) & 0xFFFFFFFFL) != crc32.getValue())
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR);
+
+         start = 8;
+         end = data.length;
+         messageCode = ((data[start] & 0xFF) << 8) | (data[start + 1] & 0xFF);
+      }
+
+      try
+      {
+         decode(ByteBuffer.wrap(data, 0, end), start, lazyDecoding);
+      }
+      catch(IndexOutOfBoundsException e)
+      {
+         throw new IOException("Malformed NXCP message", e);
+      }
+   }
+
+   /**
+    * Decode message header and fields from buffer.
+    *
+    * @param buffer buffer containing message
+    * @param start message header offset within buffer
+    * @param lazyDecoding true to build field index only
+    * @throws IOException if message cannot be decoded
+    */
+   private void decode(ByteBuffer buffer, int start, boolean lazyDecoding) throws IOException
+   {
+      messageFlags = buffer.getShort(start + 2) & 0xFFFF;
+      messageId = (long)buffer.getInt(start + 8);
+
+      if ((messageFlags & MF_BINARY) == MF_BINARY)
+      {
+         final int size = buffer.getInt(start + 12);
          if (((messageFlags & MF_COMPRESSED) == MF_COMPRESSED) && ((messageFlags & MF_STREAM) == 0))
          {
-            // Compressed message
-            inputStream.skip(4);  // skip original message length
-            inputStream = new NXCPDataInputStream(new InflaterInputStream(inputStream));
+            // Compressed message, skip original message length
+            binaryData = inflate(buffer.array(), start + HEADER_SIZE + 4, buffer.limit() - start - HEADER_SIZE - 4, size);
+            if (binaryData.length < size)
+               throw new IOException("Malformed compressed NXCP message");
+            messageFlags &= ~MF_COMPRESSED;
          }
-			inputStream.readFully(binaryData);
-		}
-		else if ((messageFlags & MF_CONTROL) == MF_CONTROL)
-		{
-			controlData = inputStream.readUnsignedInt();
-		}
-		else
-		{
-         final int numVars = inputStream.readInt();
-		   if ((messageFlags & MF_COMPRESSED) == MF_COMPRESSED)
-		   {
-		      // Compressed message
-		      inputStream.skip(4);  // skip original message length
-		      inputStream = new NXCPDataInputStream(new InflaterInputStream(inputStream));
-		   }
-		   
-			for(int i = 0; i < numVars; i++)
-			{
-				// Read first 8 bytes - any DF (data field) is at least 8 bytes long
-				byte[] df = new byte[32];
-				inputStream.readFully(df, 0, 8);
-	
-				switch(df[4])
-				{
-					case NXCPMessageField.TYPE_INT16:
-						break;
-					case NXCPMessageField.TYPE_FLOAT:		// all these types requires additional 8 bytes
-					case NXCPMessageField.TYPE_INTEGER:
-					case NXCPMessageField.TYPE_INT64:
-						inputStream.readFully(df, 8, 8);
-						break;
-					case NXCPMessageField.TYPE_STRING:		// all these types has 4-byte length field followed by actual content
-               case NXCPMessageField.TYPE_UTF8_STRING:
-					case NXCPMessageField.TYPE_BINARY:
-						int size = inputStream.readInt();
-						df = Arrays.copyOf(df, size + 12);
-						intToBytes(size, df, 8);
-						inputStream.readFully(df, 12, size);
-
-						// Each df aligned to 8-bytes boundary
-						final int rem = (size + 12) % 8;
-						if (rem != 0)
-						{
-							inputStream.skipBytes(8 - rem);
-						}
-						break;
-					case NXCPMessageField.TYPE_INETADDR:    // address always 32 byte long
-					   inputStream.readFully(df, 8, 24);
-					   break;
-				}
-	
-				final NXCPMessageField variable = new NXCPMessageField(df);
-				fields.put(variable.getId(), variable);
-			}
-		}
-	}
+         else
+         {
+            binaryData = Arrays.copyOfRange(buffer.array(), start + HEADER_SIZE, start + HEADER_SIZE + size);
+         }
+      }
+      else if ((messageFlags & MF_CONTROL) == MF_CONTROL)
+      {
+         controlData = (long)buffer.getInt(start + 12) & 0xFFFFFFFFL;
+      }
+      else
+      {
+         final int numFields = buffer.getInt(start + 12);
+         int offset = start + HEADER_SIZE;
+         if ((messageFlags & MF_COMPRESSED) == MF_COMPRESSED)
+         {
+            // Original message length includes header
+            final int originalSize = buffer.getInt(start + HEADER_SIZE);
+            buffer = ByteBuffer.wrap(inflate(buffer.array(), start + HEADER_SIZE + 4, buffer.limit() - start - HEADER_SIZE - 4, originalSize - HEADER_SIZE));
+            offset = 0;
+            messageFlags &= ~MF_COMPRESSED;
+         }
+
+         if (lazyDecoding)
+         {
+            fieldIndex = new NXCPFieldIndex(numFields);
+            fieldBuffer = buffer;
+         }
+         else
+         {
+            fields = new HashMap<Long, NXCPMessageField>(numFields * 2);
+         }
+
+         for(int i = 0; i < numFields; i++)
+         {
+            if (offset + 8 > buffer.limit())
+               throw new IOException("Malformed NXCP message");
+            if (lazyDecoding)
+            {
+               fieldIndex.put((long)buffer.getInt(offset) & 0xFFFFFFFFL, offset);
+            }
+            else
+            {
+               final NXCPMessageField field = new NXCPMessageField(buffer, offset);
+               fields.put(field.getId(), field);
+            }
+            offset += NXCPMessageField.decodeSize(buffer, offset);
+         }
+         if (offset > buffer.limit())
+            throw new IOException("Malformed NXCP message");
+      }
+   }
+
+   /**
+    * Make sure that lazy decoded message does not reference given buffer. Used by message receiver before reusing receive
+    * buffer. If fields are decoded from that buffer, encoded fields (but not message header) are copied into new array.
+    *
+    * @param buffer buffer message was decoded from
+    */
+   void detachBuffer(byte[] buffer)
+   {
+      if ((fieldBuffer == null) || (fieldBuffer.array() != buffer))
+         return;
+
+      if (fieldIndex.size() == 0)
+      {
+         fieldBuffer = null;
+         return;
+      }
+
+      int start = fieldBuffer.limit();
+      for(int i = 0; i < fieldIndex.size(); i++)
+         start = Math.min(start, fieldIndex.offsetAt(i));
+      fieldBuffer = ByteBuffer.wrap(Arrays.copyOfRange(buffer, start, fieldBuffer.limit()));
+      fieldIndex.rebase(start);
+   }
+
+   /**
+    * Inflate compressed data.
+    *
+    * @param data source buffer
+    * @param offset offset of compressed data within source buffer
+    * @param length length of compressed data
+    * @param expectedSize expected size of uncompressed data
+    * @return uncompressed data
+    * @throws IOException on decompression error
+    */
+   private static byte[] inflate(byte[] data, int offset, int length, int expectedSize) throws IOException
+   {
+      final InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data, offset, length));
+      try
+      {
+         byte[] output = new byte[Math.max(expectedSize, 64)];
+         int size = 0;
+         while(true)
+         {
+            if (size == output.length)
+            {
+               int b = in.read();
+               if (b == -1)
+                  break;
+               output = Arrays.copyOf(output, output.length * 2);
+               output[size++] = (byte)b;
+            }
+            int bytes = in.read(output, size, output.length - size);
+            if (bytes <= 0)
+               break;
+            size += bytes;
+         }
+         return (size == output.length) ? output : Arrays.copyOf(output, size);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
 
 	/**
 	 * Encode 32 bit integer into byte array (in network byte order)
@@ -310,8 +413,56 @@ public void setTimestamp(final long timestamp)
 	 */
 	public NXCPMessageField findField(final long fieldId)
 	{
-		return fields.get(fieldId);
+	   final NXCPMessageField field = fields.get(fieldId);
+	   if ((field != null) || (fieldIndex == null))
+	      return field;
+
+	   final int offset = fieldIndex.get(fieldId);
+	   if (offset == -1)
+	      return null;
+	   try
+	   {
+	      return new NXCPMessageField(fieldBuffer, offset);
+	   }
+	   catch(IOException e)
+	   {
+	      return null;
+	   }
 	}
+
+   /**
+    * Find encoded field in message buffer. Fields explicitly set after message was received take precedence over encoded ones.
+    *
+    * @param fieldId field ID
+    * @return field offset within field buffer or -1 if field is not available in encoded form
+    */
+   private int findEncodedField(final long fieldId)
+   {
+      if ((fieldIndex == null) || fields.containsKey(fieldId))
+         return -1;
+      return fieldIndex.get(fieldId);
+   }
+
+   /**
+    * Get all fields in this message, decoding fields from message buffer if needed.
+    *
+    * @return all message fields
+    */
+   private Collection<NXCPMessageField> getAllFields()
+   {
+      if (fieldIndex == null)
+         return fields.values();
+
+      final Map<Long, NXCPMessageField> allFields = new LinkedHashMap<Long, NXCPMessageField>(fieldIndex.size() * 2);
+      for(int i = 0; i < fieldIndex.size(); i++)
+      {
+         final NXCPMessageField f = findField(fieldIndex.idAt(i));
+         if (f != null)
+            allFields.put(f.getId(), f);
+      }
+      allFields.putAll(fields);
+      return allFields.values();
+   }
 	
 	/**
 	 * Check if field with given ID present in the message
@@ -321,7 +472,7 @@ public NXCPMessageField findField(final long fieldId)
 	 */
 	public boolean isFieldPresent(final long fieldId)
 	{
-	   return fields.containsKey(fieldId);
+	   return fields.containsKey(fieldId) || ((fieldIndex != null) && (fieldIndex.get(fieldId) != -1));
 	}
 
 	/**
@@ -524,6 +675,10 @@ public void setField(long fieldId, MacAddress value)
 	 */
 	public byte[] getFieldAsBinary(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && (NXCPMessageField.decodeType(fieldBuffer, offset) == NXCPMessageField.TYPE_BINARY))
+	      return NXCPMessageField.decodeBinary(fieldBuffer, offset);
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? var.getAsBinary() : null;
 	}
@@ -536,6 +691,14 @@ public byte[] getFieldAsBinary(final long fieldId)
 	 */
 	public String getFieldAsString(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if (offset != -1)
+	   {
+	      final String value = NXCPMessageField.decodeString(fieldBuffer, offset);
+	      if (value != null)
+	         return value;
+	   }
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? var.getAsString() : "";
 	}
@@ -548,6 +711,10 @@ public String getFieldAsString(final long fieldId)
 	 */
 	public Double getFieldAsDouble(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+	      return NXCPMessageField.decodeReal(fieldBuffer, offset);
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? var.getAsReal() : 0;
 	}
@@ -560,6 +727,10 @@ public Double getFieldAsDouble(final long fieldId)
     */
    public short getFieldAsInt16(final long fieldId)
    {
+      final int offset = findEncodedField(fieldId);
+      if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+         return (short)NXCPMessageField.decodeInteger(fieldBuffer, offset);
+
       final NXCPMessageField var = findField(fieldId);
       return (var != null) ? var.getAsInteger().shortValue() : 0;
    }
@@ -572,6 +743,10 @@ public short getFieldAsInt16(final long fieldId)
 	 */
 	public int getFieldAsInt32(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+	      return (int)NXCPMessageField.decodeInteger(fieldBuffer, offset);
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? var.getAsInteger().intValue() : 0;
 	}
@@ -584,6 +759,10 @@ public int getFieldAsInt32(final long fieldId)
 	 */
 	public long getFieldAsInt64(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+	      return NXCPMessageField.decodeInteger(fieldBuffer, offset);
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? var.getAsInteger() : 0;
 	}
@@ -668,6 +847,10 @@ public Long[] getFieldAsUInt32ArrayEx(final long fieldId)
 	 */
 	public boolean getFieldAsBoolean(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+	      return NXCPMessageField.decodeInteger(fieldBuffer, offset) != 0;
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? (var.getAsInteger() != 0) : false;
 	}
@@ -680,6 +863,10 @@ public boolean getFieldAsBoolean(final long fieldId)
 	 */
 	public Date getFieldAsDate(final long fieldId)
 	{
+	   final int offset = findEncodedField(fieldId);
+	   if ((offset != -1) && NXCPMessageField.isNumeric(fieldBuffer, offset))
+	      return new Date(NXCPMessageField.decodeInteger(fieldBuffer, offset) * 1000);
+
 		final NXCPMessageField var = findField(fieldId);
 		return (var != null) ? new Date(var.getAsInteger() * 1000) : null;
 	}
@@ -744,7 +931,8 @@ else if ((messageFlags & MF_BINARY) == MF_BINARY)
 		else
 		{
 			// Create byte array with all variables
-			for(final NXCPMessageField nxcpVariable: fields.values())
+			final Collection<NXCPMessageField> allFields = getAllFields();
+			for(final NXCPMessageField nxcpVariable : allFields)
 			{
 				final byte[] field = nxcpVariable.createNXCPDataField();
 				outputStream.write(field);
@@ -782,7 +970,7 @@ else if ((messageFlags & MF_BINARY) == MF_BINARY)
 			outputStream.writeShort(messageFlags | (compressed ? MF_COMPRESSED : 0));
 			outputStream.writeInt(payload.length + HEADER_SIZE);	   // Size
 			outputStream.writeInt((int)messageId);
-			outputStream.writeInt(fields.size());
+			outputStream.writeInt(allFields.size());
 		   outputStream.write(payload);
 		}
 
@@ -1054,6 +1242,6 @@ public Map<String, String> getStringMapFromFields(long baseId, long countId)
 	@Override
 	public String toString()
 	{
-		return "NXCPMessage [code=0x" + Integer.toHexString(messageCode) + ", flags=0x" + Integer.toHexString(messageFlags) + ", id=" + messageId + ", fields=" + fields + "]";
+		return "NXCPMessage [code=0x" + Integer.toHexString(messageCode) + ", flags=0x" + Integer.toHexString(messageFlags) + ", id=" + messageId + ", fields=" + getAllFields() + "]";
 	}
 }
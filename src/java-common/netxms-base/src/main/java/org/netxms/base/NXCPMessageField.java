@@ -25,6 +25,8 @@
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.UUID;
@@ -58,31 +60,53 @@
 	private InetAddressEx inetAddressValue;
 
 	/**
-	 * Set string value and numeric values if possible
+	 * Set string value. Numeric values will be parsed from string on first access.
 	 * 
 	 * @param value New string value
 	 */
 	private void setStringValue(String value)
 	{
 		stringValue = (value != null) ? value : "";
-		try
-		{
-			integerValue = Long.parseLong(stringValue);
-		}
-		catch (NumberFormatException e)
-		{
-			integerValue = 0L;
-		}
-		try
-		{
-			realValue = Double.parseDouble(stringValue);
-		}
-		catch (NumberFormatException e)
-		{
-			realValue = (double)0;
-		}
+		integerValue = null;
+		realValue = null;
 	}
 
+   /**
+    * Parse string as long integer.
+    *
+    * @param s string to parse
+    * @return parsed value or 0 if string is not a valid integer number
+    */
+   private static long parseLong(String s)
+   {
+      try
+      {
+         return Long.parseLong(s);
+      }
+      catch(NumberFormatException e)
+      {
+         return 0L;
+      }
+   }
+
+   /**
+    * Parse string as floating point number.
+    *
+    * @param s string to parse
+    * @return parsed value or 0 if string is not a valid floating point number
+    */
+   private static double parseDouble(String s)
+   {
+      try
+      {
+         return Double.parseDouble(s);
+      }
+      catch(NumberFormatException e)
+      {
+         return 0;
+      }
+   }
+
 	/**
     * Create numeric or string field (actual type determined by fieldType parameter)
     *
@@ -306,70 +330,215 @@ public NXCPMessageField(final long fieldId, final UUID value)
     */
 	public NXCPMessageField(final byte[] nxcpDataField) throws IOException
 	{
-		NXCPDataInputStream in = new NXCPDataInputStream(nxcpDataField);
+	   this(ByteBuffer.wrap(nxcpDataField), 0);
+	}
 
-		id = (long)in.readUnsignedInt();
-		type = in.readUnsignedByte();
-		int flags = in.readUnsignedByte();
-		if (type == TYPE_INT16)
-		{
-			integerValue = (long)(((flags & SIGNED) != 0) ? in.readShort() : in.readUnsignedShort());
-			realValue = integerValue.doubleValue();
-			stringValue = integerValue.toString();
-		}
-		else
-		{
-			in.skipBytes(2);
-			switch(type)
-			{
-				case TYPE_INTEGER:
-					integerValue = ((flags & SIGNED) != 0) ? in.readInt() : in.readUnsignedInt();
-					realValue = integerValue.doubleValue();
-					stringValue = integerValue.toString();
-					break;
-				case TYPE_INT64:
-					integerValue = in.readLong();
-					realValue = integerValue.doubleValue();
-					stringValue = integerValue.toString();
-					break;
-				case TYPE_FLOAT:
-					realValue = in.readDouble();
-					integerValue = realValue.longValue();
-					stringValue = realValue.toString();
-					break;
-				case TYPE_STRING:
-					int len = in.readInt() / 2;
-					StringBuilder sb = new StringBuilder(len);
-					while (len > 0)
-					{
-						sb.append(in.readChar());
-						len--;
-					}
-					setStringValue(sb.toString());
-					break;
+   /**
+    * Create field object from NXCP message data field located at given offset within buffer. Buffer content is copied where
+    * needed, so buffer can be reused after this call.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @throws java.io.IOException if field data is outside of buffer
+    */
+   public NXCPMessageField(final ByteBuffer buffer, final int offset) throws IOException
+   {
+      try
+      {
+         id = (long)buffer.getInt(offset) & 0xFFFFFFFFL;
+         type = buffer.get(offset + 4) & 0xFF;
+         switch(type)
+         {
+            case TYPE_INT16:
+            case TYPE_INTEGER:
+            case TYPE_INT64:
+               integerValue = decodeInteger(buffer, offset);
+               break;
+            case TYPE_FLOAT:
+               realValue = buffer.getDouble(offset + 8);
+               break;
+            case TYPE_STRING:
+               setStringValue(decodeString(buffer, offset));
+               break;
             case TYPE_UTF8_STRING:
-               utf8StringValue = new byte[in.readInt()];
-               in.readFully(utf8StringValue);
-               setStringValue(new String(utf8StringValue, "UTF-8"));
+               utf8StringValue = new byte[buffer.getInt(offset + 8)];
+               readBytes(buffer, offset + 12, utf8StringValue);
+               setStringValue(new String(utf8StringValue, StandardCharsets.UTF_8));
                break;
-				case TYPE_BINARY:
-					binaryValue = new byte[in.readInt()];
-					in.readFully(binaryValue);
-					break;
-				case TYPE_INETADDR:
-				   binaryValue = new byte[16];
-				   in.readFully(binaryValue);
-				   int family = in.readUnsignedByte();
-				   int bits = in.readUnsignedByte();
-				   in.skipBytes(6);
-				   inetAddressValue = (family == 2) ? new InetAddressEx() :
-				      new InetAddressEx(InetAddress.getByAddress((family == 0) ? Arrays.copyOf(binaryValue, 4) : binaryValue), bits);
-				   stringValue = inetAddressValue.toString();
-				   break;
-			}
-		}
-		in.close();
-	}
+            case TYPE_BINARY:
+               binaryValue = new byte[buffer.getInt(offset + 8)];
+               readBytes(buffer, offset + 12, binaryValue);
+               break;
+            case TYPE_INETADDR:
+               binaryValue = new byte[16];
+               readBytes(buffer, offset + 8, binaryValue);
+               int family = buffer.get(offset + 24) & 0xFF;
+               int bits = buffer.get(offset + 25) & 0xFF;
+               inetAddressValue = (family == 2) ? new InetAddressEx() :
+                  new InetAddressEx(InetAddress.getByAddress((family == 0) ? Arrays.copyOf(binaryValue, 4) : binaryValue), bits);
+               stringValue = inetAddressValue.toString();
+               break;
+         }
+      }
+      catch(IndexOutOfBoundsException e)
+      {
+         throw new IOException("Invalid NXCP message field", e);
+      }
+   }
+
+   /**
+    * Read bytes from buffer at given position without changing buffer state.
+    *
+    * @param buffer source buffer
+    * @param offset offset within buffer
+    * @param data destination array
+    */
+   private static void readBytes(ByteBuffer buffer, int offset, byte[] data)
+   {
+      if (buffer.hasArray())
+      {
+         System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, data, 0, data.length);
+      }
+      else
+      {
+         ByteBuffer b = buffer.duplicate();
+         b.position(offset);
+         b.get(data);
+      }
+   }
+
+   /**
+    * Get type of encoded field at given offset.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return field type
+    */
+   static int decodeType(ByteBuffer buffer, int offset)
+   {
+      return buffer.get(offset + 4) & 0xFF;
+   }
+
+   /**
+    * Get size of encoded field at given offset (including alignment padding).
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return encoded field size in bytes
+    */
+   static int decodeSize(ByteBuffer buffer, int offset)
+   {
+      switch(buffer.get(offset + 4) & 0xFF)
+      {
+         case TYPE_FLOAT:
+         case TYPE_INTEGER:
+         case TYPE_INT64:
+            return 16;
+         case TYPE_STRING:
+         case TYPE_UTF8_STRING:
+         case TYPE_BINARY:
+            return (buffer.getInt(offset + 8) + 12 + 7) & ~7;
+         case TYPE_INETADDR:
+            return 32;
+         default:
+            return 8;
+      }
+   }
+
+   /**
+    * Check if encoded field at given offset has numeric type.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return true if field has numeric type
+    */
+   static boolean isNumeric(ByteBuffer buffer, int offset)
+   {
+      int type = buffer.get(offset + 4) & 0xFF;
+      return (type == TYPE_INT16) || (type == TYPE_INTEGER) || (type == TYPE_INT64) || (type == TYPE_FLOAT);
+   }
+
+   /**
+    * Decode value of encoded numeric field at given offset as long integer. Caller should check that field is numeric.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return field value as long integer
+    */
+   static long decodeInteger(ByteBuffer buffer, int offset)
+   {
+      boolean signed = (buffer.get(offset + 5) & SIGNED) != 0;
+      switch(buffer.get(offset + 4) & 0xFF)
+      {
+         case TYPE_INT16:
+            return signed ? buffer.getShort(offset + 6) : (buffer.getShort(offset + 6) & 0xFFFF);
+         case TYPE_INTEGER:
+            return signed ? buffer.getInt(offset + 8) : ((long)buffer.getInt(offset + 8) & 0xFFFFFFFFL);
+         case TYPE_INT64:
+            return buffer.getLong(offset + 8);
+         case TYPE_FLOAT:
+            return (long)buffer.getDouble(offset + 8);
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Decode value of encoded numeric field at given offset as floating point number. Caller should check that field is numeric.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return field value as floating point number
+    */
+   static double decodeReal(ByteBuffer buffer, int offset)
+   {
+      if ((buffer.get(offset + 4) & 0xFF) == TYPE_FLOAT)
+         return buffer.getDouble(offset + 8);
+      return (double)decodeInteger(buffer, offset);
+   }
+
+   /**
+    * Decode value of encoded string field (UCS-2 or UTF-8) at given offset.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return field value as string or null if field is not a string
+    */
+   static String decodeString(ByteBuffer buffer, int offset)
+   {
+      int type = buffer.get(offset + 4) & 0xFF;
+      if ((type != TYPE_UTF8_STRING) && (type != TYPE_STRING))
+         return null;
+      int length = buffer.getInt(offset + 8);
+      if (type == TYPE_UTF8_STRING)
+      {
+         if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + offset + 12, length, StandardCharsets.UTF_8);
+         byte[] bytes = new byte[length];
+         readBytes(buffer, offset + 12, bytes);
+         return new String(bytes, StandardCharsets.UTF_8);
+      }
+      char[] chars = new char[length / 2];
+      for(int i = 0, pos = offset + 12; i < chars.length; i++, pos += 2)
+         chars[i] = buffer.getChar(pos);
+      return new String(chars);
+   }
+
+   /**
+    * Decode value of encoded binary field at given offset.
+    *
+    * @param buffer buffer containing encoded message fields
+    * @param offset field offset within buffer
+    * @return copy of field value or null if field is not binary
+    */
+   static byte[] decodeBinary(ByteBuffer buffer, int offset)
+   {
+      if ((buffer.get(offset + 4) & 0xFF) != TYPE_BINARY)
+         return null;
+      byte[] value = new byte[buffer.getInt(offset + 8)];
+      readBytes(buffer, offset + 12, value);
+      return value;
+   }
 
 	/**
     * Get field's value as long integer
@@ -378,6 +547,13 @@ public NXCPMessageField(final byte[] nxcpDataField) throws IOException
     */
 	public Long getAsInteger()
 	{
+	   if ((integerValue == null) && (type != TYPE_BINARY))
+	   {
+	      if (realValue != null)
+	         integerValue = realValue.longValue();
+	      else if (stringValue != null)
+	         integerValue = parseLong(stringValue);
+	   }
 		return integerValue;
 	}
 
@@ -388,6 +564,13 @@ public Long getAsInteger()
     */
 	public Double getAsReal()
 	{
+	   if ((realValue == null) && (type != TYPE_BINARY))
+	   {
+	      if (integerValue != null)
+	         realValue = integerValue.doubleValue();
+	      else if (stringValue != null)
+	         realValue = parseDouble(stringValue);
+	   }
 		return realValue;
 	}
 
@@ -398,6 +581,13 @@ public Double getAsReal()
     */
 	public String getAsString()
 	{
+	   if (stringValue == null)
+	   {
+	      if (type == TYPE_FLOAT)
+	         stringValue = realValue.toString();
+	      else if (integerValue != null)
+	         stringValue = integerValue.toString();
+	   }
 		return stringValue;
 	}
 
@@ -436,7 +626,7 @@ else if (type == TYPE_BINARY)
 	   else
 	   {
    		final byte[] addr = new byte[4];
-   		final long intVal = integerValue.longValue();
+   		final long intVal = getAsInteger().longValue();
    		
    		addr[0] =  (byte)((intVal & 0xFF000000) >> 24);
    		addr[1] =  (byte)((intVal & 0x00FF0000) >> 16);
@@ -479,7 +669,7 @@ else if (type == TYPE_BINARY)
       else
       {
          final byte[] addr = new byte[4];
-         final long intVal = integerValue.longValue();
+         final long intVal = getAsInteger().longValue();
          
          addr[0] =  (byte)((intVal & 0xFF000000) >> 24);
          addr[1] =  (byte)((intVal & 0x00FF0000) >> 16);
@@ -753,6 +943,6 @@ public String toString()
             sb.append(Integer.toHexString((int)b & 0x000000FF));
          return "NXCPMessageField [id=" + id + ", type=binary, valueLength=" + binaryValue.length + ", value=" + sb.toString() + "]";
       }
-      return "NXCPMessageField [id=" + id + ", type=" + type + ", value=" + stringValue + "]";
+      return "NXCPMessageField [id=" + id + ", type=" + type + ", value=" + getAsString() + "]";
    }
 }
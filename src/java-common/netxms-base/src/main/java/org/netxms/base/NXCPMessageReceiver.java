@@ -20,17 +20,30 @@
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 
 /**
- * Message receiver for NXCP protocol
+ * Message receiver for NXCP protocol. Messages are decoded directly from receive buffer. Consumed bytes are not moved after
+ * each message; remaining data is moved to the beginning of the buffer only when incomplete message does not fit into
+ * the rest of the buffer. Buffers are taken from shared buffer pool.
  */
 public class NXCPMessageReceiver
 {
    private int defaultBufferSize;
    private int maxBufferSize;
+   private int initialBufferSize;
+   private NXCPBufferPool bufferPool;
 	private byte[] recvBuffer;
-	private int bufferPos = 0;
+	private int readPos = 0;
+	private int writePos = 0;
+   private boolean lazyDecoding = false;
+
+   // Statistics (updated only by receiving thread)
+   private volatile long messagesReceived = 0;
+   private volatile long bytesReceived = 0;
+   private volatile long bufferGrowths = 0;
+   private volatile long bufferCompactions = 0;
 
    /**
     * @see java.lang.Object#toString()
@@ -39,67 +52,146 @@
    public String toString()
    {
       return "NXCPMessageReceiver [defaultBufferSize=" + defaultBufferSize
-            + " maxBufferSize=" + maxBufferSize + " recvBuffer=" + recvBuffer
-            + " bufferPos=" + bufferPos;
+            + " maxBufferSize=" + maxBufferSize + " bufferSize=" + getBufferSize()
+            + " readPos=" + readPos + " writePos=" + writePos + " messagesReceived=" + messagesReceived
+            + " bytesReceived=" + bytesReceived + " bufferGrowths=" + bufferGrowths
+            + " bufferCompactions=" + bufferCompactions + "]";
    }
 
    /**
-    * Create new receiver.
+    * Create new receiver using default buffer pool.
     *
     * @param defaultBufferSize default receiving buffer size (in bytes)
     * @param maxBufferSize maximum receiving buffer size (in bytes)
     */
 	public NXCPMessageReceiver(int defaultBufferSize, int maxBufferSize)
 	{
-	   this.defaultBufferSize = defaultBufferSize;
-	   this.maxBufferSize = maxBufferSize;
-		recvBuffer = new byte[defaultBufferSize];
+	   this(defaultBufferSize, maxBufferSize, NXCPBufferPool.getDefault());
 	}
-	
+
+   /**
+    * Create new receiver.
+    *
+    * @param defaultBufferSize default receiving buffer size (in bytes)
+    * @param maxBufferSize maximum receiving buffer size (in bytes)
+    * @param bufferPool pool to take receive buffers from
+    */
+   public NXCPMessageReceiver(int defaultBufferSize, int maxBufferSize, NXCPBufferPool bufferPool)
+   {
+      this.defaultBufferSize = defaultBufferSize;
+      this.maxBufferSize = maxBufferSize;
+      this.bufferPool = bufferPool;
+      recvBuffer = bufferPool.acquire(defaultBufferSize);
+      initialBufferSize = recvBuffer.length;
+   }
+
+   /**
+    * Enable or disable lazy decoding of received messages. In lazy decoding mode message fields are decoded only when
+    * accessed.
+    *
+    * @param lazyDecoding true to enable lazy decoding
+    */
+   public void setLazyDecoding(boolean lazyDecoding)
+   {
+      this.lazyDecoding = lazyDecoding;
+   }
+
+   /**
+    * Return receive buffer to the pool. Receiver should not be used after this call.
+    */
+   public void release()
+   {
+      if (recvBuffer != null)
+      {
+         bufferPool.release(recvBuffer);
+         recvBuffer = null;
+         readPos = 0;
+         writePos = 0;
+      }
+   }
+
 	/**
 	 * Get message size from byte array
 	 * 
-	 * @param header byte array containing message header
+	 * @param buffer byte array containing message header
+	 * @param offset header offset within byte array
 	 * @return message size in bytes
 	 */
-   private long getMessageSize(final byte[] header)
+   private static long getMessageSize(final byte[] buffer, int offset)
 	{
-		return (((long)header[4] << 24) & 0xFF000000) | 
-		       (((long)header[5] << 16) & 0x00FF0000) | 
-		       (((long)header[6] << 8) & 0x0000FF00) |
-		       ((long)header[7] & 0x000000FF);
+		return (((long)buffer[offset + 4] << 24) & 0xFF000000) | 
+		       (((long)buffer[offset + 5] << 16) & 0x00FF0000) | 
+		       (((long)buffer[offset + 6] << 8) & 0x0000FF00) |
+		       ((long)buffer[offset + 7] & 0x000000FF);
 	}
-	
+
+   /**
+    * Move unprocessed data to the beginning of given buffer (which can be current receive buffer).
+    *
+    * @param target target buffer
+    */
+   private void moveData(byte[] target)
+   {
+      int available = writePos - readPos;
+      if ((available > 0) && ((target != recvBuffer) || (readPos > 0)))
+         System.arraycopy(recvBuffer, readPos, target, 0, available);
+      if (target != recvBuffer)
+      {
+         bufferPool.release(recvBuffer);
+         recvBuffer = target;
+      }
+      readPos = 0;
+      writePos = available;
+   }
+
 	/**
-    * Get message from receiver's buffer
+    * Get next message from receiver's buffer without reading any new data. If there are not enough data in the buffer,
+    * buffer is prepared for receiving rest of the message.
     * 
+    * @param ectx encryption context
     * @return message object or null if there are not enough data in the buffer
-    * @throws IOException if read from underlying data input stream fails
+    * @throws IOException if message cannot be decoded
     * @throws NXCPException if message is too large
     */
-   private NXCPMessage getMessageFromBuffer(EncryptionContext ectx) throws IOException, NXCPException
+   public NXCPMessage nextMessage(EncryptionContext ectx) throws IOException, NXCPException
 	{
 		NXCPMessage msg = null;
 
-		if (bufferPos >= NXCPMessage.HEADER_SIZE)
+      final int available = writePos - readPos;
+		if (available >= NXCPMessage.HEADER_SIZE)
 		{
-			final long size = getMessageSize(recvBuffer);
-			if (size <= bufferPos)
+			final long size = getMessageSize(recvBuffer, readPos);
+			if (size < NXCPMessage.HEADER_SIZE)
+			   throw new NXCPException(NXCPException.FATAL_PROTOCOL_ERROR);
+
+			if (size <= available)
 			{
 				// Entire message in buffer, create new message object
 				try
 				{
-					msg = new NXCPMessage(recvBuffer, ectx);
+				   msg = new NXCPMessage(recvBuffer, readPos, (int)size, ectx, lazyDecoding);
+				   if (lazyDecoding)
+				   {
+				      // Receive buffer will be reused, so lazy decoded message should not keep reference to it. Only plain
+				      // (not encrypted and not compressed) messages refer to receive buffer, and only their encoded fields
+				      // are copied; header is never copied.
+				      msg.detachBuffer(recvBuffer);
+				   }
+				   messagesReceived++;
 				}
 				finally
 				{
-					System.arraycopy(recvBuffer, (int)size, recvBuffer, 0, bufferPos - (int)size);
-					bufferPos -= size;
+				   readPos += (int)size;
+				   if (readPos == writePos)
+				   {
+				      readPos = 0;
+				      writePos = 0;
+				   }
 
 					// Shrink buffer if possible
-					if ((recvBuffer.length > defaultBufferSize) && (bufferPos < defaultBufferSize))
+					if ((recvBuffer.length > initialBufferSize) && (writePos - readPos < initialBufferSize))
 					{
-					   recvBuffer = Arrays.copyOf(recvBuffer, defaultBufferSize);
+					   moveData(bufferPool.acquire(defaultBufferSize));
 					}
 				}
 			}
@@ -107,13 +199,24 @@ else if (size > recvBuffer.length)
 			{
 			   if (size <= maxBufferSize)
 			   {
-			      recvBuffer = Arrays.copyOf(recvBuffer, (int)size);
+			      moveData(bufferPool.acquire((int)size));
+			      bufferGrowths++;
 			   }
 			   else
 			   {
 			      throw new NXCPException(NXCPException.MESSAGE_TOO_LARGE);
 			   }
 			}
+			else if (readPos + size > recvBuffer.length)
+			{
+			   moveData(recvBuffer);
+			   bufferCompactions++;
+			}
+		}
+		else if (readPos + NXCPMessage.HEADER_SIZE > recvBuffer.length)
+		{
+		   moveData(recvBuffer);
+		   bufferCompactions++;
 		}
 		return msg;
 	}
@@ -134,15 +237,86 @@ public NXCPMessage receiveMessage(final InputStream in, EncryptionContext ectx)
 		// Receive bytes from network if we don't have full message in buffer 
 		while(true)
 		{
-			msg = getMessageFromBuffer(ectx);
+			msg = nextMessage(ectx);
 			if (msg != null)
 				break;
-			final int bytes = in.read(recvBuffer, bufferPos, recvBuffer.length - bufferPos);
+			final int bytes = in.read(recvBuffer, writePos, recvBuffer.length - writePos);
 			if (bytes == -1)
 				throw new NXCPException(NXCPException.SESSION_CLOSED);
-			bufferPos += bytes;
+			writePos += bytes;
+			bytesReceived += bytes;
 		}
 
 		return msg;
 	}
+
+   /**
+    * Read available data from channel into receiver's buffer. Intended for use with non-blocking channels together with
+    * <code>nextMessage</code>, which should be called until it returns null before each read.
+    *
+    * @param channel channel to read from
+    * @return number of bytes read (can be 0 for non-blocking channel) or -1 if end of stream was reached
+    * @throws IOException if read from channel fails
+    */
+   public int readFrom(final ReadableByteChannel channel) throws IOException
+   {
+      final int bytes = channel.read(ByteBuffer.wrap(recvBuffer, writePos, recvBuffer.length - writePos));
+      if (bytes > 0)
+      {
+         writePos += bytes;
+         bytesReceived += bytes;
+      }
+      return bytes;
+   }
+
+   /**
+    * Get number of messages received.
+    *
+    * @return number of messages received
+    */
+   public long getMessagesReceived()
+   {
+      return messagesReceived;
+   }
+
+   /**
+    * Get number of bytes received.
+    *
+    * @return number of bytes received
+    */
+   public long getBytesReceived()
+   {
+      return bytesReceived;
+   }
+
+   /**
+    * Get number of times receive buffer was replaced with larger one.
+    *
+    * @return number of buffer growths
+    */
+   public long getBufferGrowths()
+   {
+      return bufferGrowths;
+   }
+
+   /**
+    * Get number of times unprocessed data was moved to the beginning of receive buffer.
+    *
+    * @return number of buffer compactions
+    */
+   public long getBufferCompactions()
+   {
+      return bufferCompactions;
+   }
+
+   /**
+    * Get current receive buffer size.
+    *
+    * @return current receive buffer size in bytes (0 if buffer was released)
+    */
+   public int getBufferSize()
+   {
+      final byte[] buffer = recvBuffer;
+      return (buffer != null) ? buffer.length : 0;
+   }
 }
@@ -0,0 +1,457 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound writer for already encoded NXCP messages. Messages are queued by sending threads and written to the underlying
+ * stream by single writer thread, which coalesces all messages available at the moment into one stream write. Instead of
+ * dedicated thread writer can use shared executor, in which case queue is drained by executor task scheduled when new
+ * messages arrive.
+ */
+public class NXCPMessageWriter
+{
+   /**
+    * Handler for write errors
+    */
+   public interface ErrorHandler
+   {
+      /**
+       * Called once by writing thread when write to the underlying stream fails. Handler should not block, and is
+       * expected to close connection and release threads waiting for replies to already sent messages.
+       *
+       * @param e write error
+       */
+      public void onWriteError(IOException e);
+   }
+
+   private static final byte[] STOP_MARKER = new byte[0];
+   private static final int COALESCE_BUFFER_SIZE = 65536;
+
+   private OutputStream outputStream;
+   private LinkedBlockingQueue<byte[]> queue;
+   private Thread writerThread = null;
+   private Executor executor = null;
+   private AtomicBoolean drainScheduled = new AtomicBoolean(false);
+   private volatile boolean stopped = false;
+   private volatile IOException writeError = null;
+   private volatile boolean closed = false;
+   private volatile ErrorHandler errorHandler = null;
+   private final Object flushMonitor = new Object();
+   private AtomicLong queuedMessages = new AtomicLong(0);
+   private long writtenMessages = 0;
+
+   // Statistics
+   private AtomicLong bytesSent = new AtomicLong(0);
+   private AtomicLong messagesSent = new AtomicLong(0);
+   private AtomicLong writeCount = new AtomicLong(0);
+   private volatile int maxQueueDepth = 0;
+   private volatile long rateWindowStart = System.currentTimeMillis();
+   private volatile long rateWindowBytes = 0;
+   private volatile double sendRate = 0;
+
+   /**
+    * Create new message writer and start writer thread.
+    *
+    * @param outputStream stream to write messages to
+    * @param queueSize maximum number of queued messages (senders will block when queue is full)
+    * @param threadName name for writer thread
+    */
+   public NXCPMessageWriter(OutputStream outputStream, int queueSize, String threadName)
+   {
+      this.outputStream = new BufferedOutputStream(outputStream, COALESCE_BUFFER_SIZE);
+      queue = new LinkedBlockingQueue<byte[]>(queueSize);
+      writerThread = new Thread(() -> writerLoop(), threadName);
+      writerThread.setDaemon(true);
+      writerThread.start();
+   }
+
+   /**
+    * Create new message writer which uses given executor for writing messages instead of dedicated thread. Only one
+    * writing task per writer is active at any time, so message order is preserved.
+    *
+    * @param outputStream stream to write messages to
+    * @param queueSize maximum number of queued messages (senders will block when queue is full)
+    * @param executor executor for writing tasks
+    */
+   public NXCPMessageWriter(OutputStream outputStream, int queueSize, Executor executor)
+   {
+      this.outputStream = new BufferedOutputStream(outputStream, COALESCE_BUFFER_SIZE);
+      this.executor = executor;
+      queue = new LinkedBlockingQueue<byte[]>(queueSize);
+   }
+
+   /**
+    * Queue encoded message for sending.
+    *
+    * @param message encoded message
+    * @throws IOException if writer is closed or previous write failed
+    */
+   public void send(byte[] message) throws IOException
+   {
+      if (writeError != null)
+         throw new IOException("Message writer failed", writeError);
+      if (closed)
+         throw new IOException("Message writer closed");
+
+      queuedMessages.incrementAndGet();
+      try
+      {
+         while(!queue.offer(message, 1, TimeUnit.SECONDS))
+         {
+            if ((writeError != null) || closed)
+            {
+               queuedMessages.decrementAndGet();
+               throw new IOException("Message writer stopped", writeError);
+            }
+         }
+      }
+      catch(InterruptedException e)
+      {
+         queuedMessages.decrementAndGet();
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while queuing message", e);
+      }
+
+      int depth = queue.size();
+      if (depth > maxQueueDepth)
+         maxQueueDepth = depth;
+
+      if (executor != null)
+         scheduleDrain();
+   }
+
+   /**
+    * Schedule queue drain task if it is not scheduled already.
+    */
+   private void scheduleDrain()
+   {
+      if (drainScheduled.compareAndSet(false, true))
+         executor.execute(() -> drainQueue());
+   }
+
+   /**
+    * Drain queue (executor mode). Runs until queue is empty.
+    */
+   private void drainQueue()
+   {
+      final List<byte[]> batch = new ArrayList<byte[]>(64);
+      while(true)
+      {
+         queue.drainTo(batch);
+         if (batch.isEmpty())
+         {
+            drainScheduled.set(false);
+            // Re-check queue to avoid losing messages queued after drain but before flag reset
+            if (queue.isEmpty() || !drainScheduled.compareAndSet(false, true))
+               return;
+            continue;
+         }
+         if (writeBatch(batch))
+         {
+            writerStopped();
+            return;   // leave drain flag set so no more tasks are scheduled
+         }
+      }
+   }
+
+   /**
+    * Writer thread main loop
+    */
+   private void writerLoop()
+   {
+      final List<byte[]> batch = new ArrayList<byte[]>(64);
+      while(true)
+      {
+         byte[] first;
+         try
+         {
+            first = queue.take();
+         }
+         catch(InterruptedException e)
+         {
+            continue;
+         }
+
+         batch.add(first);
+         queue.drainTo(batch);
+         if (writeBatch(batch))
+            break;
+      }
+      writerStopped();
+   }
+
+   /**
+    * Write batch of messages to the stream. Batch is cleared after writing.
+    *
+    * @param batch messages to write
+    * @return true if writer should stop
+    */
+   private boolean writeBatch(List<byte[]> batch)
+   {
+      boolean stop = false;
+      long bytes = 0;
+      int count = 0;
+      try
+      {
+         for(byte[] m : batch)
+         {
+            if (m == STOP_MARKER)
+            {
+               stop = true;
+               continue;
+            }
+            outputStream.write(m);
+            bytes += m.length;
+            count++;
+         }
+         outputStream.flush();
+         writeCount.incrementAndGet();
+      }
+      catch(IOException e)
+      {
+         writeError = e;
+         stop = true;
+         ErrorHandler handler = errorHandler;
+         if ((handler != null) && !closed)
+            handler.onWriteError(e);
+      }
+
+      updateStatistics(bytes, count);
+      synchronized(flushMonitor)
+      {
+         writtenMessages += batch.size();
+         flushMonitor.notifyAll();
+      }
+      batch.clear();
+      return stop;
+   }
+
+   /**
+    * Mark writer as stopped and release senders that may be blocked on full queue
+    */
+   private void writerStopped()
+   {
+      queue.clear();
+      synchronized(flushMonitor)
+      {
+         stopped = true;
+         writtenMessages = queuedMessages.get();
+         flushMonitor.notifyAll();
+      }
+   }
+
+   /**
+    * Update send statistics.
+    *
+    * @param bytes number of bytes written
+    * @param count number of messages written
+    */
+   private void updateStatistics(long bytes, int count)
+   {
+      bytesSent.addAndGet(bytes);
+      messagesSent.addAndGet(count);
+
+      long now = System.currentTimeMillis();
+      rateWindowBytes += bytes;
+      long elapsed = now - rateWindowStart;
+      if (elapsed >= 1000)
+      {
+         sendRate = (double)rateWindowBytes * 1000.0 / (double)elapsed;
+         rateWindowBytes = 0;
+         rateWindowStart = now;
+      }
+   }
+
+   /**
+    * Wait until all messages queued so far are written to the stream.
+    *
+    * @param timeout wait timeout in milliseconds
+    * @return true if all messages were written
+    */
+   public boolean flush(long timeout)
+   {
+      final long target = queuedMessages.get();
+      final long deadline = System.currentTimeMillis() + timeout;
+      synchronized(flushMonitor)
+      {
+         while(writtenMessages < target)
+         {
+            long remaining = deadline - System.currentTimeMillis();
+            if ((remaining <= 0) || stopped)
+               return false;
+            try
+            {
+               flushMonitor.wait(remaining);
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Close writer. Messages already queued are written before writer thread stops.
+    *
+    * @param timeout time in milliseconds to wait for pending messages to be written
+    */
+   public void close(long timeout)
+   {
+      if (closed)
+         return;
+      closed = true;
+      try
+      {
+         if (!stopped)
+         {
+            queuedMessages.incrementAndGet();
+            if (!queue.offer(STOP_MARKER, timeout, TimeUnit.MILLISECONDS))
+               return; // Writer will stop on write error after underlying stream is closed
+            if (executor != null)
+               scheduleDrain();
+         }
+         if (writerThread != null)
+         {
+            writerThread.join(timeout);
+         }
+         else
+         {
+            final long deadline = System.currentTimeMillis() + timeout;
+            synchronized(flushMonitor)
+            {
+               while(!stopped)
+               {
+                  long remaining = deadline - System.currentTimeMillis();
+                  if (remaining <= 0)
+                     break;
+                  flushMonitor.wait(remaining);
+               }
+            }
+         }
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Set handler for write errors. Without handler write error is only reported to the next sender.
+    *
+    * @param errorHandler new error handler or null
+    */
+   public void setErrorHandler(ErrorHandler errorHandler)
+   {
+      this.errorHandler = errorHandler;
+   }
+
+   /**
+    * Get error that caused writer to stop.
+    *
+    * @return write error or null
+    */
+   public IOException getWriteError()
+   {
+      return writeError;
+   }
+
+   /**
+    * Get current number of messages waiting in queue.
+    *
+    * @return current queue depth
+    */
+   public int getQueueDepth()
+   {
+      return queue.size();
+   }
+
+   /**
+    * Get maximum observed queue depth.
+    *
+    * @return maximum queue depth
+    */
+   public int getMaxQueueDepth()
+   {
+      return maxQueueDepth;
+   }
+
+   /**
+    * Get total number of bytes written.
+    *
+    * @return total number of bytes written
+    */
+   public long getBytesSent()
+   {
+      return bytesSent.get();
+   }
+
+   /**
+    * Get total number of messages written.
+    *
+    * @return total number of messages written
+    */
+   public long getMessagesSent()
+   {
+      return messagesSent.get();
+   }
+
+   /**
+    * Get number of stream writes (each write may contain several coalesced messages).
+    *
+    * @return number of stream writes
+    */
+   public long getWriteCount()
+   {
+      return writeCount.get();
+   }
+
+   /**
+    * Get send rate measured over last measurement interval (approximately one second).
+    *
+    * @return send rate in bytes per second
+    */
+   public double getSendRate()
+   {
+      return sendRate;
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "NXCPMessageWriter [queueDepth=" + queue.size() + " maxQueueDepth=" + maxQueueDepth + " bytesSent=" + bytesSent.get()
+            + " messagesSent=" + messagesSent.get() + " writeCount=" + writeCount.get() + " sendRate=" + sendRate + "]";
+   }
+}
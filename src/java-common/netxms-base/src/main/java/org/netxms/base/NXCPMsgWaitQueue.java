@@ -18,59 +18,62 @@
  */
 package org.netxms.base;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * NXCP message wait queue
+ * NXCP message wait queue. Pending messages and waiters are indexed by (message code, message ID) pair, so incoming message
+ * wakes up only waiter for that particular message. Messages without waiter are also kept in expiration queue; claimed
+ * messages are only marked as consumed there and dropped when they reach queue head, so claiming message is O(1).
  */
 public class NXCPMsgWaitQueue
 {
-	private List<NXCPMessage> messageList = new ArrayList<NXCPMessage>(0);
+	private static ScheduledThreadPoolExecutor timer = null;
+
+	private ConcurrentHashMap<Long, WaitSlot> slots = new ConcurrentHashMap<Long, WaitSlot>();
+	private ConcurrentLinkedQueue<PendingMessage> expirationQueue = new ConcurrentLinkedQueue<PendingMessage>();
 	private int defaultTimeout;
 	private int messageLifeTime;
-	private boolean isActive = true;
-	private HousekeeperThread housekeeperThread = null;
+	private volatile boolean isActive = true;
+	private ScheduledFuture<?> purgeTask;
 
-   /**
-	 * Housekeeper thread - deletes expired messages from queue.
+	/**
+	 * Message stored in queue without waiter
 	 */
-	private class HousekeeperThread extends Thread
+	private static final class PendingMessage
 	{
-		HousekeeperThread()
+		final long key;
+		final long expirationTime;
+		volatile NXCPMessage message;
+
+		PendingMessage(long key, NXCPMessage message, long expirationTime)
 		{
-			super("NXCPMsgWaitQueue::HousekeeperThread");
-			setDaemon(true);
-			start();
+			this.key = key;
+			this.message = message;
+			this.expirationTime = expirationTime;
 		}
-		
-		public void run()
+	}
+
+	/**
+	 * Wait slot for single (code, id) pair. All access is done under slot map bin lock (inside compute() calls).
+	 */
+	private static final class WaitSlot
+	{
+		final ArrayDeque<PendingMessage> messages = new ArrayDeque<PendingMessage>(1);
+		final ArrayDeque<CompletableFuture<NXCPMessage>> waiters = new ArrayDeque<CompletableFuture<NXCPMessage>>(1);
+
+		boolean isEmpty()
 		{
-			while(isActive)
-			{
-				try
-				{
-					Thread.sleep(2000);
-				}
-				catch(InterruptedException e)
-				{
-				}
-				synchronized(messageList)
-				{
-					final long currTime = System.currentTimeMillis();
-					final Iterator<NXCPMessage> it = messageList.iterator();
-					while(it.hasNext())
-					{
-						final NXCPMessage msg = it.next();
-						if (msg.getTimestamp() + messageLifeTime < currTime)
-						{
-							// Message expired, remove it
-							it.remove();
-						}
-					}
-				}
-			}
+			return messages.isEmpty() && waiters.isEmpty();
 		}
 	}
 
@@ -84,7 +87,29 @@ public NXCPMsgWaitQueue(final int defaultTimeout, final int messageLifeTime)
 	{
 		this.defaultTimeout = defaultTimeout;
 		this.messageLifeTime = messageLifeTime;
-		housekeeperThread = new HousekeeperThread();
+		purgeTask = schedulePurge(this, Math.max(messageLifeTime / 2, 1000));
+	}
+
+	/**
+	 * Schedule periodic removal of expired messages, so messages do not stay in idle queue. Task holds only weak reference
+	 * to the queue and cancels itself when queue is garbage collected.
+	 *
+	 * @param queue wait queue
+	 * @param interval purge interval in milliseconds
+	 * @return scheduled task
+	 */
+	private static ScheduledFuture<?> schedulePurge(NXCPMsgWaitQueue queue, long interval)
+	{
+		final WeakReference<NXCPMsgWaitQueue> ref = new WeakReference<NXCPMsgWaitQueue>(queue);
+		final AtomicReference<ScheduledFuture<?>> task = new AtomicReference<ScheduledFuture<?>>();
+		task.set(getTimer().scheduleWithFixedDelay(() -> {
+			NXCPMsgWaitQueue q = ref.get();
+			if (q != null)
+				q.purgeExpiredMessages(System.currentTimeMillis());
+			else if (task.get() != null)
+				task.get().cancel(false);
+		}, interval, interval, TimeUnit.MILLISECONDS));
+		return task.get();
 	}
 
 	/**
@@ -97,6 +122,18 @@ public NXCPMsgWaitQueue(final int defaultTimeout)
       this(defaultTimeout, 60000);
 	}
 
+	/**
+	 * Build slot key from message code and ID. Message ID is 32 bit value in NXCP header.
+	 *
+	 * @param code message code
+	 * @param id message ID
+	 * @return slot key
+	 */
+	private static long makeKey(int code, long id)
+	{
+		return ((long)code << 32) | (id & 0xFFFFFFFFL);
+	}
+
 	/**
 	 * Put message into queue.
 	 * 
@@ -104,59 +141,220 @@ public NXCPMsgWaitQueue(final int defaultTimeout)
 	 */
 	public void putMessage(final NXCPMessage msg)
 	{
-		synchronized(messageList)
+		final long now = System.currentTimeMillis();
+		msg.setTimestamp(now);
+		if (!isActive)
+			return;
+
+		final long key = makeKey(msg.getMessageCode(), msg.getMessageId());
+		final AtomicReference<CompletableFuture<NXCPMessage>> waiter = new AtomicReference<CompletableFuture<NXCPMessage>>();
+		slots.compute(key, (k, slot) -> {
+			if (slot != null)
+			{
+				// Skip waiters cancelled by caller
+				CompletableFuture<NXCPMessage> w;
+				while((w = slot.waiters.poll()) != null)
+				{
+					if (!w.isDone())
+					{
+						waiter.set(w);
+						return slot.isEmpty() ? null : slot;
+					}
+				}
+			}
+			if (slot == null)
+				slot = new WaitSlot();
+			PendingMessage pm = new PendingMessage(k, msg, now + messageLifeTime);
+			slot.messages.add(pm);
+			expirationQueue.add(pm);
+			return slot;
+		});
+
+		// Complete waiter outside of map lock because completion can run dependent actions
+		if (waiter.get() != null)
+			waiter.get().complete(msg);
+
+		purgeExpiredMessages(now);
+	}
+
+	/**
+	 * Remove expired and already consumed messages from expiration queue head. All messages have same lifetime, so
+	 * expiration queue is ordered by expiration time and only its head has to be checked.
+	 *
+	 * @param now current time
+	 */
+	private void purgeExpiredMessages(long now)
+	{
+		while(true)
 		{
-			msg.setTimestamp(System.currentTimeMillis());
-			messageList.add(msg);
-			messageList.notifyAll();
+			final PendingMessage pm = expirationQueue.peek();
+			if ((pm == null) || ((pm.message != null) && (pm.expirationTime >= now)))
+				break;
+			if (!expirationQueue.remove(pm))
+				continue; // Removed by another thread
+			if (pm.message == null)
+				continue; // Already consumed
+			slots.computeIfPresent(pm.key, (k, slot) -> {
+				slot.messages.remove(pm);
+				pm.message = null;
+				return slot.isEmpty() ? null : slot;
+			});
 		}
 	}
 
+	/**
+	 * Take message for given key from queue if available, otherwise register new waiter.
+	 *
+	 * @param key slot key
+	 * @return future that is either completed with queued message or registered as waiter
+	 */
+	private CompletableFuture<NXCPMessage> takeOrRegister(long key)
+	{
+		final long now = System.currentTimeMillis();
+		final AtomicReference<CompletableFuture<NXCPMessage>> future = new AtomicReference<CompletableFuture<NXCPMessage>>();
+		slots.compute(key, (k, slot) -> {
+			if (slot == null)
+				slot = new WaitSlot();
+			while(!slot.messages.isEmpty())
+			{
+				PendingMessage pm = slot.messages.poll();
+				NXCPMessage msg = pm.message;
+				pm.message = null;
+				if (pm.expirationTime >= now)
+				{
+					future.set(CompletableFuture.completedFuture(msg));
+					return slot.isEmpty() ? null : slot;
+				}
+			}
+			future.set(new CompletableFuture<NXCPMessage>());
+			slot.waiters.add(future.get());
+			return slot;
+		});
+
+		// Consumed message is left in expiration queue marked as consumed, and dropped when it reaches queue head
+		purgeExpiredMessages(now);
+		return future.get();
+	}
+
+	/**
+	 * Remove waiter from slot.
+	 *
+	 * @param key slot key
+	 * @param future waiter's future
+	 * @return true if waiter was removed and false if it was already taken by incoming message
+	 */
+	private boolean removeWaiter(long key, CompletableFuture<NXCPMessage> future)
+	{
+		final boolean[] removed = new boolean[1];
+		slots.computeIfPresent(key, (k, slot) -> {
+			removed[0] = slot.waiters.remove(future);
+			return slot.isEmpty() ? null : slot;
+		});
+		return removed[0];
+	}
+
 	/**
 	 * Wait for message.
-	 * 
-	 * @param code	Message code
+	 *
+	 * @param code Message code
 	 * @param id Message id
 	 * @param timeout Wait timeout in milliseconds
-    * @return received NXCP message or null if message was not received before timeout
+	 * @return received NXCP message or null if message was not received before timeout
 	 */
 	public NXCPMessage waitForMessage(final int code, final long id, final int timeout)
 	{
-		NXCPMessage msg = null;
-		int actualTimeout = timeout;
+		if ((timeout <= 0) || !isActive)
+			return null;
 
-      while((actualTimeout > 0) && isActive)
+		final long key = makeKey(code, id);
+		final CompletableFuture<NXCPMessage> future = takeOrRegister(key);
+		try
 		{
-			synchronized(messageList)
-			{
-				final Iterator<NXCPMessage> it = messageList.iterator();
-				boolean found = false;
-				while(it.hasNext())
-				{
-					msg = it.next();
-					if ((msg.getMessageCode() == code) && (msg.getMessageId() == id)) 
-					{
-						it.remove();
-						found = true;
-						break;
-					}
-				}
-				if (found)
-					break;
-				
-				msg = null;
-				long startTime = System.currentTimeMillis();
-				try
-				{
-					messageList.wait(actualTimeout);
-				}
-				catch(InterruptedException e)
-				{
-				}
-				actualTimeout -= System.currentTimeMillis() - startTime;
-			}
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		}
+		catch(TimeoutException e)
+		{
+			if (removeWaiter(key, future))
+				return null;
+			// Waiter was taken by putMessage() and will be completed shortly
+			return future.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			if (removeWaiter(key, future))
+				return null;
+			// Waiter was taken by putMessage() and will be completed shortly
+			return future.join();
+		}
+		catch(ExecutionException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Wait for message asynchronously. Returned future is completed by the thread that puts matching message into the queue
+	 * (usually network receiver thread), so dependent actions should not block. If message is not received within given
+	 * timeout or queue is shut down, future is completed with null. If caller cancels returned future or completes it
+	 * exceptionally, waiter is removed from the queue.
+	 *
+	 * @param code Message code
+	 * @param id Message id
+	 * @param timeout Wait timeout in milliseconds
+	 * @return future for received NXCP message
+	 */
+	public CompletableFuture<NXCPMessage> waitForMessageAsync(final int code, final long id, final int timeout)
+	{
+		if ((timeout <= 0) || !isActive)
+			return CompletableFuture.completedFuture(null);
+
+		final long key = makeKey(code, id);
+		final CompletableFuture<NXCPMessage> future = takeOrRegister(key);
+		if (future.isDone())
+			return future;
+
+		final ScheduledFuture<?> timeoutTask = getTimer().schedule(() -> {
+			if (removeWaiter(key, future))
+				future.complete(null);
+		}, timeout, TimeUnit.MILLISECONDS);
+		future.whenComplete((m, e) -> {
+			timeoutTask.cancel(false);
+			if (e != null)
+				removeWaiter(key, future); // Cancelled or failed by caller
+		});
+		return future;
+	}
+
+	/**
+	 * Wait for message asynchronously using default wait timeout.
+	 *
+	 * @param code Message code
+	 * @param id Message id
+	 * @return future for received NXCP message
+	 */
+	public CompletableFuture<NXCPMessage> waitForMessageAsync(final int code, final long id)
+	{
+		return waitForMessageAsync(code, id, defaultTimeout);
+	}
+
+	/**
+	 * Get timer shared by all wait queues for asynchronous wait timeouts.
+	 *
+	 * @return shared timer
+	 */
+	private static synchronized ScheduledThreadPoolExecutor getTimer()
+	{
+		if (timer == null)
+		{
+			timer = new ScheduledThreadPoolExecutor(1, (r) -> {
+				Thread t = new Thread(r, "NXCPMsgWaitQueue::Timer");
+				t.setDaemon(true);
+				return t;
+			});
+			timer.setRemoveOnCancelPolicy(true);
 		}
-		return msg;
+		return timer;
 	}
 
 	/**
@@ -172,30 +370,22 @@ public NXCPMessage waitForMessage(final int code, final long id)
 	}
 
 	/**
-	 * Shutdown wait queue.
+	 * Shutdown wait queue. All current waiters are released immediately.
 	 */
    public synchronized void shutdown()
 	{
 		isActive = false;
-		if (housekeeperThread != null)
+		purgeTask.cancel(false);
+		for(Long key : slots.keySet())
 		{
-			housekeeperThread.interrupt();
-			while(housekeeperThread.isAlive())
-			{
-				try
-				{
-					housekeeperThread.join();
-				}
-				catch(InterruptedException e)
-				{
-				}
-			}
-			housekeeperThread = null;
+			final WaitSlot slot = slots.remove(key);
+			if (slot == null)
+				continue;
+			CompletableFuture<NXCPMessage> waiter;
+			while((waiter = slot.waiters.poll()) != null)
+				waiter.complete(null);
 		}
-      synchronized(messageList)
-      {
-         messageList.notifyAll();
-      }
+		expirationQueue.clear();
 	}
 
 	/**
@@ -208,14 +398,48 @@ public int getDefaultTimeout()
 		return defaultTimeout;
 	}
 
+	/**
+	 * Get number of (code, id) pairs that currently have queued messages or waiters.
+	 *
+	 * @return number of active wait slots
+	 */
+	public int getPendingCount()
+	{
+		return slots.size();
+	}
+
+	/**
+	 * Get number of messages in expiration queue that were not claimed yet.
+	 *
+	 * @return number of unclaimed messages
+	 */
+	int getUnclaimedMessageCount()
+	{
+		int count = 0;
+		for(PendingMessage pm : expirationQueue)
+			if (pm.message != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Get number of entries in expiration queue, including consumed messages not dropped yet.
+	 *
+	 * @return number of entries in expiration queue
+	 */
+	int getExpirationQueueSize()
+	{
+		return expirationQueue.size();
+	}
+
    /**
     * @see java.lang.Object#toString()
     */
    @Override
    public String toString()
    {
-      return "NXCPMsgWaitQueue [messageList=" + messageList.toString()
+      return "NXCPMsgWaitQueue [pendingSlots=" + slots.size()
             + " defaultTimeout=" + defaultTimeout + " messageLifeTime="
-            + messageLifeTime + " isActive=" + isActive;
+            + messageLifeTime + " isActive=" + isActive + "]";
    }
 }
@@ -0,0 +1,211 @@
+/**
+ * 
+ */
+package org.netxms.base;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests for shared NXCP event loop
+ */
+public class NXCPEventLoopTest extends TestCase
+{
+   /**
+    * Handler collecting received messages
+    */
+   private static class TestHandler implements NXCPEventLoop.Handler
+   {
+      List<NXCPMessage> messages = new ArrayList<NXCPMessage>();
+      CountDownLatch received;
+      CountDownLatch closed = new CountDownLatch(1);
+      Throwable closeCause = null;
+
+      TestHandler(int count)
+      {
+         received = new CountDownLatch(count);
+      }
+
+      @Override
+      public EncryptionContext getEncryptionContext()
+      {
+         return null;
+      }
+
+      @Override
+      public synchronized void onMessage(NXCPMessage msg) throws Exception
+      {
+         messages.add(msg);
+         received.countDown();
+      }
+
+      @Override
+      public void onClose(Throwable cause)
+      {
+         closeCause = cause;
+         closed.countDown();
+      }
+   }
+
+   public void testMultipleConnections() throws Exception
+   {
+      final int connectionCount = 10;
+      final int messageCount = 1000;
+
+      NXCPEventLoop eventLoop = new NXCPEventLoop("Test", 2);
+      ServerSocket server = new ServerSocket(0);
+      TestHandler[] handlers = new TestHandler[connectionCount];
+      Socket[] peers = new Socket[connectionCount];
+      for(int i = 0; i < connectionCount; i++)
+      {
+         SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+         peers[i] = server.accept();
+         handlers[i] = new TestHandler(messageCount);
+         eventLoop.register(channel, new NXCPMessageReceiver(4096, 65536), handlers[i]);
+      }
+      assertEquals(connectionCount, eventLoop.getConnectionCount());
+
+      for(int i = 0; i < connectionCount; i++)
+      {
+         OutputStream out = peers[i].getOutputStream();
+         for(int j = 0; j < messageCount; j++)
+         {
+            NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT_UPDATE, j);
+            msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, i);
+            out.write(msg.createNXCPMessage(false));
+         }
+         out.flush();
+      }
+
+      for(int i = 0; i < connectionCount; i++)
+      {
+         assertTrue(handlers[i].received.await(10, TimeUnit.SECONDS));
+         for(int j = 0; j < messageCount; j++)
+         {
+            NXCPMessage msg = handlers[i].messages.get(j);
+            assertEquals(j, msg.getMessageId());
+            assertEquals(i, msg.getFieldAsInt32(NXCPCodes.VID_OBJECT_ID));
+         }
+      }
+
+      // Remote close should be reported to handler
+      peers[0].close();
+      assertTrue(handlers[0].closed.await(10, TimeUnit.SECONDS));
+      assertTrue(handlers[0].closeCause instanceof NXCPException);
+      assertEquals(NXCPException.SESSION_CLOSED, ((NXCPException)handlers[0].closeCause).getErrorCode());
+      assertEquals(connectionCount - 1, eventLoop.getConnectionCount());
+
+      eventLoop.shutdown();
+      for(int i = 1; i < connectionCount; i++)
+      {
+         assertTrue(handlers[i].closed.await(10, TimeUnit.SECONDS));
+         peers[i].close();
+      }
+      server.close();
+   }
+
+   public void testSendThroughConnection() throws Exception
+   {
+      NXCPEventLoop eventLoop = new NXCPEventLoop("Test", 2);
+      ServerSocket server = new ServerSocket(0);
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+      Socket peer = server.accept();
+      TestHandler handler = new TestHandler(0);
+      NXCPEventLoop.Connection connection = eventLoop.register(channel, new NXCPMessageReceiver(4096, 65536), handler);
+
+      NXCPMessageWriter writer = new NXCPMessageWriter(connection.getOutputStream(), 64, eventLoop.getWriterExecutor());
+      for(int i = 0; i < 100; i++)
+         writer.send(new NXCPMessage(NXCPCodes.CMD_KEEPALIVE, i).createNXCPMessage(false));
+      assertTrue(writer.flush(5000));
+
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(4096, 65536);
+      for(int i = 0; i < 100; i++)
+         assertEquals(i, receiver.receiveMessage(peer.getInputStream(), null).getMessageId());
+
+      writer.close(1000);
+      connection.close(null);
+      assertTrue(connection.isClosed());
+      assertNull(handler.closeCause);
+      assertEquals(0, handler.closed.getCount());
+
+      eventLoop.shutdown();
+      peer.close();
+      server.close();
+   }
+
+   public void testBlockingTasks() throws Exception
+   {
+      NXCPEventLoop eventLoop = new NXCPEventLoop("Test", 1);
+      ServerSocket server = new ServerSocket(0);
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+      Socket peer = server.accept();
+      TestHandler handler = new TestHandler(1);
+      eventLoop.register(channel, new NXCPMessageReceiver(4096, 65536), handler);
+
+      // Tasks waiting for input should not prevent input processing
+      final CountDownLatch done = new CountDownLatch(4);
+      for(int i = 0; i < 4; i++)
+      {
+         eventLoop.getTaskExecutor().execute(() -> {
+            try
+            {
+               if (handler.received.await(5, TimeUnit.SECONDS))
+                  done.countDown();
+            }
+            catch(InterruptedException e)
+            {
+            }
+         });
+      }
+
+      OutputStream out = peer.getOutputStream();
+      out.write(new NXCPMessage(NXCPCodes.CMD_KEEPALIVE, 1).createNXCPMessage(false));
+      out.flush();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+
+      eventLoop.shutdown();
+      peer.close();
+      server.close();
+   }
+
+   public void testStalledPeer() throws Exception
+   {
+      NXCPEventLoop eventLoop = new NXCPEventLoop("Test", 1);
+      ServerSocket server = new ServerSocket(0);
+
+      // Peer of first connection never reads, so writes to it block once socket buffers are full
+      SocketChannel stalledChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+      Socket stalledPeer = server.accept();
+      NXCPEventLoop.Connection stalledConnection = eventLoop.register(stalledChannel, new NXCPMessageReceiver(4096, 65536), new TestHandler(0));
+      NXCPMessageWriter writer = new NXCPMessageWriter(stalledConnection.getOutputStream(), 64, eventLoop.getWriterExecutor());
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_KEEPALIVE, 1);
+      msg.setField(NXCPCodes.VID_DESCRIPTION, new byte[262144]);
+      byte[] data = msg.createNXCPMessage(false);
+      for(int i = 0; i < 64; i++)
+         writer.send(data);
+      assertFalse(writer.flush(500));
+
+      // Input of other connection should still be processed by the only worker
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+      Socket peer = server.accept();
+      TestHandler handler = new TestHandler(1);
+      eventLoop.register(channel, new NXCPMessageReceiver(4096, 65536), handler);
+      OutputStream out = peer.getOutputStream();
+      out.write(new NXCPMessage(NXCPCodes.CMD_KEEPALIVE, 2).createNXCPMessage(false));
+      out.flush();
+      assertTrue(handler.received.await(5, TimeUnit.SECONDS));
+
+      eventLoop.shutdown();
+      stalledPeer.close();
+      peer.close();
+      server.close();
+   }
+}
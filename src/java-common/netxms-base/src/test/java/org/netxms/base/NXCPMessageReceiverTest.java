@@ -0,0 +1,122 @@
+/**
+ * 
+ */
+package org.netxms.base;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import junit.framework.TestCase;
+
+/**
+ * Tests for NXCP message receiver
+ */
+public class NXCPMessageReceiverTest extends TestCase
+{
+   /**
+    * Input stream returning data in small chunks to simulate network reads
+    */
+   private static class ChunkedInputStream extends ByteArrayInputStream
+   {
+      private int chunkSize;
+
+      public ChunkedInputStream(byte[] data, int chunkSize)
+      {
+         super(data);
+         this.chunkSize = chunkSize;
+      }
+
+      @Override
+      public synchronized int read(byte[] b, int off, int len)
+      {
+         return super.read(b, off, Math.min(len, chunkSize));
+      }
+   }
+
+   private static byte[] encodeMessages(int count, int valueSize) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      StringBuilder sb = new StringBuilder();
+      for(int i = 0; i < valueSize; i++)
+         sb.append((char)('a' + i % 26));
+      for(int i = 0; i < count; i++)
+      {
+         NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT_UPDATE, i);
+         msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, i);
+         msg.setField(NXCPCodes.VID_OBJECT_NAME, sb.toString());
+         out.write(msg.createNXCPMessage(false));
+      }
+      return out.toByteArray();
+   }
+
+   private static void receiveAll(NXCPMessageReceiver receiver, InputStream in, int count) throws Exception
+   {
+      for(int i = 0; i < count; i++)
+      {
+         NXCPMessage msg = receiver.receiveMessage(in, null);
+         assertEquals(NXCPCodes.CMD_OBJECT_UPDATE, msg.getMessageCode());
+         assertEquals(i, msg.getMessageId());
+         assertEquals(i, msg.getFieldAsInt32(NXCPCodes.VID_OBJECT_ID));
+      }
+   }
+
+   public void testSmallMessages() throws Exception
+   {
+      byte[] data = encodeMessages(1000, 50);
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(4096, 65536, new NXCPBufferPool(2));
+      receiveAll(receiver, new ChunkedInputStream(data, 1000), 1000);
+      assertEquals(1000, receiver.getMessagesReceived());
+      assertEquals(data.length, receiver.getBytesReceived());
+      assertEquals(0, receiver.getBufferGrowths());
+      assertTrue(receiver.getBufferCompactions() < 1000);
+   }
+
+   public void testLargeMessages() throws Exception
+   {
+      byte[] data = encodeMessages(20, 10000);
+      NXCPBufferPool pool = new NXCPBufferPool(2);
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(4096, 65536, pool);
+      receiveAll(receiver, new ChunkedInputStream(data, 3000), 20);
+      assertTrue(receiver.getBufferGrowths() > 0);
+      assertEquals(4096, receiver.getBufferSize());
+      assertTrue(pool.getReuses() > 0);
+   }
+
+   public void testLazyDecoding() throws Exception
+   {
+      byte[] data = encodeMessages(100, 200);
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(4096, 65536);
+      receiver.setLazyDecoding(true);
+      receiveAll(receiver, new ChunkedInputStream(data, 777), 100);
+
+      // Messages should stay valid after receive buffer is reused
+      receiver = new NXCPMessageReceiver(4096, 65536);
+      receiver.setLazyDecoding(true);
+      InputStream in = new ChunkedInputStream(data, 777);
+      NXCPMessage[] messages = new NXCPMessage[100];
+      for(int i = 0; i < messages.length; i++)
+         messages[i] = receiver.receiveMessage(in, null);
+      for(int i = 0; i < messages.length; i++)
+      {
+         assertEquals(i, messages[i].getFieldAsInt32(NXCPCodes.VID_OBJECT_ID));
+         assertEquals(200, messages[i].getFieldAsString(NXCPCodes.VID_OBJECT_NAME).length());
+         assertEquals('a', messages[i].getFieldAsString(NXCPCodes.VID_OBJECT_NAME).charAt(0));
+      }
+   }
+
+   public void testMessageTooLarge() throws Exception
+   {
+      byte[] data = encodeMessages(1, 100000);
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(4096, 65536);
+      try
+      {
+         receiver.receiveMessage(new ByteArrayInputStream(data), null);
+         fail("NXCPException expected");
+      }
+      catch(NXCPException e)
+      {
+         assertEquals(NXCPException.MESSAGE_TOO_LARGE, e.getErrorCode());
+      }
+   }
+}
@@ -18,7 +18,9 @@
  */
 package org.netxms.base;
 
+import java.net.InetAddress;
 import java.util.Arrays;
+import java.util.UUID;
 import junit.framework.TestCase;
 
 /**
@@ -115,6 +117,56 @@ public void testCompressedBinaryMessage() throws Exception
       assertTrue(Arrays.equals(byteTest, msg2.getBinaryData()));
    }
    
+   public void testLazyDecoding() throws Exception
+   {
+      final byte[] byteTest = { 0x10, 0x20, 0x30, 0x40, 0x50 };
+      final UUID guid = UUID.randomUUID();
+
+      for(boolean compress : new boolean[] { false, true })
+      {
+         final NXCPMessage msg1 = new NXCPMessage(1, 2);
+         msg1.setField(1, "string value 01234567890 01234567890 01234567890");
+         msg1.setFieldInt16(2, 10);
+         msg1.setFieldInt32(3, -20);
+         msg1.setFieldInt64(4, 123456789L);
+         msg1.setField(5, byteTest);
+         msg1.setField(6, "string value - UCS2", true);
+         msg1.setField(7, 3.5);
+         msg1.setField(8, "42");
+         msg1.setField(9, guid);
+         msg1.setField(10, InetAddress.getByName("10.0.0.1"));
+
+         final NXCPMessage msg2 = new NXCPMessage(msg1.createNXCPMessage(compress), null, true);
+         assertEquals(1, msg2.getMessageCode());
+         assertEquals(2L, msg2.getMessageId());
+         assertEquals("string value 01234567890 01234567890 01234567890", msg2.getFieldAsString(1));
+         assertEquals(10, msg2.getFieldAsInt16(2));
+         assertEquals(-20, msg2.getFieldAsInt32(3));
+         assertEquals(123456789L, msg2.getFieldAsInt64(4));
+         assertTrue(Arrays.equals(byteTest, msg2.getFieldAsBinary(5)));
+         assertEquals("string value - UCS2", msg2.getFieldAsString(6));
+         assertEquals(3.5, msg2.getFieldAsDouble(7));
+         assertEquals(3, msg2.getFieldAsInt32(7));
+         assertEquals(42, msg2.getFieldAsInt32(8));
+         assertEquals("123456789", msg2.getFieldAsString(4));
+         assertEquals(guid, msg2.getFieldAsUUID(9));
+         assertEquals(InetAddress.getByName("10.0.0.1"), msg2.getFieldAsInetAddress(10));
+         assertTrue(msg2.isFieldPresent(4));
+         assertFalse(msg2.isFieldPresent(11));
+         assertNull(msg2.findField(11));
+         assertEquals("", msg2.getFieldAsString(11));
+
+         // Fields set after decoding override encoded ones
+         msg2.setFieldInt32(3, 30);
+         assertEquals(30, msg2.getFieldAsInt32(3));
+
+         final NXCPMessage msg3 = new NXCPMessage(msg2.createNXCPMessage(false), null);
+         assertEquals(30, msg3.getFieldAsInt32(3));
+         assertEquals("string value - UCS2", msg3.getFieldAsString(6));
+         assertEquals(guid, msg3.getFieldAsUUID(9));
+      }
+   }
+
 	/**
 	 * Do encryption test for given cipher ID
 	 * 
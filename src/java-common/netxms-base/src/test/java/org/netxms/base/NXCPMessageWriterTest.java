@@ -0,0 +1,107 @@
+/**
+ * 
+ */
+package org.netxms.base;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests for NXCP message writer
+ */
+public class NXCPMessageWriterTest extends TestCase
+{
+   public void testConcurrentSend() throws Exception
+   {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final NXCPMessageWriter writer = new NXCPMessageWriter(out, 64, "Test Writer");
+
+      Thread[] threads = new Thread[8];
+      for(int i = 0; i < threads.length; i++)
+      {
+         final int code = i + 1;
+         threads[i] = new Thread(() -> {
+            try
+            {
+               for(int j = 0; j < 500; j++)
+               {
+                  NXCPMessage msg = new NXCPMessage(code, j);
+                  msg.setField(NXCPCodes.VID_VALUE, "value " + j);
+                  writer.send(msg.createNXCPMessage(false));
+               }
+            }
+            catch(IOException e)
+            {
+               fail(e.getMessage());
+            }
+         });
+         threads[i].start();
+      }
+      for(Thread t : threads)
+         t.join();
+
+      assertTrue(writer.flush(5000));
+      assertEquals(4000, writer.getMessagesSent());
+      assertEquals(out.size(), writer.getBytesSent());
+      assertTrue(writer.getWriteCount() <= writer.getMessagesSent());
+      writer.close(1000);
+
+      // Check that stream contains complete messages in per-sender order
+      NXCPMessageReceiver receiver = new NXCPMessageReceiver(65536, 65536);
+      ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+      long[] nextId = new long[threads.length];
+      for(int i = 0; i < 4000; i++)
+      {
+         NXCPMessage msg = receiver.receiveMessage(in, null);
+         int sender = msg.getMessageCode() - 1;
+         assertEquals(nextId[sender]++, msg.getMessageId());
+         assertEquals("value " + msg.getMessageId(), msg.getFieldAsString(NXCPCodes.VID_VALUE));
+      }
+   }
+
+   public void testWriteError() throws Exception
+   {
+      final NXCPMessageWriter writer = new NXCPMessageWriter(new OutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            throw new IOException("Broken stream");
+         }
+      }, 16, "Test Writer");
+
+      writer.send(new NXCPMessage(1, 1).createNXCPMessage(false));
+      writer.flush(5000);
+      assertNotNull(writer.getWriteError());
+      try
+      {
+         writer.send(new NXCPMessage(1, 2).createNXCPMessage(false));
+         fail("IOException expected");
+      }
+      catch(IOException e)
+      {
+      }
+      writer.close(1000);
+   }
+
+   public void testWriteErrorHandler() throws Exception
+   {
+      final NXCPMessageWriter writer = new NXCPMessageWriter(new OutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            throw new IOException("Broken stream");
+         }
+      }, 16, "Test Writer");
+
+      final CountDownLatch latch = new CountDownLatch(1);
+      writer.setErrorHandler((e) -> latch.countDown());
+      writer.send(new NXCPMessage(1, 1).createNXCPMessage(false));
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      writer.close(1000);
+   }
+}
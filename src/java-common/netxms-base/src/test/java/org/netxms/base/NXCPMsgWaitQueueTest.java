@@ -3,6 +3,8 @@
  */
 package org.netxms.base;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -43,10 +45,119 @@ public void testHousekeeper()
 		catch(InterruptedException e)
 		{
 		}
-		
+
+		// Expired messages should be removed from idle queue
+		assertEquals(0, mwq.getPendingCount());
+		assertEquals(0, mwq.getExpirationQueueSize());
+
 		final NXCPMessage msg = mwq.waitForMessage(10, 2L);
 		assertEquals(true, msg == null);
 		
 		mwq.shutdown();
 	}
+
+	public void testSameKeyMessages()
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(1000, 10000);
+
+		NXCPMessage m1 = new NXCPMessage(10, 1L);
+		NXCPMessage m2 = new NXCPMessage(10, 1L);
+		mwq.putMessage(m1);
+		mwq.putMessage(m2);
+		mwq.putMessage(new NXCPMessage(11, 1L));
+
+		assertSame(m1, mwq.waitForMessage(10, 1L));
+		assertSame(m2, mwq.waitForMessage(10, 1L));
+		assertNull(mwq.waitForMessage(10, 1L, 100));
+		assertNotNull(mwq.waitForMessage(11, 1L));
+		assertEquals(0, mwq.getPendingCount());
+		assertEquals(0, mwq.getUnclaimedMessageCount());
+		assertEquals(0, mwq.getExpirationQueueSize());
+
+		mwq.shutdown();
+	}
+
+	public void testInterruptedWait()
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(5000, 10000);
+
+		Thread.currentThread().interrupt();
+		assertNull(mwq.waitForMessage(10, 1L));
+		assertTrue(Thread.interrupted());
+		assertEquals(0, mwq.getPendingCount());
+
+		mwq.shutdown();
+	}
+
+	public void testConcurrentWaiters() throws Exception
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(5000, 10000);
+		final NXCPMessage[] results = new NXCPMessage[100];
+		Thread[] threads = new Thread[results.length];
+		for(int i = 0; i < threads.length; i++)
+		{
+			final int id = i;
+			threads[i] = new Thread(() -> results[id] = mwq.waitForMessage(10, id));
+			threads[i].start();
+		}
+		for(int i = threads.length - 1; i >= 0; i--)
+			mwq.putMessage(new NXCPMessage(10, i));
+		for(int i = 0; i < threads.length; i++)
+		{
+			threads[i].join();
+			assertNotNull(results[i]);
+			assertEquals(i, results[i].getMessageId());
+		}
+		assertEquals(0, mwq.getPendingCount());
+
+		mwq.shutdown();
+	}
+
+	public void testShutdownReleasesWaiters() throws Exception
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(60000);
+		final long[] elapsed = new long[1];
+		Thread t = new Thread(() -> {
+			long start = System.currentTimeMillis();
+			mwq.waitForMessage(10, 1L);
+			elapsed[0] = System.currentTimeMillis() - start;
+		});
+		t.start();
+		Thread.sleep(200);
+		mwq.shutdown();
+		t.join();
+		assertTrue(elapsed[0] < 10000);
+	}
+
+	public void testAsyncWait() throws Exception
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(5000, 10000);
+
+		CompletableFuture<NXCPMessage> f1 = mwq.waitForMessageAsync(10, 1L);
+		CompletableFuture<NXCPMessage> f2 = mwq.waitForMessageAsync(10, 2L, 200);
+		assertFalse(f1.isDone());
+		mwq.putMessage(new NXCPMessage(10, 1L));
+		assertTrue(f1.isDone());
+		assertEquals(1L, f1.get().getMessageId());
+		assertNull(f2.get(5, TimeUnit.SECONDS));
+		assertEquals(0, mwq.getPendingCount());
+
+		mwq.shutdown();
+	}
+
+	public void testAsyncWaitCancel() throws Exception
+	{
+		final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(5000, 10000);
+
+		CompletableFuture<NXCPMessage> f = mwq.waitForMessageAsync(10, 1L);
+		assertEquals(1, mwq.getPendingCount());
+		f.cancel(false);
+		assertEquals(0, mwq.getPendingCount());
+
+		// Message arrived after cancellation should be available to next waiter
+		mwq.putMessage(new NXCPMessage(10, 1L));
+		assertNotNull(mwq.waitForMessage(10, 1L, 100));
+
+		mwq.shutdown();
+	}
 }
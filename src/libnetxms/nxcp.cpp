@@ -509,14 +509,15 @@ TCHAR LIBNETXMS_EXPORTABLE *NXCPMessageCodeName(uint16_t code, TCHAR *buffer)
       _T("CMD_RS_LIST_RESULTS"),
       _T("CMD_RS_RENDER_RESULT"),
       _T("CMD_RS_DELETE_RESULT"),
-      _T("CMD_RS_NOTIFY")
+      _T("CMD_RS_NOTIFY"),
+      _T("CMD_RS_GET_JOB_STATUS")
    };
 
    if ((code >= CMD_LOGIN) && (code <= CMD_UPDATE_SSH_CREDENTIALS))
    {
       _tcscpy(buffer, messageNames[code - CMD_LOGIN]);
    }
-   else if ((code >= CMD_RS_LIST_REPORTS) && (code <= CMD_RS_NOTIFY))
+   else if ((code >= CMD_RS_LIST_REPORTS) && (code <= CMD_RS_GET_JOB_STATUS))
    {
       _tcscpy(buffer, reportingMessageNames[code - CMD_RS_LIST_REPORTS]);
    }
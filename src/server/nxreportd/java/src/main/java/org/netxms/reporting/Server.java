@@ -36,6 +36,7 @@
 import org.apache.commons.daemon.DaemonInitException;
 import org.netxms.reporting.services.CommunicationManager;
 import org.netxms.reporting.services.FileMonitor;
+import org.netxms.reporting.services.ReportJobManager;
 import org.netxms.reporting.services.ReportManager;
 import org.netxms.reporting.tools.SmtpSender;
 import org.slf4j.Logger;
@@ -54,6 +55,7 @@ public final class Server implements Daemon
    private Thread listenerThread;
    private CommunicationManager communicationManager;
    private ReportManager reportManager;
+   private ReportJobManager reportJobManager;
    private FileMonitor fileMonitor;
    private Properties configuration = new Properties();
    private ThreadPoolExecutor threadPool;
@@ -98,6 +100,7 @@ else if (bindAddressName.isEmpty() || bindAddressName.equals("*") || bindAddress
 
       communicationManager = new CommunicationManager(this);
       reportManager = new ReportManager(this);
+      reportJobManager = new ReportJobManager(this);
       smtpSender = new SmtpSender(this);
 
       File definitionsDirectory = reportManager.getDefinitionsDirectory();
@@ -180,6 +183,7 @@ public void stop() throws Exception
    @Override
    public void destroy()
    {
+      reportJobManager.shutdown();
       threadPool.shutdownNow();
       try
       {
@@ -190,6 +194,7 @@ public void destroy()
          logger.warn("Exception while closing listening socket", e);
       }
       reportManager = null;
+      reportJobManager = null;
       communicationManager = null;
       smtpSender = null;
       threadPool = null;
@@ -295,6 +300,14 @@ public ReportManager getReportManager()
       return reportManager;
    }
 
+   /**
+    * @return the reportJobManager
+    */
+   public ReportJobManager getReportJobManager()
+   {
+      return reportJobManager;
+   }
+
    /**
     * Get database connection
     *
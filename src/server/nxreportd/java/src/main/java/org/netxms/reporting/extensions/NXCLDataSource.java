@@ -41,6 +41,8 @@ public abstract class NXCLDataSource implements JRDataSource
    protected JRDataset dataset;
    protected Map<String, ? extends JRValueParameter> parameters;
 
+   private volatile NXCSession session = null;
+
    protected NXCLDataSource(JRDataset dataset, Map<String, ? extends JRValueParameter> parameters)
    {
       this.dataset = dataset;
@@ -83,6 +85,7 @@ public void connect(String server, String token)
    private void connect(String server, String token, String login, String password)
    {
       NXCSession session = new NXCSession(server);
+      this.session = session;
       try
       {
          session.connect(PROTOCOL_COMPONENTS);
@@ -100,6 +103,20 @@ private void connect(String server, String token, String login, String password)
       }
    }
 
+   /**
+    * Disconnect from NetXMS server. Any request in progress will be aborted.
+    */
+   public void disconnect()
+   {
+      NXCSession s = session;
+      session = null;
+      if (s != null)
+      {
+         log.debug("Disconnecting from NetXMS server");
+         s.disconnect();
+      }
+   }
+
    protected Object getParameterValue(String name)
    {
       return parameters == null ? null : parameters.get(name).getValue();
@@ -45,6 +45,7 @@ public class NXCLQueryExecutor implements JRQueryExecuter
 
    private JRDataset dataset;
    private Map<String, ? extends JRValueParameter> parametersMap;
+   private volatile NXCLDataSource dataSource = null;
 
    protected NXCLQueryExecutor(JasperReportsContext jasperReportsContext, JRDataset dataset,
          Map<String, ? extends JRValueParameter> parametersMap)
@@ -70,6 +71,7 @@ public JRDataSource createDatasource() throws JRException
          Class<NXCLDataSource> aClass = (Class<NXCLDataSource>)classLoader.loadClass("report.DataSource");
          Constructor<NXCLDataSource> constructor = aClass.getConstructor(JRDataset.class, Map.class);
          NXCLDataSource dataSource = constructor.newInstance(dataset, parametersMap);
+         this.dataSource = dataSource;
 
          JRQueryChunk chunk = dataset.getQuery().getChunks()[0];
          dataSource.setQuery(chunk.getText().trim());
@@ -112,6 +114,9 @@ private String getAuthToken()
    @Override
    public void close()
    {
+      NXCLDataSource ds = dataSource;
+      if (ds != null)
+         ds.disconnect();
    }
 
    /**
@@ -120,7 +125,11 @@ public void close()
    @Override
    public boolean cancelQuery() throws JRException
    {
-      log.warn("Query cancellation requested");
-      return false;
+      log.info("Query cancellation requested");
+      NXCLDataSource ds = dataSource;
+      if (ds == null)
+         return false;
+      ds.disconnect();
+      return true;
    }
 }
@@ -18,12 +18,8 @@
  */
 package org.netxms.reporting.services;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.Socket;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
@@ -153,59 +149,32 @@ public void shutdown()
     */
    public boolean sendMessage(NXCPMessage message)
    {
-      try
-      {
-         synchronized(mutex)
-         {
-            socket.getOutputStream().write(message.createNXCPMessage(false));
-         }
-         return true;
-      }
-      catch(IOException e)
-      {
-         logger.error("Communication failure", e);
-      }
-      return false;
+      return sendMessage(message, false);
    }
 
    /**
-    * Send file stream to core server.
+    * Send message to core server.
     *
-    * @param requestId request ID
-    * @param inputStream input stream for file
-    * @throws IOException
+    * @param message message to send
+    * @param allowCompression true if message can be sent compressed
+    * @return true on success
     */
-   public void sendFileStream(final long requestId, final InputStream inputStream) throws IOException
+   public boolean sendMessage(NXCPMessage message, boolean allowCompression)
    {
-      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, requestId);
-      msg.setBinaryMessage(true);
-
-      boolean success = false;
-      final byte[] buffer = new byte[FILE_BUFFER_SIZE];
-      while(true)
+      try
       {
-         final int bytesRead = inputStream.read(buffer);
-         if (bytesRead < FILE_BUFFER_SIZE)
-         {
-            msg.setEndOfFile(true);
-         }
-
-         msg.setBinaryData(bytesRead == -1 ? new byte[0] : Arrays.copyOf(buffer, bytesRead));
-         sendMessage(msg);
-
-         if (bytesRead < FILE_BUFFER_SIZE)
+         final byte[] data = message.createNXCPMessage(allowCompression);
+         synchronized(mutex)
          {
-            success = true;
-            break;
+            socket.getOutputStream().write(data);
          }
+         return true;
       }
-
-      if (!success)
+      catch(IOException e)
       {
-         NXCPMessage abortMessage = new NXCPMessage(NXCPCodes.CMD_ABORT_FILE_TRANSFER, requestId);
-         abortMessage.setBinaryMessage(true);
-         sendMessage(abortMessage);
+         logger.error("Communication failure", e);
       }
+      return false;
    }
 
    /**
@@ -232,31 +201,14 @@ private void receiverThread()
                {
                   logger.debug("RECV: " + message.toString());
                }
-               final MessageProcessingResult result = processMessage(message);
-               if (result.response != null)
+               final NXCPMessage response = processMessage(message);
+               if (response != null)
                {
                   if (message.getMessageCode() != NXCPCodes.CMD_KEEPALIVE)
                   {
-                     logger.debug("SEND: " + result.response.toString());
-                  }
-                  sendMessage(result.response);
-                  if (result.file != null)
-                  {
-                     logger.debug("File data found, sending");
-                     FileInputStream in = null;
-                     try
-                     {
-                        in = new FileInputStream(result.file);
-                        sendFileStream(message.getMessageId(), in);
-                     }
-                     catch(IOException e)
-                     {
-                        logger.error("Unexpected I/O exception while sending rendered file");
-                     }
-                     if (in != null)
-                        in.close();
-                     result.file.delete();
+                     logger.debug("SEND: " + response.toString());
                   }
+                  sendMessage(response);
                }
             }
          }
@@ -278,12 +230,11 @@ private void receiverThread()
     * Process incoming message
     * 
     * @param request input message
-    * @return message processing result
+    * @return response message or null if response will be sent asynchronously
     */
-   public MessageProcessingResult processMessage(NXCPMessage request)
+   public NXCPMessage processMessage(NXCPMessage request)
    {
       NXCPMessage reply = new NXCPMessage(NXCPCodes.CMD_REQUEST_COMPLETED, request.getMessageId());
-      File file = null;
       switch(request.getMessageCode())
       {
          case NXCPCodes.CMD_ISC_CONNECT_TO_SERVICE: // ignore and reply "Ok"
@@ -312,16 +263,19 @@ public MessageProcessingResult processMessage(NXCPMessage request)
             getResults(request, reply);
             break;
          case NXCPCodes.CMD_RS_RENDER_RESULT:
-            file = renderResult(request, reply);
-            break;
+            renderResult(request, reply);
+            return null;
          case NXCPCodes.CMD_RS_DELETE_RESULT:
             deleteResult(request, reply);
             break;
+         case NXCPCodes.CMD_RS_GET_JOB_STATUS:
+            getJobStatus(request, reply);
+            break;
          default:
             reply.setFieldInt32(NXCPCodes.VID_RCC, RCC.NOT_IMPLEMENTED);
             break;
       }
-      return new MessageProcessingResult(reply, file);
+      return reply;
    }
 
    /**
@@ -439,13 +393,11 @@ private void executeReport(NXCPMessage request, NXCPMessage response)
       final String idataView = request.getFieldAsString(NXCPCodes.VID_VIEW_NAME);
       final String authToken = request.getFieldAsString(NXCPCodes.VID_AUTH_TOKEN);
       requestObjectAccessSnapshotUpdate(userId);
-      server.executeBackgroundTask(new Runnable() {
-         @Override
-         public void run()
-         {
-            server.getReportManager().execute(userId, authToken, jobId, jobConfiguration, idataView, Locale.US);
-         }
-      });
+      if (server.getReportJobManager().submit(userId, authToken, jobId, jobConfiguration, idataView, Locale.US) == null)
+      {
+         response.setFieldInt32(NXCPCodes.VID_RCC, RCC.RESOURCE_BUSY);
+         return;
+      }
       response.setField(NXCPCodes.VID_JOB_ID, jobId);
       response.setFieldInt32(NXCPCodes.VID_RCC, RCC.SUCCESS);
    }
@@ -463,21 +415,52 @@ private static UUID getOrCreateJobId(NXCPMessage request)
    }
 
    /**
-    * Render report result
+    * Render report result. Response and rendered document are sent from background thread, with document streamed
+    * directly into file transfer as it is being rendered.
     *
     * @param request request message
     * @param response response message
-    * @return rendered document or null on failure
     */
-   private File renderResult(NXCPMessage request, NXCPMessage response)
+   private void renderResult(NXCPMessage request, final NXCPMessage response)
    {
       final UUID reportId = request.getFieldAsUUID(NXCPCodes.VID_REPORT_DEFINITION);
       final UUID jobId = request.getFieldAsUUID(NXCPCodes.VID_JOB_ID);
       final int formatCode = request.getFieldAsInt32(NXCPCodes.VID_RENDER_FORMAT);
       final ReportRenderFormat format = ReportRenderFormat.valueOf(formatCode);
-      File file = server.getReportManager().renderResult(reportId, jobId, format);
-      response.setFieldInt32(NXCPCodes.VID_RCC, (file != null) ? RCC.SUCCESS : RCC.IO_ERROR);
-      return file;
+      final long requestId = request.getMessageId();
+      server.executeBackgroundTask(new Runnable() {
+         @Override
+         public void run()
+         {
+            final ReportManager reportManager = server.getReportManager();
+            if ((reportId == null) || (jobId == null) || (format == null) || (format == ReportRenderFormat.NONE) || !reportManager.isResultAvailable(reportId, jobId))
+            {
+               response.setFieldInt32(NXCPCodes.VID_RCC, RCC.IO_ERROR);
+               logger.debug("SEND: " + response.toString());
+               sendMessage(response);
+               return;
+            }
+
+            response.setFieldInt32(NXCPCodes.VID_RCC, RCC.SUCCESS);
+            logger.debug("SEND: " + response.toString());
+            if (!sendMessage(response))
+               return;
+
+            final FileTransferOutputStream out = new FileTransferOutputStream(CommunicationManager.this, requestId, FILE_BUFFER_SIZE,
+                  Boolean.parseBoolean(server.getConfigurationProperty("nxreportd.compressFileTransfer", "false")));
+            try
+            {
+               reportManager.renderResult(reportId, jobId, format, out);
+               out.close();
+               logger.debug("Rendered result for job " + jobId + " sent (" + out.getBytesSent() + " bytes)");
+            }
+            catch(Throwable e)
+            {
+               logger.error("Failed to render or send report result for job " + jobId, e);
+               out.abort();
+            }
+         }
+      });
    }
 
    /**
@@ -490,11 +473,44 @@ private void deleteResult(NXCPMessage request, NXCPMessage reply)
    {
       final UUID reportId = request.getFieldAsUUID(NXCPCodes.VID_REPORT_DEFINITION);
       final UUID jobId = request.getFieldAsUUID(NXCPCodes.VID_JOB_ID);
+      if (server.getReportJobManager().cancel(jobId))
+         logger.debug("Running report job {} cancelled because its result was deleted", jobId);
       reply.setFieldInt32(NXCPCodes.VID_RCC,
             server.getReportManager().deleteResult(reportId, jobId) ? RCC.SUCCESS : RCC.IO_ERROR);
       sendNotification(SessionNotification.RS_RESULTS_MODIFIED, 0);
    }
 
+   /**
+    * Get status and progress of report execution job.
+    *
+    * @param request request message
+    * @param reply response message
+    */
+   private void getJobStatus(NXCPMessage request, NXCPMessage reply)
+   {
+      final UUID jobId = request.getFieldAsUUID(NXCPCodes.VID_JOB_ID);
+      final ReportJob job = (jobId != null) ? server.getReportJobManager().getJob(jobId) : null;
+      if (job == null)
+      {
+         reply.setFieldInt32(NXCPCodes.VID_RCC, RCC.INVALID_JOB_ID);
+         return;
+      }
+      if (job.getUserId() != request.getFieldAsInt32(NXCPCodes.VID_USER_ID))
+      {
+         reply.setFieldInt32(NXCPCodes.VID_RCC, RCC.ACCESS_DENIED);
+         return;
+      }
+      reply.setField(NXCPCodes.VID_REPORT_DEFINITION, job.getReportId());
+      reply.setFieldInt16(NXCPCodes.VID_JOB_STATUS, job.getState().ordinal());
+      reply.setFieldInt32(NXCPCodes.VID_JOB_PROGRESS, job.getPageCount());
+      reply.setField(NXCPCodes.VID_CREATION_TIME, job.getSubmitTime());
+      if (job.getStartTime() != null)
+         reply.setField(NXCPCodes.VID_TIME_FROM, job.getStartTime());
+      if (job.getEndTime() != null)
+         reply.setField(NXCPCodes.VID_TIME_TO, job.getEndTime());
+      reply.setFieldInt32(NXCPCodes.VID_RCC, RCC.SUCCESS);
+   }
+
    /**
     * Send notification message
     */
@@ -520,23 +536,4 @@ public void requestObjectAccessSnapshotUpdate(int userId)
       logger.debug("SEND: " + msg.toString());
       sendMessage(msg);
    }
-
-   /**
-    * Message processing result
-    */
-   private static class MessageProcessingResult
-   {
-      public NXCPMessage response;
-      public File file;
-
-      /**
-       * @param response
-       * @param file
-       */
-      public MessageProcessingResult(NXCPMessage response, File file)
-      {
-         this.response = response;
-         this.file = file;
-      }
-   }
 }
@@ -0,0 +1,157 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.reporting.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+
+/**
+ * Output stream that sends written data to core server as sequence of NXCP file data messages. Data is sent in chunks of
+ * fixed size as it is written; last chunk (with "end of file" flag set) is sent when stream is closed. If stream is aborted,
+ * file transfer abort message is sent instead.
+ */
+public class FileTransferOutputStream extends OutputStream
+{
+   private final CommunicationManager communicationManager;
+   private final long requestId;
+   private final boolean allowCompression;
+   private final byte[] buffer;
+   private int position = 0;
+   private long bytesSent = 0;
+   private boolean closed = false;
+
+   /**
+    * Create new file transfer stream.
+    *
+    * @param communicationManager communication manager
+    * @param requestId ID of request that initiated file transfer
+    * @param chunkSize size of single data chunk
+    * @param allowCompression true if data messages can be compressed
+    */
+   public FileTransferOutputStream(CommunicationManager communicationManager, long requestId, int chunkSize, boolean allowCompression)
+   {
+      this.communicationManager = communicationManager;
+      this.requestId = requestId;
+      this.allowCompression = allowCompression;
+      buffer = new byte[chunkSize];
+   }
+
+   /**
+    * @see java.io.OutputStream#write(int)
+    */
+   @Override
+   public void write(int b) throws IOException
+   {
+      checkOpen();
+      if (position == buffer.length)
+         sendChunk(false);
+      buffer[position++] = (byte)b;
+   }
+
+   /**
+    * @see java.io.OutputStream#write(byte[], int, int)
+    */
+   @Override
+   public void write(byte[] b, int off, int len) throws IOException
+   {
+      checkOpen();
+      while(len > 0)
+      {
+         if (position == buffer.length)
+            sendChunk(false);
+         int n = Math.min(len, buffer.length - position);
+         System.arraycopy(b, off, buffer, position, n);
+         position += n;
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * Send remaining data and mark end of file.
+    *
+    * @see java.io.OutputStream#close()
+    */
+   @Override
+   public void close() throws IOException
+   {
+      if (closed)
+         return;
+      sendChunk(true);
+      closed = true;
+   }
+
+   /**
+    * Abort file transfer. Does nothing if stream is already closed.
+    */
+   public void abort()
+   {
+      if (closed)
+         return;
+      closed = true;
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_ABORT_FILE_TRANSFER, requestId);
+      msg.setBinaryMessage(true);
+      communicationManager.sendMessage(msg);
+   }
+
+   /**
+    * Get number of bytes sent so far.
+    *
+    * @return number of bytes sent so far
+    */
+   public long getBytesSent()
+   {
+      return bytesSent;
+   }
+
+   /**
+    * Check that stream is not closed.
+    *
+    * @throws IOException if stream is closed
+    */
+   private void checkOpen() throws IOException
+   {
+      if (closed)
+         throw new IOException("File transfer stream is closed");
+   }
+
+   /**
+    * Send buffered data as file data message.
+    *
+    * @param endOfFile true to set "end of file" flag
+    * @throws IOException if message cannot be sent
+    */
+   private void sendChunk(boolean endOfFile) throws IOException
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, requestId);
+      msg.setBinaryMessage(true);
+      msg.setEndOfFile(endOfFile);
+      msg.setBinaryData(Arrays.copyOf(buffer, position));
+      if (!communicationManager.sendMessage(msg, allowCompression))
+      {
+         closed = true;
+         throw new IOException("Communication failure");
+      }
+      bytesSent += position;
+      position = 0;
+   }
+}
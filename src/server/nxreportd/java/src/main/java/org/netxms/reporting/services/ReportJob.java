@@ -0,0 +1,265 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.reporting.services;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.BaseReportFiller;
+import net.sf.jasperreports.engine.fill.FillListener;
+
+/**
+ * Report execution job. Tracks job state and fill progress, and provides cancellation of queued or running job.
+ */
+public class ReportJob implements FillListener
+{
+   /**
+    * Job state
+    */
+   public enum State
+   {
+      PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+   }
+
+   private static final Logger logger = LoggerFactory.getLogger(ReportJob.class);
+
+   private final UUID jobId;
+   private final UUID reportId;
+   private final int userId;
+   private final Date submitTime = new Date();
+   private volatile Date startTime = null;
+   private volatile Date endTime = null;
+   private volatile State state = State.PENDING;
+   private volatile int pageCount = 0;
+   private volatile boolean cancelled = false;
+   private BaseReportFiller filler = null;
+   private Future<?> future = null;
+
+   /**
+    * Create new job.
+    *
+    * @param jobId job ID
+    * @param reportId report ID
+    * @param userId ID of user that requested execution
+    */
+   public ReportJob(UUID jobId, UUID reportId, int userId)
+   {
+      this.jobId = jobId;
+      this.reportId = reportId;
+      this.userId = userId;
+   }
+
+   /**
+    * Set future for job execution task.
+    *
+    * @param future future for job execution task
+    */
+   synchronized void setFuture(Future<?> future)
+   {
+      this.future = future;
+   }
+
+   /**
+    * Get future for job execution task.
+    *
+    * @return future for job execution task or null if not set
+    */
+   synchronized Future<?> getFuture()
+   {
+      return future;
+   }
+
+   /**
+    * Mark job as running. Should be called from execution thread.
+    *
+    * @return false if job was cancelled before start
+    */
+   synchronized boolean start()
+   {
+      if (cancelled)
+         return false;
+      state = State.RUNNING;
+      startTime = new Date();
+      return true;
+   }
+
+   /**
+    * Mark job as finished. Should be called from execution thread.
+    *
+    * @param success true if job completed successfully
+    */
+   synchronized void finish(boolean success)
+   {
+      state = cancelled ? State.CANCELLED : (success ? State.COMPLETED : State.FAILED);
+      endTime = new Date();
+      filler = null;
+   }
+
+   /**
+    * Attach report filler to this job, so running fill can be cancelled.
+    *
+    * @param filler report filler
+    * @return false if job is already cancelled
+    */
+   public synchronized boolean attachFiller(BaseReportFiller filler)
+   {
+      if (cancelled)
+         return false;
+      this.filler = filler;
+      filler.addFillListener(this);
+      return true;
+   }
+
+   /**
+    * Cancel job. Pending job will not be started; for running job report fill is cancelled.
+    *
+    * @return true if job was pending or running
+    */
+   public synchronized boolean cancel()
+   {
+      if ((state != State.PENDING) && (state != State.RUNNING))
+         return false;
+
+      cancelled = true;
+      if (state == State.PENDING)
+      {
+         if (future != null)
+            future.cancel(false);
+         state = State.CANCELLED;
+         endTime = new Date();
+      }
+      else if (filler != null)
+      {
+         try
+         {
+            filler.cancelFill();
+         }
+         catch(Exception e)
+         {
+            logger.warn("Exception while cancelling report fill for job " + jobId, e);
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @see net.sf.jasperreports.engine.fill.FillListener#pageGenerated(net.sf.jasperreports.engine.JasperPrint, int)
+    */
+   @Override
+   public void pageGenerated(JasperPrint jasperPrint, int pageIndex)
+   {
+      pageCount = pageIndex + 1;
+   }
+
+   /**
+    * @see net.sf.jasperreports.engine.fill.FillListener#pageUpdated(net.sf.jasperreports.engine.JasperPrint, int)
+    */
+   @Override
+   public void pageUpdated(JasperPrint jasperPrint, int pageIndex)
+   {
+   }
+
+   /**
+    * @return job ID
+    */
+   public UUID getJobId()
+   {
+      return jobId;
+   }
+
+   /**
+    * @return report ID
+    */
+   public UUID getReportId()
+   {
+      return reportId;
+   }
+
+   /**
+    * @return ID of user that requested execution
+    */
+   public int getUserId()
+   {
+      return userId;
+   }
+
+   /**
+    * @return job state
+    */
+   public State getState()
+   {
+      return state;
+   }
+
+   /**
+    * Check if job cancellation was requested.
+    *
+    * @return true if job cancellation was requested
+    */
+   public boolean isCancelled()
+   {
+      return cancelled;
+   }
+
+   /**
+    * Get number of report pages generated so far.
+    *
+    * @return number of report pages generated so far
+    */
+   public int getPageCount()
+   {
+      return pageCount;
+   }
+
+   /**
+    * @return time when job was submitted
+    */
+   public Date getSubmitTime()
+   {
+      return submitTime;
+   }
+
+   /**
+    * @return time when job was started or null if job is not started yet
+    */
+   public Date getStartTime()
+   {
+      return startTime;
+   }
+
+   /**
+    * @return time when job was finished or null if job is not finished yet
+    */
+   public Date getEndTime()
+   {
+      return endTime;
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "ReportJob [jobId=" + jobId + ", reportId=" + reportId + ", userId=" + userId + ", state=" + state + ", pageCount=" + pageCount + "]";
+   }
+}
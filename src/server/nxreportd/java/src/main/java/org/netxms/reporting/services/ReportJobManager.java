@@ -0,0 +1,217 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2022 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.reporting.services;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netxms.client.reporting.ReportingJobConfiguration;
+import org.netxms.reporting.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Report job manager - executes reports on dedicated bounded worker pool. Number of concurrently running jobs and size of
+ * job queue are controlled by configuration properties <code>nxreportd.jobs.maxConcurrent</code> (default 4) and
+ * <code>nxreportd.jobs.queueSize</code> (default 64). Jobs are tracked from submission, and finished jobs are kept for
+ * status queries for <code>nxreportd.jobs.retentionTime</code> seconds (default 600).
+ */
+public class ReportJobManager
+{
+   private static final Logger logger = LoggerFactory.getLogger(ReportJobManager.class);
+
+   private Server server;
+   private ThreadPoolExecutor executor;
+   private long retentionTime;
+   private ConcurrentHashMap<UUID, ReportJob> jobs = new ConcurrentHashMap<UUID, ReportJob>();
+
+   /**
+    * Create report job manager.
+    *
+    * @param server server instance
+    */
+   public ReportJobManager(Server server)
+   {
+      this.server = server;
+
+      int maxConcurrentJobs = getIntegerProperty("nxreportd.jobs.maxConcurrent", 4);
+      int queueSize = getIntegerProperty("nxreportd.jobs.queueSize", 64);
+      retentionTime = getIntegerProperty("nxreportd.jobs.retentionTime", 600) * 1000L;
+      logger.info("Report job manager: " + maxConcurrentJobs + " concurrent jobs, queue size " + queueSize);
+
+      final AtomicInteger threadNumber = new AtomicInteger(0);
+      executor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, "Report Executor #" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      });
+      executor.allowCoreThreadTimeOut(true);
+   }
+
+   /**
+    * Get integer configuration property.
+    *
+    * @param name property name
+    * @param defaultValue default value
+    * @return property value or default value if property is not set or invalid
+    */
+   private int getIntegerProperty(String name, int defaultValue)
+   {
+      String value = server.getConfigurationProperty(name);
+      if (value == null)
+         return defaultValue;
+      try
+      {
+         int n = Integer.parseInt(value.trim());
+         return (n > 0) ? n : defaultValue;
+      }
+      catch(NumberFormatException e)
+      {
+         logger.warn("Invalid value \"" + value + "\" for configuration property " + name);
+         return defaultValue;
+      }
+   }
+
+   /**
+    * Submit report execution job.
+    *
+    * @param userId user ID
+    * @param authToken authentication token for NetXMS server access
+    * @param jobId job ID
+    * @param jobConfiguration reporting job configuration
+    * @param idataView name of database view for idata tables access or null if not provided
+    * @param locale locale for translation
+    * @return submitted job or null if job cannot be accepted (job queue is full or job with same ID already exist)
+    */
+   public ReportJob submit(final int userId, final String authToken, final UUID jobId, final ReportingJobConfiguration jobConfiguration, final String idataView, final Locale locale)
+   {
+      removeExpiredJobs();
+
+      final ReportJob job = new ReportJob(jobId, jobConfiguration.reportId, userId);
+      if (jobs.putIfAbsent(jobId, job) != null)
+      {
+         logger.warn("Report job " + jobId + " already submitted");
+         return null;
+      }
+
+      try
+      {
+         Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run()
+            {
+               if (!job.start())
+                  return;
+               logger.debug("Report job " + jobId + " started");
+               boolean success = false;
+               try
+               {
+                  success = server.getReportManager().execute(job, authToken, jobConfiguration, idataView, locale);
+               }
+               finally
+               {
+                  job.finish(success);
+                  logger.debug("Report job finished: " + job);
+               }
+            }
+         });
+         job.setFuture(future);
+      }
+      catch(RejectedExecutionException e)
+      {
+         jobs.remove(jobId, job);
+         logger.error("Report job " + jobId + " rejected (job queue is full)");
+         return null;
+      }
+
+      logger.debug("Report job " + jobId + " submitted (" + executor.getActiveCount() + " running, " + executor.getQueue().size() + " queued)");
+      return job;
+   }
+
+   /**
+    * Cancel pending or running job.
+    *
+    * @param jobId job ID
+    * @return true if job was found and cancelled
+    */
+   public boolean cancel(UUID jobId)
+   {
+      ReportJob job = jobs.get(jobId);
+      if ((job == null) || !job.cancel())
+         return false;
+      if (job.getState() == ReportJob.State.CANCELLED)
+      {
+         // Cancelled before start - release queue slot immediately
+         Future<?> future = job.getFuture();
+         if (future instanceof FutureTask)
+            executor.remove((FutureTask<?>)future);
+      }
+      logger.info("Report job " + jobId + " cancelled");
+      return true;
+   }
+
+   /**
+    * Get job. Finished jobs are available until retention time expires.
+    *
+    * @param jobId job ID
+    * @return job or null if there are no known job with given ID
+    */
+   public ReportJob getJob(UUID jobId)
+   {
+      removeExpiredJobs();
+      return jobs.get(jobId);
+   }
+
+   /**
+    * Remove finished jobs with expired retention time.
+    */
+   private void removeExpiredJobs()
+   {
+      long cutoff = System.currentTimeMillis() - retentionTime;
+      for(ReportJob job : jobs.values())
+      {
+         Date endTime = job.getEndTime();
+         if ((endTime != null) && (endTime.getTime() < cutoff))
+            jobs.remove(job.getJobId(), job);
+      }
+   }
+
+   /**
+    * Shutdown job manager. All pending and running jobs will be cancelled.
+    */
+   public void shutdown()
+   {
+      for(ReportJob job : jobs.values())
+         job.cancel();
+      executor.shutdownNow();
+   }
+}
@@ -18,14 +18,17 @@
  */
 package org.netxms.reporting.services;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -44,6 +47,7 @@
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -64,12 +68,16 @@
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.export.JRPdfExporter;
 import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.engine.fill.BaseReportFiller;
+import net.sf.jasperreports.engine.fill.JRFillInterruptedException;
+import net.sf.jasperreports.engine.fill.JRFiller;
 import net.sf.jasperreports.engine.query.QueryExecuterFactory;
 import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
 import net.sf.jasperreports.export.SimpleExporterInput;
 import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
 import net.sf.jasperreports.export.SimpleXlsxReportConfiguration;
@@ -89,6 +97,7 @@
    private static final String FILE_SUFFIX_COMPILED = ".jasper";
    private static final String FILE_SUFFIX_FILLED = ".jrprint";
    private static final String FILE_SUFFIX_METADATA = ".meta";
+   private static final String FILE_SUFFIX_PARTIAL = ".partial";
    private static final String MAIN_REPORT_COMPILED = "main" + FILE_SUFFIX_COMPILED;
 
    private static final Logger logger = LoggerFactory.getLogger(ReportManager.class);
@@ -96,6 +105,7 @@
    private Server server;
    private String workspace;
    private Map<UUID, String> reportMap;
+   private ConcurrentHashMap<UUID, CachedReport> reportCache = new ConcurrentHashMap<UUID, CachedReport>();
 
    /**
     * Create new report manager.
@@ -132,15 +142,8 @@ public List<UUID> listReports()
     */
    public ReportDefinition getReportDefinition(UUID reportId, Locale locale)
    {
-      ReportDefinition definition = null;
-      final JasperReport jasperReport = loadReport(reportId);
-      if (jasperReport != null)
-      {
-         final File reportDirectory = getReportDirectory(reportId);
-         ResourceBundle labels = loadReportTranslation(reportDirectory, locale);
-         definition = new ReportDefinition(jasperReport, labels);
-      }
-      return definition;
+      CachedReport cachedReport = getCachedReport(reportId);
+      return (cachedReport != null) ? cachedReport.getDefinition(locale) : null;
    }
 
    /**
@@ -151,18 +154,62 @@ public ReportDefinition getReportDefinition(UUID reportId, Locale locale)
     */
    private JasperReport loadReport(UUID uuid)
    {
-      JasperReport jasperReport = null;
+      CachedReport cachedReport = getCachedReport(uuid);
+      return (cachedReport != null) ? cachedReport.report : null;
+   }
+
+   /**
+    * Get cached compiled report with given GUID, loading it from disk if it is not in cache yet or compiled report file was
+    * changed since it was cached.
+    *
+    * @param uuid report GUID
+    * @return cached report or null if report cannot be loaded
+    */
+   private CachedReport getCachedReport(UUID uuid)
+   {
       final File reportDirectory = getReportDirectory(uuid);
+      if (reportDirectory == null)
+      {
+         logger.error("Report with UUID=" + uuid + " is not deployed");
+         return null;
+      }
+
       final File reportFile = new File(reportDirectory, MAIN_REPORT_COMPILED);
+      final long timestamp = reportFile.lastModified();
+      CachedReport cachedReport = reportCache.get(uuid);
+      if ((cachedReport != null) && (cachedReport.timestamp == timestamp) && cachedReport.directory.equals(reportDirectory))
+         return cachedReport;
+
       try
       {
-         jasperReport = (JasperReport)JRLoader.loadObject(reportFile);
+         JasperReport jasperReport = (JasperReport)JRLoader.loadObject(reportFile);
+         CachedReport newEntry = new CachedReport(jasperReport, reportDirectory, timestamp);
+         CachedReport oldEntry = reportCache.put(uuid, newEntry);
+         if (oldEntry != null)
+            oldEntry.dispose();
+         logger.debug("Compiled report " + uuid + " loaded into cache");
+         return newEntry;
       }
       catch(JRException e)
       {
          logger.error("Cannot load compiled report from " + reportFile, e);
+         return null;
+      }
+   }
+
+   /**
+    * Remove report with given GUID from cache.
+    *
+    * @param uuid report GUID
+    */
+   private void invalidateCachedReport(UUID uuid)
+   {
+      CachedReport cachedReport = reportCache.remove(uuid);
+      if (cachedReport != null)
+      {
+         cachedReport.dispose();
+         logger.debug("Compiled report " + uuid + " removed from cache");
       }
-      return jasperReport;
    }
 
    /**
@@ -211,6 +258,7 @@ public void deploy(String archiveName)
          {
             reportMap.put(bundleId, deployedName);
          }
+         invalidateCachedReport(bundleId);
          logger.info("Report " + bundleId + " deployed as \"" + deployedName + "\" in " + destination.getAbsolutePath());
          validateResults(bundleId);
       }
@@ -404,31 +452,35 @@ private File getOutputDirectory(UUID reportId)
    /**
     * Execute report.
     *
-    * @param userId user ID
-    * @param jobId job GUID
+    * @param job report job
+    * @param authToken authentication token for NetXMS server access
     * @param jobConfiguration reporting job configuration
     * @param idataView name of database view for idata tables access or null if not provided
     * @param locale locale for translation
+    * @return true if report was executed successfully
     */
-   public void execute(int userId, String authToken, UUID jobId, ReportingJobConfiguration jobConfiguration, String idataView, Locale locale)
+   public boolean execute(ReportJob job, String authToken, ReportingJobConfiguration jobConfiguration, String idataView, Locale locale)
    {
-      final JasperReport report = loadReport(jobConfiguration.reportId);
-      if (report == null)
+      final UUID jobId = job.getJobId();
+      final int userId = job.getUserId();
+      final CachedReport cachedReport = getCachedReport(jobConfiguration.reportId);
+      if (cachedReport == null)
       {
          logger.error("Cannot load report with UUID=" + jobConfiguration.reportId);
-         return;
+         return false;
       }
 
-      final File reportDirectory = getReportDirectory(jobConfiguration.reportId);
-      final ResourceBundle translations = loadReportTranslation(reportDirectory, locale);
-      final ReportDefinition reportDefinition = new ReportDefinition(report, translations);
+      final JasperReport report = cachedReport.report;
+      final File reportDirectory = cachedReport.directory;
+      final ResourceBundle translations = cachedReport.getTranslation(locale);
+      final ReportDefinition reportDefinition = cachedReport.getDefinition(locale);
       logger.debug("Report definition: " + reportDefinition);
 
       if (reportDefinition.isDataViewRequired() && ((idataView == null) || idataView.isEmpty()))
       {
          logger.error("Error executing report " + jobConfiguration.reportId + " " + report.getName() + ": DCI data view not provided");
          saveResult(new ReportResult(jobId, jobConfiguration.reportId, new Date(), userId, false));
-         return;
+         return false;
       }
 
       // fill report parameters
@@ -441,12 +493,12 @@ public void execute(int userId, String authToken, UUID jobId, ReportingJobConfig
       localParameters.put(AUTH_TOKEN_KEY, authToken);
       localParameters.put(IDATA_VIEW_KEY, idataView);
 
-      URLClassLoader reportClassLoader = new URLClassLoader(new URL[] {}, getClass().getClassLoader());
-      localParameters.put(JRParameter.REPORT_CLASS_LOADER, reportClassLoader);
+      localParameters.put(JRParameter.REPORT_CLASS_LOADER, cachedReport.classLoader);
 
       ThreadLocalReportInfo.setReportLocation(subrepoDirectory);
       ThreadLocalReportInfo.setServer(server);
 
+      boolean success = false;
       Connection dbConnection = null;
       final String outputFile = new File(getOutputDirectory(jobConfiguration.reportId), jobId.toString() + FILE_SUFFIX_FILLED).getPath();
       try
@@ -460,16 +512,29 @@ public void execute(int userId, String authToken, UUID jobId, ReportingJobConfig
 
          DefaultJasperReportsContext reportsContext = DefaultJasperReportsContext.getInstance();
          reportsContext.setProperty(QueryExecuterFactory.QUERY_EXECUTER_FACTORY_PREFIX + "nxcl", "org.netxms.reporting.nxcl.NXCLQueryExecutorFactory");
-         final JasperFillManager manager = JasperFillManager.getInstance(reportsContext);
-         manager.fillToFile(report, outputFile, localParameters, dbConnection);
+         final BaseReportFiller filler = JRFiller.createReportFiller(reportsContext, report);
+         if (!job.attachFiller(filler))
+            throw new JRFillInterruptedException();
+         final JasperPrint print = filler.fill(localParameters, dbConnection);
+         if (job.isCancelled())
+            throw new JRFillInterruptedException();
+         JRSaver.saveObject(print, outputFile);
 
          saveResult(new ReportResult(jobId, jobConfiguration.reportId, new Date(), userId, true));
+         success = true;
          sendMailNotifications(jobConfiguration.reportId, report.getName(), jobId, jobConfiguration.renderFormat, jobConfiguration.emailRecipients);
 
          executeHook("CleanupHook", subrepoDirectory, localParameters, dbConnection);
       }
       catch(Throwable e)
       {
+         if (job.isCancelled())
+         {
+            logger.info("Execution of report " + jobConfiguration.reportId + " " + report.getName() + " cancelled (jobId=" + jobId + ")");
+            new File(outputFile).delete();
+            return false;
+         }
+
          logger.error("Error executing report " + jobConfiguration.reportId + " " + report.getName(), e);
          try
          {
@@ -496,7 +561,8 @@ public void execute(int userId, String authToken, UUID jobId, ReportingJobConfig
          }
       }
       server.getCommunicationManager().sendNotification(SessionNotification.RS_RESULTS_MODIFIED, 0);
-      logger.info("Report execution completed (reportId=" + jobConfiguration.reportId + ", jobId=" + jobId + ")");
+      logger.info("Report execution completed (reportId=" + jobConfiguration.reportId + ", jobId=" + jobId + ", pages=" + job.getPageCount() + ")");
+      return success;
    }
 
    /**
@@ -858,6 +924,15 @@ public boolean deleteResult(UUID reportId, UUID jobId)
       if (file.exists())
          success = file.delete() && success;
 
+      for(ReportRenderFormat format : ReportRenderFormat.values())
+      {
+         if (format == ReportRenderFormat.NONE)
+            continue;
+         file = getRenderedResultFile(reportId, jobId, format);
+         if (file.exists())
+            success = file.delete() && success;
+      }
+
       return success;
    }
 
@@ -896,39 +971,107 @@ public boolean accept(File dir, String name)
    }
 
    /**
-    * Render report result
+    * Check if execution result for given job is available.
+    *
+    * @param reportId report ID
+    * @param jobId job ID
+    * @return true if execution result for given job is available
+    */
+   public boolean isResultAvailable(UUID reportId, UUID jobId)
+   {
+      return new File(getOutputDirectory(reportId), jobId.toString() + FILE_SUFFIX_FILLED).isFile();
+   }
+
+   /**
+    * Get file for cached rendered result.
     *
     * @param reportId report ID
     * @param jobId job ID
     * @param format rendering format
-    * @return file with rendered results on success and null on failure
+    * @return file for cached rendered result (may not exist)
+    */
+   private File getRenderedResultFile(UUID reportId, UUID jobId, ReportRenderFormat format)
+   {
+      return new File(getOutputDirectory(reportId), jobId.toString() + "." + format.getExtension());
+   }
+
+   /**
+    * Render report result into given output stream. Rendered result is cached, so subsequent requests for same job and
+    * format are served from cache.
+    *
+    * @param reportId report ID
+    * @param jobId job ID
+    * @param format rendering format
+    * @param out output stream
+    * @throws Exception on rendering error or if result is not available
     */
-   public File renderResult(UUID reportId, UUID jobId, ReportRenderFormat format)
+   public void renderResult(UUID reportId, UUID jobId, ReportRenderFormat format, OutputStream out) throws Exception
    {
       final File outputDirectory = getOutputDirectory(reportId);
       final File dataFile = new File(outputDirectory, jobId.toString() + FILE_SUFFIX_FILLED);
-      final File outputFile = new File(outputDirectory, jobId.toString() + "." + System.currentTimeMillis() + ".render");
+      if (!dataFile.isFile())
+         throw new ServerException("Result for job " + jobId + " is not available");
+
+      final File cachedFile = getRenderedResultFile(reportId, jobId, format);
+      if (cachedFile.isFile() && (cachedFile.lastModified() >= dataFile.lastModified()))
+      {
+         logger.debug("Using cached " + format + " rendering for job " + jobId);
+         Files.copy(cachedFile.toPath(), out);
+         return;
+      }
 
+      // Write to cache while streaming to caller, so rendered result does not have to be read back
+      final File partialFile = new File(outputDirectory, jobId.toString() + "." + System.nanoTime() + FILE_SUFFIX_PARTIAL);
+      final OutputStream cacheStream = new BufferedOutputStream(new FileOutputStream(partialFile));
+      boolean success = false;
       try
       {
+         final OutputStream teeStream = new TeeOutputStream(out, cacheStream);
          switch(format)
          {
             case PDF:
-               renderPDF(dataFile, outputFile);
+               renderPDF(dataFile, teeStream);
                break;
             case XLSX:
-               renderXLSX(dataFile, outputFile, loadReport(reportId));
+               renderXLSX(dataFile, teeStream, loadReport(reportId));
                break;
             default:
-               logger.error("Unsupported rendering format " + format);
-               return null;
+               throw new ServerException("Unsupported rendering format " + format);
          }
-         return outputFile;
+         success = true;
+      }
+      finally
+      {
+         cacheStream.close();
+         if (!success || !partialFile.renameTo(cachedFile))
+         {
+            // renameTo may fail if file is being replaced by concurrent rendering
+            partialFile.delete();
+         }
+      }
+   }
+
+   /**
+    * Get rendered report result as file. Rendered result is taken from cache or rendered into cache if needed. Returned
+    * file should not be deleted by caller.
+    *
+    * @param reportId report ID
+    * @param jobId job ID
+    * @param format rendering format
+    * @return file with rendered results on success and null on failure
+    */
+   public File getRenderedResult(UUID reportId, UUID jobId, ReportRenderFormat format)
+   {
+      try
+      {
+         OutputStream out = new NullOutputStream();
+         renderResult(reportId, jobId, format, out);
+         File file = getRenderedResultFile(reportId, jobId, format);
+         return file.isFile() ? file : null;
       }
       catch(Throwable e)
       {
          logger.error("Failed to render report", e);
-         outputFile.delete();
          return null;
       }
    }
@@ -937,14 +1080,14 @@ public File renderResult(UUID reportId, UUID jobId, ReportRenderFormat format)
     * Render report to PDF format.
     *
     * @param inputFile input file
-    * @param outputFile output file
+    * @param out output stream
     * @throws Exception on error
     */
-   private static void renderPDF(File inputFile, File outputFile) throws Exception
+   private static void renderPDF(File inputFile, OutputStream out) throws Exception
    {
       JRPdfExporter exporter = new JRPdfExporter();
       exporter.setExporterInput(new SimpleExporterInput(inputFile));
-      exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(new FileOutputStream(outputFile)));
+      exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
       exporter.exportReport();
    }
 
@@ -952,11 +1095,11 @@ private static void renderPDF(File inputFile, File outputFile) throws Exception
     * Render report to XLSX format.
     *
     * @param inputFile input file
-    * @param outputFile output file
+    * @param out output stream
     * @param report report object
     * @throws Exception on error
     */
-   private static void renderXLSX(File inputFile, File outputFile, JasperReport report) throws Exception
+   private static void renderXLSX(File inputFile, OutputStream out, JasperReport report) throws Exception
    {
       SimpleXlsxReportConfiguration configuration = new SimpleXlsxReportConfiguration();
       if (report != null)
@@ -977,7 +1120,7 @@ private static void renderXLSX(File inputFile, File outputFile, JasperReport rep
       JRXlsxExporter exporter = new JRXlsxExporter();
       exporter.setConfiguration(configuration);
       exporter.setExporterInput(new SimpleExporterInput(inputFile));
-      exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(new FileOutputStream(outputFile)));
+      exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
       exporter.exportReport();
    }
 
@@ -1019,16 +1162,15 @@ private static String prepareXlsSheetName(String sheetName)
    /**
     * Load translation from report directory
     *
-    * @param directory report directory
+    * @param classLoader class loader for report directory
     * @param locale locale to use
     * @return bundle with localized strings or empty bundle if not found
     */
-   private static ResourceBundle loadReportTranslation(File directory, Locale locale)
+   private static ResourceBundle loadReportTranslation(ClassLoader classLoader, Locale locale)
    {
       ResourceBundle labels = null;
       try
       {
-         final URLClassLoader classLoader = URLClassLoader.newInstance(new URL[] { directory.toURI().toURL() });
          labels = ResourceBundle.getBundle("i18n", locale, classLoader);
       }
       catch(Exception e)
@@ -1073,7 +1215,7 @@ private void sendMailNotifications(UUID reportId, String reportName, UUID jobId,
       File renderResult = null;
       if (renderFormat != ReportRenderFormat.NONE)
       {
-         renderResult = renderResult(reportId, jobId, renderFormat);
+         renderResult = getRenderedResult(reportId, jobId, renderFormat);
          String time = new SimpleDateFormat("dd-MM-yyyy").format(new Date());
          fileName = String.format("%s %s.%s", reportName, time, renderFormat == ReportRenderFormat.PDF ? "pdf" : "xls");
          text += "\n\nPlease find attached copy of the report.";
@@ -1082,8 +1224,148 @@ private void sendMailNotifications(UUID reportId, String reportName, UUID jobId,
 
       for(String r : recipients)
          server.getSmtpSender().sendMail(r, "New report is available", text, fileName, renderResult);
-      if (renderResult != null)
-         renderResult.delete();
+   }
+
+   /**
+    * Output stream that writes same data to two underlying streams
+    */
+   private static class TeeOutputStream extends OutputStream
+   {
+      private final OutputStream first;
+      private final OutputStream second;
+
+      TeeOutputStream(OutputStream first, OutputStream second)
+      {
+         this.first = first;
+         this.second = second;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         first.write(b);
+         second.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         first.write(b, off, len);
+         second.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException
+      {
+         first.flush();
+         second.flush();
+      }
+   }
+
+   /**
+    * Output stream that discards all data
+    */
+   private static class NullOutputStream extends OutputStream
+   {
+      @Override
+      public void write(int b)
+      {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+      }
+   }
+
+   /**
+    * Compiled report cached in memory together with derived objects (translations and report definitions for each locale)
+    */
+   private static class CachedReport
+   {
+      final JasperReport report;
+      final File directory;
+      final long timestamp;
+      final URLClassLoader classLoader;
+      final URLClassLoader translationClassLoader;
+      final ConcurrentHashMap<Locale, ResourceBundle> translations = new ConcurrentHashMap<Locale, ResourceBundle>();
+      final ConcurrentHashMap<Locale, ReportDefinition> definitions = new ConcurrentHashMap<Locale, ReportDefinition>();
+
+      /**
+       * Create cache entry.
+       *
+       * @param report compiled report
+       * @param directory report directory
+       * @param timestamp modification time of compiled report file
+       */
+      CachedReport(JasperReport report, File directory, long timestamp)
+      {
+         this.report = report;
+         this.directory = directory;
+         this.timestamp = timestamp;
+         classLoader = new URLClassLoader(new URL[] {}, ReportManager.class.getClassLoader());
+         URLClassLoader tcl = null;
+         try
+         {
+            tcl = URLClassLoader.newInstance(new URL[] { directory.toURI().toURL() });
+         }
+         catch(Exception e)
+         {
+            logger.error("Cannot create class loader for report translations", e);
+         }
+         translationClassLoader = tcl;
+      }
+
+      /**
+       * Get report translation for given locale.
+       *
+       * @param locale locale
+       * @return bundle with localized strings
+       */
+      ResourceBundle getTranslation(Locale locale)
+      {
+         ResourceBundle bundle = translations.get(locale);
+         if (bundle == null)
+         {
+            bundle = loadReportTranslation(translationClassLoader, locale);
+            translations.put(locale, bundle);
+         }
+         return bundle;
+      }
+
+      /**
+       * Get report definition for given locale.
+       *
+       * @param locale locale
+       * @return report definition
+       */
+      ReportDefinition getDefinition(Locale locale)
+      {
+         ReportDefinition definition = definitions.get(locale);
+         if (definition == null)
+         {
+            definition = new ReportDefinition(report, getTranslation(locale));
+            definitions.put(locale, definition);
+         }
+         return definition;
+      }
+
+      /**
+       * Release resources used by this entry.
+       */
+      void dispose()
+      {
+         try
+         {
+            classLoader.close();
+            if (translationClassLoader != null)
+               translationClassLoader.close();
+         }
+         catch(IOException e)
+         {
+            logger.warn("Exception while closing report class loader", e);
+         }
+      }
    }
 
    /**